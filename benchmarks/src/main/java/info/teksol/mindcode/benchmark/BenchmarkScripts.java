@@ -0,0 +1,54 @@
+package info.teksol.mindcode.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Access to the benchmarked scripts. The scripts are shared with processor tests in the mindcode module and are
+ * decorated here the same way the tests decorate them, so that all of them compile and run standalone.
+ */
+public class BenchmarkScripts {
+    /** Array sizes used by the sorting scripts; the same as in AlgorithmsTest */
+    static final Map<String, Integer> ARRAY_SIZES = Map.of(
+            "algorithms/bubble-sort.mnd", 64,
+            "algorithms/heap-sort.mnd", 512,
+            "algorithms/insert-sort.mnd", 128,
+            "algorithms/quick-sort.mnd", 512,
+            "algorithms/select-sort.mnd", 128
+    );
+
+    private static final String EULER_FUNCTIONS = "\ndef expect(v) print(v) end def actual(v) print(v) end";
+
+    /**
+     * Reads a script and applies the decoration it requires.
+     *
+     * @param name name of the script relative to the scripts directory, e.g. {@code algorithms/heap-sort.mnd}
+     * @return source code of the script
+     */
+    public static String load(String name) {
+        String source = read(name);
+        if (ARRAY_SIZES.containsKey(name)) {
+            return "SIZE = " + ARRAY_SIZES.get(name) + "\n" + source;
+        } else if (name.equals("algorithms/storage-display.mnd")) {
+            return "AMOUNT = 12345\n" + source;
+        } else if (name.startsWith("euler/")) {
+            return source + EULER_FUNCTIONS;
+        } else {
+            return source;
+        }
+    }
+
+    private static String read(String name) {
+        try (InputStream stream = BenchmarkScripts.class.getResourceAsStream("/scripts/" + name)) {
+            if (stream == null) {
+                throw new IllegalArgumentException("Unknown script " + name);
+            }
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package info.teksol.mindcode.benchmark;
+
+import info.teksol.mindcode.ast.Seq;
+import info.teksol.mindcode.compiler.generator.GeneratorOutput;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures individual compilation stages for each benchmarked script and compiler profile preset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class CompilerBenchmark {
+
+    @Param({
+            "algorithms/bitmap-get-set.mnd",
+            "algorithms/bitmap-get.mnd",
+            "algorithms/bubble-sort.mnd",
+            "algorithms/compute-recursive-fibonacci.mnd",
+            "algorithms/compute-sum-of-primes.mnd",
+            "algorithms/heap-sort.mnd",
+            "algorithms/insert-sort.mnd",
+            "algorithms/memory-read-write.mnd",
+            "algorithms/quick-sort.mnd",
+            "algorithms/select-sort.mnd",
+            "algorithms/storage-display.mnd",
+            "euler/project-euler-04.mnd",
+            "euler/project-euler-18.mnd",
+            "euler/project-euler-26.mnd",
+            "euler/project-euler-28.mnd",
+            "euler/project-euler-31.mnd",
+            "euler/project-euler-31b.mnd",
+            "euler/project-euler-45.mnd",
+            "euler/project-euler-97.mnd",
+            "optimizer/breakout-00.mnd",
+            "optimizer/detector-00.mnd",
+            "optimizer/factory-monitor-00.mnd",
+            "optimizer/factory-monitor-silicon-00.mnd",
+            "optimizer/factory-monitor-surge-alloy-00.mnd",
+            "optimizer/instant-overdrive-dome-00.mnd",
+            "optimizer/item-counter-00.mnd",
+            "optimizer/item-counter-micro-00.mnd",
+            "optimizer/item-rate-display-00.mnd",
+            "optimizer/item-rate-meter-00.mnd",
+            "optimizer/level-display-00.mnd",
+            "optimizer/level-display-water-cryo-00.mnd",
+            "optimizer/level-meter-00.mnd",
+            "optimizer/mass-driver-monitor-00.mnd",
+            "optimizer/mass-driver-monitor-surge-alloy-00.mnd",
+            "optimizer/reactor-control-00.mnd",
+            "optimizer/reactor-control-battery-level-00.mnd",
+            "optimizer/regulator-00.mnd",
+            "optimizer/remote-vault-00.mnd",
+            "optimizer/storage-display-00.mnd",
+            "optimizer/unit-housekeeping-00.mnd",
+            "optimizer/unit-speed-00.mnd",
+            "optimizer/unit-transport-00.mnd",
+            "optimizer/unit-transport-flow-rate-00.mnd",
+            "optimizer/unit-transport-single-00.mnd",
+    })
+    public String script;
+
+    @Param
+    public ProfilePreset preset;
+
+    private String sourceCode;
+    private CompilerStages stages;
+    private Seq program;
+    private List<LogicInstruction> optimized;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sourceCode = BenchmarkScripts.load(script);
+        stages = new CompilerStages(preset.createProfile());
+        program = stages.parse(sourceCode);
+        stages.processDirectives(program);
+        optimized = stages.optimize(stages.generate(program));
+    }
+
+    /**
+     * Optimizer modifies the generated program and its AST context tree, a fresh program is therefore
+     * generated for each invocation of the optimize benchmark.
+     */
+    @State(Scope.Thread)
+    public static class GeneratedProgram {
+        GeneratorOutput output;
+
+        @Setup(Level.Invocation)
+        public void setup(CompilerBenchmark benchmark) {
+            output = benchmark.stages.generate(benchmark.program);
+        }
+    }
+
+    @Benchmark
+    public Seq parse() {
+        return stages.parse(sourceCode);
+    }
+
+    @Benchmark
+    public GeneratorOutput generate() {
+        return stages.generate(program);
+    }
+
+    @Benchmark
+    public List<LogicInstruction> optimize(GeneratedProgram generated) {
+        return stages.optimize(generated.output);
+    }
+
+    @Benchmark
+    public List<LogicInstruction> resolve() {
+        return stages.resolve(optimized);
+    }
+}
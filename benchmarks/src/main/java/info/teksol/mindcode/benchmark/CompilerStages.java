@@ -0,0 +1,75 @@
+package info.teksol.mindcode.benchmark;
+
+import info.teksol.mindcode.ast.AstNodeBuilder;
+import info.teksol.mindcode.ast.Seq;
+import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.DirectiveProcessor;
+import info.teksol.mindcode.compiler.LogicInstructionLabelResolver;
+import info.teksol.mindcode.compiler.ProgramParser;
+import info.teksol.mindcode.compiler.generator.GeneratorOutput;
+import info.teksol.mindcode.compiler.generator.LogicInstructionGenerator;
+import info.teksol.mindcode.compiler.instructions.InstructionProcessor;
+import info.teksol.mindcode.compiler.instructions.InstructionProcessorFactory;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.compiler.optimization.OptimizationCoordinator;
+import org.antlr.v4.runtime.BaseErrorListener;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Individual compilation stages, performed the same way as in MindcodeCompiler. Compiler messages are discarded.
+ */
+public class CompilerStages {
+    private static final Consumer<CompilerMessage> NO_MESSAGES = m -> {};
+
+    private final CompilerProfile profile;
+    private InstructionProcessor instructionProcessor;
+
+    public CompilerStages(CompilerProfile profile) {
+        this.profile = profile;
+    }
+
+    public CompilerProfile getProfile() {
+        return profile;
+    }
+
+    public InstructionProcessor getInstructionProcessor() {
+        return instructionProcessor;
+    }
+
+    public Seq parse(String sourceCode) {
+        return AstNodeBuilder.generate(ProgramParser.parse(sourceCode, new BaseErrorListener()));
+    }
+
+    /**
+     * Applies compiler directives from the program to the profile and creates the instruction processor
+     * corresponding to the resulting profile. Needs to be called before generating code.
+     */
+    public void processDirectives(Seq program) {
+        DirectiveProcessor.processDirectives(program, profile, NO_MESSAGES);
+        instructionProcessor = InstructionProcessorFactory.getInstructionProcessor(NO_MESSAGES, profile);
+    }
+
+    public GeneratorOutput generate(Seq program) {
+        return new LogicInstructionGenerator(profile, instructionProcessor, NO_MESSAGES).generate(program);
+    }
+
+    public List<LogicInstruction> optimize(GeneratorOutput generatorOutput) {
+        if (!profile.optimizationsActive() || generatorOutput.instructions().size() <= 1) {
+            return generatorOutput.instructions();
+        }
+        return new OptimizationCoordinator(instructionProcessor, profile, NO_MESSAGES).optimize(generatorOutput);
+    }
+
+    public List<LogicInstruction> resolve(List<LogicInstruction> program) {
+        return LogicInstructionLabelResolver.resolve(instructionProcessor, program);
+    }
+
+    public List<LogicInstruction> compile(String sourceCode) {
+        Seq program = parse(sourceCode);
+        processDirectives(program);
+        return resolve(optimize(generate(program)));
+    }
+}
@@ -0,0 +1,101 @@
+package info.teksol.mindcode.benchmark;
+
+import info.teksol.mindcode.ast.Seq;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.generator.GeneratorOutput;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.compiler.optimization.Optimization;
+import info.teksol.mindcode.compiler.optimization.OptimizationLevel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the optimization of each benchmarked script with just one optimization active.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class OptimizerBenchmark {
+
+    @Param({
+            "algorithms/bitmap-get-set.mnd",
+            "algorithms/bitmap-get.mnd",
+            "algorithms/bubble-sort.mnd",
+            "algorithms/compute-recursive-fibonacci.mnd",
+            "algorithms/compute-sum-of-primes.mnd",
+            "algorithms/heap-sort.mnd",
+            "algorithms/insert-sort.mnd",
+            "algorithms/memory-read-write.mnd",
+            "algorithms/quick-sort.mnd",
+            "algorithms/select-sort.mnd",
+            "algorithms/storage-display.mnd",
+            "euler/project-euler-04.mnd",
+            "euler/project-euler-18.mnd",
+            "euler/project-euler-26.mnd",
+            "euler/project-euler-28.mnd",
+            "euler/project-euler-31.mnd",
+            "euler/project-euler-31b.mnd",
+            "euler/project-euler-45.mnd",
+            "euler/project-euler-97.mnd",
+            "optimizer/breakout-00.mnd",
+            "optimizer/detector-00.mnd",
+            "optimizer/factory-monitor-00.mnd",
+            "optimizer/factory-monitor-silicon-00.mnd",
+            "optimizer/factory-monitor-surge-alloy-00.mnd",
+            "optimizer/instant-overdrive-dome-00.mnd",
+            "optimizer/item-counter-00.mnd",
+            "optimizer/item-counter-micro-00.mnd",
+            "optimizer/item-rate-display-00.mnd",
+            "optimizer/item-rate-meter-00.mnd",
+            "optimizer/level-display-00.mnd",
+            "optimizer/level-display-water-cryo-00.mnd",
+            "optimizer/level-meter-00.mnd",
+            "optimizer/mass-driver-monitor-00.mnd",
+            "optimizer/mass-driver-monitor-surge-alloy-00.mnd",
+            "optimizer/reactor-control-00.mnd",
+            "optimizer/reactor-control-battery-level-00.mnd",
+            "optimizer/regulator-00.mnd",
+            "optimizer/remote-vault-00.mnd",
+            "optimizer/storage-display-00.mnd",
+            "optimizer/unit-housekeeping-00.mnd",
+            "optimizer/unit-speed-00.mnd",
+            "optimizer/unit-transport-00.mnd",
+            "optimizer/unit-transport-flow-rate-00.mnd",
+            "optimizer/unit-transport-single-00.mnd",
+    })
+    public String script;
+
+    @Param
+    public Optimization optimization;
+
+    private CompilerStages stages;
+    private Seq program;
+    private GeneratorOutput output;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CompilerProfile profile = new CompilerProfile(false, optimization);
+        stages = new CompilerStages(profile);
+        program = stages.parse(BenchmarkScripts.load(script));
+        stages.processDirectives(program);
+        // Directives in the script might have activated other optimizations
+        profile.setAllOptimizationLevels(OptimizationLevel.OFF);
+        profile.setOptimizationLevel(optimization, OptimizationLevel.AGGRESSIVE);
+    }
+
+    // Optimizer modifies the generated program, a fresh one is needed for each invocation.
+    @Setup(Level.Invocation)
+    public void generate() {
+        output = stages.generate(program);
+    }
+
+    @Benchmark
+    public List<LogicInstruction> optimize() {
+        return stages.optimize(output);
+    }
+}
@@ -0,0 +1,58 @@
+package info.teksol.mindcode.benchmark;
+
+import info.teksol.mindcode.compiler.ProgramParser;
+import info.teksol.mindcode.compiler.ProgramParser.ParsingStrategy;
+import info.teksol.mindcode.grammar.MindcodeParser;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing strategies on the largest benchmarked scripts. With a warm DFA, the lookahead DFA shared by all
+ * parser instances is retained between invocations, as it is between compilations in a long-running process.
+ * With a cold DFA, it is cleared before each invocation, corresponding to the first compilation in a new process.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ParserBenchmark {
+
+    @Param({
+            "optimizer/factory-monitor-00.mnd",
+            "optimizer/storage-display-00.mnd",
+            "optimizer/instant-overdrive-dome-00.mnd",
+            "optimizer/unit-transport-single-00.mnd",
+            "optimizer/reactor-control-00.mnd",
+            "optimizer/unit-transport-00.mnd",
+    })
+    public String script;
+
+    @Param
+    public ParsingStrategy strategy;
+
+    @Param({"true", "false"})
+    public boolean warmDfa;
+
+    private String sourceCode;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sourceCode = BenchmarkScripts.load(script);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearDfa() {
+        if (!warmDfa) {
+            new MindcodeParser(null).getInterpreter().clearDFA();
+        }
+    }
+
+    @Benchmark
+    public MindcodeParser.ProgramContext parse() {
+        return ProgramParser.parse(sourceCode, new BaseErrorListener(), strategy);
+    }
+}
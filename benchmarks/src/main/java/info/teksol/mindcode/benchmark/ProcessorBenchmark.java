@@ -0,0 +1,83 @@
+package info.teksol.mindcode.benchmark;
+
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.processor.DecodedProgram;
+import info.teksol.mindcode.processor.ExecutionEngine;
+import info.teksol.mindcode.processor.MindustryMemory;
+import info.teksol.mindcode.processor.Processor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the execution of fully optimized scripts in the processor emulator. Only scripts not requiring
+ * Mindustry blocks other than memory banks are included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ProcessorBenchmark {
+    // Prevents the benchmark from hanging on an endless loop
+    private static final int MAX_STEPS = 1000000;
+
+    @Param({
+            "algorithms/bitmap-get-set.mnd",
+            "algorithms/bubble-sort.mnd",
+            "algorithms/compute-recursive-fibonacci.mnd",
+            "algorithms/compute-sum-of-primes.mnd",
+            "algorithms/heap-sort.mnd",
+            "algorithms/insert-sort.mnd",
+            "algorithms/quick-sort.mnd",
+            "algorithms/select-sort.mnd",
+            "euler/project-euler-04.mnd",
+            "euler/project-euler-18.mnd",
+            "euler/project-euler-26.mnd",
+            "euler/project-euler-28.mnd",
+            "euler/project-euler-31.mnd",
+            "euler/project-euler-31b.mnd",
+            "euler/project-euler-45.mnd",
+            "euler/project-euler-97.mnd",
+    })
+    public String script;
+
+    @Param
+    public ExecutionEngine engine;
+
+    private List<LogicInstruction> program;
+    private DecodedProgram decoded;
+    private double[] array;
+    private Processor processor;
+
+    @Setup(Level.Trial)
+    public void compile() {
+        program = new CompilerStages(ProfilePreset.FULL.createProfile()).compile(BenchmarkScripts.load(script));
+        // Engines other than the interpreter run a program decoded once, as a long-running emulation would
+        decoded = DecodedProgram.decode(program);
+        int size = BenchmarkScripts.ARRAY_SIZES.getOrDefault(script, 0);
+        array = new Random(0).ints().mapToDouble(i -> Math.abs(i) % 1000).limit(size).toArray();
+    }
+
+    // Scripts modify memory banks and processor variables, a fresh processor is needed for each invocation.
+    @Setup(Level.Invocation)
+    public void createProcessor() {
+        processor = new Processor();
+        processor.setExecutionEngine(engine);
+        processor.addBlock(MindustryMemory.createMemoryBank("bank1"));
+        processor.addBlock(MindustryMemory.createMemoryBank("bank2", array));
+    }
+
+    @Benchmark
+    public List<String> run() {
+        if (engine == ExecutionEngine.INTERPRETER) {
+            processor.run(program, MAX_STEPS);
+        } else {
+            processor.run(decoded, MAX_STEPS);
+        }
+        return processor.getTextBuffer();
+    }
+}
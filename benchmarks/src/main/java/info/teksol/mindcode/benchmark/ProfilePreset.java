@@ -0,0 +1,27 @@
+package info.teksol.mindcode.benchmark;
+
+import info.teksol.mindcode.compiler.CompilerProfile;
+
+import java.util.function.Supplier;
+
+/**
+ * Compiler profiles the benchmarks are run with. Corresponds to the profiles provided by {@link CompilerProfile}.
+ */
+public enum ProfilePreset {
+    NONE        (() -> CompilerProfile.noOptimizations(false)),
+    STANDARD    (() -> CompilerProfile.standardOptimizations(false)),
+    FULL        (() -> CompilerProfile.fullOptimizations(false)),
+    WEBAPP      (() -> CompilerProfile.fullOptimizations(true)),
+    ;
+
+    private final Supplier<CompilerProfile> profileCreator;
+
+    ProfilePreset(Supplier<CompilerProfile> profileCreator) {
+        this.profileCreator = profileCreator;
+    }
+
+    /** @return new instance of the compiler profile */
+    public CompilerProfile createProfile() {
+        return profileCreator.get();
+    }
+}
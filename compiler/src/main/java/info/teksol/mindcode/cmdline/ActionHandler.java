@@ -4,6 +4,7 @@ import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.mindcode.compiler.FinalCodeOutput;
 import info.teksol.mindcode.compiler.GenerationGoal;
 import info.teksol.mindcode.compiler.MemoryModel;
+import info.teksol.mindcode.compiler.SelectionStrategy;
 import info.teksol.mindcode.compiler.optimization.Optimization;
 import info.teksol.mindcode.compiler.optimization.OptimizationLevel;
 import info.teksol.mindcode.logic.ProcessorEdition;
@@ -82,6 +83,13 @@ abstract class ActionHandler {
                 .type(Arguments.caseInsensitiveEnumType(MemoryModel.class))
                 .setDefault(defaults.getMemoryModel());
 
+        subparser.addArgument("--selection-strategy")
+                .help("sets the strategy for choosing speed optimizations within the instruction limit: greedy " +
+                        "(the most efficient optimization first), or knapsack (the set of optimizations with " +
+                        "the largest total benefit)")
+                .type(Arguments.caseInsensitiveEnumType(SelectionStrategy.class))
+                .setDefault(defaults.getSelectionStrategy());
+
         ArgumentGroup debug = subparser.addArgumentGroup("debug output options");
 
         debug.addArgument("-p", "--parse-tree")
@@ -131,6 +139,7 @@ abstract class ActionHandler {
         profile.setOptimizationPasses(arguments.get("passes"));
         profile.setGoal(arguments.get("goal"));
         profile.setMemoryModel(arguments.get("memory_model"));
+        profile.setSelectionStrategy(arguments.get("selection_strategy"));
         profile.setFinalCodeOutput(arguments.get("print_unresolved"));
         profile.setPrintStackTrace(arguments.getBoolean("stacktrace"));
 
@@ -1,9 +1,18 @@
 package info.teksol.mindcode.cmdline;
 
+import info.teksol.mindcode.MindcodeException;
 import info.teksol.mindcode.cmdline.Main.Action;
 import info.teksol.mindcode.compiler.CompilerMessage;
 import info.teksol.mindcode.compiler.CompilerOutput;
 import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.MindcodeCompiler;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.compiler.optimization.ExecutionWeights;
+import info.teksol.mindcode.processor.ExecutionEngine;
+import info.teksol.mindcode.processor.ExecutionException;
+import info.teksol.mindcode.processor.MemoryFixture;
+import info.teksol.mindcode.processor.Processor;
+import info.teksol.mindcode.processor.ProcessorFlag;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.impl.type.FileArgumentType;
 import net.sourceforge.argparse4j.inf.ArgumentGroup;
@@ -14,9 +23,8 @@ import net.sourceforge.argparse4j.inf.Subparsers;
 import java.io.File;
 import java.util.List;
 
-import static info.teksol.mindcode.compiler.CompilerFacade.compile;
-
 public class CompileMindcodeAction extends ActionHandler {
+    static final int PROFILE_STEP_LIMIT = 10_000_000;
 
     @Override
     Subparser appendSubparser(Subparsers subparsers, FileArgumentType inputFileType) {
@@ -49,26 +57,73 @@ public class CompileMindcodeAction extends ActionHandler {
                 .nargs("?")
                 .setDefault(new File("-"));
 
+        files.addArgument("--metrics")
+                .help("Output file to receive compiler metrics (time, allocated memory and modifications made by " +
+                        "each optimizer in each phase and pass) in JSON format.")
+                .metavar("FILE")
+                .type(Arguments.fileType().verifyCanCreate());
+
         configureMindcodeCompiler(subparser);
 
+        ArgumentGroup pgo = subparser.addArgumentGroup("profile-guided optimization")
+                .description("Options to gather execution counts of the compiled program by running it in the " +
+                        "processor emulator, and to use them in speed optimizations instead of estimated weights.");
+
+        pgo.addArgument("--profile")
+                .help("Execution profile to be used by speed optimizations.")
+                .metavar("FILE")
+                .type(inputFileType);
+
+        pgo.addArgument("--create-profile")
+                .help("Output file to receive execution profile of the compiled program. The program is run " +
+                        "once for each fixture.")
+                .metavar("FILE")
+                .type(Arguments.fileType().verifyCanCreate());
+
+        pgo.addArgument("--fixture")
+                .help("File with contents of memory blocks linked to the processor when creating the profile, " +
+                        "one block per line in the form 'bank1 = 1, 2, 3'.")
+                .metavar("FILE")
+                .nargs("+")
+                .type(inputFileType);
+
         return subparser;
     }
 
     @Override
     void handle(Namespace arguments) {
         CompilerProfile compilerProfile = createCompilerProfile(arguments);
+        if (arguments.get("profile") != null) {
+            compilerProfile.setExecutionWeights(readExecutionWeights(arguments.get("profile")));
+        }
         String sourceCode = readInput(arguments.get("input"));
 
-        final CompilerOutput<String> result = compile(sourceCode, compilerProfile);
+        MindcodeCompiler compiler = new MindcodeCompiler(compilerProfile);
+        final CompilerOutput<String> result = compiler.compile(sourceCode);
 
         File output = resolveOutputFile(arguments.get("input"), arguments.get("output"), ".mlog");
         File logFile = resolveOutputFile(arguments.get("input"), arguments.get("log"), ".log");
         boolean mlogToStdErr = isStdInOut(output);
 
+        File metricsFile = arguments.get("metrics");
+        if (metricsFile != null) {
+            writeOutput(metricsFile, result.metrics().toJson(), false);
+        }
+
         if (!result.hasErrors()) {
             writeOutput(output, result.output(), false);
             List<String> allTexts = result.texts();
 
+            File profileFile = arguments.get("create_profile");
+            if (profileFile != null) {
+                List<File> fixtures = arguments.get("fixture");
+                ExecutionWeights weights = createExecutionWeights(compiler.getInstructions(),
+                        fixtures == null ? List.of() : fixtures, allTexts);
+                writeOutput(profileFile, weights.encode(), false);
+                allTexts.add("");
+                allTexts.add("Execution profile of %d run(s) was written to %s.".formatted(weights.getRuns(), profileFile.getPath()));
+            }
+
             if (arguments.getBoolean("clipboard")) {
                 writeToClipboard(result.output());
                 allTexts.add("");
@@ -94,4 +149,46 @@ public class CompileMindcodeAction extends ActionHandler {
             System.exit(1);
         }
     }
+
+    static ExecutionWeights readExecutionWeights(File file) {
+        try {
+            return ExecutionWeights.parse(readInput(file));
+        } catch (MindcodeException e) {
+            throw new ProcessingException(e, "Error reading profile file %s: %s", file.getPath(), e.getMessage());
+        }
+    }
+
+    static ExecutionWeights createExecutionWeights(List<LogicInstruction> program, List<File> fixtures, List<String> messages) {
+        ExecutionWeights weights = new ExecutionWeights();
+        if (fixtures.isEmpty()) {
+            weights.merge(profileRun(program, MemoryFixture.parse(""), "program run", messages));
+        } else {
+            for (File fixture : fixtures) {
+                try {
+                    weights.merge(profileRun(program, MemoryFixture.parse(readInput(fixture)), fixture.getPath(), messages));
+                } catch (MindcodeException e) {
+                    throw new ProcessingException(e, "Error reading fixture file %s: %s", fixture.getPath(), e.getMessage());
+                }
+            }
+        }
+        return weights;
+    }
+
+    private static ExecutionWeights profileRun(List<LogicInstruction> program, MemoryFixture fixture, String name,
+            List<String> messages) {
+        Processor processor = new Processor();
+        processor.setExecutionEngine(ExecutionEngine.REGISTERS);
+        processor.setProfiling(true);
+        fixture.apply(processor);
+        try {
+            processor.run(program, PROFILE_STEP_LIMIT);
+        } catch (ExecutionException e) {
+            // Programs typically run in an endless loop and are stopped by the step limit. The profile gathered
+            // up to this point is used in any case.
+            if (e.getFlag() != ProcessorFlag.ERR_EXECUTION_LIMIT_EXCEEDED) {
+                messages.add("Profiling %s: %s".formatted(name, e.getMessage()));
+            }
+        }
+        return processor.getProfile().toExecutionWeights();
+    }
 }
@@ -0,0 +1,267 @@
+package info.teksol.mindcode.cmdline;
+
+import info.teksol.mindcode.cmdline.Main.Action;
+import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.impl.type.FileArgumentType;
+import net.sourceforge.argparse4j.inf.ArgumentGroup;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import net.sourceforge.argparse4j.inf.Subparsers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static info.teksol.mindcode.compiler.CompilerFacade.compile;
+
+public class CompileMindcodeBatchAction extends ActionHandler {
+    static final String SOURCE_EXTENSION = ".mnd";
+
+    @Override
+    Subparser appendSubparser(Subparsers subparsers, FileArgumentType inputFileType) {
+        Subparser subparser = subparsers.addParser(Action.COMPILE_MINDCODE_BATCH.getShortcut())
+                .aliases("compile-batch")
+                .description("Compile multiple mindcode source files into text mlog files in parallel.")
+                .help("Compile multiple mindcode source files into text mlog files.");
+
+        ArgumentGroup files = subparser.addArgumentGroup("input/output files");
+
+        files.addArgument("input")
+                .help("Mindcode files, directories or glob patterns specifying files to be compiled. Directories are " +
+                        "searched recursively for files with " + SOURCE_EXTENSION + " extension.")
+                .nargs("+");
+
+        files.addArgument("--output-directory")
+                .help("Directory to receive compiled mlog files; files found in a directory or through a glob " +
+                        "pattern keep their relative path. Output files are placed next to input files when not specified.")
+                .dest("output_directory")
+                .type(Arguments.fileType());
+
+        files.addArgument("-l", "--log")
+                .help("write compiler messages of each file into a log file with .log extension next to the output file")
+                .action(Arguments.storeTrue());
+
+        subparser.addArgument("-j", "--threads")
+                .help("number of files to compile in parallel; defaults to the number of available processors")
+                .type(Integer.class)
+                .choices(Arguments.range(1, 256));
+
+        configureMindcodeCompiler(subparser);
+
+        return subparser;
+    }
+
+    @Override
+    void handle(Namespace arguments) {
+        File outputDirectory = arguments.get("output_directory");
+        List<InputFile> inputFiles = resolveInputFiles(arguments.getList("input"));
+        if (inputFiles.isEmpty()) {
+            throw new ProcessingException("No input files found.");
+        }
+        checkOutputFiles(inputFiles, outputDirectory);
+
+        Integer threadsArgument = arguments.getInt("threads");
+        int threads = threadsArgument != null ? threadsArgument : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        List<BatchResult> results = compileAll(inputFiles, arguments, threads);
+        long totalTime = System.nanoTime() - start;
+
+        for (BatchResult result : results) {
+            if (result.output != null && !result.output.hasErrors()) {
+                File output = resolveOutputFile(result.input, outputDirectory, ".mlog");
+                createParentDirectory(output);
+                writeOutput(output, result.output.output(), false);
+                if (arguments.getBoolean("log")) {
+                    writeOutput(resolveOutputFile(result.input, outputDirectory, ".log"), result.output.texts(), false);
+                }
+            }
+        }
+
+        printDiagnostics(results);
+        printTimingSummary(results, totalTime, threads);
+
+        if (results.stream().anyMatch(BatchResult::failed)) {
+            System.exit(1);
+        }
+    }
+
+    private List<BatchResult> compileAll(List<InputFile> inputFiles, Namespace arguments, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, inputFiles.size()));
+        try {
+            List<Future<BatchResult>> futures = inputFiles.stream()
+                    .map(input -> executor.submit(() -> compileFile(input, arguments)))
+                    .toList();
+
+            List<BatchResult> results = new ArrayList<>();
+            for (Future<BatchResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(e, "Batch compilation interrupted.");
+        } catch (ExecutionException e) {
+            throw new ProcessingException(e.getCause(), "Batch compilation failed.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Each file gets its own compiler profile, since profiles are mutable
+    private BatchResult compileFile(InputFile input, Namespace arguments) {
+        long start = System.nanoTime();
+        try {
+            CompilerProfile compilerProfile = createCompilerProfile(arguments);
+            String sourceCode = readInput(input.path.toFile());
+            CompilerOutput<String> output = compile(sourceCode, compilerProfile);
+            return new BatchResult(input, output, null, System.nanoTime() - start);
+        } catch (ProcessingException e) {
+            return new BatchResult(input, null, e.getMessage(), System.nanoTime() - start);
+        }
+    }
+
+    private void printDiagnostics(List<BatchResult> results) {
+        for (BatchResult result : results) {
+            String fileName = result.input.path.toString();
+            if (result.error != null) {
+                System.err.println(fileName + ": " + result.error);
+            } else if (result.output.hasErrors()) {
+                result.output.errors().forEach(m -> System.err.println(fileName + ": " + m));
+            } else {
+                result.output.messages().stream()
+                        .filter(m -> m.isError() || m.isWarning())
+                        .map(CompilerMessage::message)
+                        .forEach(m -> System.out.println(fileName + ": " + m));
+            }
+        }
+    }
+
+    private void printTimingSummary(List<BatchResult> results, long totalTime, int threads) {
+        int width = results.stream().mapToInt(r -> r.input.path.toString().length()).max().orElse(0);
+        System.out.println();
+        System.out.println("Compilation summary:");
+        for (BatchResult result : results) {
+            System.out.printf("  %-" + width + "s %8d ms  %s%n", result.input.path, result.time / 1_000_000,
+                    result.failed() ? "FAILED" : "OK");
+        }
+
+        long failed = results.stream().filter(BatchResult::failed).count();
+        long sequentialTime = results.stream().mapToLong(BatchResult::time).sum();
+        System.out.printf("%d files compiled (%d failed) in %d ms using %d threads (%d ms total compilation time).%n",
+                results.size(), failed, totalTime / 1_000_000, threads, sequentialTime / 1_000_000);
+    }
+
+    private static void createParentDirectory(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new ProcessingException("Error creating directory %s.", parent.getPath());
+        }
+    }
+
+    static File resolveOutputFile(InputFile input, File outputDirectory, String extension) {
+        File file = outputDirectory == null ? input.path.toFile() : outputDirectory.toPath().resolve(input.relativePath).toFile();
+        return resolveOutputFile(file, null, extension);
+    }
+
+    /**
+     * Verifies no two input files are compiled into the same output file. This may happen when files with the same
+     * relative path are found in different directories and an output directory is specified.
+     *
+     * @param inputFiles files to compile
+     * @param outputDirectory output directory, or null when output files are placed next to input files
+     */
+    static void checkOutputFiles(List<InputFile> inputFiles, File outputDirectory) {
+        Map<Path, InputFile> outputs = new LinkedHashMap<>();
+        for (InputFile input : inputFiles) {
+            Path output = resolveOutputFile(input, outputDirectory, ".mlog").toPath().toAbsolutePath().normalize();
+            InputFile previous = outputs.putIfAbsent(output, input);
+            if (previous != null) {
+                throw new ProcessingException("Files %s and %s would be compiled into the same output file %s.",
+                        previous.path, input.path, output);
+            }
+        }
+    }
+
+    /**
+     * Resolves input specifications (files, directories or glob patterns) into a list of files to compile. Each
+     * file is included only once, in the order in which the files were found.
+     *
+     * @param inputs input specifications
+     * @return list of input files
+     */
+    static List<InputFile> resolveInputFiles(List<String> inputs) {
+        Map<Path, InputFile> files = new LinkedHashMap<>();
+        for (String input : inputs) {
+            resolveInput(input).forEach(f -> files.putIfAbsent(f.path.toAbsolutePath().normalize(), f));
+        }
+        return List.copyOf(files.values());
+    }
+
+    private static List<InputFile> resolveInput(String input) {
+        int wildcard = firstWildcard(input);
+        if (wildcard < 0) {
+            Path path = Path.of(input);
+            if (Files.isDirectory(path)) {
+                return findFiles(path, p -> p.getFileName().toString().endsWith(SOURCE_EXTENSION));
+            } else if (Files.isRegularFile(path)) {
+                return List.of(new InputFile(path, path.getFileName()));
+            } else {
+                throw new ProcessingException("File %s not found.", input);
+            }
+        }
+
+        // Glob pattern: search from the deepest directory not containing a wildcard
+        int separator = Math.max(input.lastIndexOf('/', wildcard), input.lastIndexOf(File.separatorChar, wildcard));
+        Path base = Path.of(separator < 0 ? "." : input.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(separator + 1));
+        return Files.isDirectory(base) ? findFiles(base, p -> matcher.matches(base.relativize(p))) : List.of();
+    }
+
+    private static List<InputFile> findFiles(Path base, Predicate<Path> filter) {
+        try (Stream<Path> stream = Files.walk(base)) {
+            return stream
+                    .filter(Files::isRegularFile)
+                    .filter(filter)
+                    .sorted()
+                    .map(p -> new InputFile(p, base.relativize(p)))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new ProcessingException(e, "Error reading directory %s.", base);
+        }
+    }
+
+    private static int firstWildcard(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            switch (input.charAt(i)) {
+                case '*', '?', '[', '{' -> { return i; }
+            }
+        }
+        return -1;
+    }
+
+    record InputFile(Path path, Path relativePath) {}
+
+    private record BatchResult(InputFile input, CompilerOutput<String> output, String error, long time) {
+        boolean failed() {
+            return error != null || output.hasErrors();
+        }
+    }
+}
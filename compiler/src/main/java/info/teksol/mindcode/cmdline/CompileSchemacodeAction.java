@@ -5,6 +5,7 @@ import info.teksol.mindcode.compiler.CompilerMessage;
 import info.teksol.mindcode.compiler.CompilerOutput;
 import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.schemacode.SchemacodeCompiler;
+import info.teksol.schemacode.schema.ProcessorCompilationCache;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.impl.type.FileArgumentType;
 import net.sourceforge.argparse4j.inf.ArgumentGroup;
@@ -17,6 +18,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CompileSchemacodeAction extends ActionHandler {
 
@@ -50,6 +53,17 @@ public class CompileSchemacodeAction extends ActionHandler {
                 .type(Arguments.fileType().verifyCanCreate())
                 .setDefault(new File("-"));
 
+        files.addArgument("--cache-directory")
+                .help("directory to keep compiled Mindcode programs of processors in; processors whose program and " +
+                        "compiler options haven't changed since a previous build are not compiled again")
+                .dest("cache_directory")
+                .type(Arguments.fileType());
+
+        subparser.addArgument("-j", "--threads")
+                .help("number of processor programs to compile in parallel; defaults to the number of available processors")
+                .type(Integer.class)
+                .choices(Arguments.range(1, 256));
+
         configureMindcodeCompiler(subparser);
 
         files.addArgument("-a", "--add-tag")
@@ -70,7 +84,19 @@ public class CompileSchemacodeAction extends ActionHandler {
         String sourceText = readInput(inputFile);
         Path basePath = isStdInOut(inputFile) ? Paths.get("") : inputFile.toPath().toAbsolutePath().getParent();
 
-        CompilerOutput<byte[]> result = SchemacodeCompiler.compile(sourceText , compilerProfile, basePath);
+        Integer threadsArgument = arguments.getInt("threads");
+        int threads = threadsArgument != null ? threadsArgument : Runtime.getRuntime().availableProcessors();
+        File cacheDirectory = arguments.get("cache_directory");
+
+        CompilerOutput<byte[]> result;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ProcessorCompilationCache compilationCache = new ProcessorCompilationCache(executor,
+                    cacheDirectory == null ? null : cacheDirectory.toPath());
+            result = SchemacodeCompiler.compile(sourceText, compilerProfile, basePath, compilationCache);
+        } finally {
+            executor.shutdownNow();
+        }
 
         File output = resolveOutputFile(inputFile, arguments.get("output"), ".msch");
         File logFile = resolveOutputFile(inputFile, arguments.get("log"), ".log");
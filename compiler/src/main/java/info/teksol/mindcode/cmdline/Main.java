@@ -58,6 +58,7 @@ public class Main {
 
     public enum Action {
         COMPILE_MINDCODE("cm", new CompileMindcodeAction()),
+        COMPILE_MINDCODE_BATCH("cb", new CompileMindcodeBatchAction()),
         COMPILE_SCHEMA("cs", new CompileSchemacodeAction()),
         DECOMPILE_SCHEMA("ds", new DecompileSchemacodeAction()),
         ;
@@ -6,6 +6,9 @@ import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.mindcode.compiler.FinalCodeOutput;
 import info.teksol.mindcode.compiler.GenerationGoal;
 import info.teksol.mindcode.compiler.MemoryModel;
+import info.teksol.mindcode.compiler.MindcodeCompiler;
+import info.teksol.mindcode.compiler.SelectionStrategy;
+import info.teksol.mindcode.compiler.optimization.ExecutionWeights;
 import info.teksol.mindcode.compiler.optimization.Optimization;
 import info.teksol.mindcode.compiler.optimization.OptimizationLevel;
 import info.teksol.mindcode.logic.ProcessorEdition;
@@ -15,6 +18,9 @@ import net.sourceforge.argparse4j.inf.Namespace;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -147,7 +153,7 @@ public class CompileMindcodeActionTest extends AbstractCommandLineTest {
 
     @Test
     public void createsCompilerProfile() throws ArgumentParserException {
-        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE.getShortcut() + " -t 6 -o off -p 1 -d 3 -u source -s -g size -e 100 -m restricted");
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE.getShortcut() + " -t 6 -o off -p 1 -d 3 -u source -s -g size -e 100 -m restricted --selection-strategy knapsack");
         CompilerProfile actual = ActionHandler.createCompilerProfile(arguments);
 
         assertEquals(ProcessorEdition.STANDARD_PROCESSOR, actual.getProcessorEdition());
@@ -158,6 +164,7 @@ public class CompileMindcodeActionTest extends AbstractCommandLineTest {
         assertEquals(100, actual.getOptimizationPasses());
         assertEquals(GenerationGoal.SIZE, actual.getGoal());
         assertEquals(MemoryModel.RESTRICTED, actual.getMemoryModel());
+        assertEquals(SelectionStrategy.KNAPSACK, actual.getSelectionStrategy());
         assertEquals(FinalCodeOutput.SOURCE, actual.getFinalCodeOutput());
         assertTrue(actual.isPrintStackTrace());
     }
@@ -177,7 +184,51 @@ public class CompileMindcodeActionTest extends AbstractCommandLineTest {
         assertEquals(CompilerProfile.DEFAULT_CMDLINE_PASSES, actual.getOptimizationPasses());
         assertEquals(expected.getGoal(), actual.getGoal());
         assertEquals(expected.getMemoryModel(), actual.getMemoryModel());
+        assertEquals(expected.getSelectionStrategy(), actual.getSelectionStrategy());
         assertEquals(expected.getFinalCodeOutput(), actual.getFinalCodeOutput());
         assertEquals(expected.isPrintStackTrace(), actual.isPrintStackTrace());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void metricsArgument() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE.getShortcut() + " --metrics metrics.json");
+        assertEquals(new File("metrics.json"), arguments.get("metrics"));
+    }
+
+    @Test
+    public void profileArguments() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE.getShortcut()
+                + " --profile input.prof --create-profile output.prof --fixture a.txt b.txt");
+        assertEquals(new File("input.prof"), arguments.get("profile"));
+        assertEquals(new File("output.prof"), arguments.get("create_profile"));
+        assertEquals(List.of(new File("a.txt"), new File("b.txt")), arguments.get("fixture"));
+    }
+
+    @Test
+    public void createsExecutionWeights() throws IOException {
+        MindcodeCompiler compiler = new MindcodeCompiler(CompilerProfile.noOptimizations(false));
+        compiler.compile("""
+                for i in 0 ... cell1[0]
+                    print(i)
+                end
+                """);
+
+        Path fixture1 = Files.createTempFile("fixture", ".txt");
+        Path fixture2 = Files.createTempFile("fixture", ".txt");
+        try {
+            Files.writeString(fixture1, "cell1 = 3");
+            Files.writeString(fixture2, "cell1 = 5");
+            List<String> messages = new ArrayList<>();
+            ExecutionWeights weights = CompileMindcodeAction.createExecutionWeights(compiler.getInstructions(),
+                    List.of(fixture1.toFile(), fixture2.toFile()), messages);
+
+            assertEquals(2, weights.getRuns());
+            assertTrue(weights.encode().lines().anyMatch(line -> line.equals("8 loop body RangedForExpression 1:0")),
+                    weights.encode());
+            assertEquals(List.of(), messages);
+        } finally {
+            Files.delete(fixture1);
+            Files.delete(fixture2);
+        }
+    }
+}
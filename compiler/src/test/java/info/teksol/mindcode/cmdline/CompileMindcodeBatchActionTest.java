@@ -0,0 +1,118 @@
+package info.teksol.mindcode.cmdline;
+
+import info.teksol.mindcode.cmdline.CompileMindcodeBatchAction.InputFile;
+import info.teksol.mindcode.cmdline.Main.Action;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompileMindcodeBatchActionTest extends AbstractCommandLineTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void inputArguments() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE_BATCH.getShortcut() + " a.mnd dir *.mnd");
+        assertEquals(Action.COMPILE_MINDCODE_BATCH, Action.fromShortcut(arguments.get("action")));
+        assertEquals(List.of("a.mnd", "dir", "*.mnd"), arguments.getList("input"));
+    }
+
+    @Test
+    public void threadsArgumentDefault() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE_BATCH.getShortcut() + " a.mnd");
+        assertNull(arguments.get("threads"));
+    }
+
+    @Test
+    public void threadsArgument() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE_BATCH.getShortcut() + " -j 4 a.mnd");
+        assertEquals(4, arguments.getInt("threads"));
+    }
+
+    @Test
+    public void outputDirectoryArgument() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_MINDCODE_BATCH.getShortcut() + " --output-directory out a.mnd");
+        assertEquals(new File("out"), arguments.get("output_directory"));
+    }
+
+    @Test
+    public void resolvesDirectories() throws IOException {
+        createFiles("a.mnd", "sub/b.mnd", "sub/c.txt");
+        List<InputFile> files = CompileMindcodeBatchAction.resolveInputFiles(List.of(tempDir.toString()));
+        assertEquals(List.of(Path.of("a.mnd"), Path.of("sub", "b.mnd")),
+                files.stream().map(InputFile::relativePath).toList());
+    }
+
+    @Test
+    public void resolvesGlobPatterns() throws IOException {
+        createFiles("a.mnd", "b.txt", "sub/c.mnd");
+        List<InputFile> files = CompileMindcodeBatchAction.resolveInputFiles(List.of(tempDir + File.separator + "*.mnd"));
+        assertEquals(List.of(Path.of("a.mnd")), files.stream().map(InputFile::relativePath).toList());
+    }
+
+    @Test
+    public void resolvesEachFileOnce() throws IOException {
+        createFiles("a.mnd", "b.mnd");
+        String file = tempDir.resolve("a.mnd").toString();
+        List<InputFile> files = CompileMindcodeBatchAction.resolveInputFiles(List.of(file, tempDir.toString()));
+        assertEquals(List.of(Path.of("a.mnd"), Path.of("b.mnd")), files.stream().map(InputFile::relativePath).toList());
+    }
+
+    @Test
+    public void refusesMissingFiles() {
+        String file = tempDir.resolve("missing.mnd").toString();
+        assertThrows(ProcessingException.class, () -> CompileMindcodeBatchAction.resolveInputFiles(List.of(file)));
+    }
+
+    @Test
+    public void resolvesOutputFileInOutputDirectory() {
+        InputFile input = new InputFile(Path.of("src", "sub", "b.mnd"), Path.of("sub", "b.mnd"));
+        assertEquals(new File("out" + File.separator + "sub" + File.separator + "b.mlog"),
+                CompileMindcodeBatchAction.resolveOutputFile(input, new File("out"), ".mlog"));
+    }
+
+    @Test
+    public void resolvesOutputFileNextToInput() {
+        InputFile input = new InputFile(Path.of("src", "sub", "b.mnd"), Path.of("sub", "b.mnd"));
+        assertEquals(new File("src" + File.separator + "sub" + File.separator + "b.mlog"),
+                CompileMindcodeBatchAction.resolveOutputFile(input, null, ".mlog"));
+    }
+
+    @Test
+    public void refusesCollidingOutputFiles() throws IOException {
+        createFiles("one/a.mnd", "two/a.mnd");
+        List<InputFile> files = CompileMindcodeBatchAction.resolveInputFiles(
+                List.of(tempDir.resolve("one").toString(), tempDir.resolve("two").toString()));
+        assertThrows(ProcessingException.class,
+                () -> CompileMindcodeBatchAction.checkOutputFiles(files, tempDir.resolve("out").toFile()));
+    }
+
+    @Test
+    public void acceptsDistinctOutputFiles() throws IOException {
+        createFiles("one/a.mnd", "two/a.mnd");
+        List<InputFile> files = CompileMindcodeBatchAction.resolveInputFiles(
+                List.of(tempDir.resolve("one").toString(), tempDir.resolve("two").toString()));
+        assertDoesNotThrow(() -> CompileMindcodeBatchAction.checkOutputFiles(files, null));
+    }
+
+    private void createFiles(String... names) throws IOException {
+        for (String name : names) {
+            Path path = tempDir.resolve(name);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, "print(\"" + name + "\")");
+        }
+    }
+}
@@ -77,6 +77,18 @@ public class CompileSchemacodeActionTest extends AbstractCommandLineTest {
         assertEquals(new File("log.log"), output);
     }
 
+    @Test
+    public void cacheDirectoryArgument() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_SCHEMA.getShortcut() + " input.sdf --cache-directory cache");
+        assertEquals(new File("cache"), arguments.get("cache_directory"));
+    }
+
+    @Test
+    public void threadsArgument() throws ArgumentParserException {
+        Namespace arguments = parseCommandLine(Action.COMPILE_SCHEMA.getShortcut() + " input.sdf -j 4");
+        assertEquals(Integer.valueOf(4), arguments.get("threads"));
+    }
+
     @Test
     public void optimizationArgument() throws ArgumentParserException {
         Namespace arguments = parseCommandLine(Action.COMPILE_SCHEMA.getShortcut() + " -o basic");
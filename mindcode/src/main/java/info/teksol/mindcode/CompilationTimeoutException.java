@@ -0,0 +1,11 @@
+package info.teksol.mindcode;
+
+/**
+ * Thrown when a compilation exceeds its time limit, or when the thread performing the compilation is interrupted.
+ */
+public class CompilationTimeoutException extends RuntimeException {
+
+    public CompilationTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,49 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.CompilationTimeoutException;
+
+/**
+ * Represents a point in time by which a compilation needs to finish. Long-running parts of the compiler call
+ * {@link #check()} periodically, which aborts the compilation when the deadline has passed, or when the compiling
+ * thread was interrupted.
+ */
+public final class CompilationDeadline {
+    /** A deadline which never expires, although the compilation can still be aborted by interrupting the thread. */
+    public static final CompilationDeadline NONE = new CompilationDeadline(0, Long.MAX_VALUE);
+
+    private final long timeLimit;
+    private final long deadline;
+
+    private CompilationDeadline(long timeLimit, long deadline) {
+        this.timeLimit = timeLimit;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a deadline according to the time limit specified by the compiler profile, starting now.
+     *
+     * @param profile compiler profile
+     * @return new deadline
+     */
+    public static CompilationDeadline start(CompilerProfile profile) {
+        return profile.getTimeLimit() <= 0 ? NONE
+                : new CompilationDeadline(profile.getTimeLimit(), System.nanoTime() + profile.getTimeLimit() * 1_000_000L);
+    }
+
+    private boolean isPast() {
+        return timeLimit > 0 && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Aborts the compilation by throwing an exception when the deadline has expired.
+     *
+     * @throws CompilationTimeoutException when the deadline expired
+     */
+    public void check() {
+        if (isPast()) {
+            throw new CompilationTimeoutException("Compilation time limit (%,d ms) exceeded.".formatted(timeLimit));
+        } else if (Thread.currentThread().isInterrupted()) {
+            throw new CompilationTimeoutException("Compilation interrupted.");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package info.teksol.mindcode.compiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events emitted by the compiler. The events are only recorded while a flight recording is
+ * running (e.g. started by {@code -XX:StartFlightRecording} or {@code jcmd <pid> JFR.start}); otherwise an event only
+ * costs a check of its enabled state. Attributes which are expensive to compute are only evaluated when the event
+ * is going to be committed.
+ * <p>
+ * All events belong to the {@code Mindcode} category and have names starting with {@code mindcode.}.
+ */
+public final class CompilerEvents {
+
+    private CompilerEvents() {
+    }
+
+    @Name("mindcode.Parse")
+    @Label("Parse")
+    @Category({"Mindcode", "Compiler"})
+    @Description("Parsing of Mindcode source code into an AST")
+    @StackTrace(false)
+    public static final class ParseEvent extends Event {
+        @Label("Source Length")
+        public int sourceLength;
+    }
+
+    @Name("mindcode.Directives")
+    @Label("Directive Processing")
+    @Category({"Mindcode", "Compiler"})
+    @Description("Processing of compiler directives found in the source code")
+    @StackTrace(false)
+    public static final class DirectivesEvent extends Event {
+    }
+
+    @Name("mindcode.CodeGeneration")
+    @Label("Code Generation")
+    @Category({"Mindcode", "Compiler"})
+    @Description("Generation of mlog instructions from the AST")
+    @StackTrace(false)
+    public static final class CodeGenerationEvent extends Event {
+        @Label("Instructions")
+        public int instructions;
+    }
+
+    @Name("mindcode.Optimizer")
+    @Label("Optimizer Invocation")
+    @Category({"Mindcode", "Compiler", "Optimization"})
+    @Description("Single invocation of an optimizer: optimizing the program, evaluating possible speed " +
+            "optimizations, or applying a speed optimization")
+    @StackTrace(false)
+    public static final class OptimizerEvent extends Event {
+        @Label("Optimization")
+        public String optimization;
+
+        @Label("Phase")
+        public String phase;
+
+        @Label("Pass")
+        public int pass;
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("Instructions Before")
+        public int instructionsBefore;
+
+        @Label("Instructions After")
+        public int instructionsAfter;
+    }
+
+    @Name("mindcode.OptimizationAction")
+    @Label("Optimization Action")
+    @Category({"Mindcode", "Compiler", "Optimization"})
+    @Description("Application of a speed optimization selected by the optimization coordinator")
+    @StackTrace(false)
+    public static final class OptimizationActionEvent extends Event {
+        @Label("Optimization")
+        public String optimization;
+
+        @Label("Action")
+        public String action;
+
+        @Label("Pass")
+        public int pass;
+
+        @Label("Cost")
+        public int cost;
+
+        @Label("Benefit")
+        public double benefit;
+
+        @Label("Result")
+        public String result;
+    }
+
+    @Name("mindcode.LabelResolution")
+    @Label("Label Resolution")
+    @Category({"Mindcode", "Compiler"})
+    @Description("Resolution of labels and virtual instructions in the optimized program")
+    @StackTrace(false)
+    public static final class LabelResolutionEvent extends Event {
+        @Label("Instructions")
+        public int instructions;
+    }
+}
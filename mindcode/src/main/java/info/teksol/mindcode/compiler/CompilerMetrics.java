@@ -0,0 +1,109 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.compiler.optimization.Optimization;
+import info.teksol.mindcode.compiler.optimization.OptimizationPhase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Resources consumed by a single compilation. Metrics are gathered for the main compilation phases (parsing, code
+ * generation, optimization and label resolution), and for each optimizer in each optimization phase and pass.
+ * <p>
+ * Allocated bytes are measured for the compiling thread only, and are zero when the JVM doesn't support measuring
+ * thread allocations.
+ *
+ * @param phases metrics of compilation phases, in the order of execution
+ * @param optimizers metrics of optimizers, in the order of their first execution
+ */
+public record CompilerMetrics(List<PhaseMetrics> phases, List<OptimizerMetrics> optimizers) {
+    public static final CompilerMetrics EMPTY = new CompilerMetrics(List.of(), List.of());
+
+    public CompilerMetrics {
+        phases = List.copyOf(phases);
+        optimizers = List.copyOf(optimizers);
+    }
+
+    /**
+     * @param phase name of the compilation phase
+     * @param wallTimeNanos wall time spent in the phase in nanoseconds
+     * @param allocatedBytes memory allocated in the phase
+     */
+    public record PhaseMetrics(String phase, long wallTimeNanos, long allocatedBytes) {
+    }
+
+    /**
+     * Accumulated metrics of all runs of an optimizer in a single optimization phase and pass. Actions are
+     * the optimizations proposed by the optimizer when optimizing for speed; an action is applied when it was selected
+     * and actually modified the program.
+     *
+     * @param optimization the optimization performed by the optimizer
+     * @param phase optimization phase
+     * @param pass optimization pass; 0 for the initial and final phases
+     * @param wallTimeNanos wall time spent in the optimizer in nanoseconds
+     * @param allocatedBytes memory allocated by the optimizer
+     * @param instructionsAdded number of instructions added to the program
+     * @param instructionsRemoved number of instructions removed from the program
+     * @param instructionsModified number of instructions replaced without changing the program size
+     * @param actionsEvaluated number of speed optimization actions proposed by the optimizer
+     * @param actionsApplied number of speed optimization actions applied to the program
+     */
+    public record OptimizerMetrics(Optimization optimization, OptimizationPhase phase, int pass,
+            long wallTimeNanos, long allocatedBytes, int instructionsAdded, int instructionsRemoved,
+            int instructionsModified, int actionsEvaluated, int actionsApplied) {
+    }
+
+    public PhaseMetrics getPhase(String phase) {
+        return phases.stream().filter(p -> p.phase.equals(phase)).findFirst().orElse(null);
+    }
+
+    /**
+     * Creates a JSON representation of the metrics.
+     *
+     * @return the metrics formatted as a JSON object
+     */
+    public String toJson() {
+        return phases.stream()
+                .map(p -> "    { \"phase\": \"%s\", \"wallTimeNanos\": %d, \"allocatedBytes\": %d }"
+                        .formatted(p.phase, p.wallTimeNanos, p.allocatedBytes))
+                .collect(Collectors.joining(",\n", "{\n  \"phases\": [\n", "\n  ],\n"))
+                + optimizers.stream()
+                .map(o -> ("    { \"optimization\": \"%s\", \"phase\": \"%s\", \"pass\": %d, \"wallTimeNanos\": %d, " +
+                        "\"allocatedBytes\": %d, \"instructionsAdded\": %d, \"instructionsRemoved\": %d, " +
+                        "\"instructionsModified\": %d, \"actionsEvaluated\": %d, \"actionsApplied\": %d }")
+                        .formatted(o.optimization.getOptionName(), o.phase.name().toLowerCase(), o.pass,
+                                o.wallTimeNanos, o.allocatedBytes, o.instructionsAdded, o.instructionsRemoved,
+                                o.instructionsModified, o.actionsEvaluated, o.actionsApplied))
+                .collect(Collectors.joining(",\n", "  \"optimizers\": [\n", "\n  ]\n}\n"));
+    }
+
+    /**
+     * Measures wall time and memory allocated by the current thread since the creation of the instance.
+     */
+    public static final class Meter {
+        private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+        private final long startTime = System.nanoTime();
+        private final long startAllocated = currentAllocatedBytes();
+
+        public long elapsedNanos() {
+            return System.nanoTime() - startTime;
+        }
+
+        public long allocatedBytes() {
+            return currentAllocatedBytes() - startAllocated;
+        }
+
+        private static long currentAllocatedBytes() {
+            return THREAD_BEAN == null ? 0 : Math.max(0, THREAD_BEAN.getCurrentThreadAllocatedBytes());
+        }
+
+        private static com.sun.management.ThreadMXBean threadBean() {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            return bean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemorySupported()
+                    ? sunBean : null;
+        }
+    }
+}
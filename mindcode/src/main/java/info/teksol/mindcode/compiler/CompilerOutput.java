@@ -3,10 +3,14 @@ package info.teksol.mindcode.compiler;
 import java.util.List;
 import java.util.stream.Collectors;
 
-public record CompilerOutput<T>(T output, List<CompilerMessage> messages) {
+public record CompilerOutput<T>(T output, List<CompilerMessage> messages, CompilerMetrics metrics) {
+
+    public CompilerOutput(T output, List<CompilerMessage> messages) {
+        this(output, messages, CompilerMetrics.EMPTY);
+    }
 
     public <R> CompilerOutput<R> withOutput(R output) {
-        return new CompilerOutput<>(output, messages);
+        return new CompilerOutput<>(output, messages, metrics);
     }
 
     public List<String> texts() {
@@ -1,5 +1,6 @@
 package info.teksol.mindcode.compiler;
 
+import info.teksol.mindcode.compiler.optimization.ExecutionWeights;
 import info.teksol.mindcode.compiler.optimization.Optimization;
 import info.teksol.mindcode.compiler.optimization.OptimizationLevel;
 import info.teksol.mindcode.logic.ProcessorEdition;
@@ -30,11 +31,14 @@ public class CompilerProfile {
     private int optimizationPasses = DEFAULT_WEBAPP_PASSES;
     private GenerationGoal goal = GenerationGoal.AUTO;
     private MemoryModel memoryModel = MemoryModel.VOLATILE;
+    private SelectionStrategy selectionStrategy = SelectionStrategy.GREEDY;
     private boolean shortCircuitEval = false;
     private FinalCodeOutput finalCodeOutput = null;
     private int parseTreeLevel = 0;
     private int debugLevel = 0;
     private boolean printStackTrace = false;
+    private long timeLimit = 0;
+    private ExecutionWeights executionWeights = null;
 
     // Schematics Builder
 
@@ -64,6 +68,10 @@ public class CompilerProfile {
         return new CompilerProfile(webApplication, OptimizationLevel.OFF);
     }
 
+    public boolean isWebApplication() {
+        return webApplication;
+    }
+
     public ProcessorVersion getProcessorVersion() {
         return processorVersion;
     }
@@ -146,6 +154,18 @@ public class CompilerProfile {
         this.memoryModel = memoryModel;
     }
 
+    /**
+     * @return strategy used to choose speed optimizations to be applied within the instruction limit
+     */
+    public SelectionStrategy getSelectionStrategy() {
+        return selectionStrategy;
+    }
+
+    public CompilerProfile setSelectionStrategy(SelectionStrategy selectionStrategy) {
+        this.selectionStrategy = Objects.requireNonNull(selectionStrategy);
+        return this;
+    }
+
     public boolean isShortCircuitEval() {
         return shortCircuitEval;
     }
@@ -190,6 +210,30 @@ public class CompilerProfile {
         return this;
     }
 
+    /**
+     * @return maximal time in milliseconds the compilation may take, zero for unlimited
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    public CompilerProfile setTimeLimit(long timeLimit) {
+        this.timeLimit = Math.max(timeLimit, 0);
+        return this;
+    }
+
+    /**
+     * @return execution weights used for profile-guided optimization, or null if not available
+     */
+    public ExecutionWeights getExecutionWeights() {
+        return executionWeights;
+    }
+
+    public CompilerProfile setExecutionWeights(ExecutionWeights executionWeights) {
+        this.executionWeights = executionWeights;
+        return this;
+    }
+
     public List<String> getAdditionalTags() {
         return additionalTags;
     }
@@ -198,4 +242,33 @@ public class CompilerProfile {
         this.additionalTags = Objects.requireNonNull(additionalTags);
         return this;
     }
+
+    /**
+     * Encodes all settings which may affect the output of a Mindcode compilation into a string. Profiles producing
+     * the same encoded string compile given source code to the same output. The time limit isn't included.
+     *
+     * @return string representation of compilation settings
+     */
+    public String encodeCompilationSettings() {
+        StringBuilder sb = new StringBuilder()
+                .append(webApplication).append(';')
+                .append(processorVersion).append(';')
+                .append(processorEdition).append(';')
+                .append(instructionLimit).append(';')
+                .append(optimizationPasses).append(';')
+                .append(goal).append(';')
+                .append(memoryModel).append(';')
+                .append(selectionStrategy).append(';')
+                .append(shortCircuitEval).append(';')
+                .append(finalCodeOutput).append(';')
+                .append(parseTreeLevel).append(';')
+                .append(debugLevel);
+        if (executionWeights != null) {
+            sb.append(';').append(executionWeights.encode());
+        }
+        for (Optimization optimization : Optimization.LIST) {
+            sb.append(';').append(getOptimizationLevel(optimization));
+        }
+        return sb.toString();
+    }
 }
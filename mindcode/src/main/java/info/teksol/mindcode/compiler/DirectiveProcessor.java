@@ -139,6 +139,16 @@ public class DirectiveProcessor {
         error("Invalid value '%s' of compiler directive 'memory-model'.", strModel);
     }
 
+    private void setSelectionStrategy(CompilerProfile compilerProfile, String strStrategy) {
+        for (SelectionStrategy strategy : SelectionStrategy.values()) {
+            if (strategy.name().equalsIgnoreCase(strStrategy)) {
+                compilerProfile.setSelectionStrategy(strategy);
+                return;
+            }
+        }
+        error("Invalid value '%s' of compiler directive 'selection-strategy'.", strStrategy);
+    }
+
     private final Map<String, BiConsumer<CompilerProfile, String>> OPTION_HANDLERS = createOptionHandlers();
 
     private Map<String, BiConsumer<CompilerProfile,String>> createOptionHandlers() {
@@ -150,6 +160,7 @@ public class DirectiveProcessor {
         map.put("passes", this::setOptimizationPasses);
         map.put("goal", this::setGenerationGoal);
         map.put("memory-model", this::setMemoryModel);
+        map.put("selection-strategy", this::setSelectionStrategy);
         for (Optimization opt : Optimization.values()) {
             map.put(opt.getOptionName(), (profile, level) -> setOptimizationLevel(opt, profile, level));
         }
@@ -1,10 +1,17 @@
 package info.teksol.mindcode.compiler;
 
+import info.teksol.mindcode.CompilationTimeoutException;
 import info.teksol.mindcode.MindcodeException;
 import info.teksol.mindcode.MindcodeInternalError;
 import info.teksol.mindcode.ast.AstIndentedPrinter;
 import info.teksol.mindcode.ast.AstNodeBuilder;
 import info.teksol.mindcode.ast.Seq;
+import info.teksol.mindcode.compiler.CompilerEvents.CodeGenerationEvent;
+import info.teksol.mindcode.compiler.CompilerEvents.DirectivesEvent;
+import info.teksol.mindcode.compiler.CompilerEvents.LabelResolutionEvent;
+import info.teksol.mindcode.compiler.CompilerEvents.ParseEvent;
+import info.teksol.mindcode.compiler.CompilerMetrics.OptimizerMetrics;
+import info.teksol.mindcode.compiler.CompilerMetrics.PhaseMetrics;
 import info.teksol.mindcode.compiler.generator.GeneratorOutput;
 import info.teksol.mindcode.compiler.generator.LogicInstructionGenerator;
 import info.teksol.mindcode.compiler.instructions.InstructionProcessor;
@@ -14,7 +21,6 @@ import info.teksol.mindcode.compiler.optimization.DebugPrinter;
 import info.teksol.mindcode.compiler.optimization.DiffDebugPrinter;
 import info.teksol.mindcode.compiler.optimization.NullDebugPrinter;
 import info.teksol.mindcode.compiler.optimization.OptimizationCoordinator;
-import info.teksol.mindcode.grammar.MindcodeLexer;
 import info.teksol.mindcode.grammar.MindcodeParser;
 import org.antlr.v4.runtime.*;
 
@@ -27,6 +33,10 @@ import java.util.stream.Collectors;
 public class MindcodeCompiler implements Compiler<String> {
     private final CompilerProfile profile;
     private InstructionProcessor instructionProcessor;
+    private CompilationDeadline deadline = CompilationDeadline.NONE;
+    private List<LogicInstruction> resolvedInstructions = List.of();
+    private final List<PhaseMetrics> phaseMetrics = new ArrayList<>();
+    private List<OptimizerMetrics> optimizerMetrics = List.of();
 
     private final List<CompilerMessage> messages = new ArrayList<>();
     private final ANTLRErrorListener errorListener = new ErrorListener(messages);
@@ -37,30 +47,36 @@ public class MindcodeCompiler implements Compiler<String> {
     @Override
     public CompilerOutput<String> compile(String sourceCode) {
         String instructions = "";
+        deadline = CompilationDeadline.start(profile);
+        phaseMetrics.clear();
+        optimizerMetrics = List.of();
 
         try {
-            long parseStart = System.nanoTime();
+            CompilerMetrics.Meter parseMeter = new CompilerMetrics.Meter();
             final Seq program = parse(sourceCode);
             if (messages.stream().anyMatch(CompilerMessage::isError)) {
                 return new CompilerOutput<>("", messages);
             }
             printParseTree(program);
-            long parseTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - parseStart);
+            long parseTime = recordPhase("parse", parseMeter);
 
-            long compileStart = System.nanoTime();
+            CompilerMetrics.Meter compileMeter = new CompilerMetrics.Meter();
+            DirectivesEvent directivesEvent = new DirectivesEvent();
+            directivesEvent.begin();
             DirectiveProcessor.processDirectives(program, profile, messages::add);
+            directivesEvent.commit();
             instructionProcessor = InstructionProcessorFactory.getInstructionProcessor(messages::add, profile);
             GeneratorOutput generated = generateCode(program);
-            long compileTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - compileStart);
+            long compileTime = recordPhase("compile", compileMeter);
 
-            long optimizeStart = System.nanoTime();
+            CompilerMetrics.Meter optimizeMeter = new CompilerMetrics.Meter();
             List<LogicInstruction> result;
             if (profile.optimizationsActive() && generated.instructions().size() > 1) {
                 result = optimize(generated);
             } else {
                 result = generated.instructions();
             }
-            long optimizeTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - optimizeStart);
+            long optimizeTime = recordPhase("optimize", optimizeMeter);
 
             if (profile.getFinalCodeOutput() != null) {
                 debug("\nFinal code before resolving virtual instructions:\n");
@@ -75,7 +91,17 @@ public class MindcodeCompiler implements Compiler<String> {
 
             info("Performance: parsed in %,d ms, compiled in %,d ms, optimized in %,d ms.".formatted(parseTime, compileTime, optimizeTime));
 
+            CompilerMetrics.Meter resolveMeter = new CompilerMetrics.Meter();
+            LabelResolutionEvent resolutionEvent = new LabelResolutionEvent();
+            resolutionEvent.begin();
             result = LogicInstructionLabelResolver.resolve(instructionProcessor, result);
+            resolvedInstructions = result;
+            resolutionEvent.end();
+            if (resolutionEvent.shouldCommit()) {
+                resolutionEvent.instructions = result.size();
+                resolutionEvent.commit();
+            }
+            recordPhase("resolve", resolveMeter);
 
             instructions = LogicInstructionPrinter.toString(instructionProcessor, result);
         } catch (Exception e) {
@@ -83,27 +109,57 @@ public class MindcodeCompiler implements Compiler<String> {
                 e.printStackTrace();
             }
             switch (e) {
+                case CompilationTimeoutException ex -> messages.add(MindcodeMessage.error(e.getMessage()));
                 case MindcodeException ex -> messages.add(MindcodeMessage.error("Error while compiling source code: " + e.getMessage()));
                 case MindcodeInternalError ex -> messages.add(MindcodeMessage.error("Internal error: " + e.getMessage()));
                 default -> messages.add(MindcodeMessage.error("Error while compiling source code."));
             }
         }
 
-        return new CompilerOutput<>(instructions, messages);
+        return new CompilerOutput<>(instructions, messages, getMetrics());
+    }
+
+    /**
+     * Provides metrics of the last call to {@link #compile(String)}. Metrics of phases which weren't completed
+     * are not included.
+     *
+     * @return compilation metrics
+     */
+    public CompilerMetrics getMetrics() {
+        return new CompilerMetrics(phaseMetrics, optimizerMetrics);
+    }
+
+    /** Records metrics of a compilation phase and returns its duration in milliseconds */
+    private long recordPhase(String phase, CompilerMetrics.Meter meter) {
+        long elapsed = meter.elapsedNanos();
+        phaseMetrics.add(new PhaseMetrics(phase, elapsed, meter.allocatedBytes()));
+        return TimeUnit.NANOSECONDS.toMillis(elapsed);
     }
 
     /**
-     * Parses the source code using ANTLR generated parser.
+     * Provides the compiled program with resolved labels, as produced by the last call to {@link #compile(String)}.
+     * The instructions retain their AST contexts and can be run and profiled by the processor emulator.
+     *
+     * @return compiled instructions, or an empty list if the compilation failed
+     */
+    public List<LogicInstruction> getInstructions() {
+        return resolvedInstructions;
+    }
+
+    /**
+     * Parses the source code using ANTLR generated parser, see {@link ProgramParser}.
      */
     private Seq parse(String sourceCode) {
-        final MindcodeLexer lexer = new MindcodeLexer(CharStreams.fromString(sourceCode));
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(errorListener);
-        final MindcodeParser parser = new MindcodeParser(new BufferedTokenStream(lexer));
-        parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-        final MindcodeParser.ProgramContext context = parser.program();
-        return AstNodeBuilder.generate(context);
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        final MindcodeParser.ProgramContext context = ProgramParser.parse(sourceCode, errorListener);
+        Seq program = AstNodeBuilder.generate(context);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceLength = sourceCode.length();
+            event.commit();
+        }
+        return program;
     }
 
     /** Prints the parse tree according to level */
@@ -118,7 +174,16 @@ public class MindcodeCompiler implements Compiler<String> {
     private GeneratorOutput generateCode(Seq program) {
         final LogicInstructionGenerator generator = new LogicInstructionGenerator(profile, instructionProcessor,
                 messages::add);
-        return generator.generate(program);
+        generator.setDeadline(deadline);
+        CodeGenerationEvent event = new CodeGenerationEvent();
+        event.begin();
+        GeneratorOutput output = generator.generate(program);
+        event.end();
+        if (event.shouldCommit()) {
+            event.instructions = output.instructions().size();
+            event.commit();
+        }
+        return output;
     }
 
     private List<LogicInstruction> optimize(GeneratorOutput generatorOutput) {
@@ -135,7 +200,9 @@ public class MindcodeCompiler implements Compiler<String> {
 
         OptimizationCoordinator optimizer = new OptimizationCoordinator(instructionProcessor, profile, messages::add);
         optimizer.setDebugPrinter(debugPrinter);
+        optimizer.setDeadline(deadline);
         List<LogicInstruction> result = optimizer.optimize(generatorOutput);
+        optimizerMetrics = optimizer.getMetrics();
         debugPrinter.print(this::debug);
         return result;
     }
@@ -0,0 +1,83 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.grammar.MindcodeLexer;
+import info.teksol.mindcode.grammar.MindcodeParser;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Parses Mindcode source into a parse tree.
+ * <p>
+ * The parse is first attempted using the SLL prediction mode, which is considerably faster than the full LL mode,
+ * but may fail on some valid inputs. The first syntax error encountered in SLL mode aborts the parse, and the input
+ * is parsed again in the LL mode, which reports syntax errors and performs error recovery as usual. When the SLL
+ * parse succeeds, the resulting parse tree is identical to the one produced by the LL parse.
+ * <p>
+ * The lookahead DFA and the prediction context cache are held in static fields of the generated parser and are
+ * therefore shared by all parser instances. ANTLR updates them in a thread-safe manner, so all compilations
+ * benefit from the DFA states computed by previous compilations, regardless of the thread they run on.
+ */
+public class ProgramParser {
+
+    public enum ParsingStrategy {
+        /** Try the SLL prediction mode first, fall back to LL on syntax errors */
+        SLL_FIRST,
+
+        /** Always use the LL prediction mode */
+        LL,
+    }
+
+    /**
+     * Parses the source code using the SLL-first strategy. Syntax errors are reported to the error listener.
+     *
+     * @param sourceCode source code to parse
+     * @param errorListener listener receiving syntax errors
+     * @return the parse tree
+     */
+    public static MindcodeParser.ProgramContext parse(String sourceCode, ANTLRErrorListener errorListener) {
+        return parse(sourceCode, errorListener, ParsingStrategy.SLL_FIRST);
+    }
+
+    /**
+     * Parses the source code using given strategy. Syntax errors are reported to the error listener.
+     *
+     * @param sourceCode source code to parse
+     * @param errorListener listener receiving syntax errors
+     * @param strategy parsing strategy to use
+     * @return the parse tree
+     */
+    public static MindcodeParser.ProgramContext parse(String sourceCode, ANTLRErrorListener errorListener,
+            ParsingStrategy strategy) {
+        final MindcodeLexer lexer = new MindcodeLexer(CharStreams.fromString(sourceCode));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+
+        // Tokenize the entire input up front, so that lexer errors are reported just once even if parsed twice
+        final CommonTokenStream tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+
+        final MindcodeParser parser = new MindcodeParser(tokens);
+        parser.removeErrorListeners();
+
+        if (strategy == ParsingStrategy.SLL_FIRST) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.setErrorHandler(new BailErrorStrategy());
+            try {
+                return parser.program();
+            } catch (ParseCancellationException e) {
+                // Syntax error or SLL conflict: reparse using full LL
+                parser.reset();
+            }
+        }
+
+        parser.addErrorListener(errorListener);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        return parser.program();
+    }
+}
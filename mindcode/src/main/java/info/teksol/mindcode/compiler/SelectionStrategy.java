@@ -0,0 +1,6 @@
+package info.teksol.mindcode.compiler;
+
+public enum SelectionStrategy {
+    GREEDY,
+    KNAPSACK
+}
@@ -18,60 +18,81 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class BaseFunctionMapper implements FunctionMapper {
-    private final AstContext staticAstContext = AstContext.createRootNode();
+    private static final AstContext staticAstContext = AstContext.createRootNode();
+    private static final Map<String, BuiltInFunctionHandler> builtInFunctionMap = createBuiltInFunctionMap();
+
     private final Supplier<AstContext> astContextSupplier;
     private final InstructionProcessor instructionProcessor;
     private final Consumer<CompilerMessage> messageConsumer;
-    private final ProcessorVersion processorVersion;
-    private final ProcessorEdition processorEdition;
-    private final Map<String, PropertyHandler> propertyMap;
-    private final Map<String, FunctionHandler> functionMap;
-    private final List<SampleGenerator> sampleGenerators;
-    private final Map<String, BuiltInFunctionHandler> builtInFunctionMap;
-
-    BaseFunctionMapper(InstructionProcessor InstructionProcessor, Supplier<AstContext> astContextSupplier,
+    private final FunctionTables functionTables;
+    private final Set<String> deprecationWarnings = new HashSet<>();
+
+    BaseFunctionMapper(InstructionProcessor instructionProcessor, Supplier<AstContext> astContextSupplier,
             Consumer<CompilerMessage> messageConsumer) {
+        this(instructionProcessor, new FunctionTables(instructionProcessor), astContextSupplier, messageConsumer);
+    }
+
+    BaseFunctionMapper(InstructionProcessor instructionProcessor, FunctionTables functionTables,
+            Supplier<AstContext> astContextSupplier, Consumer<CompilerMessage> messageConsumer) {
         this.astContextSupplier = astContextSupplier;
-        this.instructionProcessor = InstructionProcessor;
+        this.instructionProcessor = instructionProcessor;
         this.messageConsumer = messageConsumer;
+        this.functionTables = functionTables;
+    }
 
-        processorVersion = instructionProcessor.getProcessorVersion();
-        processorEdition = instructionProcessor.getProcessorEdition();
-        propertyMap = createPropertyMap();
-        functionMap = createFunctionMap();
-        builtInFunctionMap = createBuiltInFunctionMap();
-        
-        sampleGenerators = new ArrayList<>();
-        propertyMap.values().forEach(p -> p.register(sampleGenerators::add));
-        functionMap.values().forEach(f -> f.register(sampleGenerators::add));
-        sampleGenerators.sort(Comparator.comparing(SampleGenerator::getName));
+    /**
+     * Property and function handlers for a processor version and edition. The handlers keep no state related to
+     * a compilation and receive the function mapper performing the mapping as an argument, allowing a single instance
+     * to be shared by all function mappers created for the same target, including concurrently used ones.
+     */
+    static final class FunctionTables {
+        private final Map<String, PropertyHandler> propertyMap;
+        private final Map<String, FunctionHandler> functionMap;
+        private final List<SampleGenerator> sampleGenerators;
+
+        FunctionTables(InstructionProcessor instructionProcessor) {
+            ProcessorVersion processorVersion = instructionProcessor.getProcessorVersion();
+            ProcessorEdition processorEdition = instructionProcessor.getProcessorEdition();
+            List<OpcodeVariant> opcodeVariants = instructionProcessor.getOpcodeVariants();
+            propertyMap = Collections.unmodifiableMap(
+                    createPropertyMap(opcodeVariants, processorVersion, processorEdition));
+            functionMap = Collections.unmodifiableMap(
+                    createFunctionMap(opcodeVariants, processorVersion, processorEdition));
+
+            List<SampleGenerator> generators = new ArrayList<>();
+            propertyMap.values().forEach(p -> p.register(generators::add));
+            functionMap.values().forEach(f -> f.register(generators::add));
+            generators.sort(Comparator.comparing(SampleGenerator::getName));
+            sampleGenerators = List.copyOf(generators);
+        }
     }
 
     @Override
     public LogicValue handleProperty(Consumer<LogicInstruction> program, String propertyName, LogicValue target,
             List<LogicValue> arguments) {
-        PropertyHandler handler = propertyMap.get(propertyName);
-        return handler == null ? null : handler.handleProperty(program, target, arguments);
+        PropertyHandler handler = functionTables.propertyMap.get(propertyName);
+        return handler == null ? null : handler.handleProperty(this, program, target, arguments);
     }
 
     @Override
     public LogicValue handleFunction(Consumer<LogicInstruction> program, String functionName, List<LogicValue> arguments) {
-        FunctionHandler handler = functionMap.get(functionName);
+        FunctionHandler handler = functionTables.functionMap.get(functionName);
         BuiltInFunctionHandler builtInHandler = builtInFunctionMap.get(functionName);
         return handler == null
-                ? builtInHandler == null ? null : builtInHandler.handleFunction(program, arguments)
-                : handler.handleFunction(program, arguments);
+                ? builtInHandler == null ? null : builtInHandler.handleFunction(this, program, arguments)
+                : handler.handleFunction(this, program, arguments);
     }
 
     @Override
     public List<FunctionSample> generateSamples() {
+        List<SampleGenerator> sampleGenerators = functionTables.sampleGenerators;
         return Stream.concat(
                 sampleGenerators.stream().map(
                         s -> new FunctionSample(
                                 instructionProcessor.getOpcodeVariants().indexOf(s.getOpcodeVariant()),
                                 s.getName(),
                                 s.generateSampleCall(),
-                                s.generateSampleInstruction(),
+                                s.generateSampleInstruction(instructionProcessor),
                                 s.getOpcodeVariant().edition(),
                                 s.getNote()
                         )
@@ -81,7 +102,7 @@ public class BaseFunctionMapper implements FunctionMapper {
                                 instructionProcessor.getOpcodeVariants().indexOf(s.getOpcodeVariant()),
                                 s.getName(),
                                 s.generateSecondarySampleCall(),
-                                s.generateSampleInstruction(),
+                                s.generateSampleInstruction(instructionProcessor),
                                 s.getOpcodeVariant().edition(),
                                 s.getNote()
                         )
@@ -93,7 +114,15 @@ public class BaseFunctionMapper implements FunctionMapper {
         return instructionProcessor.createInstruction(astContextSupplier.get(), opcode, args);
     }
 
-    private LogicKeyword toKeyword(LogicValue arg) {
+    private LogicInstruction createInstruction(Opcode opcode, List<LogicArgument> args) {
+        return instructionProcessor.createInstruction(astContextSupplier.get(), opcode, args);
+    }
+
+    private LogicVariable nextTemp() {
+        return instructionProcessor.nextTemp();
+    }
+
+    private static LogicKeyword toKeyword(LogicValue arg) {
         // Syntactically, instruction keywords are just identifiers.
         // To convert it to keyword, we use the plain variable name.
         if (arg instanceof LogicVariable lv) {
@@ -103,7 +132,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
 
-    private LogicKeyword toKeywordOptional(LogicValue arg) {
+    private static LogicKeyword toKeywordOptional(LogicValue arg) {
         if (arg instanceof LogicVariable lv) {
             return LogicKeyword.create(lv.getName());
         } else {
@@ -119,7 +148,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         String getName();
         OpcodeVariant getOpcodeVariant();
         String generateSampleCall();
-        LogicInstruction generateSampleInstruction();
+        LogicInstruction generateSampleInstruction(InstructionProcessor instructionProcessor);
 
         default String getNote() {
             return "";
@@ -135,7 +164,8 @@ public class BaseFunctionMapper implements FunctionMapper {
     }
     
     private interface PropertyHandler extends SampleGenerator {
-        LogicValue handleProperty(Consumer<LogicInstruction> program, LogicValue target, List<LogicValue> arguments);
+        LogicValue handleProperty(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, LogicValue target,
+                List<LogicValue> arguments);
 
         default Opcode getOpcode() {
             return getOpcodeVariant().opcode();
@@ -143,7 +173,7 @@ public class BaseFunctionMapper implements FunctionMapper {
     }
 
     private interface FunctionHandler extends SampleGenerator {
-        LogicValue handleFunction(Consumer<LogicInstruction> program, List<LogicValue> arguments);
+        LogicValue handleFunction(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, List<LogicValue> arguments);
 
         default Opcode getOpcode() {
             return getOpcodeVariant().opcode();
@@ -155,7 +185,7 @@ public class BaseFunctionMapper implements FunctionMapper {
     }
 
     private interface BuiltInFunctionHandler {
-        LogicValue handleFunction(Consumer<LogicInstruction> program, List<LogicValue> arguments);
+        LogicValue handleFunction(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, List<LogicValue> arguments);
     }
 
     //
@@ -163,11 +193,12 @@ public class BaseFunctionMapper implements FunctionMapper {
     //
     ///////////////////////////////////////////////////////////////
 
-    private Map<String, PropertyHandler> createPropertyMap() {
-        Map<String, PropertyHandler> map = instructionProcessor.getOpcodeVariants().stream()
+    private static Map<String, PropertyHandler> createPropertyMap(List<OpcodeVariant> opcodeVariants,
+            ProcessorVersion processorVersion, ProcessorEdition processorEdition) {
+        Map<String, PropertyHandler> map = opcodeVariants.stream()
                 .filter(v -> v.functionMapping() == FunctionMapping.PROP || v.functionMapping() == FunctionMapping.BOTH)
                 .filter(v -> v.isAvailableIn(processorVersion, processorEdition))
-                .map(this::createPropertyHandler)
+                .map(BaseFunctionMapper::createPropertyHandler)
                 .collect(Collectors.toMap(PropertyHandler::getName, f -> f));
 
         // V6 backwards compatibility
@@ -178,7 +209,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         return map;
     }
 
-    private PropertyHandler createPropertyHandler(OpcodeVariant opcodeVariant) {
+    private static PropertyHandler createPropertyHandler(OpcodeVariant opcodeVariant) {
         List<NamedParameter> arguments = opcodeVariant.namedParameters();
         Optional<NamedParameter> selector = arguments.stream().filter(a -> a.type().isFunctionName()).findFirst();
         final int outputs = (int) arguments.stream().map(NamedParameter::type).filter(LogicParameter::isOutput).count();
@@ -198,7 +229,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         return new StandardPropertyHandler(name, opcodeVariant, numArgs, results > 0);
     }
 
-    private abstract class AbstractPropertyHandler implements PropertyHandler {
+    private static abstract class AbstractPropertyHandler implements PropertyHandler {
         protected final OpcodeVariant opcodeVariant;
         protected final String name;
         protected final int numArgs;
@@ -227,7 +258,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicInstruction generateSampleInstruction() {
+        public LogicInstruction generateSampleInstruction(InstructionProcessor instructionProcessor) {
             return instructionProcessor.fromOpcodeVariant(getOpcodeVariant());
         }
 
@@ -237,7 +268,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
 
-    private class StandardPropertyHandler extends AbstractPropertyHandler  {
+    private static class StandardPropertyHandler extends AbstractPropertyHandler  {
         private final boolean hasResult;
 
         StandardPropertyHandler(String name, OpcodeVariant opcodeVariant, int numArgs, boolean hasResult) {
@@ -246,10 +277,11 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicValue handleProperty(Consumer<LogicInstruction> program, LogicValue target, List<LogicValue> fnArgs) {
+        public LogicValue handleProperty(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, LogicValue target,
+                List<LogicValue> fnArgs) {
             checkArguments(fnArgs);
 
-            LogicValue tmp = hasResult ? instructionProcessor.nextTemp() : LogicNull.NULL;
+            LogicValue tmp = hasResult ? mapper.nextTemp() : LogicNull.NULL;
             List<LogicArgument> ixArgs = new ArrayList<>();
             int argIndex = 0;
 
@@ -267,14 +299,14 @@ public class BaseFunctionMapper implements FunctionMapper {
                 } else if (a.type().isUnused()) {
                     // Unused inputs must be filled with defaults
                     // Generate new temporary variable for unused outputs (may not be necessary)
-                    ixArgs.add(a.type().isOutput() ? instructionProcessor.nextTemp() : LogicKeyword.create(a.name()));
+                    ixArgs.add(a.type().isOutput() ? mapper.nextTemp() : LogicKeyword.create(a.name()));
                 } else if (a.type().isInput()) {
                     // Input argument - take it as it is
                     ixArgs.add(fnArgs.get(argIndex++));
                 } else if (a.type().isOutput()) {
                     if (argIndex >= fnArgs.size()) {
                         // Optional arguments are always output; generate temporary variable for them
-                        ixArgs.add(instructionProcessor.nextTemp());
+                        ixArgs.add(mapper.nextTemp());
                     } else {
                         // Block name cannot be used as output argument
                         LogicArgument argument = fnArgs.get(argIndex++);
@@ -289,7 +321,7 @@ public class BaseFunctionMapper implements FunctionMapper {
                 }
             }
 
-            program.accept(instructionProcessor.createInstruction(astContextSupplier.get(), getOpcode(), ixArgs));
+            program.accept(mapper.createInstruction(getOpcode(), ixArgs));
             return tmp;
         }
 
@@ -327,7 +359,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicInstruction generateSampleInstruction() {
+        public LogicInstruction generateSampleInstruction(InstructionProcessor instructionProcessor) {
             AtomicInteger counter = new AtomicInteger();
             String tmpPrefix = instructionProcessor.getTempPrefix();
             List<LogicArgument> arguments = getOpcodeVariant().namedParameters().stream()
@@ -338,10 +370,9 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
 
-    private class DeprecatedPropertyHandler implements PropertyHandler {
+    private static class DeprecatedPropertyHandler implements PropertyHandler {
         private final PropertyHandler replacement;
         private final String deprecated;
-        private boolean warningEmitted = false;
 
         DeprecatedPropertyHandler(String deprecated, PropertyHandler replacement) {
             this.deprecated = deprecated;
@@ -379,8 +410,8 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicInstruction generateSampleInstruction() {
-            return replacement.generateSampleInstruction();
+        public LogicInstruction generateSampleInstruction(InstructionProcessor instructionProcessor) {
+            return replacement.generateSampleInstruction(instructionProcessor);
         }
 
         @Override
@@ -389,14 +420,14 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicValue handleProperty(Consumer<LogicInstruction> program, LogicValue target, List<LogicValue> arguments) {
-            if (!warningEmitted) {
-                messageConsumer.accept(MindcodeMessage.warn(
+        public LogicValue handleProperty(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, LogicValue target,
+                List<LogicValue> arguments) {
+            if (mapper.deprecationWarnings.add(deprecated)) {
+                mapper.messageConsumer.accept(MindcodeMessage.warn(
                         "Function '" + deprecated + "' is no longer supported in Mindustry Logic version " +
-                        processorVersion + "; using '" + replacement.getName() + "' instead."));
-                warningEmitted = true;
+                        mapper.instructionProcessor.getProcessorVersion() + "; using '" + replacement.getName() + "' instead."));
             }
-            return replacement.handleProperty(program, target, arguments);
+            return replacement.handleProperty(mapper, program, target, arguments);
         }
     }
 
@@ -405,20 +436,21 @@ public class BaseFunctionMapper implements FunctionMapper {
     //
     ///////////////////////////////////////////////////////////////
 
-    private Map<String, FunctionHandler> createFunctionMap() {
-        Map<String, List<FunctionHandler>> functionGroups = instructionProcessor.getOpcodeVariants().stream()
+    private static Map<String, FunctionHandler> createFunctionMap(List<OpcodeVariant> opcodeVariants,
+            ProcessorVersion processorVersion, ProcessorEdition processorEdition) {
+        Map<String, List<FunctionHandler>> functionGroups = opcodeVariants.stream()
                 .filter(v -> v.functionMapping() == FunctionMapping.FUNC || v.functionMapping() == FunctionMapping.BOTH)
                 .filter(v -> v.isAvailableIn(processorVersion, processorEdition))
-                .map(this::createFunctionHandler)
+                .map(BaseFunctionMapper::createFunctionHandler)
                 .collect(Collectors.groupingBy(FunctionHandler::getName));
 
         // Create MultiplexedFunctionHandler for functions with identical names
         return functionGroups.values().stream()
-                .map(this::collapseFunctions)
+                .map(BaseFunctionMapper::collapseFunctions)
                 .collect(Collectors.toMap(FunctionHandler::getName, f -> f));
     }
 
-    private FunctionHandler createFunctionHandler(OpcodeVariant opcodeVariant) {
+    private static FunctionHandler createFunctionHandler(OpcodeVariant opcodeVariant) {
         final Opcode opcode = opcodeVariant.opcode();
 
         // Handle special cases
@@ -461,7 +493,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         return new StandardFunctionHandler(name, opcodeVariant, minArgs, numArgs, results > 0);
     }
 
-    private String functionName(OpcodeVariant opcodeVariant, NamedParameter selector) {
+    private static String functionName(OpcodeVariant opcodeVariant, NamedParameter selector) {
         return switch (opcodeVariant.opcode()) {
             case STOP   -> "stopProcessor";
             case STATUS -> switch (opcodeVariant.namedParameters().get(0).name()) {
@@ -473,7 +505,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         };
     }
 
-    private FunctionHandler collapseFunctions(List<FunctionHandler> functions) {
+    private static FunctionHandler collapseFunctions(List<FunctionHandler> functions) {
         if (functions.size() == 1) {
             return functions.get(0);
         } else {
@@ -492,7 +524,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
 
-    private abstract class AbstractFunctionHandler implements FunctionHandler {
+    private static abstract class AbstractFunctionHandler implements FunctionHandler {
         protected final OpcodeVariant opcodeVariant;
         protected final String name;
         protected final int minArgs;
@@ -531,7 +563,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicInstruction generateSampleInstruction() {
+        public LogicInstruction generateSampleInstruction(InstructionProcessor instructionProcessor) {
             return instructionProcessor.fromOpcodeVariant(getOpcodeVariant());
         }
 
@@ -541,7 +573,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
 
-    private class StandardFunctionHandler extends AbstractFunctionHandler implements SelectorFunction {
+    private static class StandardFunctionHandler extends AbstractFunctionHandler implements SelectorFunction {
         private final String keyword;
         private final boolean hasResult;
 
@@ -561,10 +593,10 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicValue handleFunction(Consumer<LogicInstruction> program, List<LogicValue> fnArgs) {
+        public LogicValue handleFunction(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, List<LogicValue> fnArgs) {
             checkArguments(fnArgs);
 
-            LogicValue tmp = hasResult ? instructionProcessor.nextTemp() : LogicNull.NULL;
+            LogicValue tmp = hasResult ? mapper.nextTemp() : LogicNull.NULL;
             // Need to support all kinds of arguments here, including keywords
             List<LogicArgument> ixArgs = new ArrayList<>();
             int argIndex = 0;
@@ -582,14 +614,14 @@ public class BaseFunctionMapper implements FunctionMapper {
                 } else if (a.type().isUnused()) {
                     // Pass in zero for unused inputs
                     // Generate new temporary variable for unused outputs (may not be necessary)
-                    ixArgs.add(a.type().isOutput() ? instructionProcessor.nextTemp() : LogicKeyword.create(a.name()));
+                    ixArgs.add(a.type().isOutput() ? mapper.nextTemp() : LogicKeyword.create(a.name()));
                 } else if (a.type().isInput()) {
                     // Input argument - take it as it is
                     ixArgs.add(fnArgs.get(argIndex++));
                 } else if (a.type().isOutput()) {
                     if (argIndex >= fnArgs.size()) {
                         // Optional arguments are always output; generate temporary variable for them
-                        ixArgs.add(instructionProcessor.nextTemp());
+                        ixArgs.add(mapper.nextTemp());
                     } else {
                         // Block name cannot be used as output argument
                         LogicValue argument = fnArgs.get(argIndex++);
@@ -604,7 +636,7 @@ public class BaseFunctionMapper implements FunctionMapper {
                 }
             }
 
-            program.accept(instructionProcessor.createInstruction(astContextSupplier.get(), getOpcode(), ixArgs));
+            program.accept(mapper.createInstruction(getOpcode(), ixArgs));
             return tmp;
         }
 
@@ -629,7 +661,7 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicInstruction generateSampleInstruction() {
+        public LogicInstruction generateSampleInstruction(InstructionProcessor instructionProcessor) {
             AtomicInteger counter = new AtomicInteger();
             String tmpPrefix = instructionProcessor.getTempPrefix();
             List<LogicArgument> arguments = getOpcodeVariant().namedParameters().stream()
@@ -641,7 +673,7 @@ public class BaseFunctionMapper implements FunctionMapper {
     }
 
     // Chooses a function handler based on the first argument value
-    private class MultiplexedFunctionHandler extends AbstractFunctionHandler {
+    private static class MultiplexedFunctionHandler extends AbstractFunctionHandler {
         private final Map<String, FunctionHandler> functions;
 
         MultiplexedFunctionHandler(Map<String, FunctionHandler> functions, String name, OpcodeVariant opcodeVariant) {
@@ -650,13 +682,13 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
 
         @Override
-        public LogicValue handleFunction(Consumer<LogicInstruction> program, List<LogicValue> arguments) {
+        public LogicValue handleFunction(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, List<LogicValue> arguments) {
             // toKeywordOptional handles the case of somebody passing in a number as the first argument of e.g. ulocate.
             FunctionHandler handler = functions.get(toKeywordOptional(arguments.get(0)).getKeyword());
             if (handler == null) {
                 throw new MindcodeInternalError("Unhandled type of " + getOpcode() + " in " + arguments);
             }
-            return handler.handleFunction(program, arguments);
+            return handler.handleFunction(mapper, program, arguments);
         }
 
         @Override
@@ -671,14 +703,14 @@ public class BaseFunctionMapper implements FunctionMapper {
     }
 
     // Handles the print function
-    private class PrintFunctionHandler extends AbstractFunctionHandler {
+    private static class PrintFunctionHandler extends AbstractFunctionHandler {
         PrintFunctionHandler(String name, OpcodeVariant opcodeVariant) {
             super(name, opcodeVariant, 1);
         }
 
         @Override
-        public LogicValue handleFunction(Consumer<LogicInstruction> program, List<LogicValue> arguments) {
-            arguments.forEach(arg -> program.accept(createInstruction(Opcode.PRINT, arg)));
+        public LogicValue handleFunction(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, List<LogicValue> arguments) {
+            arguments.forEach(arg -> program.accept(mapper.createInstruction(Opcode.PRINT, arg)));
             return arguments.get(arguments.size() - 1);
         }
 
@@ -688,15 +720,15 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
     
-    private class UbindFunctionHandler extends AbstractFunctionHandler {
+    private static class UbindFunctionHandler extends AbstractFunctionHandler {
         UbindFunctionHandler(String name, OpcodeVariant opcodeVariant) {
             super(name, opcodeVariant, 1);
         }
 
         @Override
-        public LogicValue handleFunction(Consumer<LogicInstruction> program, List<LogicValue> arguments) {
+        public LogicValue handleFunction(BaseFunctionMapper mapper, Consumer<LogicInstruction> program, List<LogicValue> arguments) {
             checkArguments(arguments);
-            program.accept(createInstruction(Opcode.UBIND, arguments.get(0)));
+            program.accept(mapper.createInstruction(Opcode.UBIND, arguments.get(0)));
             return LogicBuiltIn.UNIT;
         }
 
@@ -706,10 +738,8 @@ public class BaseFunctionMapper implements FunctionMapper {
         }
     }
 
-    private Map<String, BuiltInFunctionHandler> createBuiltInFunctionMap() {
-        Map<String, BuiltInFunctionHandler> map = new HashMap<>();
-        map.put("println", this::handlePrintlnFunction);
-        return map;
+    private static Map<String, BuiltInFunctionHandler> createBuiltInFunctionMap() {
+        return Map.of("println", BaseFunctionMapper::handlePrintlnFunction);
     }
     
     private LogicValue handlePrintlnFunction(Consumer<LogicInstruction> program, List<LogicValue> arguments) {
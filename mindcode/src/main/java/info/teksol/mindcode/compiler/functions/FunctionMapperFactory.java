@@ -1,9 +1,14 @@
 package info.teksol.mindcode.compiler.functions;
 
 import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.functions.BaseFunctionMapper.FunctionTables;
 import info.teksol.mindcode.compiler.instructions.AstContext;
 import info.teksol.mindcode.compiler.instructions.InstructionProcessor;
+import info.teksol.mindcode.logic.ProcessorEdition;
+import info.teksol.mindcode.logic.ProcessorVersion;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -11,14 +16,25 @@ public class FunctionMapperFactory {
 
     private static final AstContext STATIC_AST_CONTEXT = AstContext.createRootNode();
 
+    // Function tables depend only on the target; they're computed once and shared by all function mappers
+    private static final Map<Target, FunctionTables> FUNCTION_TABLES = new ConcurrentHashMap<>();
+
+    private record Target(ProcessorVersion version, ProcessorEdition edition) { }
+
     public static FunctionMapper getFunctionMapper(InstructionProcessor instructionProcessor, Supplier<AstContext> astContextSupplier,
             Consumer<CompilerMessage> messageConsumer) {
-        return new BaseFunctionMapper( instructionProcessor, astContextSupplier, messageConsumer);
+        return new BaseFunctionMapper(instructionProcessor, getFunctionTables(instructionProcessor), astContextSupplier, messageConsumer);
     }
 
     public static FunctionMapper getStaticFunctionMapper(InstructionProcessor instructionProcessor,
             Consumer<CompilerMessage> messageConsumer) {
-        return new BaseFunctionMapper( instructionProcessor, () -> STATIC_AST_CONTEXT, messageConsumer);
+        return new BaseFunctionMapper(instructionProcessor, getFunctionTables(instructionProcessor), () -> STATIC_AST_CONTEXT, messageConsumer);
+    }
+
+    private static FunctionTables getFunctionTables(InstructionProcessor instructionProcessor) {
+        return FUNCTION_TABLES.computeIfAbsent(
+                new Target(instructionProcessor.getProcessorVersion(), instructionProcessor.getProcessorEdition()),
+                t -> new FunctionTables(instructionProcessor));
     }
 
     private FunctionMapperFactory() { }
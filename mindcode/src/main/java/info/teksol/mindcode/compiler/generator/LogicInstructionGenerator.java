@@ -3,6 +3,7 @@ package info.teksol.mindcode.compiler.generator;
 import info.teksol.mindcode.MindcodeException;
 import info.teksol.mindcode.MindcodeInternalError;
 import info.teksol.mindcode.ast.*;
+import info.teksol.mindcode.compiler.CompilationDeadline;
 import info.teksol.mindcode.compiler.CompilerMessage;
 import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.mindcode.compiler.functions.FunctionMapper;
@@ -79,6 +80,8 @@ public class LogicInstructionGenerator extends BaseAstVisitor<LogicValue> {
 
     private AstContext astContext = AstContext.createRootNode();
 
+    private CompilationDeadline deadline = CompilationDeadline.NONE;
+
     public LogicInstructionGenerator(CompilerProfile profile, InstructionProcessor instructionProcessor,
             Consumer<CompilerMessage> messageConsumer) {
         this.messageConsumer = messageConsumer;
@@ -89,6 +92,10 @@ public class LogicInstructionGenerator extends BaseAstVisitor<LogicValue> {
         this.expressionEvaluator = new ConstantExpressionEvaluator(instructionProcessor);
     }
 
+    public void setDeadline(CompilationDeadline deadline) {
+        this.deadline = deadline;
+    }
+
     public GeneratorOutput generate(Seq program) {
         callGraph = CallGraphCreator.createFunctionGraph(program, instructionProcessor);
         currentFunction = callGraph.getMain();
@@ -149,6 +156,7 @@ public class LogicInstructionGenerator extends BaseAstVisitor<LogicValue> {
     // parent and child nodes.
     @Override
     public LogicValue visit(AstNode node) {
+        deadline.check();
         NodeContext previousParent = parentContext;
         parentContext = nodeContext;
         nodeContext = new NodeContext(parentContext);  // inherit variables from parent context
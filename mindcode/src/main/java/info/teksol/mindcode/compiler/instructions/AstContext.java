@@ -8,7 +8,8 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class AstContext {
-    private static final AtomicInteger counter = new AtomicInteger();
+    // Ids are allocated per context tree, so that they do not depend on other compilations running in parallel
+    private final AtomicInteger counter;
     public final int id;
 
     private final String functionPrefix;
@@ -22,6 +23,7 @@ public final class AstContext {
 
     private AstContext(String functionPrefix, int level, AstNode node, AstContextType contextType,
             AstSubcontextType subcontextType, AstContext parent, double weight, List<AstContext> children) {
+        this.counter = parent == null ? new AtomicInteger() : parent.counter;
         this.id = counter.getAndIncrement();
         this.functionPrefix = functionPrefix;
         this.level = level;
@@ -35,18 +35,18 @@ public class BaseInstructionProcessor implements InstructionProcessor {
     // Protected to allow a subclass to use this constructor in unit tests
     protected BaseInstructionProcessor(Consumer<CompilerMessage> messageConsumer, ProcessorVersion processorVersion,
             ProcessorEdition processorEdition, List<OpcodeVariant> opcodeVariants) {
-        this.messageConsumer = messageConsumer;
-        this.processorVersion = processorVersion;
-        this.processorEdition = processorEdition;
-        this.opcodeVariants = opcodeVariants;
-        variantsByOpcode = opcodeVariants.stream().collect(Collectors.groupingBy(OpcodeVariant::opcode));
-        opcodeKeywordPosition = variantsByOpcode.keySet().stream()
-                .collect(Collectors.toMap(k -> k, k -> getOpcodeVariantSelectorPosition(k, variantsByOpcode.get(k))));
-
-        variantsByKeyword = opcodeVariants.stream().collect(Collectors.groupingBy(OpcodeVariant::opcode,
-                Collectors.toMap(this::getOpcodeVariantKeyword, v -> v)));
+        this(messageConsumer, new ProcessorMetadata(processorVersion, processorEdition, opcodeVariants));
+    }
 
-        validArgumentValues = createAllowedArgumentValuesMap();
+    BaseInstructionProcessor(Consumer<CompilerMessage> messageConsumer, ProcessorMetadata metadata) {
+        this.messageConsumer = messageConsumer;
+        this.processorVersion = metadata.processorVersion;
+        this.processorEdition = metadata.processorEdition;
+        this.opcodeVariants = metadata.opcodeVariants;
+        this.variantsByOpcode = metadata.variantsByOpcode;
+        this.variantsByKeyword = metadata.variantsByKeyword;
+        this.opcodeKeywordPosition = metadata.opcodeKeywordPosition;
+        this.validArgumentValues = metadata.validArgumentValues;
     }
 
     @Override
@@ -59,6 +59,11 @@ public class BaseInstructionProcessor implements InstructionProcessor {
         return LogicVariable.temporary(getTempPrefix() + tmpIndex++);
     }
 
+    @Override
+    public LogicVariable nextOptimizerVariable() {
+        return LogicVariable.optimizer(getTempPrefix() + tmpIndex++);
+    }
+
     @Override
     public String nextLocalPrefix() {
         return getLocalPrefix() + functionIndex++;
@@ -397,56 +402,6 @@ public class BaseInstructionProcessor implements InstructionProcessor {
         return instruction;
     }
 
-    private int getOpcodeVariantSelectorPosition(Opcode opcode, List<OpcodeVariant> opcodeVariants) {
-        List<Integer> indexes = opcodeVariants.stream()
-                .map(v -> findFirstIndex(v.namedParameters(), a -> a.type().isSelector()))
-                .distinct()
-                .toList();
-
-        if (indexes.size() != 1)  {
-            throw new MindcodeInternalError("Cannot determine variant selector position for opcode " + opcode);
-        }
-
-        return indexes.get(0);
-    }
-
-    private String getOpcodeVariantKeyword(OpcodeVariant opcodeVariant) {
-        int position = opcodeKeywordPosition.get(opcodeVariant.opcode());
-        if (position < 0) {
-            return "";      // Single-variant opcode; no keyword
-        } else {
-            return opcodeVariant.namedParameters().get(position).name();
-        }
-    }
-
-    private Map<LogicParameter, Set<String>> createAllowedArgumentValuesMap() {
-        Map<LogicParameter, Set<String>> map = new HashMap<>();
-        for (LogicParameter type : LogicParameter.values()) {
-            Set<String> allowedValues = createAllowedValues(type);
-            if (!allowedValues.isEmpty()) {
-                map.put(type, allowedValues);
-            }
-        }
-
-        return Map.copyOf(map);
-    }
-
-    private Set<String> createAllowedValues(LogicParameter type) {
-        if (type.isSelector()) {
-            return opcodeVariants.stream()
-                    .flatMap(v -> v.namedParameters().stream())
-                    .filter(v -> v.type() == type)
-                    .map(NamedParameter::name)
-                    .collect(Collectors.toUnmodifiableSet());
-        } else {
-            // Select only compatible keywords and put them into a set
-            return type.getAllowedValues().stream()
-                    .filter(v -> v.versions.contains(processorVersion))
-                    .flatMap(v -> v.values.stream())
-                    .collect(Collectors.toUnmodifiableSet());
-        }
-    }
-
     private static final Pattern BLOCK_NAME_PATTERN = Pattern.compile("^([a-zA-Z][a-zA-Z_]*)[1-9]\\d*$");
 
     private static final Set<String> BLOCK_NAMES = Set.of("arc", "bank", "battery", "cell", "center", "centrifuge",
@@ -560,4 +515,85 @@ public class BaseInstructionProcessor implements InstructionProcessor {
             return Optional.empty();
         }
     }
+
+    /**
+     * Opcode variant lookup tables for a processor version and edition. The tables are derived solely from
+     * the opcode variants and are immutable, allowing a single instance to be shared by all instruction processors
+     * created for the same target, including processors used by concurrently running compilations.
+     */
+    static final class ProcessorMetadata {
+        private final ProcessorVersion processorVersion;
+        private final ProcessorEdition processorEdition;
+        private final List<OpcodeVariant> opcodeVariants;
+        private final Map<Opcode, List<OpcodeVariant>> variantsByOpcode;
+        private final Map<Opcode, Map<String, OpcodeVariant>> variantsByKeyword;
+        private final Map<Opcode, Integer> opcodeKeywordPosition;
+        private final Map<LogicParameter, Set<String>> validArgumentValues;
+
+        ProcessorMetadata(ProcessorVersion processorVersion, ProcessorEdition processorEdition,
+                List<OpcodeVariant> opcodeVariants) {
+            this.processorVersion = processorVersion;
+            this.processorEdition = processorEdition;
+            this.opcodeVariants = List.copyOf(opcodeVariants);
+            variantsByOpcode = Map.copyOf(this.opcodeVariants.stream().collect(
+                    Collectors.groupingBy(OpcodeVariant::opcode, Collectors.toUnmodifiableList())));
+            opcodeKeywordPosition = variantsByOpcode.keySet().stream()
+                    .collect(Collectors.toUnmodifiableMap(k -> k, k -> getOpcodeVariantSelectorPosition(k, variantsByOpcode.get(k))));
+
+            variantsByKeyword = Map.copyOf(this.opcodeVariants.stream().collect(Collectors.groupingBy(OpcodeVariant::opcode,
+                    Collectors.toUnmodifiableMap(this::getOpcodeVariantKeyword, v -> v))));
+
+            validArgumentValues = createAllowedArgumentValuesMap();
+        }
+
+        private int getOpcodeVariantSelectorPosition(Opcode opcode, List<OpcodeVariant> opcodeVariants) {
+            List<Integer> indexes = opcodeVariants.stream()
+                    .map(v -> findFirstIndex(v.namedParameters(), a -> a.type().isSelector()))
+                    .distinct()
+                    .toList();
+
+            if (indexes.size() != 1)  {
+                throw new MindcodeInternalError("Cannot determine variant selector position for opcode " + opcode);
+            }
+
+            return indexes.get(0);
+        }
+
+        private String getOpcodeVariantKeyword(OpcodeVariant opcodeVariant) {
+            int position = opcodeKeywordPosition.get(opcodeVariant.opcode());
+            if (position < 0) {
+                return "";      // Single-variant opcode; no keyword
+            } else {
+                return opcodeVariant.namedParameters().get(position).name();
+            }
+        }
+
+        private Map<LogicParameter, Set<String>> createAllowedArgumentValuesMap() {
+            Map<LogicParameter, Set<String>> map = new HashMap<>();
+            for (LogicParameter type : LogicParameter.values()) {
+                Set<String> allowedValues = createAllowedValues(type);
+                if (!allowedValues.isEmpty()) {
+                    map.put(type, allowedValues);
+                }
+            }
+
+            return Map.copyOf(map);
+        }
+
+        private Set<String> createAllowedValues(LogicParameter type) {
+            if (type.isSelector()) {
+                return opcodeVariants.stream()
+                        .flatMap(v -> v.namedParameters().stream())
+                        .filter(v -> v.type() == type)
+                        .map(NamedParameter::name)
+                        .collect(Collectors.toUnmodifiableSet());
+            } else {
+                // Select only compatible keywords and put them into a set
+                return type.getAllowedValues().stream()
+                        .filter(v -> v.versions.contains(processorVersion))
+                        .flatMap(v -> v.values.stream())
+                        .collect(Collectors.toUnmodifiableSet());
+            }
+        }
+    }
 }
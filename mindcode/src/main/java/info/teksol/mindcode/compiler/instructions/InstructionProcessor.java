@@ -18,6 +18,7 @@ public interface InstructionProcessor {
 
     LogicLabel nextLabel();
     LogicVariable nextTemp();
+    LogicVariable nextOptimizerVariable();
     String nextLocalPrefix();
 
     /**
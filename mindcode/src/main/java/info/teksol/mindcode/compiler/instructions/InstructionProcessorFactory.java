@@ -2,15 +2,22 @@ package info.teksol.mindcode.compiler.instructions;
 
 import info.teksol.mindcode.compiler.CompilerMessage;
 import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.instructions.BaseInstructionProcessor.ProcessorMetadata;
 import info.teksol.mindcode.logic.MindustryOpcodeVariants;
 import info.teksol.mindcode.logic.OpcodeVariant;
 import info.teksol.mindcode.logic.ProcessorEdition;
 import info.teksol.mindcode.logic.ProcessorVersion;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 public class InstructionProcessorFactory {
+    // Metadata depend only on the target; they're computed once and shared by all instruction processors
+    private static final Map<Target, ProcessorMetadata> METADATA = new ConcurrentHashMap<>();
+
+    private record Target(ProcessorVersion version, ProcessorEdition edition) { }
 
     public static InstructionProcessor getInstructionProcessor(Consumer<CompilerMessage> messageConsumer, CompilerProfile profile) {
         return getInstructionProcessor(messageConsumer, profile.getProcessorVersion(), profile.getProcessorEdition());
@@ -18,11 +25,11 @@ public class InstructionProcessorFactory {
 
     public static InstructionProcessor getInstructionProcessor(Consumer<CompilerMessage> messageConsumer,
             ProcessorVersion version, ProcessorEdition edition) {
-        return new BaseInstructionProcessor(messageConsumer, version, edition, MindustryOpcodeVariants.getSpecificOpcodeVariants(version, edition));
+        return new BaseInstructionProcessor(messageConsumer, getMetadata(version, edition));
     }
 
     public static InstructionProcessor getInstructionProcessor(ProcessorVersion version, ProcessorEdition edition) {
-        return new BaseInstructionProcessor(msg ->{}, version, edition, MindustryOpcodeVariants.getSpecificOpcodeVariants(version, edition));
+        return new BaseInstructionProcessor(msg ->{}, getMetadata(version, edition));
     }
 
     // To be used by unit tests - returns new, non-cached instances based off whatever processor is given
@@ -31,5 +38,10 @@ public class InstructionProcessorFactory {
         return new BaseInstructionProcessor(msg -> {}, version, edition, opcodeVariants);
     }
     
+    private static ProcessorMetadata getMetadata(ProcessorVersion version, ProcessorEdition edition) {
+        return METADATA.computeIfAbsent(new Target(version, edition), t -> new ProcessorMetadata(version, edition,
+                MindustryOpcodeVariants.getSpecificOpcodeVariants(version, edition)));
+    }
+
     private InstructionProcessorFactory() { }
 }
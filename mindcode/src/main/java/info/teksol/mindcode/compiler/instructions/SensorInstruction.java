@@ -36,8 +36,8 @@ public class SensorInstruction extends BaseInstruction implements LogicResultIns
         return (LogicVariable) getArg(0);
     }
 
-    public final LogicVariable getObject() {
-        return (LogicVariable) getArg(1);
+    public final LogicValue getObject() {
+        return (LogicValue) getArg(1);
     }
 
     public final LogicValue getProperty() {
@@ -6,9 +6,14 @@ import info.teksol.mindcode.logic.*;
 import org.intellij.lang.annotations.PrintFormat;
 
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 
 public abstract class AbstractOptimizer implements Optimizer {
+    /** Properties of linked blocks which don't change while the block exists. */
+    private static final Set<String> CONSTANT_BLOCK_PROPERTIES = Set.of("x", "y", "size", "type", "maxHealth",
+            "itemCapacity", "liquidCapacity", "powerNetCapacity");
+
     protected final Optimization optimization;
     protected final OptimizationContext optimizationContext;
     protected final InstructionProcessor instructionProcessor;
@@ -86,6 +91,12 @@ public abstract class AbstractOptimizer implements Optimizer {
     protected boolean isVolatile(LogicInstruction instruction) {
         return instruction.inputArgumentsStream().anyMatch(LogicArgument::isVolatile);
     }
+
+    protected boolean isConstantSensor(SensorInstruction sensor) {
+        return sensor.getObject().getType() == ArgumentType.BLOCK
+                && sensor.getProperty() instanceof LogicBuiltIn property
+                && CONSTANT_BLOCK_PROPERTIES.contains(property.getName());
+    }
     //</editor-fold>
 
     //<editor-fold desc="Instruction creation">
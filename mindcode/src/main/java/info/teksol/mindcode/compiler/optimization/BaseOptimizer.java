@@ -4,16 +4,22 @@ import info.teksol.mindcode.MindcodeInternalError;
 import info.teksol.mindcode.compiler.MessageLevel;
 import info.teksol.mindcode.compiler.generator.CallGraph;
 import info.teksol.mindcode.compiler.instructions.*;
+import info.teksol.mindcode.compiler.optimization.OptimizationContext.DependencyStamp;
 import info.teksol.mindcode.compiler.optimization.OptimizationContext.LogicIterator;
 import info.teksol.mindcode.compiler.optimization.OptimizationContext.LogicList;
 import info.teksol.mindcode.logic.*;
 import info.teksol.mindcode.processor.MindustryValue;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -168,6 +174,69 @@ abstract class BaseOptimizer extends AbstractOptimizer {
     }
     //</editor-fold>
 
+    //<editor-fold desc="Loop analysis">
+    /**
+     * Finds the control variable of a loop. The control variable is an operand of the loop condition jump, which
+     * is modified inside the loop (outside the loop initialization) only by {@code op} instructions updating the
+     * variable by a numeric literal. The instructions must not be placed inside another flow-control context
+     * within the loop.
+     *
+     * @param loop loop context to inspect
+     * @param jump the jump evaluating the loop condition
+     * @return the loop control variable, or null if the loop doesn't have a control variable
+     */
+    protected LogicVariable findLoopControlVariable(AstContext loop, JumpInstruction jump) {
+        LogicVariable result = null;
+        for (LogicValue operand : jump.getOperands()) {
+            if (operand instanceof LogicVariable variable && !variable.isGlobalVariable()) {
+                // All modifications of this operand outside the init context
+                List<LogicInstruction> controlIxs = loopControlVariableUpdates(loop, variable);
+                if (!controlIxs.isEmpty()) {
+                    if (controlIxs.stream().allMatch(ix -> ix instanceof OpInstruction op
+                            && withinLoopContext(loop, op)
+                            && op.getResult().equals(variable) && op.getX().equals(variable)
+                            && op.hasSecondOperand() && op.getY().isNumericLiteral())) {
+                        if (result != null) {
+                            // Both operands are modified inside loop
+                            return null;
+                        }
+                        result = variable;
+                    } else {
+                        // This variable is modified in an incompatible way
+                        return null;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all instructions modifying given variable inside the loop, except the loop initialization.
+     *
+     * @param loop loop context to inspect
+     * @param variable variable to search for
+     * @return list of instructions modifying the variable
+     */
+    protected List<LogicInstruction> loopControlVariableUpdates(AstContext loop, LogicVariable variable) {
+        AstContext init = loop.findSubcontext(AstSubcontextType.INIT);
+        return contextStream(loop)
+                .filter(ix -> !ix.getAstContext().belongsTo(init))
+                .filter(ix -> ix.outputArgumentsStream().anyMatch(a -> a.equals(variable)))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // Determines whether the instruction lies directly within the loop context (not in another control-flow subcontext)
+    private boolean withinLoopContext(AstContext loop, LogicInstruction instruction) {
+        for (AstContext ctx = instruction.getAstContext(); ctx != null; ctx = ctx.parent()) {
+            if (ctx.contextType().flowControl) {
+                return ctx == loop || ctx.parent() == loop;
+            }
+        }
+        return false;
+    }
+    //</editor-fold>
+
     //<editor-fold desc="Finding instructions by position">
     /**
      * Return the instruction at given position in the program.
@@ -652,6 +721,70 @@ abstract class BaseOptimizer extends AbstractOptimizer {
         return optimizationContext.contexts(matcher);
     }
 
+    private Map<AstContext, CachedActions> cachedActions = new IdentityHashMap<>();
+
+    private record CachedActions(DependencyStamp stamp, int costLimit, List<OptimizationAction> actions) {
+        boolean isValid(OptimizationContext optimizationContext, AstContext context, int currentLimit) {
+            return currentLimit <= costLimit && optimizationContext.isCurrent(context, stamp);
+        }
+
+        List<OptimizationAction> getActions(int currentLimit) {
+            return actions.stream().filter(a -> a.requiredCostLimit() <= currentLimit).toList();
+        }
+    }
+
+    /**
+     * Finds possible optimizations in matching contexts. The result of the finder for a context is reused in
+     * subsequent calls as long as the instructions of the context and - if they were accessed by the finder -
+     * the data flow analysis results remain unchanged, and the cost limit doesn't exceed the one the result was
+     * obtained with. The finder must not inspect instructions outside the context other than through data flow
+     * analysis results, and must propose the same optimization under any cost limit between the required cost
+     * limit of the optimization and the original cost limit.
+     * <p>
+     * Data flow analysis results obtained by resolving variable values through the optimization context are
+     * tracked individually: the result is reused even after the data flow analysis is redone, as long as the
+     * variables read by the finder resolve to the same values.
+     *
+     * @param contextType type of contexts to process
+     * @param subcontextType subcontext type of contexts to process
+     * @param costLimit cost limit of proposed optimizations
+     * @param finder function finding an optimization in given context under given cost limit
+     * @return list of possible optimizations
+     */
+    protected List<OptimizationAction> forEachContextCached(AstContextType contextType, AstSubcontextType subcontextType,
+            int costLimit, BiFunction<AstContext, Integer, OptimizationAction> finder) {
+        return forEachContextCachedAll(contextType, subcontextType, costLimit, (context, limit) -> {
+            OptimizationAction action = finder.apply(context, limit);
+            return action == null ? List.of() : List.of(action);
+        });
+    }
+
+    /**
+     * Finds possible optimizations in matching contexts, allowing the finder to propose several optimizations
+     * in a single context. See {@link #forEachContextCached(AstContextType, AstSubcontextType, int, BiFunction)}.
+     *
+     * @param contextType type of contexts to process
+     * @param subcontextType subcontext type of contexts to process
+     * @param costLimit cost limit of proposed optimizations
+     * @param finder function finding optimizations in given context under given cost limit
+     * @return list of possible optimizations
+     */
+    protected List<OptimizationAction> forEachContextCachedAll(AstContextType contextType, AstSubcontextType subcontextType,
+            int costLimit, BiFunction<AstContext, Integer, List<OptimizationAction>> finder) {
+        Map<AstContext, CachedActions> previous = cachedActions;
+        cachedActions = new IdentityHashMap<>();
+        return forEachContext(contextType, subcontextType, context -> {
+            CachedActions cached = previous.get(context);
+            if (cached == null || !cached.isValid(optimizationContext, context, costLimit)) {
+                optimizationContext.startDependencyTracking();
+                List<OptimizationAction> actions = finder.apply(context, costLimit);
+                cached = new CachedActions(optimizationContext.getDependencyStamp(context), costLimit, actions);
+            }
+            cachedActions.put(context, cached);
+            return cached.getActions(costLimit);
+        }).stream().flatMap(List::stream).toList();
+    }
+
     protected AstContext context(Predicate<AstContext> matcher) {
         return optimizationContext.context(matcher);
     }
@@ -47,8 +47,7 @@ public class CaseSwitcher extends BaseOptimizer {
     @Override
     public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
         invocations++;
-        return forEachContext(AstContextType.CASE, BASIC,
-                context -> findPossibleCaseSwitches(context, costLimit));
+        return forEachContextCached(AstContextType.CASE, BASIC, costLimit, this::findPossibleCaseSwitches);
     }
 
 
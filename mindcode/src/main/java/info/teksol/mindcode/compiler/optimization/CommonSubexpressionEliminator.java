@@ -0,0 +1,502 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.MemoryModel;
+import info.teksol.mindcode.compiler.instructions.*;
+import info.teksol.mindcode.logic.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Eliminates instructions computing an expression whose value is already available in some variable. Unlike the
+ * Data Flow Optimization, which only reuses expressions along a single code path, this optimizer performs a global
+ * analysis of available expressions over the basic blocks of the program: an expression is available at a given
+ * point if it was computed on every path leading to that point, and none of its arguments (nor the variable holding
+ * its value) was modified since. Expressions computed on both branches of {@code if} or {@code case} statements are
+ * therefore available after the branches merge.
+ * <p>
+ * Expressions are identified by the instruction, operation and input arguments; arguments of commutative operations
+ * are normalized, so that {@code a + b} and {@code b + a} represent the same expression. Deterministic {@code op}
+ * and {@code packcolor} instructions, {@code sensor} instructions reading constant properties of linked blocks and,
+ * depending on the memory model, {@code read} instructions are considered.
+ * <p>
+ * An instruction computing an available expression is removed when its result is a temporary variable used only in
+ * the same basic block. Uses of the temporary variable are replaced by the variable holding the available value:
+ * <ul>
+ * <li>If all computations of the expression reaching the instruction store the value in the same variable, that
+ * variable is used directly.</li>
+ * <li>On the aggressive level, computations storing the value into different temporary variables (typically in
+ * different branches of a conditional statement) are modified to store the value into a new common variable,
+ * which is then used instead.</li>
+ * </ul>
+ * Function calls are considered to modify all variables. Code following a label targeted by other instructions
+ * than jumps (e.g. function entry points and return addresses) isn't optimized.
+ * <p>
+ * Unless the memory model is volatile, memory accesses are optimized as well:
+ * <ul>
+ * <li>A {@code write} instruction makes the written value available as the value of a {@code read} from the same
+ * memory block and index, if the value is known to be stored in the memory unchanged (a numeric literal, or a
+ * variable assigned only values which are always valid numbers), and the index is a constant within the capacity
+ * of the memory block (reading outside the memory block yields zero instead of the written value).</li>
+ * <li>A {@code write} instruction is removed when the same memory block and index is written again later in the same
+ * basic block, and no instruction in between might read the value.</li>
+ * </ul>
+ */
+public class CommonSubexpressionEliminator extends BaseOptimizer {
+    public CommonSubexpressionEliminator(OptimizationContext optimizationContext) {
+        super(Optimization.COMMON_SUBEXPRESSION_ELIMINATION, optimizationContext);
+    }
+
+    /** Instructions which never pass control to the next instruction (except conditional jumps). */
+    private static final Set<Opcode> TERMINATORS = EnumSet.of(Opcode.JUMP, Opcode.GOTO, Opcode.GOTOOFFSET,
+            Opcode.CALL, Opcode.CALLREC, Opcode.RETURN, Opcode.END, Opcode.STOP);
+
+    /**
+     * Expression computed by an instruction.
+     *
+     * @param opcode opcode of the instruction
+     * @param operation operation of an {@code op} instruction, null for other instructions
+     * @param arguments input arguments of the instruction
+     */
+    private record Expression(Opcode opcode, Operation operation, List<LogicArgument> arguments) {
+    }
+
+    private static class BasicBlock {
+        private final int start;
+        private final int end;
+        private final List<BasicBlock> predecessors = new ArrayList<>();
+
+        /** The block can be entered from an unknown place (e.g. a function entry point or a return address) */
+        private boolean unknownEntry;
+
+        /** Expressions available at the end of the block, mapped to instructions computing them; null if unknown */
+        private Map<Expression, Set<LogicInstruction>> available;
+
+        public BasicBlock(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /** Operations which never produce an invalid value (which would be stored as zero into a memory block). */
+    private static final Set<Operation> VALID_NUMBER_OPERATIONS = EnumSet.complementOf(EnumSet.of(Operation.DIV,
+            Operation.IDIV, Operation.MOD, Operation.POW, Operation.LOG, Operation.LOG10, Operation.SQRT,
+            Operation.TAN, Operation.ASIN, Operation.ACOS));
+
+    /** Capacity of a memory cell. */
+    private static final int MEMORY_CELL_SIZE = 64;
+
+    /** Capacity of a memory bank. */
+    private static final int MEMORY_BANK_SIZE = 512;
+
+    /** Redundant instruction to be removed, together with computations providing its value. */
+    private record Candidate(LogicResultInstruction instruction, Set<LogicInstruction> computations) {
+    }
+
+    // Program structure, valid for one iteration
+    private List<LogicInstruction> program = List.of();
+    private Map<LogicInstruction, Integer> indexes = Map.of();
+    private BasicBlock[] blockAt = new BasicBlock[0];
+    private Map<LogicVariable, List<LogicInstruction>> writers = Map.of();
+    private Map<LogicVariable, List<LogicInstruction>> readers = Map.of();
+
+    @Override
+    protected boolean optimizeProgram(OptimizationPhase phase, int pass, int iteration) {
+        program = instructionStream().toList();
+        indexes = new IdentityHashMap<>();
+        for (int i = 0; i < program.size(); i++) {
+            indexes.put(program.get(i), i);
+        }
+        writers = groupByVariable(true);
+        readers = groupByVariable(false);
+
+        List<BasicBlock> blocks = createBasicBlocks();
+        computeAvailableExpressions(blocks);
+        boolean modified = eliminate(findCandidates(blocks));
+        if (!modified && memoryModel != MemoryModel.VOLATILE) {
+            modified = removeOverwrittenWrites(blocks);
+        }
+
+        program = List.of();
+        indexes = Map.of();
+        blockAt = new BasicBlock[0];
+        writers = Map.of();
+        readers = Map.of();
+        return modified;
+    }
+
+    private Map<LogicVariable, List<LogicInstruction>> groupByVariable(boolean outputs) {
+        Map<LogicVariable, List<LogicInstruction>> result = new HashMap<>();
+        for (LogicInstruction ix : program) {
+            (outputs ? ix.outputArgumentsStream() : ix.inputArgumentsStream())
+                    .filter(LogicVariable.class::isInstance)
+                    .map(LogicVariable.class::cast)
+                    .distinct()
+                    .forEach(variable -> result.computeIfAbsent(variable, v -> new ArrayList<>()).add(ix));
+        }
+        return result;
+    }
+
+    //<editor-fold desc="Control flow analysis">
+    private List<BasicBlock> createBasicBlocks() {
+        // Labels used by other instructions than jumps may be reached from unknown places
+        Set<LogicLabel> escaped = new HashSet<>();
+        for (LogicInstruction ix : program) {
+            if (!(ix instanceof JumpInstruction || ix instanceof LabelInstruction)) {
+                ix.getArgs().stream().filter(LogicLabel.class::isInstance).forEach(a -> escaped.add((LogicLabel) a));
+            }
+        }
+
+        List<BasicBlock> blocks = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < program.size(); i++) {
+            LogicInstruction ix = program.get(i);
+            if (i > start && (ix instanceof LabelInstruction || ix instanceof GotoLabelInstruction)) {
+                blocks.add(new BasicBlock(start, i));
+                start = i;
+            }
+            if (TERMINATORS.contains(ix.getOpcode())) {
+                blocks.add(new BasicBlock(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < program.size()) {
+            blocks.add(new BasicBlock(start, program.size()));
+        }
+
+        blockAt = new BasicBlock[program.size()];
+        blocks.forEach(block -> Arrays.fill(blockAt, block.start, block.end, block));
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            LogicInstruction first = program.get(block.start);
+            LogicInstruction last = program.get(block.end - 1);
+            block.unknownEntry = block.start == 0 || first instanceof GotoLabelInstruction
+                    || first instanceof LabelInstruction label && escaped.contains(label.getLabel());
+
+            if (last instanceof JumpInstruction jump) {
+                int target = labeledInstructionIndex(jump.getTarget());
+                if (target < 0) {
+                    // Unknown jump target: give up on the entire program
+                    blocks.forEach(b -> b.unknownEntry = true);
+                    return blocks;
+                }
+                blockAt[target].predecessors.add(block);
+            }
+            boolean fallsThrough = !TERMINATORS.contains(last.getOpcode())
+                    || last instanceof JumpInstruction jump && jump.isConditional();
+            if (fallsThrough && i + 1 < blocks.size()) {
+                blocks.get(i + 1).predecessors.add(block);
+            }
+        }
+
+        return blocks;
+    }
+
+    private void computeAvailableExpressions(List<BasicBlock> blocks) {
+        boolean changed;
+        do {
+            changed = false;
+            for (BasicBlock block : blocks) {
+                Map<Expression, Set<LogicInstruction>> available = availableAtStart(block);
+                if (available != null) {
+                    for (int i = block.start; i < block.end; i++) {
+                        update(available, program.get(i));
+                    }
+                    if (!available.equals(block.available)) {
+                        block.available = available;
+                        changed = true;
+                    }
+                }
+            }
+        } while (changed);
+    }
+
+    // Returns null if the block wasn't reached by the analysis yet
+    private Map<Expression, Set<LogicInstruction>> availableAtStart(BasicBlock block) {
+        if (block.unknownEntry || block.predecessors.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Map<Expression, Set<LogicInstruction>> result = null;
+        for (BasicBlock predecessor : block.predecessors) {
+            if (predecessor.available == null) {
+                continue;
+            }
+
+            if (result == null) {
+                result = new HashMap<>(predecessor.available);
+            } else {
+                // Expressions available on all paths, computed by instructions from all paths
+                result.keySet().retainAll(predecessor.available.keySet());
+                result.replaceAll((expression, computations) -> union(computations,
+                        predecessor.available.get(expression)));
+            }
+        }
+        return result;
+    }
+
+    private Set<LogicInstruction> union(Set<LogicInstruction> first, Set<LogicInstruction> second) {
+        if (first.containsAll(second)) {
+            return first;
+        }
+        Set<LogicInstruction> union = Collections.newSetFromMap(new IdentityHashMap<>());
+        union.addAll(first);
+        union.addAll(second);
+        return union;
+    }
+
+    private void update(Map<Expression, Set<LogicInstruction>> available, LogicInstruction ix) {
+        if (ix instanceof CallingInstruction) {
+            available.clear();
+            return;
+        }
+
+        if (ix instanceof WriteInstruction write) {
+            available.keySet().removeIf(e -> e.opcode == Opcode.READ
+                    && (memoryModel != MemoryModel.RESTRICTED || e.arguments.get(0).equals(write.getMemory())));
+
+            // The written value can be read back from the memory
+            if (memoryModel != MemoryModel.VOLATILE && isStoredUnchanged(write.getValue())
+                    && isWithinCapacity(write.getMemory(), write.getIndex())) {
+                Set<LogicInstruction> computations = Collections.newSetFromMap(new IdentityHashMap<>());
+                computations.add(write);
+                available.put(new Expression(Opcode.READ, null, List.of(write.getMemory(), write.getIndex())),
+                        computations);
+            }
+        }
+
+        // Modifying an argument of the expression or the variable holding its value makes it unavailable
+        ix.outputArgumentsStream().filter(LogicVariable.class::isInstance).forEach(variable ->
+                available.entrySet().removeIf(entry -> entry.getKey().arguments.contains(variable)
+                        || entry.getValue().stream().anyMatch(c -> holderOf(c).equals(variable))));
+
+        Expression expression = expression(ix);
+        if (expression != null && !available.containsKey(expression)
+                && !expression.arguments.contains(resultOf(ix))) {
+            Set<LogicInstruction> computations = Collections.newSetFromMap(new IdentityHashMap<>());
+            computations.add(ix);
+            available.put(expression, computations);
+        }
+    }
+
+    private LogicVariable resultOf(LogicInstruction ix) {
+        return ((LogicResultInstruction) ix).getResult();
+    }
+
+    // The value of the expression computed by the instruction: the written value for write instructions
+    private LogicValue holderOf(LogicInstruction ix) {
+        return ix instanceof WriteInstruction write ? write.getValue() : resultOf(ix);
+    }
+
+    // Memory blocks store numbers: other values (objects, null, invalid numbers) are converted when written
+    private boolean isStoredUnchanged(LogicValue value) {
+        if (value instanceof LogicNumber) {
+            return true;
+        } else if (value instanceof LogicVariable variable && writers.containsKey(variable)) {
+            return writers.get(variable).stream().allMatch(ix -> ix instanceof ReadInstruction
+                    || ix instanceof OpInstruction op && VALID_NUMBER_OPERATIONS.contains(op.getOperation()));
+        } else {
+            return false;
+        }
+    }
+
+    // The capacity is only known for linked memory cells and banks, as names of linked blocks are derived from the
+    // block type. The index must be an integer constant, as the value of a variable might be out of bounds.
+    private boolean isWithinCapacity(LogicValue memory, LogicValue index) {
+        if (memory instanceof LogicVariable block && block.getType() == ArgumentType.BLOCK
+                && index instanceof LogicNumber number && number.isInteger()) {
+            int capacity = block.getName().startsWith("bank") ? MEMORY_BANK_SIZE
+                    : block.getName().startsWith("cell") ? MEMORY_CELL_SIZE : 0;
+            return number.getDoubleValue() >= 0 && number.getDoubleValue() < capacity;
+        } else {
+            return false;
+        }
+    }
+
+    private Expression expression(LogicInstruction ix) {
+        return switch (ix) {
+            case OpInstruction op && op.getOperation().isDeterministic() && !isVolatile(op) -> {
+                List<LogicArgument> arguments = op.hasSecondOperand()
+                        ? List.of(op.getX(), op.getY()) : List.of(op.getX());
+                if (op.getOperation().isCommutative() && op.getX().toMlog().compareTo(op.getY().toMlog()) > 0) {
+                    arguments = List.of(op.getY(), op.getX());
+                }
+                yield new Expression(Opcode.OP, op.getOperation(), arguments);
+            }
+            case PackColorInstruction pack && !isVolatile(pack) ->
+                    new Expression(Opcode.PACKCOLOR, null, pack.inputArgumentsStream().toList());
+            case SensorInstruction sensor && isConstantSensor(sensor) ->
+                    new Expression(Opcode.SENSOR, null, List.of(sensor.getObject(), sensor.getProperty()));
+            case ReadInstruction read && memoryModel != MemoryModel.VOLATILE ->
+                    new Expression(Opcode.READ, null, List.of(read.getMemory(), read.getIndex()));
+            default -> null;
+        };
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Elimination">
+    private List<Candidate> findCandidates(List<BasicBlock> blocks) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            Map<Expression, Set<LogicInstruction>> available = availableAtStart(block);
+            if (available == null) {
+                continue;
+            }
+
+            for (int i = block.start; i < block.end; i++) {
+                LogicInstruction ix = program.get(i);
+                Expression expression = expression(ix);
+                if (expression != null && available.containsKey(expression)) {
+                    candidates.add(new Candidate((LogicResultInstruction) ix, available.get(expression)));
+                }
+                update(available, ix);
+            }
+        }
+        return candidates;
+    }
+
+    private boolean eliminate(List<Candidate> candidates) {
+        // Instructions modified in this iteration
+        Set<LogicInstruction> modified = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<LogicInstruction, LogicValue> renamed = new IdentityHashMap<>();
+        Map<LogicInstruction, LogicInstruction> replacements = new IdentityHashMap<>();
+        List<LogicInstruction> removals = new ArrayList<>();
+
+        for (Candidate candidate : candidates) {
+            LogicResultInstruction ix = candidate.instruction;
+            List<LogicInstruction> uses = usesInBlock(ix);
+            if (uses == null || modified.contains(ix) || uses.stream().anyMatch(modified::contains)) {
+                continue;
+            }
+
+            Set<LogicValue> holders = candidate.computations.stream()
+                    .map(c -> renamed.getOrDefault(c, holderOf(c)))
+                    .collect(Collectors.toSet());
+
+            LogicInstruction lastUse = uses.isEmpty() ? ix : uses.get(uses.size() - 1);
+            LogicValue holder;
+            if (holders.size() == 1) {
+                holder = holders.iterator().next();
+                if (holder instanceof LogicVariable variable
+                        && isModifiedBefore(variable, candidate.computations, ix, lastUse)) {
+                    continue;
+                }
+            } else if (aggressive() && canRename(candidate.computations, modified)) {
+                // The variable is assigned by several instructions
+                LogicVariable common = instructionProcessor.nextOptimizerVariable();
+                for (LogicInstruction computation : candidate.computations) {
+                    LogicResultInstruction original = (LogicResultInstruction) computation;
+                    replacements.put(original, original.withResult(common));
+                    renamed.put(original, common);
+                    modified.add(original);
+                    for (LogicInstruction use : usesInBlock(original)) {
+                        replaceArgument(replacements, use, original.getResult(), common);
+                        modified.add(use);
+                    }
+                }
+                holder = common;
+            } else {
+                continue;
+            }
+
+            for (LogicInstruction use : uses) {
+                replaceArgument(replacements, use, ix.getResult(), holder);
+                modified.add(use);
+            }
+            removals.add(ix);
+            modified.add(ix);
+        }
+
+        replacements.forEach(this::replaceInstruction);
+        removals.forEach(this::removeInstruction);
+        return !removals.isEmpty();
+    }
+
+    // An instruction may read values of several eliminated instructions
+    private void replaceArgument(Map<LogicInstruction, LogicInstruction> replacements, LogicInstruction instruction,
+            LogicVariable variable, LogicValue holder) {
+        LogicInstruction current = replacements.getOrDefault(instruction, instruction);
+        replacements.put(instruction, replaceAllArgs(current, variable, holder));
+    }
+
+    // Returns the instructions reading the result of the instruction, or null if the result isn't a temporary
+    // variable assigned just by the instruction and read only further in the same basic block
+    private List<LogicInstruction> usesInBlock(LogicInstruction ix) {
+        LogicVariable result = resultOf(ix);
+        if (!result.isTemporaryVariable() || writers.getOrDefault(result, List.of()).size() != 1) {
+            return null;
+        }
+
+        int index = indexes.get(ix);
+        BasicBlock block = blockAt[index];
+        List<LogicInstruction> uses = readers.getOrDefault(result, List.of());
+        return uses.stream().allMatch(use -> indexes.get(use) > index && indexes.get(use) < block.end) ? uses : null;
+    }
+
+    // The holder might be also assigned by computations modified to use a common variable in this iteration
+    private boolean isModifiedBefore(LogicVariable holder, Set<LogicInstruction> computations, LogicInstruction from,
+            LogicInstruction to) {
+        int fromIndex = indexes.get(from);
+        int toIndex = indexes.get(to);
+        return Stream.concat(writers.getOrDefault(holder, List.of()).stream(), computations.stream())
+                .mapToInt(indexes::get)
+                .anyMatch(i -> i > fromIndex && i < toIndex);
+    }
+
+    // Computations can be modified to store the value into a common variable if none of them was modified yet,
+    // and none of them is executed between another computation and the uses of its value
+    private boolean canRename(Set<LogicInstruction> computations, Set<LogicInstruction> modified) {
+        for (LogicInstruction computation : computations) {
+            if (computation instanceof WriteInstruction) {
+                return false;
+            }
+            List<LogicInstruction> uses = usesInBlock(computation);
+            if (uses == null || modified.contains(computation) || uses.stream().anyMatch(modified::contains)) {
+                return false;
+            }
+
+            int start = indexes.get(computation);
+            int end = uses.isEmpty() ? start : indexes.get(uses.get(uses.size() - 1));
+            if (computations.stream().map(indexes::get).anyMatch(i -> i > start && i < end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean removeOverwrittenWrites(List<BasicBlock> blocks) {
+        List<LogicInstruction> removals = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            for (int i = block.start; i < block.end; i++) {
+                if (program.get(i) instanceof WriteInstruction write && isOverwritten(write, i + 1, block.end)) {
+                    removals.add(write);
+                }
+            }
+        }
+
+        removals.forEach(this::removeInstruction);
+        return !removals.isEmpty();
+    }
+
+    // The memory cell is written again before any instruction which might read it or change the cell address
+    private boolean isOverwritten(WriteInstruction write, int from, int to) {
+        for (int i = from; i < to; i++) {
+            LogicInstruction ix = program.get(i);
+            if (ix instanceof WriteInstruction other && other.getMemory().equals(write.getMemory())
+                    && other.getIndex().equals(write.getIndex())) {
+                return true;
+            }
+
+            boolean reads = ix instanceof ReadInstruction read
+                    && (memoryModel != MemoryModel.RESTRICTED || read.getMemory().equals(write.getMemory()));
+            if (reads || ix instanceof CallingInstruction || ix.outputArgumentsStream()
+                    .anyMatch(arg -> arg.equals(write.getMemory()) || arg.equals(write.getIndex()))) {
+                return false;
+            }
+        }
+        return false;
+    }
+    //</editor-fold>
+}
@@ -22,44 +22,20 @@ public class DataFlowOptimizer extends BaseOptimizer {
     static final boolean DEBUG = false;
 
     /**
-     * Stores possible replacement values to each input argument of a replaceable instruction.
+     * Information collected by the analysis. While a top-level context is being analyzed, the information
+     * is collected into the results of that context; otherwise it is collected into the results of the entire program.
      */
-    private final Map<LogicInstruction, Map<LogicVariable, LogicValue>> replacements = new IdentityHashMap<>();
+    AnalysisResults results = new AnalysisResults();
 
-    /**
-     * Set of instructions whose sole purpose is to set value to some variable. If the variable isn't subsequently
-     * read, the instruction is useless and can be removed.
-     */
-    final Set<LogicInstruction> defines = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Analyses of top-level contexts, reused while the contexts remain unmodified. */
+    private Map<AstContext, ContextAnalysis> contextAnalyses = new IdentityHashMap<>();
 
-    /**
-     * Set of variable producing instructions that were actually used in the program and need to be kept.
-     */
-    final Set<LogicInstruction> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Function summaries used by the analyses of top-level contexts. */
+    private FunctionSummaries analyzedSummaries;
 
-    /**
-     * When an END instruction is encountered, the optimizer accumulates current variable definitions here. Definitions
-     * from this structure are kept for uninitialized variables, so that any values written before the END instruction
-     * executions are preserved.
-     * <p/>
-     * Only main variables are stored here. Global variable writes are always preserved, and local variables
-     * are not expected to keep their value between function calls.
-     */
-    final Map<LogicVariable, List<LogicInstruction>> orphans = new HashMap<>();
-
-    /** Exceptions to the keep set */
-    private final Set<LogicInstruction> useless = Collections.newSetFromMap(new IdentityHashMap<>());
-
-    /**
-     * Set of potentially uninitialized variables. In at least one branch the variable can be read without
-     * being assigned a value first.
-     */
-    final Set<LogicVariable> uninitialized = new HashSet<>();
-
-    /**
-     * Instructions referencing each variable.
-     */
-    final Map<LogicVariable, List<LogicInstruction>> references = new HashMap<>();
+    /** Number of top-level contexts analyzed, and number of top-level contexts whose analysis was reused. */
+    private int analyzedContexts = 0;
+    private int reusedContexts = 0;
 
     /**
      * When a jump outside its context is encountered, current variable state is copied and assigned to the target
@@ -78,10 +54,18 @@ public class DataFlowOptimizer extends BaseOptimizer {
     /** Contains function prefix of functions that may directly or indirectly call the end() instruction. */
     private Set<String> functionEnds;
 
-    private final List<VariableStates> functionEndStates = new ArrayList<>();
-
     private final DataFlowVariableStates dataFlowVariableStates;
 
+    /**
+     * Program version after the last analysis which didn't modify the program. Repeating the analysis on an
+     * unchanged program would produce identical results, so it is skipped and the results of the previous
+     * analysis (including variable states stored in the optimization context) are kept. This only happens when
+     * the optimizers run since the last analysis didn't change anything, typically in the last iterated pass.
+     * Each applied speed optimization action modifies the program, so the analysis following it is never skipped
+     * as a whole; only the analyses of top-level contexts not affected by the modification are reused.
+     */
+    private int analyzedVersion = -1;
+
     public DataFlowOptimizer(OptimizationContext optimizationContext) {
         super(Optimization.DATA_FLOW_OPTIMIZATION, optimizationContext);
         dataFlowVariableStates = new DataFlowVariableStates(this);
@@ -89,15 +73,13 @@ public class DataFlowOptimizer extends BaseOptimizer {
 
     @Override
     protected boolean optimizeProgram(OptimizationPhase phase, int pass, int iteration) {
-        defines.clear();
-        keep.clear();
-        orphans.clear();
-        useless.clear();
-        uninitialized.clear();
-        replacements.clear();
-        references.clear();
+        if (optimizationContext.getProgramVersion() == analyzedVersion) {
+            debug(() -> "\n\n\n*** PASS " + pass + ", ITERATION " + iteration + ": program unchanged, skipping ***\n");
+            return false;
+        }
+
+        results = new AnalysisResults();
         labelStates.clear();
-        functionEndStates.clear();
 
         clearVariableStates();
 
@@ -105,23 +87,29 @@ public class DataFlowOptimizer extends BaseOptimizer {
 
         analyzeFunctionVariables();
 
-        getRootContext().children().forEach(this::processTopContext);
+        // Analyses of top-level contexts depend on the function summaries
+        FunctionSummaries summaries = new FunctionSummaries(functionReads, functionWrites, functionEnds);
+        Map<AstContext, ContextAnalysis> previousAnalyses = summaries.equals(analyzedSummaries) ? contextAnalyses : Map.of();
+        analyzedSummaries = summaries;
+        contextAnalyses = new IdentityHashMap<>();
+
+        getRootContext().children().forEach(context -> processTopContext(context, previousAnalyses.get(context)));
 
         // Keep defining instructions for orphaned, uninitialized variables.
-        orphans.entrySet().stream()
-                .filter(e -> uninitialized.contains(e.getKey()))
-                .forEachOrdered(e -> keep.addAll(e.getValue()));
+        results.orphans.entrySet().stream()
+                .filter(e -> results.uninitialized.contains(e.getKey()))
+                .forEachOrdered(e -> results.keep.addAll(e.getValue()));
 
         instructionStream()
-                .filter(ix -> replacements.containsKey(ix) || getVariableStates(ix) != null)
+                .filter(ix -> results.replacements.containsKey(ix) || getVariableStates(ix) != null)
                 .forEachOrdered(this::replaceInstruction);
 
-        for (LogicInstruction instruction : defines) {
+        for (LogicInstruction instruction : results.defines) {
             // TODO create mechanism to identify instructions without side effects
             //      Will be used by the DeadCodeEliminator too!
             switch (instruction.getOpcode()) {
                 case SET, OP, PACKCOLOR, READ -> {
-                    if (!keep.contains(instruction) || useless.contains(instruction)) {
+                    if (!results.keep.contains(instruction) || results.useless.contains(instruction)) {
                         int index = instructionIndex(instruction);
                         if (index >= 0) {
                             removeInstruction(index);
@@ -131,6 +119,7 @@ public class DataFlowOptimizer extends BaseOptimizer {
             }
         }
 
+        analyzedVersion = wasUpdated() ? -1 : optimizationContext.getProgramVersion();
         return wasUpdated();
     }
 
@@ -139,7 +128,7 @@ public class DataFlowOptimizer extends BaseOptimizer {
         if (index < 0) return;
 
         VariableStates variableStates = Objects.requireNonNull(getVariableStates(instruction));
-        Map<LogicVariable, LogicValue> valueReplacements = replacements.get(instruction);
+        Map<LogicVariable, LogicValue> valueReplacements = results.replacements.get(instruction);
         if (valueReplacements != null) {
             boolean updated = false;
             List<LogicArgument> arguments = new ArrayList<>(instruction.getArgs());
@@ -167,7 +156,7 @@ public class DataFlowOptimizer extends BaseOptimizer {
             if (canEliminate(set, set.getResult()) && set.getValue().isTemporaryVariable()) {
                 VariableStates.VariableValue val = variableStates.findVariableValue(set.getValue());
                 if (val != null && val.isExpression() && val.getInstruction() instanceof OpInstruction op) {
-                    if (op.inputArgumentsStream().anyMatch(set.getResult()::equals)) {
+                    if (op.inputArgumentsStream().anyMatch(set.getResult()::equals) && isUnchangedUntil(op, index)) {
                         OpInstruction newInstruction = op.withContext(set.getAstContext()).withResult(set.getResult());
                         OpInstruction normalized = normalize(newInstruction);
                         replaceInstruction(index, normalized, variableStates);
@@ -177,6 +166,23 @@ public class DataFlowOptimizer extends BaseOptimizer {
         }
     }
 
+    // The expression is evaluated anew at the index: none of its inputs may be modified in between (e.g. by
+    // assignments of function parameters, which are performed one by one)
+    private boolean isUnchangedUntil(LogicInstruction instruction, int index) {
+        int start = instructionIndex(instruction);
+        if (start < 0 || start >= index) {
+            return false;
+        }
+
+        Set<LogicArgument> inputs = instruction.inputArgumentsStream().collect(Collectors.toSet());
+        for (int i = start + 1; i < index; i++) {
+            if (instructionAt(i).outputArgumentsStream().anyMatch(inputs::contains)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void replaceInstruction(int index, LogicInstruction instruction, VariableStates variableStates) {
         replaceInstruction(index, instruction);
         instruction.inputArgumentsStream()
@@ -187,7 +193,7 @@ public class DataFlowOptimizer extends BaseOptimizer {
 
 
     private int countReferences(LogicVariable variable) {
-        return references.containsKey(variable) ? references.get(variable).size() : 0;
+        return results.references.containsKey(variable) ? results.references.get(variable).size() : 0;
     }
 
     private boolean canReplace(LogicInstruction original, LogicInstruction replacement) {
@@ -280,7 +286,7 @@ public class DataFlowOptimizer extends BaseOptimizer {
     public void generateFinalMessages() {
         super.generateFinalMessages();
 
-        String uninitializedList = uninitialized.stream()
+        String uninitializedList = results.uninitialized.stream()
                 .filter(v -> v.getType() != ArgumentType.BLOCK)
                 .filter(v -> !v.isGlobalVariable())
                 .map(LogicVariable::getFullName)
@@ -295,31 +301,45 @@ public class DataFlowOptimizer extends BaseOptimizer {
 
     private LogicIterator iterator;
 
-    private void processTopContext(AstContext context) {
-        VariableStates variableStates = dataFlowVariableStates.createVariableStates();
-        if (context.functionPrefix() != null) {
-            CallGraph.Function function = getCallGraph().getFunctionByPrefix(context.functionPrefix());
-            function.getLogicParameters().forEach(variableStates::markInitialized);
+    /**
+     * Processes a top-level context: the main program body or a function body. The analysis of a top-level context
+     * always starts with the same initial variable states and doesn't depend on code outside the context, except
+     * the function summaries. When neither the context nor the function summaries were modified since the previous
+     * run, the results of the previous analysis are reused instead of analyzing the context again.
+     *
+     * @param context top-level context to process
+     * @param previousAnalysis analysis of the context from the previous run, if the function summaries are unchanged
+     */
+    private void processTopContext(AstContext context, ContextAnalysis previousAnalysis) {
+        int contextVersion = optimizationContext.getContextVersion(context);
+        ContextAnalysis analysis;
+        if (previousAnalysis != null && previousAnalysis.contextVersion() == contextVersion) {
+            debug(() -> ">>> Reusing analysis of unmodified context " + context.id + ": " + context.hierarchy());
+            analysis = previousAnalysis;
+            analysis.results().variableStates.forEach(this::putVariableStates);
+            analysis.results().loopVariables.forEach(optimizationContext::storeLoopVariables);
+            reusedContexts++;
+        } else {
+            analysis = analyzeTopContext(context, contextVersion);
+            analyzedContexts++;
         }
 
-        iterator = createIteratorAtContext(context);
-        variableStates = processContext(context, context, variableStates, true);
-        iterator.close();
-        useless.addAll(variableStates.getUseless().values());
+        contextAnalyses.put(context, analysis);
+        results.addAll(analysis.results());
+        VariableStates variableStates = analysis.finalStates();
 
         if (context.functionPrefix() == null) {
             // This is the main program context.
             // Variables that were not initialized might be expected to keep their value
             // on program restart (when reaching an end of instruction list/end instruction).
             // Marking them as read now will preserve the last assigned value.
-            List.copyOf(uninitialized).forEach(variableStates::valueRead);
-            functionEndStates.forEach(vs -> List.copyOf(uninitialized).forEach(vs::valueRead));
+            List.copyOf(results.uninitialized).forEach(variableStates::valueRead);
+            results.functionEndStates.forEach(vs -> List.copyOf(results.uninitialized).forEach(vs::valueRead));
 
             if (!aggressive()) {
                 // On basic optimization level, provide some protection to main variables.
                 // Specifically, latest values assigned to main variables are preserved.
                 // Variables that were part of unrolled loops are NOT preserved, regardless of their other use.
-                VariableStates finalVariableStates = variableStates;
                 contextStream(context)
                         .flatMap(LogicInstruction::outputArgumentsStream)
                         .filter(LogicVariable.class::isInstance)
@@ -327,17 +347,55 @@ public class DataFlowOptimizer extends BaseOptimizer {
                         .filter(LogicVariable::isMainVariable)
                         .filter(variable -> !optimizationContext.isUnrolledVariable(variable))
                         .distinct()
-                        .forEachOrdered(v -> finalVariableStates.valueRead(v, null, false));
+                        .forEachOrdered(v -> variableStates.valueRead(v, null, false));
             }
         }
 
         variableStates.print("Final states after processing top level context");
+    }
+
+    private ContextAnalysis analyzeTopContext(AstContext context, int contextVersion) {
+        AnalysisResults programResults = results;
+        results = new AnalysisResults();
+
+        VariableStates variableStates = dataFlowVariableStates.createVariableStates();
+        if (context.functionPrefix() != null) {
+            CallGraph.Function function = getCallGraph().getFunctionByPrefix(context.functionPrefix());
+            function.getLogicParameters().forEach(variableStates::markInitialized);
+        }
+
+        iterator = createIteratorAtContext(context);
+        variableStates = processContext(context, context, variableStates, true);
+        iterator.close();
+        results.useless.addAll(variableStates.getUseless().values());
 
         if (!labelStates.isEmpty()) {
             throw new MindcodeInternalError("Unresolved variable states associated with labels "
                     + labelStates.keySet().stream().map(LogicLabel::toMlog).collect(Collectors.joining(", ")));
 
         }
+
+        ContextAnalysis analysis = new ContextAnalysis(contextVersion, results, variableStates);
+        results = programResults;
+        return analysis;
+    }
+
+    private void storeVariableStates(LogicInstruction instruction, VariableStates variableStates) {
+        results.variableStates.put(instruction, variableStates);
+        putVariableStates(instruction, variableStates);
+    }
+
+    private void storeLoopVariables(AstContext context, VariableStates variableStates) {
+        results.loopVariables.put(context, variableStates);
+        optimizationContext.storeLoopVariables(context, variableStates);
+    }
+
+    int getAnalyzedContexts() {
+        return analyzedContexts;
+    }
+
+    int getReusedContexts() {
+        return reusedContexts;
     }
 
     private VariableStates processContext(AstContext context, AstContext localContext, VariableStates variableStates,
@@ -392,10 +450,10 @@ public class DataFlowOptimizer extends BaseOptimizer {
                 // Evaluate the initial condition context fully for LoopOptimizer in isolation
                 VariableStates copy = processDefaultContext(children.get(start), context,
                         variableStates.isolatedCopy(), false);
-                optimizationContext.storeLoopVariables(context, copy);
+                storeLoopVariables(context, copy);
             } else {
                 // Store variable states right before entering the body for the first time
-                optimizationContext.storeLoopVariables(context, variableStates.isolatedCopy());
+                storeLoopVariables(context, variableStates.isolatedCopy());
             }
 
             // If there are two CONDITION contexts, the first one gets executed only once
@@ -685,7 +743,7 @@ public class DataFlowOptimizer extends BaseOptimizer {
         }
 
         if (modifyInstructions && !valueReplacements.isEmpty()) {
-            replacements.put(instruction, valueReplacements);
+            results.replacements.put(instruction, valueReplacements);
             if (DEBUG) {
                 System.out.println("    Detected the following possible value replacements for current instruction:");
                 valueReplacements.forEach((k, v) -> System.out.println("       " + k.toMlog() + " --> " + v.toMlog()));
@@ -711,13 +769,13 @@ public class DataFlowOptimizer extends BaseOptimizer {
                 String functionPrefix = instruction.getAstContext().functionPrefix();
                 variableStates.updateAfterFunctionCall(functionPrefix, instruction);
                 if (modifyInstructions && functionEnds.contains(functionPrefix)) {
-                    functionEndStates.add(variableStates.copy("function end handling"));
+                    results.functionEndStates.add(variableStates.copy("function end handling"));
                 }
             }
         }
 
         if (modifyInstructions) {
-            putVariableStates(instruction, variableStates.isolatedCopy());
+            storeVariableStates(instruction, variableStates.isolatedCopy());
         }
 
         return variableStates;
@@ -804,4 +862,88 @@ public class DataFlowOptimizer extends BaseOptimizer {
             return current == null ? initial : current;
         }
     }
+
+    /** Function summaries the analysis of each top-level context depends on. */
+    private record FunctionSummaries(Map<String, Set<LogicVariable>> reads, Map<String, Set<LogicVariable>> writes,
+            Set<String> ends) {}
+
+    /**
+     * Analysis of a top-level context, valid while the context keeps given version.
+     *
+     * @param contextVersion version of the context at the time of the analysis
+     * @param results information collected by the analysis
+     * @param finalStates variable states at the end of the context
+     */
+    private record ContextAnalysis(int contextVersion, AnalysisResults results, VariableStates finalStates) {}
+
+    /** Information collected by the data flow analysis of a top-level context or of the entire program. */
+    static class AnalysisResults {
+        /**
+         * Stores possible replacement values to each input argument of a replaceable instruction.
+         */
+        final Map<LogicInstruction, Map<LogicVariable, LogicValue>> replacements = new IdentityHashMap<>();
+
+        /**
+         * Set of instructions whose sole purpose is to set value to some variable. If the variable isn't subsequently
+         * read, the instruction is useless and can be removed.
+         */
+        final Set<LogicInstruction> defines = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Set of variable producing instructions that were actually used in the program and need to be kept.
+         */
+        final Set<LogicInstruction> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * When an END instruction is encountered, the optimizer accumulates current variable definitions here.
+         * Definitions from this structure are kept for uninitialized variables, so that any values written before
+         * the END instruction executions are preserved.
+         * <p/>
+         * Only main variables are stored here. Global variable writes are always preserved, and local variables
+         * are not expected to keep their value between function calls.
+         */
+        final Map<LogicVariable, List<LogicInstruction>> orphans = new HashMap<>();
+
+        /** Exceptions to the keep set */
+        final Set<LogicInstruction> useless = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        /**
+         * Set of potentially uninitialized variables. In at least one branch the variable can be read without
+         * being assigned a value first.
+         */
+        final Set<LogicVariable> uninitialized = new HashSet<>();
+
+        /**
+         * Instructions referencing each variable.
+         */
+        final Map<LogicVariable, List<LogicInstruction>> references = new HashMap<>();
+
+        /** Variable states at calls of functions which may call the end() instruction. */
+        final List<VariableStates> functionEndStates = new ArrayList<>();
+
+        /**
+         * Variable states stored for instructions and loops of the analyzed context. These are passed to the
+         * optimization context as they're created, and again when the analysis is reused.
+         */
+        final Map<LogicInstruction, VariableStates> variableStates = new IdentityHashMap<>();
+        final Map<AstContext, VariableStates> loopVariables = new HashMap<>();
+
+        /**
+         * Adds information collected by another analysis to this one. Stored variable states aren't merged.
+         *
+         * @param other the other analysis
+         */
+        void addAll(AnalysisResults other) {
+            replacements.putAll(other.replacements);
+            defines.addAll(other.defines);
+            keep.addAll(other.keep);
+            other.orphans.forEach((variable, instructions) ->
+                    orphans.computeIfAbsent(variable, v -> new ArrayList<>()).addAll(instructions));
+            useless.addAll(other.useless);
+            uninitialized.addAll(other.uninitialized);
+            other.references.forEach((variable, instructions) ->
+                    references.computeIfAbsent(variable, v -> new ArrayList<>()).addAll(instructions));
+            functionEndStates.addAll(other.functionEndStates);
+        }
+    }
 }
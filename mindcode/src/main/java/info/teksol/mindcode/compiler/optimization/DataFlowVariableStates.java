@@ -7,6 +7,8 @@ import info.teksol.mindcode.logic.ArgumentType;
 import info.teksol.mindcode.logic.LogicArgument;
 import info.teksol.mindcode.logic.LogicValue;
 import info.teksol.mindcode.logic.LogicVariable;
+import info.teksol.util.PersistentMap;
+import info.teksol.util.PersistentSet;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,11 +35,18 @@ public class DataFlowVariableStates {
 
     private final AtomicInteger counter = new AtomicInteger();
 
+    /** Provides insertion order of variable values, shared by all VariableStates instances. */
+    private int valueOrder;
+
     /**
      * Describes known states of variables. Instances are primarily created by analysing code blocks, and then
      * merged when two or more code branches merge. Merging operations may produce variables with multiple definitions.
      * When merging two instances prescribing different values/expressions to the same variable, the values/expressions
      * are purged.
+     * <p>
+     * The maps and sets are persistent: copying an instance only copies references to them, and the copies share
+     * all entries not modified afterwards. Merging two instances derived from a common ancestor therefore only
+     * visits the variables which were modified by one of them.
      */
     class VariableStates {
         private final int id;
@@ -46,25 +55,25 @@ public class DataFlowVariableStates {
          *  Maps variables to their known values, which might be a constant represented by a literal,
          *  or an expression represented by an instruction.
          */
-        private final Map<LogicVariable, VariableValue> values;
+        private PersistentMap<LogicVariable, VariableValue> values;
 
         /**
          * Maps variables to a list of instructions defining its current value (potentially more than one
-         * due to branching).
+         * due to branching). The lists are never modified.
          */
-        private final Map<LogicVariable, List<LogicInstruction>> definitions;
+        private PersistentMap<LogicVariable, List<LogicInstruction>> definitions;
 
         /** Identifies instructions that do not have to be kept, because they set identical value. */
-        private final Map<LogicVariable, LogicInstruction> useless;
+        private PersistentMap<LogicVariable, LogicInstruction> useless;
 
         /** Maps variables to prior variables containing the same expression. */
-        private final Map<LogicVariable, LogicVariable> equivalences;
+        private PersistentMap<LogicVariable, LogicVariable> equivalences;
 
         /** Set of initialized variables. */
-        private final Set<LogicVariable> initialized;
+        private PersistentSet<LogicVariable> initialized;
 
         /** Set of variables stored on stack. */
-        private final Set<LogicVariable> stored;
+        private PersistentSet<LogicVariable> stored;
 
         /**
          * Indicates the program flow of this instance is terminated: an unconditional jump outside local context
@@ -77,32 +86,27 @@ public class DataFlowVariableStates {
 
         public VariableStates() {
             id = counter.incrementAndGet();
-            values = new LinkedHashMap<>();
-            definitions = new HashMap<>();
-            equivalences = new HashMap<>();
-            useless = new HashMap<>();
-            initialized = new HashSet<>();
-            stored = new HashSet<>();
+            values = PersistentMap.empty();
+            definitions = PersistentMap.empty();
+            equivalences = PersistentMap.empty();
+            useless = PersistentMap.empty();
+            initialized = PersistentSet.empty();
+            stored = PersistentSet.empty();
         }
 
         private VariableStates(VariableStates other, int id, boolean isolated) {
             this.id = id;
             this.isolated = isolated;
-            values = new LinkedHashMap<>(other.values);
-            definitions = deepCopy(other.definitions);
-            equivalences = new HashMap<>(other.equivalences);
-            useless = new HashMap<>(other.useless);
-            initialized = new HashSet<>(other.initialized);
-            stored = new HashSet<>(other.stored);
+            values = other.values;
+            definitions = other.definitions;
+            equivalences = other.equivalences;
+            useless = other.useless;
+            initialized = other.initialized;
+            stored = other.stored;
             dead = other.dead;
         }
 
-        private static Map<LogicVariable, List<LogicInstruction>> deepCopy(Map<LogicVariable, List<LogicInstruction>> original) {
-            return original.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
-                    e -> new ArrayList<>(e.getValue())));
-        }
-
-        public Map<LogicVariable, LogicInstruction> getUseless() {
+        public PersistentMap<LogicVariable, LogicInstruction> getUseless() {
             return useless;
         }
 
@@ -132,10 +136,11 @@ public class DataFlowVariableStates {
          */
         public VariableStates setDead(boolean markRead) {
             if (markRead && !isolated) {
-                definitions.entrySet().stream()
-                        .filter(e -> e.getKey().isMainVariable())
-                        .forEachOrdered(e -> optimizer.orphans.computeIfAbsent(e.getKey(),
-                                l -> new ArrayList<>()).addAll(e.getValue()));
+                definitions.forEach((variable, instructions) -> {
+                    if (variable.isMainVariable()) {
+                        optimizer.results.orphans.computeIfAbsent(variable, l -> new ArrayList<>()).addAll(instructions);
+                    }
+                });
             }
             dead = true;
             return this;
@@ -155,28 +160,32 @@ public class DataFlowVariableStates {
                 if (DataFlowOptimizer.DEBUG) {
                     values.values().stream().filter(exp -> exp.dependsOn(variable))
                             .forEach(exp -> System.out.println("   Invalidating expression: " + exp.variable.toMlog() + ": " + exp.instruction));
-                    equivalences.entrySet().stream().filter(e -> e.getValue().equals(variable))
-                            .forEach(e -> System.out.println("   Invalidating equivalence: " + e.getKey().toMlog() + ": " + e.getValue().toMlog()));
+                    equivalences.forEach((k, v) -> {
+                        if (v.equals(variable)) {
+                            System.out.println("   Invalidating equivalence: " + k.toMlog() + ": " + v.toMlog());
+                        }
+                    });
                 }
-                values.values().removeIf(exp -> exp.dependsOn(variable));
-                equivalences.keySet().removeIf(var -> var.equals(variable));
-                equivalences.values().removeIf(var -> var.equals(variable));
+                values = values.removeIf((var, exp) -> exp.dependsOn(variable));
+                equivalences = equivalences.removeIf((var, eq) -> var.equals(variable) || eq.equals(variable));
             }
         }
 
         public VariableStates pushVariable(LogicVariable variable) {
             debug(() -> "Pushing variable " + variable);
-            if (!stored.add(variable)) {
+            if (stored.contains(variable)) {
                 throw new MindcodeInternalError("Push called twice on " + variable.toMlog());
             }
+            stored = stored.add(variable);
             return this;
         }
 
         public VariableStates popVariable(LogicVariable variable) {
             debug(() -> "Popping variable " + variable);
-            if (!stored.remove(variable)) {
+            if (!stored.contains(variable)) {
                 throw new MindcodeInternalError("Pop without push on " + variable.toMlog());
             }
+            stored = stored.remove(variable);
             return this;
         }
 
@@ -193,26 +202,26 @@ public class DataFlowVariableStates {
                 // Only store the variable's value if it can be eliminated
                 // Otherwise the value itself could be used - we do not want this for global variables.
                 if (value == null) {
-                    values.remove(variable);
+                    values = values.remove(variable);
                 } else if (values.get(variable) != null && value.equals(values.get(variable).constantValue)) {
                     AstSubcontextType type = instruction.getAstContext().subcontextType();
                     if (type == PARAMETERS || type == RECURSIVE_CALL) {
                         // A function argument is being set to the same value it already has. Skip it.
-                        useless.put(variable, instruction);
+                        useless = useless.put(variable, instruction);
                     }
                 } else {
-                    values.put(variable, new VariableValue(variable, value));
+                    putValue(new VariableValue(variable, value));
                 }
             } else if (!isolated) {
                 // Variable cannot be eliminated --> its instruction needs to be kept
-                optimizer.keep.add(instruction);      // Ensure the instruction is kept
+                optimizer.results.keep.add(instruction);      // Ensure the instruction is kept
             }
 
             if (!isolated) {
-                optimizer.defines.add(instruction);
+                optimizer.results.defines.add(instruction);
             }
-            initialized.add(variable);
-            definitions.put(variable, List.of(instruction));
+            initialized = initialized.add(variable);
+            definitions = definitions.put(variable, List.of(instruction));
 
             // Update expressions
             invalidateVariable(variable);
@@ -220,33 +229,45 @@ public class DataFlowVariableStates {
             // Handle expressions only if the value is not exactly known
             if (value == null) {
                 // Find the oldest equivalent expression
+                VariableValue oldest = null;
                 for (VariableValue expression : values.values()) {
-                    if (expression.isExpression() && expression.isEqual(instruction)) {
-                        if (DataFlowOptimizer.DEBUG) {
-                            System.out.println("    Adding inferred equivalence " + variable.toMlog() + " == " + expression.variable.toMlog());
-                        }
-                        equivalences.put(variable, expression.variable);
-                        break;
+                    if (expression.isExpression() && (oldest == null || expression.order < oldest.order)
+                            && expression.isEqual(instruction)) {
+                        oldest = expression;
+                    }
+                }
+
+                if (oldest != null) {
+                    if (DataFlowOptimizer.DEBUG) {
+                        System.out.println("    Adding inferred equivalence " + variable.toMlog() + " == " + oldest.variable.toMlog());
                     }
+                    equivalences = equivalences.put(variable, oldest.variable);
                 }
 
                 if (instruction instanceof SetInstruction set) {
                     if (set.getResult() == variable && set.getValue() instanceof LogicVariable variable2) {
                         debug(() -> "    Adding direct equivalence " + variable.toMlog() + " == " + variable2.toMlog());
-                        equivalences.put(variable, variable2);
+                        equivalences = equivalences.put(variable, variable2);
                     }
                 } else if (instruction.getOutputs() == 1) {
                     VariableValue expression = new VariableValue(variable, instruction);
                     // Do not reuse expressions with self-modifying variables (they effectively invalidate themselves)
                     if (!expression.dependsOn(variable)) {
-                        values.put(variable, expression);
+                        putValue(expression);
                     }
                 }
             }
         }
 
+        // A new value of a variable keeps the position of the one it replaces, like in an insertion-ordered map
+        private void putValue(VariableValue value) {
+            VariableValue existing = values.get(value.variable);
+            value.order = existing != null ? existing.order : ++valueOrder;
+            values = values.put(value.variable, value);
+        }
+
         public void markInitialized(LogicVariable variable) {
-            initialized.add(variable);
+            initialized = initialized.add(variable);
         }
 
         public void valueReset(LogicVariable variable) {
@@ -254,7 +275,7 @@ public class DataFlowVariableStates {
                 debug(() -> "Variable " + variable + " not reset after function call, because it is stored on stack.");
             } else {
                 debug(() -> "Value reset: " + variable);
-                values.remove(variable);
+                values = values.remove(variable);
                 invalidateVariable(variable);
             }
         }
@@ -262,7 +283,7 @@ public class DataFlowVariableStates {
         public void updateAfterFunctionCall(String localPrefix, LogicInstruction instruction) {
             optimizer.functionReads.get(localPrefix).forEach(variable -> valueRead(variable, instruction, false));
             optimizer.functionWrites.get(localPrefix).forEach(this::valueReset);
-            initialized.add(LogicVariable.fnRetVal(localPrefix));
+            initialized = initialized.add(LogicVariable.fnRetVal(localPrefix));
         }
 
         public VariableValue findVariableValue(LogicValue variable) {
@@ -282,7 +303,7 @@ public class DataFlowVariableStates {
 
             if (markUninitialized && !initialized.contains(variable) && !isolated && variable.getType() != ArgumentType.BLOCK) {
                 debug(() -> "*** Detected uninitialized read of " + variable.toMlog());
-                optimizer.uninitialized.add(variable);
+                optimizer.results.uninitialized.add(variable);
             }
 
             if (definitions.containsKey(variable)) {
@@ -291,12 +312,12 @@ public class DataFlowVariableStates {
                 }
                 // Variable value was read, keep all instructions that define its value
                 if (!isolated) {
-                    optimizer.keep.addAll(definitions.get(variable));
+                    optimizer.results.keep.addAll(definitions.get(variable));
                 }
             }
 
             if (instruction != null && !isolated) {
-                optimizer.references.computeIfAbsent(variable, v -> new ArrayList<>()).add(instruction);
+                optimizer.results.references.computeIfAbsent(variable, v -> new ArrayList<>()).add(instruction);
             }
 
             VariableValue variableValue = values.get(variable);
@@ -305,7 +326,7 @@ public class DataFlowVariableStates {
 
         public void protectVariable(LogicVariable variable) {
             if (definitions.containsKey(variable)) {
-                optimizer.keep.addAll(definitions.get(variable));
+                optimizer.results.keep.addAll(definitions.get(variable));
             }
         }
 
@@ -335,69 +356,64 @@ public class DataFlowVariableStates {
                 return other;
             }
 
-            merge(definitions,other.definitions, true);
+            mergeDefinitions(other.definitions);
 
             // Only keep values that are the same in both instances
-            values.keySet().retainAll(other.values.keySet());
-            for (LogicVariable variable : other.values.keySet()) {
-                if (!Objects.equals(values.get(variable), other.values.get(variable))) {
-                    values.remove(variable);
+            values.forEachDifference(other.values, (variable, value, otherValue) -> {
+                if (!Objects.equals(value, otherValue)) {
+                    values = values.remove(variable);
                 }
-            }
+            });
 
             // Only keep equivalences that are the same in both instances
-            equivalences.keySet().retainAll(other.equivalences.keySet());
-            for (LogicVariable variable : other.equivalences.keySet()) {
-                if (!Objects.equals(equivalences.get(variable), other.equivalences.get(variable))) {
-                    equivalences.remove(variable);
+            equivalences.forEachDifference(other.equivalences, (variable, equivalent, otherEquivalent) -> {
+                if (!Objects.equals(equivalent, otherEquivalent)) {
+                    equivalences = equivalences.remove(variable);
                 }
-            }
+            });
 
             // Variable is initialized only if it was initialized by both code paths
-            initialized.retainAll(other.initialized);
+            initialized = initialized.retainAll(other.initialized);
 
-            useless.keySet().retainAll(other.useless.keySet());
-            for (LogicVariable variable : other.useless.keySet()) {
+            useless.forEachDifference(other.useless, (variable, instruction, otherInstruction) -> {
+                if (otherInstruction == null) {
+                    useless = useless.remove(variable);
+                }
+            });
+            other.useless.forEach((variable, instruction) -> {
                 if (values.get(variable) != other.values.get(variable)) {
-                    values.remove(variable);
+                    values = values.remove(variable);
                 }
-            }
+            });
 
             print("  result:");
 
             return this;
         }
 
-        private void merge(Map<LogicVariable, List<LogicInstruction>> map1, Map<LogicVariable, List<LogicInstruction>> map2,
-                boolean invalidateVariables) {
-            for (LogicVariable variable : map2.keySet()) {
-                if (map1.containsKey(variable)) {
-                    List<LogicInstruction> current = map1.get(variable);
-                    List<LogicInstruction> theOther = map2.get(variable);
-                    if (!sameInstances(current, theOther)) {
-                        // Merge the two lists
-                        if (current.size() == 1 && theOther.size() == 1) {
-                            ArrayList<LogicInstruction> union = new ArrayList<>();
-                            union.add(current.get(0));
-                            union.add(theOther.get(0));
-                            map1.put(variable, union);
-                        } else {
-                            Set<LogicInstruction> union = createIdentitySet(current.size() + theOther.size());
-                            union.addAll(current);
-                            union.addAll(theOther);
-                            map1.put(variable, new ArrayList<>(union));
-                        }
-                        if (invalidateVariables) {
-                            invalidateVariable(variable);
-                        }
-                    }
-                } else {
-                    map1.put(variable, map2.get(variable));
-                    if (invalidateVariables) {
-                        invalidateVariable(variable);
+        // Only variables whose definitions differ between the two instances are visited
+        private void mergeDefinitions(PersistentMap<LogicVariable, List<LogicInstruction>> other) {
+            definitions.forEachDifference(other, (variable, current, theOther) -> {
+                if (theOther == null) {
+                    return;
+                }
+
+                if (current == null) {
+                    definitions = definitions.put(variable, theOther);
+                    invalidateVariable(variable);
+                } else if (!sameInstances(current, theOther)) {
+                    // Merge the two lists
+                    if (current.size() == 1 && theOther.size() == 1) {
+                        definitions = definitions.put(variable, List.of(current.get(0), theOther.get(0)));
+                    } else {
+                        Set<LogicInstruction> union = createIdentitySet(current.size() + theOther.size());
+                        union.addAll(current);
+                        union.addAll(theOther);
+                        definitions = definitions.put(variable, List.copyOf(union));
                     }
+                    invalidateVariable(variable);
                 }
-            }
+            });
         }
 
         private <E> boolean sameInstances(List<E> list1, List<E> list2) {
@@ -418,7 +434,8 @@ public class DataFlowVariableStates {
             if (DataFlowOptimizer.DEBUG) {
                 System.out.println(title);
                 System.out.println("    VariableStates instance #" + id + (dead ? " DEAD!" : ""));
-                values.values().forEach(v -> System.out.println("    " + v));
+                values.values().stream().sorted(Comparator.comparingInt(v -> v.order))
+                        .forEach(v -> System.out.println("    " + v));
                 definitions.forEach((k, v) -> {
                     System.out.println("    Definitions of " + k.toMlog());
                     v.forEach(ix -> System.out.println("      " + optimizer.instructionIndex(ix)
@@ -439,6 +456,9 @@ public class DataFlowVariableStates {
             /** The instruction producing the expression. */
             private final LogicInstruction instruction;
 
+            /** Position of the value in the order of insertion into the values map. */
+            private int order;
+
             public VariableValue(LogicVariable variable, LogicValue constantValue) {
                 if (!constantValue.isConstant()) {
                     throw new IllegalArgumentException("Non-constant value " + constantValue);
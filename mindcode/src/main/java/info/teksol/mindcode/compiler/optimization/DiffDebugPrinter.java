@@ -5,11 +5,19 @@ import info.teksol.mindcode.compiler.instructions.NoOpInstruction;
 import info.teksol.util.CollectionUtils;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Formats and prints a simple diff between various versions of the program produced by individual optimizers.
+ * <p>
+ * Only the first version of the program is stored in full. Each subsequent version is stored as a list of edits
+ * transforming the previous version into it, and the versions are reconstructed one by one when printing the diffs.
+ * The memory needed to hold the history therefore grows with the number of modifications made by optimizers,
+ * not with the size of the program.
  */
 public class DiffDebugPrinter implements DebugPrinter {
     protected static final String ADD_PREFIX          = "+";
@@ -20,6 +28,12 @@ public class DiffDebugPrinter implements DebugPrinter {
     private final List<ProgramVersion> versions = new ArrayList<>();
     private final int level;
 
+    /** The first registered version of the program. */
+    private List<LogicInstruction> base;
+
+    /** The last registered version of the program, used to compute edits of the next one. */
+    private List<LogicInstruction> last;
+
     /**
      * Creates an instance producing desired level of detail in its output. Possible levels are:
      * <ul>
@@ -35,7 +49,76 @@ public class DiffDebugPrinter implements DebugPrinter {
 
     @Override
     public void registerIteration(Optimizer optimizer, String title, List<LogicInstruction> program) {
-        versions.add(new ProgramVersion(optimizer, title, List.copyOf(program)));
+        List<LogicInstruction> current = List.copyOf(program);
+        if (base == null) {
+            base = current;
+            versions.add(new ProgramVersion(optimizer, title, List.of()));
+        } else {
+            versions.add(new ProgramVersion(optimizer, title, computeEdits(last, current)));
+        }
+        last = current;
+    }
+
+    /**
+     * Computes edits transforming one version of the program into another. Instructions not touched by optimizers
+     * are represented by the same instance in both versions, therefore instructions are compared by identity.
+     * The edits are listed in the order of their position in the original version.
+     */
+    static List<Edit> computeEdits(List<LogicInstruction> before, List<LogicInstruction> after) {
+        Map<LogicInstruction, Integer> positions = new IdentityHashMap<>(before.size());
+        for (int i = 0; i < before.size(); i++) {
+            positions.put(before.get(i), i);
+        }
+
+        List<Edit> edits = new ArrayList<>();
+        int index1 = 0;
+        int index2 = 0;
+        while (index1 < before.size() || index2 < after.size()) {
+            if (index1 < before.size() && index2 < after.size() && before.get(index1) == after.get(index2)) {
+                index1++;
+                index2++;
+                continue;
+            }
+
+            // Instructions are inserted until an instruction following in the original version is found;
+            // original instructions preceding it are deleted.
+            int start = index1;
+            List<LogicInstruction> inserted = new ArrayList<>();
+            while (true) {
+                if (index2 == after.size()) {
+                    index1 = before.size();
+                    break;
+                }
+                Integer position = positions.get(after.get(index2));
+                if (position != null && position >= index1) {
+                    index1 = position;
+                    break;
+                }
+                inserted.add(after.get(index2++));
+            }
+            edits.add(new Edit(start, index1 - start, List.copyOf(inserted)));
+        }
+
+        return List.copyOf(edits);
+    }
+
+    /**
+     * Applies edits to a version of the program, producing a new list.
+     */
+    static List<LogicInstruction> applyEdits(List<LogicInstruction> program, List<Edit> edits) {
+        if (edits.isEmpty()) {
+            return program;
+        }
+
+        List<LogicInstruction> result = new ArrayList<>(program.size());
+        int index = 0;
+        for (Edit edit : edits) {
+            result.addAll(program.subList(index, edit.start()));
+            result.addAll(edit.inserted());
+            index = edit.start() + edit.deleted();
+        }
+        result.addAll(program.subList(index, program.size()));
+        return result;
     }
 
     public int getDiffMargin() {
@@ -48,9 +131,32 @@ public class DiffDebugPrinter implements DebugPrinter {
 
     @Override
     public void print(Consumer<String> messageConsumer) {
-        List<ProgramVersion> sel = selectProgramVersions();
-        for (int i = 1; i < sel.size(); i++) {
-            printDiff(messageConsumer, sel.get(i).getTitle(), sel.get(i - 1).getProgram(), sel.get(i).getProgram());
+        printDiffs(messageConsumer, selectProgramVersions(), version -> true);
+    }
+
+    /**
+     * Prints diffs between consecutive versions of the selection. Versions of the program are reconstructed one
+     * at a time, so that at most two of them are kept in memory.
+     *
+     * @param messageConsumer recipient of the diffs
+     * @param selection versions to compare, in the order of registration
+     * @param filter selects versions whose diff to the preceding version of the selection is printed
+     */
+    protected void printDiffs(Consumer<String> messageConsumer, List<ProgramVersion> selection,
+            Predicate<ProgramVersion> filter) {
+        List<LogicInstruction> current = base;
+        List<LogicInstruction> previous = null;
+        int next = 0;
+        for (int i = 0; i < versions.size() && next < selection.size(); i++) {
+            ProgramVersion version = versions.get(i);
+            current = applyEdits(current, version.getEdits());
+            if (version == selection.get(next)) {
+                if (next > 0 && filter.test(version)) {
+                    printDiff(messageConsumer, version.getTitle(), previous, current);
+                }
+                previous = current;
+                next++;
+            }
         }
     }
 
@@ -188,24 +294,34 @@ public class DiffDebugPrinter implements DebugPrinter {
         return str.toString();
     }
 
-    // Class holding program version and information about the optimizer and iteration which produced it.
+    /**
+     * Replaces a run of instructions of the previous program version.
+     *
+     * @param start position of the first replaced instruction in the previous version
+     * @param deleted number of instructions removed from the previous version
+     * @param inserted instructions inserted in place of the removed ones
+     */
+    record Edit(int start, int deleted, List<LogicInstruction> inserted) {}
+
+    // Class holding edits producing a program version and information about the optimizer and iteration which
+    // produced it.
     protected static class ProgramVersion {
         private final Class<? extends Optimizer> optimizerClass;
-        private final List<LogicInstruction> program;
+        private final List<Edit> edits;
         private String title;
 
-        public ProgramVersion(Optimizer optimizer, String title, List<LogicInstruction> program) {
+        public ProgramVersion(Optimizer optimizer, String title, List<Edit> edits) {
             this.optimizerClass = optimizer == null ? null : optimizer.getClass();
             this.title = title;
-            this.program = program;
+            this.edits = edits;
         }
 
         public Class<? extends Optimizer> getOptimizerClass() {
             return optimizerClass;
         }
 
-        List<LogicInstruction> getProgram() {
-            return program;
+        List<Edit> getEdits() {
+            return edits;
         }
 
         void setTitle(String title) {
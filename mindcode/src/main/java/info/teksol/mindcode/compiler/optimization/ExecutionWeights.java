@@ -0,0 +1,198 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.MindcodeException;
+import info.teksol.mindcode.ast.AstNode;
+import info.teksol.mindcode.compiler.instructions.AstContext;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+
+import java.util.*;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Execution counts of AST contexts measured by running a compiled program, used for profile-guided optimization.
+ * When provided to the compiler through the {@link info.teksol.mindcode.compiler.CompilerProfile}, the measured
+ * counts replace the estimated weights of AST contexts, so that the speed optimizations are preferably applied
+ * to the code which actually gets executed most often.
+ * <p>
+ * Contexts are identified by the source position and type of their AST node and by their context and subcontext
+ * type, so that the counts gathered from one compilation can be applied to another compilation of the same source
+ * code, even when using different optimization settings. Counts of contexts sharing an identification (e.g. copies
+ * of a function body created by inlining) are added together. Contexts not present in the profile keep their
+ * estimated weights.
+ */
+public class ExecutionWeights {
+    private static final String HEADER = "# Mindcode execution profile";
+    private static final String RUNS = "runs";
+
+    private final Map<String, Long> counts;
+    private long runs;
+
+    private ExecutionWeights(Map<String, Long> counts, long runs) {
+        this.counts = counts;
+        this.runs = runs;
+    }
+
+    public ExecutionWeights() {
+        this(new TreeMap<>(), 0);
+    }
+
+    /**
+     * Gathers execution counts of AST contexts from a single run of a program. The number of executions of a context
+     * is the number of executions of the first instruction belonging to the context or any of its descendants.
+     *
+     * @param program program that was run, with resolved labels
+     * @param executions provides the number of executions of an instruction at given index
+     * @return execution weights of the program
+     */
+    public static ExecutionWeights collect(List<LogicInstruction> program, IntToLongFunction executions) {
+        Map<AstContext, Long> entries = new IdentityHashMap<>();
+        for (int index = 0; index < program.size(); index++) {
+            long count = executions.applyAsLong(index);
+            for (AstContext context = program.get(index).getAstContext(); context != null; context = context.parent()) {
+                if (entries.putIfAbsent(context, count) != null) {
+                    break;
+                }
+            }
+        }
+
+        ExecutionWeights weights = new ExecutionWeights(new TreeMap<>(), 1);
+        entries.forEach((context, count) -> weights.counts.merge(key(context), count, Long::sum));
+        return weights;
+    }
+
+    /**
+     * Parses execution weights from their textual representation created by {@link #encode()}.
+     *
+     * @param text textual representation of execution weights
+     * @return parsed execution weights
+     */
+    public static ExecutionWeights parse(String text) {
+        ExecutionWeights weights = new ExecutionWeights();
+        for (String line : text.lines().map(String::trim).toList()) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            int separator = line.indexOf(' ');
+            try {
+                if (separator < 0) {
+                    throw new NumberFormatException();
+                } else if (line.substring(0, separator).equals(RUNS)) {
+                    weights.runs += Long.parseLong(line.substring(separator + 1).trim());
+                } else {
+                    weights.counts.merge(line.substring(separator + 1).trim(),
+                            Long.parseLong(line.substring(0, separator)), Long::sum);
+                }
+            } catch (NumberFormatException e) {
+                throw new MindcodeException("Invalid execution profile entry '" + line + "'.");
+            }
+        }
+
+        if (weights.runs <= 0) {
+            throw new MindcodeException("Execution profile doesn't contain any runs.");
+        }
+        return weights;
+    }
+
+    /**
+     * Adds counts gathered from other runs to this instance.
+     *
+     * @param other execution weights to add
+     * @return this instance
+     */
+    public ExecutionWeights merge(ExecutionWeights other) {
+        other.counts.forEach((key, count) -> counts.merge(key, count, Long::sum));
+        runs += other.runs;
+        return this;
+    }
+
+    /**
+     * @return number of program runs the counts were gathered from
+     */
+    public long getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return number of distinct contexts in the profile
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    /**
+     * Provides the average number of executions of given context per program run.
+     *
+     * @param context context to inspect
+     * @return the average number of executions, or null if the context isn't part of the profile
+     */
+    public Double getExecutions(AstContext context) {
+        Long count = counts.get(key(context));
+        return count == null || runs == 0 ? null : (double) count / runs;
+    }
+
+    /**
+     * Updates weights of the context tree so that the total weight of each profiled context is equal to its
+     * average number of executions per program run. Contexts are processed top-down; the root context itself
+     * isn't modified.
+     *
+     * @param rootContext root of the context tree to update
+     */
+    public void apply(AstContext rootContext) {
+        rootContext.children().forEach(this::applyRecursively);
+    }
+
+    private void applyRecursively(AstContext context) {
+        Double executions = getExecutions(context);
+        double parentWeight = context.parent().totalWeight();
+        if (executions != null && parentWeight > 0) {
+            context.updateWeight(executions / parentWeight);
+        }
+        context.children().forEach(this::applyRecursively);
+    }
+
+    /**
+     * Creates a textual representation of the execution weights, which can be parsed by {@link #parse(String)}.
+     *
+     * @return textual representation of this instance
+     */
+    public String encode() {
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        sb.append(RUNS).append(' ').append(runs).append('\n');
+        counts.forEach((key, count) -> sb.append(count).append(' ').append(key).append('\n'));
+        return sb.toString();
+    }
+
+    static String key(AstContext context) {
+        String key = baseKey(context);
+        AstContext parent = context.parent();
+        if (parent == null || parent.node() != context.node() || parent.contextType() != context.contextType()) {
+            return key;
+        }
+
+        // Subcontexts of the same type (e.g. both branches of an if statement) are distinguished by their order.
+        // Copies of subcontexts made by optimizers are placed under a different parent and are therefore merged.
+        int ordinal = 0;
+        for (AstContext sibling : parent.children()) {
+            if (sibling == context) break;
+            if (sibling.subcontextType() == context.subcontextType() && sibling.node() == context.node()
+                    && sibling.contextType() == context.contextType()) {
+                ordinal++;
+            }
+        }
+        return ordinal == 0 ? key : key + " #" + (ordinal + 1);
+    }
+
+    private static String baseKey(AstContext context) {
+        StringBuilder sb = new StringBuilder()
+                .append(context.contextType().name().toLowerCase()).append(' ')
+                .append(context.subcontextType().name().toLowerCase());
+        AstNode node = context.node();
+        if (node != null) {
+            sb.append(' ').append(node.getClass().getSimpleName());
+            if (node.startToken() != null) {
+                sb.append(' ').append(node.startToken().getLine()).append(':')
+                        .append(node.startToken().getCharPositionInLine());
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -35,6 +35,10 @@ public class FunctionInliner extends BaseOptimizer {
         return false;
     }
 
+    // The results of the finders can't be cached using forEachContextCached: inlining a function depends on all its
+    // call sites, which are located outside the function body and can be created or removed by modifications anywhere
+    // in the program (e.g. by unrolling a loop containing a call), and inlining a call depends on the body of the
+    // called function, which lies outside the call context.
     @Override
     public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
         invocations++;
@@ -0,0 +1,147 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.instructions.AstContext;
+import info.teksol.mindcode.compiler.instructions.AstContextType;
+import info.teksol.mindcode.compiler.instructions.AstSubcontextType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Chooses a set of speed optimizations maximizing the total benefit within the cost limit, solving a 0/1 knapsack
+ * problem using branch and bound. Two optimizations conflict, and therefore can't be chosen together, when the
+ * context of one of them contains the context of the other (e.g. unrolling nested loops, or unrolling a loop
+ * containing a function call and inlining the call), or when one of them inlines a function and the other one
+ * inlines a call of the same function. Effects of an optimization on the cost and benefit of other, non-conflicting
+ * optimizations are not modelled.
+ * <p>
+ * The search is limited to a fixed number of steps. When the limit is reached, the best set found so far is
+ * returned. The set is never worse than the one chosen by taking the most efficient optimizations first.
+ */
+class KnapsackSelector {
+    private static final int MAX_STEPS = 100_000;
+
+    private final OptimizationAction[] actions;
+    private final BitSet[] conflicts;
+    private final int[] blocked;
+    private final BitSet chosen;
+    private BitSet best;
+    private double bestBenefit;
+    private int steps;
+
+    private KnapsackSelector(List<OptimizationAction> candidates) {
+        actions = candidates.stream()
+                .sorted(Comparator.comparingDouble(KnapsackSelector::efficiency).reversed())
+                .toArray(OptimizationAction[]::new);
+        conflicts = new BitSet[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            conflicts[i] = new BitSet(actions.length);
+            for (int j = 0; j < actions.length; j++) {
+                if (i != j && conflict(actions[i], actions[j])) {
+                    conflicts[i].set(j);
+                }
+            }
+        }
+        blocked = new int[actions.length];
+        chosen = new BitSet(actions.length);
+    }
+
+    /**
+     * Selects the set of non-conflicting optimizations having the largest total benefit and total cost not
+     * exceeding the cost limit.
+     *
+     * @param candidates possible optimizations
+     * @param costLimit maximal total cost of selected optimizations
+     * @return selected optimizations, ordered from the most efficient one
+     */
+    static List<OptimizationAction> select(List<OptimizationAction> candidates, int costLimit) {
+        KnapsackSelector selector = new KnapsackSelector(candidates);
+        selector.selectGreedy(costLimit);
+        selector.search(0, costLimit, 0.0);
+
+        List<OptimizationAction> result = new ArrayList<>();
+        selector.best.stream().forEachOrdered(i -> result.add(selector.actions[i]));
+        return result;
+    }
+
+    static boolean conflict(OptimizationAction a, OptimizationAction b) {
+        AstContext first = a.astContext();
+        AstContext second = b.astContext();
+        return first.belongsTo(second) || second.belongsTo(first) || inliningConflict(first, second)
+                || inliningConflict(second, first);
+    }
+
+    private static boolean inliningConflict(AstContext function, AstContext call) {
+        return function.matches(AstContextType.FUNCTION) && call.matches(AstSubcontextType.OUT_OF_LINE_CALL)
+                && Objects.equals(function.functionPrefix(), call.functionPrefix());
+    }
+
+    private static double efficiency(OptimizationAction action) {
+        // Free optimizations come first
+        return action.cost() <= 0 ? Double.POSITIVE_INFINITY : action.benefit() / action.cost();
+    }
+
+    /** Initial solution: the most efficient optimizations are taken first. */
+    private void selectGreedy(int costLimit) {
+        for (int i = 0; i < actions.length; i++) {
+            if (blocked[i] == 0 && actions[i].cost() <= costLimit) {
+                choose(i);
+                costLimit -= actions[i].cost();
+                bestBenefit += actions[i].benefit();
+            }
+        }
+        best = (BitSet) chosen.clone();
+        for (int i = chosen.nextSetBit(0); i >= 0; i = chosen.nextSetBit(i + 1)) {
+            unchoose(i);
+        }
+    }
+
+    private void search(int index, int capacity, double benefit) {
+        if (benefit > bestBenefit) {
+            bestBenefit = benefit;
+            best = (BitSet) chosen.clone();
+        }
+
+        if (index >= actions.length || ++steps > MAX_STEPS || benefit + bound(index, capacity) <= bestBenefit) {
+            return;
+        }
+
+        OptimizationAction action = actions[index];
+        if (blocked[index] == 0 && action.cost() <= capacity) {
+            choose(index);
+            search(index + 1, capacity - action.cost(), benefit + action.benefit());
+            unchoose(index);
+        }
+
+        search(index + 1, capacity, benefit);
+    }
+
+    /** Upper bound of additional benefit: fractional knapsack over the remaining unblocked optimizations. */
+    private double bound(int index, int capacity) {
+        double bound = 0;
+        for (int i = index; i < actions.length; i++) {
+            if (blocked[i] > 0) continue;
+
+            if (actions[i].cost() <= capacity) {
+                capacity -= actions[i].cost();
+                bound += actions[i].benefit();
+            } else {
+                return bound + actions[i].benefit() * capacity / actions[i].cost();
+            }
+        }
+        return bound;
+    }
+
+    private void choose(int index) {
+        chosen.set(index);
+        conflicts[index].stream().forEach(i -> blocked[i]++);
+    }
+
+    private void unchoose(int index) {
+        chosen.clear(index);
+        conflicts[index].stream().forEach(i -> blocked[i]--);
+    }
+}
@@ -0,0 +1,267 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.MessageLevel;
+import info.teksol.mindcode.compiler.instructions.*;
+import info.teksol.mindcode.logic.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static info.teksol.mindcode.compiler.instructions.AstSubcontextType.*;
+
+/**
+ * Moves loop-invariant instructions in front of the loop. An instruction is loop-invariant when it produces the same
+ * value on each iteration of the loop: none of its inputs is modified inside the loop, and it has no side effects.
+ * Deterministic op instructions, sensor instructions reading constant properties of linked blocks and, depending on
+ * the memory model, read instructions are considered. The instructions are moved into the loop's initialization
+ * context, which is executed just once before entering the loop.
+ * <p>
+ * The instruction is moved only when doing so cannot be observed:
+ * <ul>
+ * <li>If the result is a temporary variable, it must be assigned just by the moved instruction and all its uses must
+ * follow the instruction inside the loop.</li>
+ * <li>If the result is a user variable, it must be assigned just by the moved instruction inside the loop, the
+ * instruction must be executed on each iteration before any other instruction reading the variable, and the loop
+ * must be known to execute at least once.</li>
+ * </ul>
+ * Loops containing function calls aren't processed. Moving an instruction doesn't change the size of the code, only
+ * the number of instructions executed, and therefore is evaluated as an optimization action with zero cost.
+ */
+public class LoopHoister extends BaseOptimizer {
+    public LoopHoister(OptimizationContext optimizationContext) {
+        super(Optimization.LOOP_HOISTING, optimizationContext);
+    }
+
+    private static final Set<Opcode> CONTROL_TRANSFER = EnumSet.of(Opcode.JUMP, Opcode.GOTO, Opcode.GOTOOFFSET,
+            Opcode.CALL, Opcode.CALLREC, Opcode.RETURN, Opcode.END, Opcode.STOP);
+
+    private int invocations = 0;
+    private int count = 0;
+
+    // Instructions writing and reading each variable in the entire program, valid for one round of evaluations
+    private Map<LogicVariable, List<LogicInstruction>> writers = Map.of();
+    private Map<LogicVariable, List<LogicInstruction>> readers = Map.of();
+
+    @Override
+    public void generateFinalMessages() {
+        iterations = invocations;
+        super.generateFinalMessages();
+        if (count > 0) {
+            emitMessage(MessageLevel.INFO, "%6d invariant instructions hoisted out of loops by %s.", count, getName());
+        }
+    }
+
+    @Override
+    protected boolean optimizeProgram(OptimizationPhase phase, int pass, int iteration) {
+        return false;
+    }
+
+    @Override
+    public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
+        invocations++;
+        writers = groupByVariable(LogicInstruction::outputArgumentsStream);
+        readers = groupByVariable(LogicInstruction::inputArgumentsStream);
+        List<OptimizationAction> actions = forEachContext(AstContextType.LOOP, BASIC, this::findPossibleHoisting);
+        writers = Map.of();
+        readers = Map.of();
+        return actions;
+    }
+
+    private Map<LogicVariable, List<LogicInstruction>> groupByVariable(
+            Function<LogicInstruction, Stream<LogicArgument>> arguments) {
+        Map<LogicVariable, List<LogicInstruction>> result = new HashMap<>();
+        instructionStream().forEach(ix -> arguments.apply(ix)
+                .filter(LogicVariable.class::isInstance)
+                .map(LogicVariable.class::cast)
+                .distinct()
+                .forEach(variable -> result.computeIfAbsent(variable, v -> new ArrayList<>()).add(ix)));
+        return result;
+    }
+
+    private OptimizationAction findPossibleHoisting(AstContext loop) {
+        AstContext init = loop.findSubcontext(INIT);
+        if (loop.children().isEmpty() || loop.findSubcontext(ITERATOR) != null
+                || init != null && loop.firstChild() != init) {
+            return null;
+        }
+
+        // Instructions executed on each iteration
+        List<LogicInstruction> body = contextStream(loop).filter(ix -> init == null || !ix.belongsTo(init)).toList();
+        if (body.isEmpty() || body.stream().anyMatch(CallingInstruction.class::isInstance)) {
+            return null;
+        }
+
+        Map<LogicVariable, List<LogicInstruction>> definitions = new HashMap<>();
+        body.forEach(ix -> ix.outputArgumentsStream()
+                .filter(LogicVariable.class::isInstance)
+                .map(LogicVariable.class::cast)
+                .forEach(variable -> definitions.computeIfAbsent(variable, v -> new ArrayList<>()).add(ix)));
+
+        // Instructions are processed in program order; an instruction depending only on values produced by already
+        // hoisted instructions can be hoisted too
+        Set<LogicInstruction> hoisted = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<LogicInstruction> instructions = new ArrayList<>();
+        double benefit = 0.0;
+        for (LogicInstruction ix : body) {
+            if (isInvariant(loop, ix, body, definitions, hoisted) && canHoistResult(loop, ix, body, definitions)) {
+                hoisted.add(ix);
+                instructions.add(ix);
+                benefit += (ix.getAstContext().totalWeight() - loop.totalWeight()) * ix.getRealSize();
+            }
+        }
+
+        return instructions.isEmpty() || benefit <= 0 ? null : new HoistInstructionsAction(loop, benefit, instructions);
+    }
+
+    private boolean isInvariant(AstContext loop, LogicInstruction ix, List<LogicInstruction> body,
+            Map<LogicVariable, List<LogicInstruction>> definitions, Set<LogicInstruction> hoisted) {
+        if (innermostLoop(ix.getAstContext()) != loop || isVolatile(ix) || !isHoistableInstruction(ix, body)) {
+            return false;
+        }
+
+        return ix.inputArgumentsStream()
+                .filter(LogicVariable.class::isInstance)
+                .allMatch(variable -> hoisted.containsAll(definitions.getOrDefault(variable, List.of())));
+    }
+
+    private boolean isHoistableInstruction(LogicInstruction ix, List<LogicInstruction> body) {
+        return switch (ix) {
+            case OpInstruction op -> op.getOperation().isDeterministic();
+            case SensorInstruction sensor -> isConstantSensor(sensor);
+            case ReadInstruction read -> switch (memoryModel) {
+                case VOLATILE -> false;
+                case ALIASED -> body.stream().noneMatch(WriteInstruction.class::isInstance);
+                case RESTRICTED -> body.stream().noneMatch(w -> w instanceof WriteInstruction write
+                        && write.getMemory().equals(read.getMemory()));
+            };
+            default -> false;
+        };
+    }
+
+    private boolean canHoistResult(AstContext loop, LogicInstruction ix, List<LogicInstruction> body,
+            Map<LogicVariable, List<LogicInstruction>> definitions) {
+        LogicVariable result = ((LogicResultInstruction) ix).getResult();
+        if (definitions.get(result).size() != 1) {
+            return false;
+        }
+
+        // The result must not be read inside the loop before being assigned by the instruction
+        int index = instructionIndex(ix);
+        List<LogicInstruction> uses = readers.getOrDefault(result, List.of());
+        if (uses.stream().anyMatch(use -> use.belongsTo(loop) && instructionIndex(use) <= index)) {
+            return false;
+        }
+
+        if (result.isTemporaryVariable()) {
+            // The value of a temporary variable is not used outside the loop
+            return writers.get(result).size() == 1 && uses.stream().allMatch(body::contains);
+        } else if (result.isUserVariable()) {
+            // The instruction assigns the same value the hoisted instruction would
+            return isExecutedOnEachIteration(loop, ix) && executesAtLeastOnce(loop);
+        } else {
+            return false;
+        }
+    }
+
+    // Instructions in the initialization of a loop are executed by the enclosing loop
+    private AstContext innermostLoop(AstContext context) {
+        for (AstContext child = context, ctx = context.parent(); ctx != null; child = ctx, ctx = ctx.parent()) {
+            if (ctx.matches(AstContextType.LOOP, BASIC) && child.subcontextType() != INIT) {
+                return ctx;
+            }
+        }
+        return null;
+    }
+
+    // The instruction lies in the loop body and no instruction in the body preceding it transfers control elsewhere
+    private boolean isExecutedOnEachIteration(AstContext loop, LogicInstruction ix) {
+        AstContext body = loop.findDirectChild(ix.getAstContext());
+        if (body == null || body.subcontextType() != BODY) {
+            return false;
+        }
+
+        // Labels at the start of the body may be targeted from anywhere
+        int start = firstInstructionIndex(body);
+        int index = instructionIndex(ix);
+        boolean leading = true;
+        for (LogicInstruction instruction : instructionSubList(start, index)) {
+            leading &= instruction instanceof LabelInstruction;
+            boolean localJump = instruction instanceof JumpInstruction jump
+                    && labeledInstructionIndex(jump.getTarget()) >= start
+                    && labeledInstructionIndex(jump.getTarget()) < index;
+            if (!localJump && (transfersControl(instruction) || instruction instanceof GotoLabelInstruction
+                    || !leading && instruction instanceof LabelInstruction label
+                    && isTargetedFromOutside(label.getLabel(), start, index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTargetedFromOutside(LogicLabel label, int start, int end) {
+        return instructionStream()
+                .filter(ix -> ix instanceof JumpInstruction jump && jump.getTarget().equals(label))
+                .mapToInt(this::instructionIndex)
+                .anyMatch(i -> i < start || i >= end);
+    }
+
+    private boolean executesAtLeastOnce(AstContext loop) {
+        AstContext first = loop.children().stream().filter(c -> c.subcontextType() != INIT).findFirst().orElse(null);
+        if (first == null || first.subcontextType() == BODY) {
+            return first != null;
+        } else if (first.subcontextType() != CONDITION) {
+            return false;
+        }
+
+        List<LogicInstruction> jumps = contextStream(first).filter(this::transfersControl).toList();
+        return jumps.isEmpty() || jumps.size() == 1 && jumps.get(0) instanceof JumpInstruction jump
+                && lastInstruction(first) == jump && evaluateLoopConditionJump(jump, loop) == LogicBoolean.FALSE;
+    }
+
+    private boolean transfersControl(LogicInstruction ix) {
+        return CONTROL_TRANSFER.contains(ix.getOpcode());
+    }
+
+    private OptimizationResult hoistInstructions(AstContext loop, List<LogicInstruction> instructions) {
+        if (instructions.stream().anyMatch(ix -> instructionIndex(ix) < 0)) {
+            return OptimizationResult.INVALID;
+        }
+
+        AstContext init = loop.findSubcontext(INIT);
+        if (init == null) {
+            init = loop.createSubcontext(INIT, 1.0);
+        }
+
+        for (LogicInstruction ix : instructions) {
+            removeInstruction(ix);
+            int last = lastInstructionIndex(init);
+            insertInstruction(last >= 0 ? last + 1 : firstInstructionIndex(loop), ix.withContext(init));
+        }
+
+        count += instructions.size();
+        return OptimizationResult.REALIZED;
+    }
+
+    private class HoistInstructionsAction extends AbstractOptimizationAction {
+        private final List<LogicInstruction> instructions;
+
+        public HoistInstructionsAction(AstContext astContext, double benefit, List<LogicInstruction> instructions) {
+            super(astContext, 0, benefit);
+            this.instructions = instructions;
+        }
+
+        @Override
+        public OptimizationResult apply(int costLimit) {
+            return applyOptimization(() -> hoistInstructions(astContext, instructions), toString());
+        }
+
+        @Override
+        public String toString() {
+            return getName() + ": hoist " + instructions.stream().map(LogicInstruction::getOpcode)
+                    .map(Opcode::getOpcode).collect(Collectors.joining(", "))
+                    + " out of loop at line " + astContext.node().startToken().getLine();
+        }
+    }
+}
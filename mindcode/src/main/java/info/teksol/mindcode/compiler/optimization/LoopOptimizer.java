@@ -53,8 +53,8 @@ public class LoopOptimizer extends BaseOptimizer {
 
     @Override
     public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
-        return forEachContext(AstContextType.LOOP, BASIC,
-                loop -> processLoop(loop, false, costLimit));
+        return forEachContextCached(AstContextType.LOOP, BASIC, costLimit,
+                (loop, limit) -> processLoop(loop, false, limit));
     }
 
     private OptimizationAction processLoop(AstContext loop, boolean optimize, int costLimit) {
@@ -0,0 +1,374 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.MessageLevel;
+import info.teksol.mindcode.compiler.instructions.*;
+import info.teksol.mindcode.logic.*;
+
+import java.util.*;
+
+import static info.teksol.mindcode.compiler.instructions.AstSubcontextType.*;
+
+/**
+ * Replaces multiplications of loop control variables by additions. The loop control variable (a basic induction
+ * variable) is a variable updated only by adding or subtracting an integer constant on each iteration. An expression
+ * in the form {@code i * k} or {@code i * k + b}, where {@code i} is the loop control variable, {@code k} is an integer
+ * constant and {@code b} is a loop-invariant value, is a derived induction variable. A new variable holding the value
+ * of the derived induction variable is created: it is initialized in front of the loop and incremented by
+ * {@code step * k} after each update of the loop control variable. The instructions computing the expression are
+ * then removed from the loop, and uses of the expression are replaced by the new variable.
+ * <p>
+ * When the loop control variable is no longer used for anything else than the loop condition, the condition is
+ * rewritten to use the new variable, and the loop control variable updates are removed.
+ * <p>
+ * Only loops whose control variable starts at an integer value and which do not contain function calls are
+ * optimized. The initial value is determined by the Data Flow Optimization.
+ */
+public class LoopStrengthReducer extends BaseOptimizer {
+    public LoopStrengthReducer(OptimizationContext optimizationContext) {
+        super(Optimization.LOOP_STRENGTH_REDUCTION, optimizationContext);
+    }
+
+    private int invocations = 0;
+    private int count = 0;
+
+    @Override
+    public void generateFinalMessages() {
+        iterations = invocations;
+        super.generateFinalMessages();
+        if (count > 0) {
+            emitMessage(MessageLevel.INFO, "%6d multiplications replaced by additions by %s.", count, getName());
+        }
+    }
+
+    @Override
+    protected boolean optimizeProgram(OptimizationPhase phase, int pass, int iteration) {
+        return false;
+    }
+
+    @Override
+    public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
+        invocations++;
+        return forEachContext(AstContextType.LOOP, BASIC, loop -> findPossibleReduction(loop, costLimit));
+    }
+
+    /**
+     * Derived induction variable {@code i * k} or {@code i * k + b} (or {@code i * k - b}). The expression
+     * {@code b - i * k} is represented as {@code i * (-k) + b}.
+     *
+     * @param mul instruction multiplying the loop control variable
+     * @param add instruction adding a loop invariant value to the product, or null
+     * @param result variable holding the value of the derived induction variable
+     * @param factor the multiplication constant
+     * @param base the loop-invariant value added to the product, or null
+     * @param operation the operation applied to the base: {@code add} or {@code sub}
+     */
+    private record DerivedVariable(OpInstruction mul, OpInstruction add, LogicVariable result, LogicNumber factor,
+            LogicValue base, Operation operation) {
+
+        int size() {
+            return add == null ? 1 : 2;
+        }
+    }
+
+    private OptimizationAction findPossibleReduction(AstContext loop, int costLimit) {
+        AstContext init = loop.findSubcontext(INIT);
+        AstContext condition = loop.findLastSubcontext(CONDITION);
+        if (loop.findSubcontext(ITERATOR) != null || condition == null
+                || !(lastInstruction(condition) instanceof JumpInstruction jump)) {
+            return null;
+        }
+
+        LogicVariable control = findLoopControlVariable(loop, jump);
+        if (control == null || initialValue(loop, control) == null) {
+            return null;
+        }
+
+        List<LogicInstruction> updates = loopControlVariableUpdates(loop, control);
+        if (!updates.stream().allMatch(ix -> ix instanceof OpInstruction op
+                && (op.getOperation() == Operation.ADD || op.getOperation() == Operation.SUB)
+                && op.getY() instanceof LogicNumber step && step.isInteger())) {
+            return null;
+        }
+
+        List<LogicInstruction> body = contextStream(loop).filter(ix -> init == null || !ix.belongsTo(init)).toList();
+        if (body.stream().anyMatch(CallingInstruction.class::isInstance)) {
+            return null;
+        }
+
+        Set<LogicVariable> modified = new HashSet<>();
+        body.forEach(ix -> ix.outputArgumentsStream()
+                .filter(LogicVariable.class::isInstance)
+                .forEach(v -> modified.add((LogicVariable) v)));
+
+        List<DerivedVariable> derived = body.stream()
+                .map(ix -> findDerivedVariable(ix, control, body, modified))
+                .filter(Objects::nonNull)
+                .toList();
+        if (derived.isEmpty()) {
+            return null;
+        }
+
+        // The first derived variable replaces the loop control variable if possible
+        List<JumpInstruction> jumps = findReplaceableJumps(init, control, body, updates, derived, modified);
+
+        // Instructions in the initialization context are executed once per entering the loop
+        double initWeight = loop.totalWeight();
+        double updateWeight = updates.stream().mapToDouble(ix -> ix.getAstContext().totalWeight()).sum();
+        int initSize = derived.size();
+
+        int cost = initSize + derived.size() * updates.size() - derived.stream().mapToInt(DerivedVariable::size).sum();
+        double benefit = derived.stream().mapToDouble(d -> d.mul.getAstContext().totalWeight()
+                + (d.add == null ? 0 : d.add.getAstContext().totalWeight())).sum()
+                - derived.size() * updateWeight;
+
+        if (jumps != null) {
+            int limitSize = jumps.stream().mapToInt(j -> limitSize(derived.get(0), otherOperand(j, control))).sum();
+            cost += limitSize - updates.size();
+            benefit += updateWeight;
+            initSize += limitSize;
+        }
+
+        benefit -= initSize * initWeight;
+        return cost <= costLimit && benefit > 0
+                ? new ReduceStrengthAction(loop, cost, benefit, control, derived, jumps != null)
+                : null;
+    }
+
+    // Returns the integer value of the control variable when entering the loop, or null if not known
+    private LogicNumber initialValue(AstContext loop, LogicVariable control) {
+        var variables = optimizationContext.getLoopVariables(loop);
+        var initialValue = variables == null ? null : variables.findVariableValue(control);
+        return initialValue != null && initialValue.getConstantValue() instanceof LogicNumber number
+                && number.isInteger() ? number : null;
+    }
+
+    private boolean isInvariant(LogicValue value, Set<LogicVariable> modified) {
+        return value instanceof LogicNumber
+                || value instanceof LogicVariable variable && !modified.contains(variable);
+    }
+
+    private DerivedVariable findDerivedVariable(LogicInstruction ix, LogicVariable control,
+            List<LogicInstruction> body, Set<LogicVariable> modified) {
+        if (!(ix instanceof OpInstruction mul && mul.getOperation() == Operation.MUL && mul.hasSecondOperand())) {
+            return null;
+        }
+
+        LogicValue other = mul.getX().equals(control) ? mul.getY() : mul.getY().equals(control) ? mul.getX() : null;
+        if (!(other instanceof LogicNumber factor) || !factor.isInteger() || factor.getDoubleValue() == 0
+                || !isReplaceableTemp(mul, control, body)) {
+            return null;
+        }
+
+        List<LogicInstruction> readers = readers(mul.getResult());
+        if (readers.size() == 1 && readers.get(0) instanceof OpInstruction add && add.hasSecondOperand()
+                && isReplaceableTemp(add, control, body)) {
+            if (add.getOperation() == Operation.ADD && add.getX().equals(mul.getResult())
+                    && isInvariant(add.getY(), modified)) {
+                return new DerivedVariable(mul, add, add.getResult(), factor, add.getY(), Operation.ADD);
+            } else if (add.getOperation() == Operation.ADD && add.getY().equals(mul.getResult())
+                    && isInvariant(add.getX(), modified)) {
+                return new DerivedVariable(mul, add, add.getResult(), factor, add.getX(), Operation.ADD);
+            } else if (add.getOperation() == Operation.SUB && add.getX().equals(mul.getResult())
+                    && isInvariant(add.getY(), modified)) {
+                return new DerivedVariable(mul, add, add.getResult(), factor, add.getY(), Operation.SUB);
+            } else if (add.getOperation() == Operation.SUB && add.getY().equals(mul.getResult())
+                    && isInvariant(add.getX(), modified)) {
+                return new DerivedVariable(mul, add, add.getResult(), factor.negation(), add.getX(), Operation.ADD);
+            }
+        }
+
+        return new DerivedVariable(mul, null, mul.getResult(), factor, null, Operation.ADD);
+    }
+
+    // The result of the instruction is a temporary variable assigned just by the instruction and read only after
+    // the instruction within the loop, with no control variable update or label in between
+    private boolean isReplaceableTemp(OpInstruction ix, LogicVariable control, List<LogicInstruction> body) {
+        LogicVariable result = ix.getResult();
+        if (!result.isTemporaryVariable()
+                || instructionCount(in -> in.outputArgumentsStream().anyMatch(result::equals)) != 1) {
+            return false;
+        }
+
+        int index = instructionIndex(ix);
+        for (LogicInstruction reader : readers(result)) {
+            int readerIndex = instructionIndex(reader);
+            if (readerIndex <= index || !body.contains(reader) || instructionSubList(index + 1, readerIndex).stream()
+                    .anyMatch(in -> in instanceof LabelInstruction || in instanceof GotoLabelInstruction
+                            || in.outputArgumentsStream().anyMatch(control::equals))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private List<LogicInstruction> readers(LogicVariable variable) {
+        return instructions(ix -> ix.inputArgumentsStream().anyMatch(variable::equals));
+    }
+
+    // Returns the list of jumps to rewrite when the control variable can be replaced, or null. Jumps in the
+    // initialization context read the initial value of the control variable and are kept as they are.
+    private List<JumpInstruction> findReplaceableJumps(AstContext init, LogicVariable control,
+            List<LogicInstruction> body, List<LogicInstruction> updates, List<DerivedVariable> derived,
+            Set<LogicVariable> modified) {
+        List<JumpInstruction> jumps = new ArrayList<>();
+        for (LogicInstruction reader : readers(control)) {
+            if (reader instanceof JumpInstruction jump && body.contains(jump)
+                    && isReplaceableJump(jump, control, modified)) {
+                jumps.add(jump);
+            } else if (reader instanceof JumpInstruction && init != null && reader.belongsTo(init)) {
+                continue;
+            } else if (!updates.contains(reader) && derived.stream().noneMatch(d -> d.mul == reader)) {
+                return null;
+            }
+        }
+        return jumps;
+    }
+
+    private boolean isReplaceableJump(JumpInstruction jump, LogicVariable control, Set<LogicVariable> modified) {
+        return switch (jump.getCondition()) {
+            case EQUAL, NOT_EQUAL, LESS_THAN, LESS_THAN_EQ, GREATER_THAN, GREATER_THAN_EQ ->
+                    !jump.getX().equals(jump.getY()) && isInvariant(otherOperand(jump, control), modified);
+            default -> false;
+        };
+    }
+
+    private LogicValue otherOperand(JumpInstruction jump, LogicVariable control) {
+        return jump.getX().equals(control) ? jump.getY() : jump.getX();
+    }
+
+    // Number of instructions needed to compute the transformed loop limit
+    private int limitSize(DerivedVariable variable, LogicValue limit) {
+        return limit instanceof LogicNumber && (variable.base == null || variable.base instanceof LogicNumber) ? 0
+                : variable.base == null ? 1 : 2;
+    }
+
+    // Condition comparing values multiplied by a negative number
+    private Condition reverse(Condition condition) {
+        return switch (condition) {
+            case LESS_THAN -> Condition.GREATER_THAN;
+            case LESS_THAN_EQ -> Condition.GREATER_THAN_EQ;
+            case GREATER_THAN -> Condition.LESS_THAN;
+            case GREATER_THAN_EQ -> Condition.LESS_THAN_EQ;
+            default -> condition;
+        };
+    }
+
+    private OptimizationResult reduceStrength(AstContext loop, LogicVariable control, List<DerivedVariable> derived,
+            boolean replaceControl) {
+        if (derived.stream().anyMatch(d -> instructionIndex(d.mul) < 0
+                || d.add != null && instructionIndex(d.add) < 0)) {
+            return OptimizationResult.INVALID;
+        }
+
+        AstContext originalInit = loop.findSubcontext(INIT);
+        AstContext init = originalInit != null ? originalInit : loop.createSubcontext(INIT, 1.0);
+
+        int last = lastInstructionIndex(init);
+        int insertionPoint = last >= 0 ? last + 1 : firstInstructionIndex(loop);
+        List<LogicInstruction> updates = loopControlVariableUpdates(loop, control);
+        LogicNumber initialValue = initialValue(loop, control);
+        if (initialValue == null) {
+            return OptimizationResult.INVALID;
+        }
+
+        Map<DerivedVariable, LogicVariable> variables = new LinkedHashMap<>();
+        for (DerivedVariable d : derived) {
+            // The variable is updated on each iteration
+            LogicVariable variable = instructionProcessor.nextOptimizerVariable();
+            variables.put(d, variable);
+
+            LogicLiteral start = evaluate(Operation.MUL, initialValue, d.factor);
+            if (d.base == null) {
+                insertInstruction(insertionPoint++, createSet(init, variable, start));
+            } else if (d.base instanceof LogicNumber base) {
+                insertInstruction(insertionPoint++, createSet(init, variable, evaluate(d.operation, start, base)));
+            } else if (d.operation == Operation.ADD && start.equals(LogicNumber.ZERO)) {
+                insertInstruction(insertionPoint++, createSet(init, variable, d.base));
+            } else {
+                insertInstruction(insertionPoint++, createOp(init, d.operation, variable, start, d.base));
+            }
+
+            for (LogicInstruction update : updates) {
+                OpInstruction op = (OpInstruction) update;
+                LogicLiteral step = evaluate(Operation.MUL, (LogicNumber) op.getY(), d.factor);
+                insertAfter(update, createOp(update.getAstContext(), op.getOperation(), variable, variable, step));
+            }
+
+            for (LogicInstruction reader : readers(d.result)) {
+                replaceInstruction(reader, replaceAllArgs(reader, d.result, variable));
+            }
+
+            removeInstruction(d.mul);
+            if (d.add != null) {
+                removeInstruction(d.add);
+            }
+            count++;
+        }
+
+        if (replaceControl) {
+            DerivedVariable d = derived.get(0);
+            LogicVariable variable = variables.get(d);
+            List<JumpInstruction> jumps = contextStream(loop)
+                    .filter(ix -> originalInit == null || !ix.belongsTo(originalInit))
+                    .filter(ix -> ix instanceof JumpInstruction jump
+                            && jump.inputArgumentsStream().anyMatch(control::equals))
+                    .map(JumpInstruction.class::cast)
+                    .toList();
+
+            for (JumpInstruction jump : jumps) {
+                LogicValue limit = otherOperand(jump, control);
+                LogicValue newLimit;
+                if (limitSize(d, limit) == 0) {
+                    LogicLiteral product = evaluate(Operation.MUL, (LogicNumber) limit, d.factor);
+                    newLimit = d.base == null ? product : evaluate(d.operation, product, (LogicNumber) d.base);
+                } else {
+                    LogicVariable product = instructionProcessor.nextTemp();
+                    insertInstruction(insertionPoint++, createOp(init, Operation.MUL, product, limit, d.factor));
+                    if (d.base == null) {
+                        newLimit = product;
+                    } else {
+                        LogicVariable sum = instructionProcessor.nextTemp();
+                        insertInstruction(insertionPoint++, createOp(init, d.operation, sum, product, d.base));
+                        newLimit = sum;
+                    }
+                }
+
+                Condition condition = d.factor.getDoubleValue() < 0
+                        ? reverse(jump.getCondition()) : jump.getCondition();
+                replaceInstruction(jump, jump.getX().equals(control)
+                        ? createJump(jump.getAstContext(), jump.getTarget(), condition, variable, newLimit)
+                        : createJump(jump.getAstContext(), jump.getTarget(), condition, newLimit, variable));
+            }
+
+            updates.forEach(this::removeInstruction);
+        }
+
+        return OptimizationResult.REALIZED;
+    }
+
+    private class ReduceStrengthAction extends AbstractOptimizationAction {
+        private final LogicVariable control;
+        private final List<DerivedVariable> derived;
+        private final boolean replaceControl;
+
+        public ReduceStrengthAction(AstContext astContext, int cost, double benefit, LogicVariable control,
+                List<DerivedVariable> derived, boolean replaceControl) {
+            super(astContext, cost, benefit);
+            this.control = control;
+            this.derived = derived;
+            this.replaceControl = replaceControl;
+        }
+
+        @Override
+        public OptimizationResult apply(int costLimit) {
+            return applyOptimization(() -> reduceStrength(astContext, control, derived, replaceControl), toString());
+        }
+
+        @Override
+        public String toString() {
+            return getName() + ": reduce multiplications by " + control.toMlog() + " at line "
+                    + astContext.node().startToken().getLine();
+        }
+    }
+}
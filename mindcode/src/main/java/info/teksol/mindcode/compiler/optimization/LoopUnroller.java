@@ -7,7 +7,6 @@ import info.teksol.mindcode.compiler.optimization.OptimizationContext.LogicList;
 import info.teksol.mindcode.logic.*;
 import info.teksol.mindcode.processor.DoubleVariable;
 import info.teksol.util.CollectionUtils;
-import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -44,8 +43,7 @@ public class LoopUnroller extends BaseOptimizer {
     @Override
     public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
         invocations++;
-        return forEachContext(AstContextType.LOOP, BASIC,
-                loop -> findPossibleUnrolling(loop, costLimit));
+        return forEachContextCached(AstContextType.LOOP, BASIC, costLimit, this::findPossibleUnrolling);
     }
 
     private static final Map<AstSubcontextType, String> SYMBOL_MAP = Map.of(
@@ -137,16 +135,14 @@ public class LoopUnroller extends BaseOptimizer {
             }
         }
 
-        AstContext init = loop.findSubcontext(INIT);
         List<LogicList> iterationContexts = iterationInstructionContexts(loop);
         LogicList condition = contextInstructions(loop.findLastSubcontext(CONDITION));
 
         // Last jump in condition should contain loop control variable
         if (condition.getLast() instanceof JumpInstruction jump) {
-            LogicVariable controlVariable = findLoopControl(loop, init, jump);
-            var variables = optimizationContext.getLoopVariables(loop);
-            var initialValue = variables == null ? null : variables.findVariableValue(controlVariable);
-            if (initialValue != null && initialValue.getConstantValue() instanceof LogicLiteral initLiteral && initLiteral.isNumericLiteral()) {
+            LogicVariable controlVariable = findLoopControlVariable(loop, jump);
+            var initialValue = optimizationContext.resolveLoopInitialValue(loop, controlVariable);
+            if (initialValue instanceof LogicLiteral initLiteral && initLiteral.isNumericLiteral()) {
                 // List of instructions that will be duplicated
                 List<LogicInstruction> loopIxs = iterationContexts.stream().flatMap(LogicList::stream).toList();
                 List<LogicInstruction> controlIxs = loopIxs.stream().filter(ix -> ix.outputArgumentsStream().anyMatch(a -> a.equals(controlVariable))).toList();
@@ -162,7 +158,9 @@ public class LoopUnroller extends BaseOptimizer {
                 if (loops > 0 && loops <= loopLimit) {
                     // Compute benefit: unrolling avoids all control variable updates and the condition jump
                     double weight = controlIxs.stream().mapToDouble(ix -> ix.getAstContext().totalWeight()).sum() + jump.getAstContext().totalWeight();
-                    return new UnrollLoopAction(loop, loops * size - originalSize, loops * weight, loops, controlVariable);
+                    int requiredCostLimit = size <= 0 ? loops : loops * size;
+                    return new UnrollLoopAction(loop, loops * size - originalSize, loops * weight, loops,
+                            controlVariable, requiredCostLimit);
                 }
             }
         }
@@ -224,7 +222,7 @@ public class LoopUnroller extends BaseOptimizer {
 
     private LogicLiteral findArgumentValue(JumpInstruction jump, LogicVariable loopControl) {
         LogicValue argument = jump.getX().equals(loopControl) ? jump.getY() : jump.getX();
-        LogicValue resolved = optimizationContext.resolveValue(getVariableStates(jump), argument);
+        LogicValue resolved = optimizationContext.resolveValue(jump, argument);
         return resolved instanceof LogicLiteral literal && literal.isNumericLiteral() ? literal : null;
     }
 
@@ -268,51 +266,6 @@ public class LoopUnroller extends BaseOptimizer {
         throw new MindcodeInternalError("Invalid loop structure.");
     }
 
-    // Finds the control variable of this loop
-    private LogicVariable findLoopControl(AstContext loop, AstContext init, JumpInstruction jump) {
-        LogicVariable result = null;
-        for (LogicValue operand : jump.getOperands()) {
-            if (operand instanceof LogicVariable variable && !variable.isGlobalVariable()) {
-                // All modifications of this operand outside the init context
-                List<LogicInstruction> controlIxs = getControlVariableUpdates(loop, init, variable);
-                if (!controlIxs.isEmpty()) {
-                    if (controlIxs.stream().allMatch(ix -> ix instanceof OpInstruction op
-                            && withinLoopContext(loop, op)
-                            && op.getResult().equals(variable) && op.getX().equals(variable)
-                            && op.hasSecondOperand() && op.getY().isNumericLiteral())) {
-                        if (result != null) {
-                            // Both operands are modified inside loop: cannot unroll
-                            return null;
-                        }
-                        result = variable;
-                    } else {
-                        // This variable is modified in an incompatible way: cannot unroll
-                        return null;
-                    }
-                }
-            }
-        }
-        return result;
-    }
-
-    @NotNull
-    private ArrayList<LogicInstruction> getControlVariableUpdates(AstContext loop, AstContext init, LogicVariable variable) {
-        return contextStream(loop)
-                .filter(ix -> !ix.getAstContext().belongsTo(init))
-                .filter(ix -> ix.outputArgumentsStream().anyMatch(a -> a.equals(variable)))
-                .collect(Collectors.toCollection(ArrayList::new));
-    }
-
-    // Determines whether the instruction lies directly within the loop context (not in another control-flow subcontext)
-    private boolean withinLoopContext(AstContext loop, OpInstruction op) {
-        for (AstContext ctx = op.getAstContext(); ctx != null; ctx = ctx.parent()) {
-            if (ctx.contextType().flowControl) {
-                return ctx == loop || ctx.parent() == loop;
-            }
-        }
-        return false;
-    }
-
     private OptimizationAction findPossibleIterationUnrolling(AstContext loop, int costLimit) {
         if (!hasSupportedIterationStructure(loop)) {
             return null;
@@ -407,11 +360,20 @@ public class LoopUnroller extends BaseOptimizer {
     private class UnrollLoopAction extends AbstractOptimizationAction {
         private final LogicVariable controlVariable;
         private final int loops;
+        private final int requiredCostLimit;
 
-        public UnrollLoopAction(AstContext astContext, int cost, double benefit, int loops, LogicVariable controlVariable) {
+        public UnrollLoopAction(AstContext astContext, int cost, double benefit, int loops, LogicVariable controlVariable,
+                int requiredCostLimit) {
             super(astContext, cost, benefit);
             this.loops = loops;
             this.controlVariable = controlVariable;
+            this.requiredCostLimit = requiredCostLimit;
+        }
+
+        @Override
+        public int requiredCostLimit() {
+            // The loop count is limited by the cost limit, not by the cost of the optimization
+            return requiredCostLimit;
         }
 
         @Override
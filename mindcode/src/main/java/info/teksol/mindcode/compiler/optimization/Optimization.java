@@ -42,10 +42,22 @@ public enum Optimization {
             DataFlowOptimizer::new,
             "improving variable assignments and and expressions"),
 
+    COMMON_SUBEXPRESSION_ELIMINATION    ("Common Subexpression Elimination",
+            CommonSubexpressionEliminator::new,
+            "eliminating repeated computations of the same expressions"),
+
     LOOP_OPTIMIZATION                   ("Loop Optimization",
             LoopOptimizer::new,
             "improving loops"),
 
+    LOOP_HOISTING                       ("Loop Hoisting",
+            LoopHoister::new,
+            "moving invariant code out of loops"),
+
+    LOOP_STRENGTH_REDUCTION             ("Loop Strength Reduction",
+            LoopStrengthReducer::new,
+            "replacing multiplications by loop control variables with additions"),
+
     LOOP_UNROLLING                      ("Loop Unrolling",
             LoopUnroller::new,
             "unrolls loops with constant number of iterations (optimization for speed)"),
@@ -62,6 +74,10 @@ public enum Optimization {
             ReturnOptimizer::new,
             "speeds up return statements in recursive and stackless functions"),
 
+    TAIL_CALL_ELIMINATION               ("Tail Call Elimination",
+            TailCallEliminator::new,
+            "replacing recursive calls in tail position with jumps"),
+
     JUMP_OVER_JUMP_ELIMINATION          ("Jump Straightening",
             JumpOverJumpEliminator::new,
             "simplifying sequences of intertwined jumps"),
@@ -47,6 +47,16 @@ public interface OptimizationAction {
      */
     int cost();
 
+    /**
+     * The lowest cost limit under which the optimizer would still propose this optimization. Used to reuse
+     * the optimization under a cost limit lower than the one it was originally found with.
+     *
+     * @return the lowest cost limit allowing this optimization
+     */
+    default int requiredCostLimit() {
+        return cost();
+    }
+
     /**
      * Total benefit from realizing this optimization. Computed as sum of weights (from the AstContext) of all
      * instructions multiplied by real instruction size that will be eliminated/avoided. Benefit computed this way may
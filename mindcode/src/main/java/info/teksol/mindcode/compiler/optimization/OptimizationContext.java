@@ -5,6 +5,7 @@ import info.teksol.mindcode.compiler.generator.CallGraph;
 import info.teksol.mindcode.compiler.instructions.*;
 import info.teksol.mindcode.logic.*;
 import info.teksol.mindcode.processor.MindustryValue;
+import info.teksol.util.OrderStatisticList;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
@@ -53,18 +54,62 @@ public class OptimizationContext {
      */
     private final Map<LogicLabel, List<LogicInstruction>> labelReferences = new HashMap<>();
 
+    /**
+     * Tracks positions of instructions in the program. Contains exactly the instructions present in the program,
+     * in the same order. Both modifications of the program and position lookups take logarithmic time.
+     */
+    private final OrderStatisticList<LogicInstruction> positions = new OrderStatisticList<>();
+
+    /**
+     * Incremented on each modification of the program or of information derived from it. An optimizer can use
+     * it to determine the program hasn't changed since the optimizer last processed it.
+     */
+    private int programVersion = 0;
+
+    /**
+     * Versions of AST context subtrees, incremented on each modification of an instruction belonging to the context
+     * or any of its descendants. Used together with the data flow dependencies to determine whether results of
+     * analyzing a context can be reused.
+     */
+    private final Map<AstContext, Integer> contextVersions = new IdentityHashMap<>();
+
+    /**
+     * Version of the data flow analysis results, incremented each time the results are discarded or become
+     * partially stale due to a program modification. Only used for analyses which accessed the variable states
+     * directly; values resolved through resolveValue(LogicInstruction, LogicValue) and
+     * resolveLoopValue(AstContext, LogicValue) are tracked individually.
+     */
+    private int dataFlowVersion = 0;
+
+    /** Indicates variable states were accessed directly since the last call to startDependencyTracking(). */
+    private boolean dataFlowRead = false;
+
+    /** Values resolved using data flow analysis since the last call to startDependencyTracking(). */
+    private List<ResolvedValue> resolvedValues = null;
+
     private int modifications = 0;
     private int insertions = 0;
     private int deletions = 0;
     private boolean updated;
 
+    /** Counts of modifications since the creation of this instance, not including the current round. */
+    private int totalModifications = 0;
+    private int totalInsertions = 0;
+    private int totalDeletions = 0;
+
     OptimizationContext(InstructionProcessor instructionProcessor, List<LogicInstruction> program, CallGraph callGraph, AstContext rootContext) {
+        this(instructionProcessor, program, callGraph, rootContext, null);
+    }
+
+    OptimizationContext(InstructionProcessor instructionProcessor, List<LogicInstruction> program, CallGraph callGraph,
+            AstContext rootContext, ExecutionWeights executionWeights) {
         this.instructionProcessor = instructionProcessor;
         this.program = program;
         this.callGraph = callGraph;
         this.rootContext = rootContext;
 
         expressionEvaluator = new OptimizerExpressionEvaluator(instructionProcessor);
+        program.forEach(positions::add);
 
         labels = instructionStream()
                 .filter(LabelInstruction.class::isInstance)
@@ -74,7 +119,15 @@ public class OptimizationContext {
         /* Create label references */
         instructionStream().forEachOrdered(this::addLabelReferences);
 
-        adjustWeights();
+        if (executionWeights != null) {
+            // Measured weights are applied again after adjusting function weights, since function weights computed
+            // from the call sites would otherwise rescale the measured weights of the function bodies.
+            executionWeights.apply(rootContext);
+            adjustWeights();
+            executionWeights.apply(rootContext);
+        } else {
+            adjustWeights();
+        }
     }
 
     InstructionProcessor getInstructionProcessor() {
@@ -93,6 +146,78 @@ public class OptimizationContext {
         return rootContext;
     }
 
+    int getProgramVersion() {
+        return programVersion;
+    }
+
+    /**
+     * Returns the version of given context. The version changes on each modification of an instruction belonging
+     * to the context or any of its descendants.
+     *
+     * @param context context to inspect
+     * @return version of the context
+     */
+    int getContextVersion(AstContext context) {
+        return contextVersions.getOrDefault(context, 0);
+    }
+
+    /**
+     * Starts tracking of dependencies of an analysis of a context. Once the analysis is done, a dependency stamp
+     * of the analyzed context is obtained by calling getDependencyStamp(AstContext).
+     */
+    void startDependencyTracking() {
+        dataFlowRead = false;
+        resolvedValues = new ArrayList<>();
+    }
+
+    /**
+     * Returns a stamp describing the state of the parts of the program the analysis of given context has read
+     * since the last call to startDependencyTracking(): the instructions of the context, and, when accessed,
+     * the results of data flow analysis. As long as the stamp is current, the analysis would yield the same result.
+     * <p>
+     * When the analysis only obtained data flow information by resolving values of variables, the stamp records
+     * the resolved values, and remains current as long as the variables resolve to the same values - even after
+     * the data flow analysis is redone following modifications of other parts of the program. Direct access
+     * to variable states makes the stamp valid only until the data flow analysis results change.
+     *
+     * @param context analyzed context
+     * @return dependency stamp of the analysis
+     */
+    DependencyStamp getDependencyStamp(AstContext context) {
+        DependencyStamp stamp = new DependencyStamp(getContextVersion(context),
+                dataFlowRead ? dataFlowVersion : -1, List.copyOf(resolvedValues));
+        resolvedValues = null;
+        return stamp;
+    }
+
+    boolean isCurrent(AstContext context, DependencyStamp stamp) {
+        return stamp.contextVersion() == getContextVersion(context)
+                && (stamp.dataFlowVersion() < 0 || stamp.dataFlowVersion() == dataFlowVersion)
+                && stamp.resolvedValues().stream().allMatch(this::isCurrent);
+    }
+
+    private boolean isCurrent(ResolvedValue resolved) {
+        DataFlowVariableStates.VariableStates states = resolved.instruction() != null
+                ? variableStates.get(resolved.instruction()) : loopVariables.get(resolved.loop());
+        return resolved.result().equals(resolveValue(states, resolved.value(), resolved.checkStale()));
+    }
+
+    record DependencyStamp(int contextVersion, int dataFlowVersion, List<ResolvedValue> resolvedValues) {}
+
+    /**
+     * A value resolved using data flow analysis results at an instruction, or at the condition of a loop
+     * when the instruction is null.
+     */
+    record ResolvedValue(LogicInstruction instruction, AstContext loop, LogicValue value, boolean checkStale,
+            LogicValue result) {}
+
+    private void contextModified(AstContext context) {
+        dataFlowVersion++;
+        for (AstContext ctx = context; ctx != null; ctx = ctx.parent()) {
+            contextVersions.merge(ctx, 1, Integer::sum);
+        }
+    }
+
     int getModifications() {
         return modifications;
     }
@@ -105,6 +230,18 @@ public class OptimizationContext {
         return deletions;
     }
 
+    int getTotalModifications() {
+        return totalModifications + modifications;
+    }
+
+    int getTotalInsertions() {
+        return totalInsertions + insertions;
+    }
+
+    int getTotalDeletions() {
+        return totalDeletions + deletions;
+    }
+
     boolean isUpdated() {
         return updated;
     }
@@ -116,6 +253,9 @@ public class OptimizationContext {
         if (updated) {
             rebuildAstContextTree();
         }
+        totalModifications += modifications;
+        totalInsertions += insertions;
+        totalDeletions += deletions;
         modifications = 0;
         insertions = 0;
         deletions = 0;
@@ -138,15 +278,73 @@ public class OptimizationContext {
     }
 
     public DataFlowVariableStates.VariableStates getVariableStates(LogicInstruction instruction) {
+        dataFlowRead = true;
         return variableStates.get(instruction);
     }
 
     public DataFlowVariableStates.VariableStates getLoopVariables(AstContext conditionContext) {
+        dataFlowRead = true;
         return loopVariables.get(conditionContext);
     }
 
+    /**
+     * Resolves the value of a variable at given instruction to a constant, if the data flow analysis determined
+     * the variable has a known constant value at that point.
+     *
+     * @param instruction instruction at which the value is resolved
+     * @param value value to resolve
+     * @return the constant value of the variable, or the original value
+     */
+    public LogicValue resolveValue(LogicInstruction instruction, LogicValue value) {
+        LogicValue result = resolveValue(variableStates.get(instruction), value, true);
+        if (resolvedValues != null && value instanceof LogicVariable) {
+            resolvedValues.add(new ResolvedValue(instruction, null, value, true, result));
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the value of a variable at the start of the condition of given loop to a constant, if the data
+     * flow analysis determined the variable has a known constant value at that point.
+     *
+     * @param loop loop context at which the value is resolved
+     * @param value value to resolve
+     * @return the constant value of the variable, or the original value
+     */
+    public LogicValue resolveLoopValue(AstContext loop, LogicValue value) {
+        return resolveLoopValue(loop, value, true);
+    }
+
+    /**
+     * Resolves the value of a variable at the entry of given loop to a constant, if the data flow analysis
+     * determined the variable has a known constant value at that point. Unlike
+     * {@link #resolveLoopValue(AstContext, LogicValue)}, the value is resolved even when the variable was modified
+     * by an instruction added to the program after the analysis. Suitable for variables only modified inside
+     * the loop, such as loop control variables.
+     *
+     * @param loop loop context at which the value is resolved
+     * @param value value to resolve
+     * @return the constant value of the variable, or the original value
+     */
+    public LogicValue resolveLoopInitialValue(AstContext loop, LogicValue value) {
+        return resolveLoopValue(loop, value, false);
+    }
+
+    private LogicValue resolveLoopValue(AstContext loop, LogicValue value, boolean checkStale) {
+        LogicValue result = resolveValue(loopVariables.get(loop), value, checkStale);
+        if (resolvedValues != null && value instanceof LogicVariable) {
+            resolvedValues.add(new ResolvedValue(null, loop, value, checkStale, result));
+        }
+        return result;
+    }
+
     public LogicValue resolveValue(DataFlowVariableStates.VariableStates variableStates, LogicValue value) {
-        if (variableStates != null && value instanceof LogicVariable v && !staleVariables.contains(v)) {
+        return resolveValue(variableStates, value, true);
+    }
+
+    private LogicValue resolveValue(DataFlowVariableStates.VariableStates variableStates, LogicValue value,
+            boolean checkStale) {
+        if (variableStates != null && value instanceof LogicVariable v && !(checkStale && staleVariables.contains(v))) {
             var newValue = variableStates.findVariableValue(v);
             if (newValue != null && newValue.getConstantValue() != null && newValue.getConstantValue().isConstant()) {
                 return newValue.getConstantValue();
@@ -156,6 +354,7 @@ public class OptimizationContext {
     }
 
     public void clearVariableStates() {
+        dataFlowVersion++;
         variableStates.clear();
         loopVariables.clear();
         staleVariables.clear();
@@ -261,6 +460,7 @@ public class OptimizationContext {
 
     public void addUnrolledVariable(LogicVariable variable) {
         unrolledVariables.add(variable);
+        programVersion++;
     }
 
     //</editor-fold>
@@ -291,22 +491,22 @@ public class OptimizationContext {
     }
 
     public LogicBoolean evaluateJumpInstruction(JumpInstruction jump) {
-        return evaluateJumpInstruction(jump, variableStates.get(jump));
+        return evaluateJumpInstruction(jump, value -> resolveValue(jump, value));
     }
 
     public LogicBoolean evaluateLoopConditionJump(JumpInstruction jump, AstContext loopContext) {
-        return evaluateJumpInstruction(jump, loopVariables.get(loopContext));
+        return evaluateJumpInstruction(jump, value -> resolveLoopValue(loopContext, value));
     }
 
 
-    private LogicBoolean evaluateJumpInstruction(JumpInstruction jump, DataFlowVariableStates.VariableStates vs) {
+    private LogicBoolean evaluateJumpInstruction(JumpInstruction jump, Function<LogicValue, LogicValue> resolver) {
         if (jump.isUnconditional()) {
             return LogicBoolean.TRUE;
         }
 
         // Avoid creating new instruction just for the evaluation
-        LogicValue argX = resolveValue(vs, jump.getX());
-        LogicValue argY = resolveValue(vs, jump.getY());
+        LogicValue argX = resolver.apply(jump.getX());
+        LogicValue argY = resolver.apply(jump.getY());
 
         if (argX instanceof MindustryValue x && argY instanceof MindustryValue y) {
             LogicLiteral result = expressionEvaluator.evaluate(jump.getCondition().toOperation(), x, y);
@@ -464,22 +664,16 @@ public class OptimizationContext {
      * @return index of the instruction, or -1 if the instruction isn't found.
      */
     int instructionIndex(LogicInstruction instruction) {
-        for (int i = 0; i < program.size(); i++) {
-            if (instruction == program.get(i)) {
-                return i;
-            }
-        }
-        return -1;
+        return positions.indexOf(instruction);
     }
 
     /** Returns the index of given instruction. When the instruction isn't found, an exception is thrown. */
     int existingInstructionIndex(LogicInstruction instruction) {
-        for (int i = 0; i < program.size(); i++) {
-            if (instruction == program.get(i)) {
-                return i;
-            }
+        int index = instructionIndex(instruction);
+        if (index < 0) {
+            throw new NoSuchElementException("Instruction not found in program.\nInstruction: " + instruction);
         }
-        throw new NoSuchElementException("Instruction not found in program.\nInstruction: " + instruction);
+        return index;
     }
     //</editor-fold>
 
@@ -541,7 +735,7 @@ public class OptimizationContext {
      */
     protected int labeledInstructionIndex(LogicLabel label) {
         LabelInstruction labelInstruction = getLabelInstruction(label);
-        int labelIndex = firstInstructionIndex(ix -> ix == labelInstruction);
+        int labelIndex = instructionIndex(labelInstruction);
         if (labelIndex < 0) {
             throw new MindcodeInternalError("Label not found in program.\nLabel: " + label);
         }
@@ -679,6 +873,7 @@ public class OptimizationContext {
 
     //<editor-fold desc="Program modification">
     private void instructionAdded(LogicInstruction instruction) {
+        contextModified(instruction.getAstContext());
         if (instruction instanceof LabelInstruction label) {
             addLabelInstruction(label);
         }
@@ -691,6 +886,7 @@ public class OptimizationContext {
     }
 
     private void instructionRemoved(LogicInstruction instruction) {
+        contextModified(instruction.getAstContext());
         variableStates.remove(instruction);
         if (instruction instanceof LabelInstruction label) {
             removeLabelInstruction(label);
@@ -713,15 +909,15 @@ public class OptimizationContext {
      * @throws MindcodeInternalError when the new instruction is already present elsewhere in the program
      */
     protected void insertInstruction(int index, LogicInstruction instruction) {
-        for (LogicInstruction logicInstruction : program) {
-            if (logicInstruction == instruction) {
-                throw new MindcodeInternalError("Trying to insert the same instruction twice.\n" + instruction);
-            }
+        if (positions.contains(instruction)) {
+            throw new MindcodeInternalError("Trying to insert the same instruction twice.\n" + instruction);
         }
 
         iterators.forEach(iterator -> iterator.instructionAdded(index));
         program.add(index, instruction);
+        positions.add(index, instruction);
         instructionAdded(instruction);
+        programVersion++;
         updated = true;
         insertions += instruction.getRealSize();
     }
@@ -754,13 +950,13 @@ public class OptimizationContext {
      * instruction is already present elsewhere in the program
      */
     protected void replaceInstruction(int index, LogicInstruction instruction) {
-        for (LogicInstruction logicInstruction : program) {
-            if (logicInstruction == instruction) {
-                throw new MindcodeInternalError("Trying to insert the same instruction twice.\n" + instruction);
-            }
+        if (positions.contains(instruction)) {
+            throw new MindcodeInternalError("Trying to insert the same instruction twice.\n" + instruction);
         }
         LogicInstruction original = program.set(index, instruction);
+        positions.set(index, instruction);
         instructionRemoved(original);
+        programVersion++;
         instructionAdded(instruction);
         updated = true;
         int difference = original.getRealSize() - instruction.getRealSize();
@@ -781,7 +977,9 @@ public class OptimizationContext {
     protected void removeInstruction(int index) {
         iterators.forEach(iterator -> iterator.instructionRemoved(index));
         LogicInstruction instruction = program.remove(index);
+        positions.remove(index);
         instructionRemoved(instruction);
+        programVersion++;
         updated = true;
         deletions += instruction.getRealSize();
     }
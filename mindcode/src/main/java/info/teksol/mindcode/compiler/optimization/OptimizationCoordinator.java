@@ -1,15 +1,23 @@
 package info.teksol.mindcode.compiler.optimization;
 
+import info.teksol.mindcode.CompilationTimeoutException;
+import info.teksol.mindcode.compiler.CompilationDeadline;
+import info.teksol.mindcode.compiler.CompilerEvents.OptimizationActionEvent;
+import info.teksol.mindcode.compiler.CompilerEvents.OptimizerEvent;
 import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerMetrics;
+import info.teksol.mindcode.compiler.CompilerMetrics.OptimizerMetrics;
 import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.mindcode.compiler.GenerationGoal;
 import info.teksol.mindcode.compiler.MindcodeMessage;
+import info.teksol.mindcode.compiler.SelectionStrategy;
 import info.teksol.mindcode.compiler.generator.GeneratorOutput;
 import info.teksol.mindcode.compiler.instructions.InstructionProcessor;
 import info.teksol.mindcode.compiler.instructions.LogicInstruction;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static info.teksol.mindcode.compiler.optimization.OptimizationPhase.*;
 
@@ -19,7 +27,9 @@ public class OptimizationCoordinator {
     private final Consumer<CompilerMessage> messageRecipient;
     private final CompilerProfile profile;
     private DebugPrinter debugPrinter = new NullDebugPrinter();
+    private CompilationDeadline deadline = CompilationDeadline.NONE;
     private OptimizationContext optimizationContext;
+    private final Map<MetricsKey, MetricsAccumulator> metrics = new LinkedHashMap<>();
 
     public OptimizationCoordinator(InstructionProcessor instructionProcessor, CompilerProfile profile,
             Consumer<CompilerMessage> messageRecipient) {
@@ -32,6 +42,25 @@ public class OptimizationCoordinator {
         this.debugPrinter = debugPrinter;
     }
 
+    /**
+     * Sets the deadline for the optimization. When the deadline expires, the optimization stops at the nearest
+     * point where the program is consistent, and the program optimized so far is returned.
+     *
+     * @param deadline compilation deadline
+     */
+    public void setDeadline(CompilationDeadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Provides metrics of individual optimizers gathered by the last call to {@link #optimize(GeneratorOutput)}.
+     *
+     * @return metrics of each optimizer in each phase and pass it was run in
+     */
+    public List<OptimizerMetrics> getMetrics() {
+        return metrics.entrySet().stream().map(e -> e.getValue().toMetrics(e.getKey())).toList();
+    }
+
     protected Map<Optimization, Optimizer> createOptimizers() {
         Map<Optimization, Optimizer> result = new LinkedHashMap<>();
         for (Optimization optimization : Optimization.LIST) {
@@ -58,24 +87,32 @@ public class OptimizationCoordinator {
         program.addAll(generatorOutput.instructions());
 
         optimizationContext = new OptimizationContext(instructionProcessor, program,
-                generatorOutput.callGraph(), generatorOutput.rootAstContext());
+                generatorOutput.callGraph(), generatorOutput.rootAstContext(), profile.getExecutionWeights());
 
         int count = program.stream().mapToInt(LogicInstruction::getRealSize).sum();
         messageRecipient.accept(MindcodeMessage.info("%6d instructions before optimizations.", count));
 
-        debugPrinter.registerIteration(null, "", List.copyOf(program));
+        debugPrinter.registerIteration(null, "", program);
 
         Map<Optimization, Optimizer> optimizers = createOptimizers();
 
-        optimizePhase(INITIAL, optimizers, 0, generatorOutput);
-        boolean modified = true;
-        for (int pass = 1; modified && pass <= profile.getOptimizationPasses(); pass++) {
-            modified = optimizePhase(ITERATED, optimizers, pass, generatorOutput);
-        }
-        if (modified) {
-            messageRecipient.accept(MindcodeMessage.warn("Optimization passes limit (%d) reached.", profile.getOptimizationPasses()));
+        boolean modified = false;
+        try {
+            optimizePhase(INITIAL, optimizers, 0, generatorOutput);
+            modified = true;
+            for (int pass = 1; modified && pass <= profile.getOptimizationPasses(); pass++) {
+                modified = optimizePhase(ITERATED, optimizers, pass, generatorOutput);
+            }
+            if (modified) {
+                messageRecipient.accept(MindcodeMessage.warn("Optimization passes limit (%d) reached.", profile.getOptimizationPasses()));
+            }
+            optimizePhase(FINAL, optimizers, 0, generatorOutput);
+        } catch (CompilationTimeoutException e) {
+            // Optimizations are interrupted only between individual optimizer runs, the program is consistent
+            modified = false;
+            messageRecipient.accept(MindcodeMessage.warn("%s Optimization stopped, the resulting code is only partially optimized.",
+                    e.getMessage()));
         }
-        optimizePhase(FINAL, optimizers, 0, generatorOutput);
 
         optimizers.values().forEach(Optimizer::generateFinalMessages);
         int newCount = program.stream().mapToInt(LogicInstruction::getRealSize).sum();
@@ -97,7 +134,8 @@ public class OptimizationCoordinator {
         for (Optimization optimization : phase.optimizations) {
             Optimizer optimizer = optimizers.get(optimization);
             if (optimizer != null) {
-                if (optimizer.optimize(phase, pass)) {
+                deadline.check();
+                if (measure(optimization, phase, pass, "optimize", () -> optimizer.optimize(phase, pass))) {
                     modified = true;
                 }
             }
@@ -108,35 +146,70 @@ public class OptimizationCoordinator {
         }
 
         while (true) {
+            deadline.check();
             int initialSize = codeSize();
             int costLimit = profile.getGoal() == GenerationGoal.SIZE ? 0 : Math.max(0, profile.getInstructionLimit() - initialSize);
             int expandedCostLimit = profile.getGoal() == GenerationGoal.SIZE ? 0 : 500 + costLimit;
 
             optimizationContext.prepare();
-            List<OptimizationAction> possibleOptimizations = phase.optimizations.stream()
-                    .map(optimizers::get)
-                    .filter(Objects::nonNull)
-                    .flatMap(o -> o.getPossibleOptimizations(expandedCostLimit).stream())
-                    .toList();
+            List<OptimizationAction> possibleOptimizations = new ArrayList<>();
+            Map<OptimizationAction, Optimization> actionSources = new IdentityHashMap<>();
+            for (Optimization optimization : phase.optimizations) {
+                Optimizer optimizer = optimizers.get(optimization);
+                if (optimizer != null) {
+                    List<OptimizationAction> actions = measure(optimization, phase, pass, "evaluate",
+                            () -> optimizer.getPossibleOptimizations(expandedCostLimit));
+                    accumulator(optimization, phase, pass).actionsEvaluated += actions.size();
+                    actions.forEach(action -> actionSources.put(action, optimization));
+                    possibleOptimizations.addAll(actions);
+                }
+            }
             optimizationContext.finish();
 
             if (possibleOptimizations.isEmpty()) {
                 break;
             }
 
-            OptimizationAction selectedAction = possibleOptimizations.stream()
+            // With an execution profile, actions providing no benefit (in code never executed according to the
+            // profile) are only selected when they don't increase the code size
+            boolean profiled = profile.getExecutionWeights() != null;
+            List<OptimizationAction> candidates = possibleOptimizations.stream()
                     .filter(a -> a.cost() <= costLimit)
-                    .max(ACTION_COMPARATOR).orElse(null);
+                    .filter(a -> !profiled || a.benefit() > 0 || a.cost() <= 0)
+                    .toList();
+
+            // The knapsack strategy plans a set of optimizations, but only the most efficient one is applied.
+            // The remaining ones are reevaluated in the next round, as they might have been affected.
+            List<OptimizationAction> plannedActions = switch (profile.getSelectionStrategy()) {
+                case GREEDY     -> candidates;
+                case KNAPSACK   -> KnapsackSelector.select(candidates, costLimit);
+            };
+            OptimizationAction selectedAction = plannedActions.stream().max(ACTION_COMPARATOR).orElse(null);
             if (selectedAction != null) {
+                Optimization source = actionSources.get(selectedAction);
+                OptimizationActionEvent event = new OptimizationActionEvent();
+                event.begin();
                 optimizationContext.prepare();
-                OptimizationResult result = selectedAction.apply(costLimit);
+                OptimizationResult result = measure(source, phase, pass, "apply", () -> selectedAction.apply(costLimit));
                 optimizationContext.finish();
+                event.end();
+                if (event.shouldCommit()) {
+                    event.optimization = source.getName();
+                    event.action = selectedAction.toString();
+                    event.pass = pass;
+                    event.cost = selectedAction.cost();
+                    event.benefit = selectedAction.benefit();
+                    event.result = result.name();
+                    event.commit();
+                }
 
                 if (result == OptimizationResult.REALIZED) {
+                    accumulator(source, phase, pass).actionsApplied++;
                     Optimizer optimizer = optimizers.get(Optimization.DATA_FLOW_OPTIMIZATION);
                     if (optimizer != null) {
                         optimizationContext.prepare();
-                        optimizer.optimize(phase, pass);
+                        measure(Optimization.DATA_FLOW_OPTIMIZATION, phase, pass, "optimize",
+                                () -> optimizer.optimize(phase, pass));
                         optimizationContext.finish();
                     }
                     modified = true;
@@ -147,7 +220,12 @@ public class OptimizationCoordinator {
                 int difference = codeSize() - initialSize;
                 optimizationStatistics.add(MindcodeMessage.debug(
                         "\nPass %d: speed optimization selection (cost limit %d):", pass, costLimit));
-                possibleOptimizations.forEach(t -> outputPossibleOptimization(t, costLimit, selectedAction, difference));
+                // Other optimizations planned by the knapsack strategy are marked with '+'
+                Set<OptimizationAction> planned = Collections.newSetFromMap(new IdentityHashMap<>());
+                if (profile.getSelectionStrategy() == SelectionStrategy.KNAPSACK) {
+                    planned.addAll(plannedActions);
+                }
+                possibleOptimizations.forEach(t -> outputPossibleOptimization(t, costLimit, selectedAction, planned, difference));
             }
 
             if (selectedAction == null) {
@@ -158,6 +236,57 @@ public class OptimizationCoordinator {
         return modified;
     }
 
+    private <T> T measure(Optimization optimization, OptimizationPhase phase, int pass, String operation, Supplier<T> action) {
+        MetricsAccumulator accumulator = accumulator(optimization, phase, pass);
+        int insertions = optimizationContext.getTotalInsertions();
+        int deletions = optimizationContext.getTotalDeletions();
+        int modifications = optimizationContext.getTotalModifications();
+        OptimizerEvent event = new OptimizerEvent();
+        int sizeBefore = event.isEnabled() ? codeSize() : 0;
+        event.begin();
+        CompilerMetrics.Meter meter = new CompilerMetrics.Meter();
+        try {
+            return action.get();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.optimization = optimization.getName();
+                event.phase = phase.name;
+                event.pass = pass;
+                event.operation = operation;
+                event.instructionsBefore = sizeBefore;
+                event.instructionsAfter = codeSize();
+                event.commit();
+            }
+            accumulator.wallTimeNanos += meter.elapsedNanos();
+            accumulator.allocatedBytes += meter.allocatedBytes();
+            accumulator.instructionsAdded += optimizationContext.getTotalInsertions() - insertions;
+            accumulator.instructionsRemoved += optimizationContext.getTotalDeletions() - deletions;
+            accumulator.instructionsModified += optimizationContext.getTotalModifications() - modifications;
+        }
+    }
+
+    private MetricsAccumulator accumulator(Optimization optimization, OptimizationPhase phase, int pass) {
+        return metrics.computeIfAbsent(new MetricsKey(optimization, phase, pass), k -> new MetricsAccumulator());
+    }
+
+    private record MetricsKey(Optimization optimization, OptimizationPhase phase, int pass) {}
+
+    private static class MetricsAccumulator {
+        private long wallTimeNanos;
+        private long allocatedBytes;
+        private int instructionsAdded;
+        private int instructionsRemoved;
+        private int instructionsModified;
+        private int actionsEvaluated;
+        private int actionsApplied;
+
+        private OptimizerMetrics toMetrics(MetricsKey key) {
+            return new OptimizerMetrics(key.optimization(), key.phase(), key.pass(), wallTimeNanos, allocatedBytes,
+                    instructionsAdded, instructionsRemoved, instructionsModified, actionsEvaluated, actionsApplied);
+        }
+    }
+
     private int codeSize() {
         return program.stream().mapToInt(LogicInstruction::getRealSize).sum();
     }
@@ -166,15 +295,21 @@ public class OptimizationCoordinator {
             Comparator.comparingDouble(OptimizationAction::efficiency)
                     .thenComparing(Comparator.comparingInt(OptimizationAction::cost).reversed());
 
-    private void outputPossibleOptimization(OptimizationAction opt, int costLimit, OptimizationAction selected, int difference) {
+    private void outputPossibleOptimization(OptimizationAction opt, int costLimit, OptimizationAction selected,
+            Set<OptimizationAction> planned, int difference) {
         String message;
         if (opt == selected) {
-            message = String.format("  * %-60s cost %5d, benefit %10.1f, efficiency %10.1f (%+d instructions)",
-                    opt, opt.cost(), opt.benefit(), opt.efficiency(), difference);
+            message = String.format("  * %-60s cost %5d, benefit %10.1f, efficiency %10s (%+d instructions)",
+                    opt, opt.cost(), opt.benefit(), formatEfficiency(opt), difference);
         } else {
-            message = String.format("  %s %-60s cost %5d, benefit %10.1f, efficiency %10.1f",
-                    opt.cost() > costLimit ? "!" : " ", opt, opt.cost(), opt.benefit(), opt.efficiency());
+            message = String.format("  %s %-60s cost %5d, benefit %10.1f, efficiency %10s",
+                    opt.cost() > costLimit ? "!" : planned.contains(opt) ? "+" : " ", opt, opt.cost(), opt.benefit(), formatEfficiency(opt));
         }
         optimizationStatistics.add(MindcodeMessage.debug(message));
     }
+
+    // Optimizations which don't increase code size (e.g. moving instructions) have no meaningful efficiency
+    private static String formatEfficiency(OptimizationAction opt) {
+        return opt.cost() == 0 ? "free" : String.format("%.1f", opt.efficiency());
+    }
 }
@@ -27,7 +27,10 @@ public enum OptimizationPhase {
             EXPRESSION_OPTIMIZATION,
             IF_EXPRESSION_OPTIMIZATION,
             DATA_FLOW_OPTIMIZATION,
+            COMMON_SUBEXPRESSION_ELIMINATION,
             LOOP_OPTIMIZATION,
+            LOOP_HOISTING,
+            LOOP_STRENGTH_REDUCTION,
             LOOP_UNROLLING,
             FUNCTION_INLINING,
             CASE_SWITCHING,
@@ -43,6 +46,7 @@ public enum OptimizationPhase {
             JUMP_OVER_JUMP_ELIMINATION,
             CONDITIONAL_JUMPS_OPTIMIZATION,
             JUMP_TARGET_PROPAGATION,
+            TAIL_CALL_ELIMINATION,
             UNREACHABLE_CODE_ELIMINATION,
             DEAD_CODE_ELIMINATION,
             SINGLE_STEP_JUMP_ELIMINATION,
@@ -36,13 +36,10 @@ public class ReturnOptimizer extends BaseOptimizer {
     @Override
     public List<OptimizationAction> getPossibleOptimizations(int costLimit) {
         invocations++;
-        return forEachContext(AstContextType.FUNCTION, BODY, this::findReturnStatementOptimizations)
-                .stream()
-                .flatMap(List::stream)
-                .toList();
+        return forEachContextCachedAll(AstContextType.FUNCTION, BODY, costLimit, this::findReturnStatementOptimizations);
     }
 
-    private List<OptimizationAction> findReturnStatementOptimizations(AstContext context) {
+    private List<OptimizationAction> findReturnStatementOptimizations(AstContext context, int costLimit) {
         if (!getCallGraph().getFunctionByPrefix(context.functionPrefix()).isRecursive()) {
             return List.of();
         }
@@ -110,6 +107,12 @@ public class ReturnOptimizer extends BaseOptimizer {
             this.replacement = replacement;
         }
 
+        @Override
+        public int requiredCostLimit() {
+            // The optimization is proposed regardless of the cost limit
+            return Integer.MIN_VALUE;
+        }
+
         @Override
         public OptimizationResult apply(int costLimit) {
             return applyOptimization(() -> replaceJumpToReturn(this, costLimit), toString());
@@ -118,7 +118,11 @@ public class StackUsageOptimizer extends BaseOptimizer {
 
     private Stream<LogicVariable> readVariables(LogicInstruction instruction) {
         if (instruction instanceof CallRecInstruction callRecInstruction) {
-            return implicitVariableReads(callRecInstruction).stream();
+            return implicitVariableReads(callRecInstruction.getAstContext()).stream();
+        } else if (instruction instanceof JumpInstruction jump && jump.isUnconditional()
+                && jump.getAstContext().matches(AstSubcontextType.RECURSIVE_CALL)) {
+            // A recursive call replaced by a jump by the tail call elimination
+            return implicitVariableReads(jump.getAstContext()).stream();
         } else {
             return instruction.inputArgumentsStream()
                     .filter(LogicVariable.class::isInstance)
@@ -126,8 +130,7 @@ public class StackUsageOptimizer extends BaseOptimizer {
         }
     }
 
-    private Set<LogicVariable> implicitVariableReads(CallRecInstruction instruction) {
-        AstContext subcontext = instruction.getAstContext();
+    private Set<LogicVariable> implicitVariableReads(AstContext subcontext) {
         if (subcontext.subcontextType() != AstSubcontextType.RECURSIVE_CALL) {
             throw new MindcodeInternalError("Expected RECURSIVE_CALL subcontext, found " + subcontext);
         }
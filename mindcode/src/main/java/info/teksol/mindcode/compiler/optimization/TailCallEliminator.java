@@ -0,0 +1,207 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.MessageLevel;
+import info.teksol.mindcode.compiler.generator.CallGraph;
+import info.teksol.mindcode.compiler.instructions.*;
+import info.teksol.mindcode.logic.LogicLabel;
+import info.teksol.mindcode.logic.LogicVariable;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces recursive calls in tail position with jumps. A call is in tail position when the function returns
+ * immediately after the call returns, i.e. when no instruction other than restoring variables from stack, labels
+ * and unconditional jumps is executed between the call and the return. Parameters of the called function are
+ * already set up in front of the call, therefore the call is replaced by a jump to the beginning of the called
+ * function, and the variables stored on the stack for the call are no longer stored. The called function then
+ * returns directly to the caller of the current function. Both calls of the function itself and calls of other
+ * recursive functions are replaced.
+ * <p>
+ * When no recursive call remains in the program after the replacement (that is, the remaining calls can never
+ * lead to another invocation of a function already being executed), the recursive functions are converted to
+ * stackless functions: recursive calls are replaced with stackless ones and the return instructions with jumps to
+ * the return address. The converted program doesn't access the stack at all.
+ * <p>
+ * Function calls and return instructions are only modified in the final phase of the optimization, as other
+ * optimizers expect recursive function calls to be structured.
+ */
+public class TailCallEliminator extends BaseOptimizer {
+    public TailCallEliminator(OptimizationContext optimizationContext) {
+        super(Optimization.TAIL_CALL_ELIMINATION, optimizationContext);
+    }
+
+    private int count = 0;
+    private int stackless = 0;
+
+    @Override
+    public void generateFinalMessages() {
+        super.generateFinalMessages();
+        if (count > 0) {
+            emitMessage(MessageLevel.INFO, "%6d tail calls replaced with jumps by %s.", count, getName());
+        }
+        if (stackless > 0) {
+            emitMessage(MessageLevel.INFO, "%6d recursive functions converted to stackless by %s.",
+                    stackless, getName());
+        }
+    }
+
+    @Override
+    protected boolean optimizeProgram(OptimizationPhase phase, int pass, int iteration) {
+        if (!getCallGraph().containsRecursiveFunction()) {
+            return false;
+        }
+
+        instructionStream()
+                .filter(CallRecInstruction.class::isInstance)
+                .map(CallRecInstruction.class::cast)
+                .filter(this::isTailCall)
+                .toList()
+                .forEach(this::replaceTailCall);
+
+        Map<LogicLabel, CallGraph.Function> functions = getCallGraph().getFunctions().stream()
+                .filter(f -> !f.isInline() && f.isUsed())
+                .collect(Collectors.toMap(CallGraph.Function::getLabel, f -> f));
+
+        if (!isReentrant(functions)) {
+            convertToStackless(functions);
+        }
+
+        return false;
+    }
+
+    //<editor-fold desc="Tail calls">
+    private boolean isTailCall(CallRecInstruction call) {
+        AstContext subcontext = call.getAstContext();
+        if (!subcontext.matches(AstSubcontextType.RECURSIVE_CALL)
+                || subcontext.findContextOfType(AstContextType.FUNCTION) == null) {
+            return false;
+        }
+
+        // Follows the instructions executed after the call returns
+        Set<Integer> visited = new HashSet<>();
+        int index = instructionIndex(call) + 1;
+        int size = optimizationContext.getProgram().size();
+        while (index > 0 && index < size && visited.add(index)) {
+            LogicInstruction ix = instructionAt(index);
+            switch (ix) {
+                case ReturnInstruction ret -> {
+                    return ret.getStack().equals(call.getStack());
+                }
+                case PopInstruction pop && pop.belongsTo(subcontext) -> index++;
+                case SetInstruction set && set.getResult().equals(set.getValue()) -> index++;
+                case JumpInstruction jump && jump.isUnconditional() -> index = labeledInstructionIndex(jump.getTarget());
+                case JumpInstruction jump -> {
+                    return false;
+                }
+                default -> {
+                    if (ix.getRealSize() != 0) {
+                        return false;
+                    }
+                    index++;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void replaceTailCall(CallRecInstruction call) {
+        AstContext subcontext = call.getAstContext();
+        removeMatchingInstructions(ix -> ix instanceof PushOrPopInstruction && ix.belongsTo(subcontext));
+        replaceInstruction(call, createJumpUnconditional(subcontext, call.getCallAddr()));
+        count++;
+    }
+    //</editor-fold>
+
+    //<editor-fold desc="Stackless conversion">
+    // A function might be invoked again while already being executed, or a function might be left by a jump
+    // into another function
+    private boolean isReentrant(Map<LogicLabel, CallGraph.Function> functions) {
+        Map<String, Set<String>> calls = new HashMap<>();
+        for (LogicInstruction ix : instructionStream().toList()) {
+            String caller = enclosingFunction(ix);
+            LogicLabel target = null;
+            if (ix instanceof PushOrPopInstruction) {
+                return true;
+            } else if (ix instanceof CallRecInstruction call) {
+                target = call.getCallAddr();
+            } else if (ix instanceof CallInstruction call) {
+                target = call.getCallAddr();
+            } else if (ix instanceof JumpInstruction jump && caller != null && functions.containsKey(jump.getTarget())
+                    && !functions.get(jump.getTarget()).getLocalPrefix().equals(caller)) {
+                return true;
+            }
+
+            if (caller != null && target != null && functions.containsKey(target)) {
+                calls.computeIfAbsent(caller, c -> new HashSet<>()).add(functions.get(target).getLocalPrefix());
+            }
+        }
+
+        Set<String> finished = new HashSet<>();
+        for (String function : calls.keySet()) {
+            if (hasCycle(calls, function, new HashSet<>(), finished)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasCycle(Map<String, Set<String>> calls, String function, Set<String> active, Set<String> finished) {
+        if (active.contains(function)) {
+            return true;
+        } else if (!finished.add(function)) {
+            return false;
+        }
+
+        active.add(function);
+        for (String called : calls.getOrDefault(function, Set.of())) {
+            if (hasCycle(calls, called, active, finished)) {
+                return true;
+            }
+        }
+        active.remove(function);
+        return false;
+    }
+
+    private String enclosingFunction(LogicInstruction ix) {
+        AstContext function = ix.getAstContext().findContextOfType(AstContextType.FUNCTION);
+        return function == null ? null : function.functionPrefix();
+    }
+
+    private void convertToStackless(Map<LogicLabel, CallGraph.Function> functions) {
+        Set<String> converted = new HashSet<>();
+        for (LogicInstruction ix : instructionStream().toList()) {
+            switch (ix) {
+                case CallRecInstruction call -> {
+                    String prefix = functions.get(call.getCallAddr()).getLocalPrefix();
+                    int labelIndex = firstInstructionIndex(in -> in instanceof LabelInstruction label
+                            && label.getLabel().equals(call.getRetAddr()));
+                    replaceInstruction(labelIndex, createGotoLabel(instructionAt(labelIndex).getAstContext(),
+                            call.getRetAddr(), LogicLabel.symbolic(prefix)));
+
+                    AstContext astContext = call.getAstContext();
+                    int index = instructionIndex(call);
+                    replaceInstruction(index, createSetAddress(astContext, LogicVariable.fnRetAddr(prefix),
+                            call.getRetAddr()));
+                    insertInstruction(index + 1, createCallStackless(astContext, call.getCallAddr()));
+                }
+                case ReturnInstruction ret -> {
+                    String prefix = enclosingFunction(ret);
+                    replaceInstruction(ret, createGoto(ret.getAstContext(), LogicVariable.fnRetAddr(prefix),
+                            LogicLabel.symbolic(prefix)));
+                    converted.add(prefix);
+                }
+                default -> {}
+            }
+        }
+
+        // The stack isn't used anymore
+        if (!converted.isEmpty()) {
+            removeMatchingInstructions(ix -> ix instanceof SetInstruction set
+                    && set.getResult().equals(LogicVariable.STACK_POINTER));
+            stackless += converted.size();
+        }
+    }
+    //</editor-fold>
+}
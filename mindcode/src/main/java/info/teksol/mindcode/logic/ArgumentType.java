@@ -15,6 +15,7 @@ public enum ArgumentType {
     GLOBAL_VARIABLE,
     LOCAL_VARIABLE,
     TMP_VARIABLE,
+    OPTIMIZER_VARIABLE,      // Variables created by optimizers, which, unlike temporary variables, may be assigned repeatedly
     AST_VARIABLE,
     FUNCTION_RETVAL,
     FUNCTION_RETADDR,
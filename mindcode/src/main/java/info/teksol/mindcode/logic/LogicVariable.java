@@ -119,6 +119,18 @@ public class LogicVariable extends AbstractArgument implements LogicValue, Logic
         return new LogicVariable(ArgumentType.TMP_VARIABLE, name);
     }
 
+    /**
+     * Creates a variable introduced by an optimizer to hold a value computed at several places, e.g. updated on each
+     * loop iteration. Temporary variables can't be used for this purpose, as optimizers expect them to be assigned
+     * by a single instruction, while main variables would be treated as if they held user state.
+     *
+     * @param name name of the variable
+     * @return optimizer variable
+     */
+    public static LogicVariable optimizer(String name) {
+        return new LogicVariable(ArgumentType.OPTIMIZER_VARIABLE, name);
+    }
+
     public static LogicVariable ast(String name) {
         return new LogicVariable(ArgumentType.AST_VARIABLE, name);
     }
@@ -45,6 +45,11 @@ public abstract class AbstractVariable implements Variable {
         return name;
     }
 
+    @Override
+    public boolean isFixed() {
+        return fixed;
+    }
+
     @Override
     public MindustryObject getObject() {
         return object;
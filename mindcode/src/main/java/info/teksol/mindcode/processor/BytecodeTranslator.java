@@ -0,0 +1,425 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.compiler.instructions.JumpInstruction;
+import info.teksol.mindcode.compiler.instructions.OpInstruction;
+import info.teksol.mindcode.logic.Condition;
+import info.teksol.mindcode.logic.Operation;
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Translates a {@link DecodedProgram} into a hidden JVM class for the {@link ExecutionEngine#BYTECODE} engine.
+ * <p>
+ * The program is split into chunks of consecutive instructions and each chunk is translated into a separate method,
+ * keeping the methods small enough to be compiled by the JIT compiler. Each instruction becomes a region of its
+ * method, starting with a label, and the regions are laid out in program order, so that consecutive instructions
+ * fall through to each other. A method is entered through a {@code tableswitch} on {@code @counter}. Jumps
+ * to constant addresses within the chunk are translated to direct branches; jumps leaving the chunk and writes
+ * to {@code @counter} return to {@link TranslatedProgram#execute()}, which enters the chunk containing the new
+ * value of the counter.
+ * <p>
+ * Each region first verifies the step limit, then increments the step counter and marks the instruction as covered,
+ * exactly as the interpreter does. Arithmetic operations, comparisons, relational jumps and assignments are
+ * translated to bytecode operating on the register file directly. The remaining instructions are delegated
+ * to the {@link ExecutionEngine#REGISTERS} engine one instruction at a time.
+ */
+final class BytecodeTranslator {
+    private static final String CLASS_NAME = Type.getInternalName(TranslatedProgram.class) + "$Generated";
+    private static final String BASE = Type.getInternalName(TranslatedProgram.class);
+    private static final String REGISTERS = Type.getInternalName(RegisterFile.class);
+    private static final String REGISTERS_DESC = Type.getDescriptor(RegisterFile.class);
+
+    /** Maximal number of instructions translated into one method */
+    static final int CHUNK_SIZE = 100;
+
+    // Local variables of the generated methods
+    private static final int THIS       = 0;
+    private static final int COUNTER    = 1;
+    private static final int STEPS      = 2;
+    private static final int LIMIT      = 3;
+    private static final int COVERED    = 4;
+    private static final int VALUES     = 5;
+    private static final int REGS       = 6;
+
+    private final DecodedProgram program;
+    private final int first;
+    private final int last;
+    private final MethodVisitor mv;
+    private final Label[] labels;
+    private final Label leave = new Label();
+    private final Label stop = new Label();
+
+    // Translates instructions from first (inclusive) to last (exclusive)
+    private BytecodeTranslator(DecodedProgram program, int first, int last, MethodVisitor mv) {
+        this.program = program;
+        this.first = first;
+        this.last = last;
+        this.mv = mv;
+        this.labels = new Label[last - first];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+    }
+
+    /**
+     * Translates the program and loads the resulting class.
+     *
+     * @param program program to translate
+     * @return factory of instances of the translated program, or null if the program cannot be translated
+     */
+    static Supplier<TranslatedProgram> translate(DecodedProgram program) {
+        if (program.size() == 0) {
+            return null;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = generateClass(program);
+        } catch (MethodTooLargeException | ClassTooLargeException e) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+            return () -> {
+                try {
+                    return (TranslatedProgram) constructor.invoke();
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Cannot instantiate translated program", e);
+                }
+            };
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("Cannot load translated program", e);
+        }
+    }
+
+    private static byte[] generateClass(DecodedProgram program) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(V17, ACC_FINAL | ACC_SYNTHETIC, CLASS_NAME, null, BASE, null);
+
+        MethodVisitor init = cw.visitMethod(0, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, THIS);
+        init.visitMethodInsn(INVOKESPECIAL, BASE, "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        int chunks = (program.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        generateDispatch(cw, chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, "chunk" + chunk, "(I)Z", null, null);
+            mv.visitCode();
+            int first = chunk * CHUNK_SIZE;
+            new BytecodeTranslator(program, first, Math.min(first + CHUNK_SIZE, program.size()), mv).generateChunk();
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateDispatch(ClassWriter cw, int chunks) {
+        MethodVisitor mv = cw.visitMethod(0, "executeChunk", "(I)Z", null, null);
+        mv.visitCode();
+        Label[] labels = new Label[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            labels[chunk] = new Label();
+        }
+        Label invalid = new Label();
+        mv.visitVarInsn(ILOAD, COUNTER);
+        mv.visitLdcInsn(CHUNK_SIZE);
+        mv.visitInsn(IDIV);
+        mv.visitTableSwitchInsn(0, chunks - 1, invalid, labels);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            mv.visitLabel(labels[chunk]);
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitVarInsn(ILOAD, COUNTER);
+            mv.visitMethodInsn(INVOKEVIRTUAL, CLASS_NAME, "chunk" + chunk, "(I)Z", false);
+            mv.visitInsn(IRETURN);
+        }
+        mv.visitLabel(invalid);
+        mv.visitTypeInsn(NEW, "java/lang/IllegalStateException");
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "()V", false);
+        mv.visitInsn(ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void generateChunk() {
+        loadField("steps", "I", ISTORE, STEPS);
+        loadField("stepLimit", "I", ISTORE, LIMIT);
+        loadField("covered", "[Z", ASTORE, COVERED);
+        loadField("registers", REGISTERS_DESC, ASTORE, REGS);
+        mv.visitVarInsn(ALOAD, REGS);
+        mv.visitFieldInsn(GETFIELD, REGISTERS, "values", "[D");
+        mv.visitVarInsn(ASTORE, VALUES);
+
+        // Steps and counter need to be stored even when an instruction throws an exception
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+        mv.visitLabel(tryStart);
+
+        mv.visitVarInsn(ILOAD, COUNTER);
+        mv.visitTableSwitchInsn(first, last - 1, leave, labels);
+
+        for (int index = first; index < last; index++) {
+            generateInstruction(index);
+        }
+
+        // Falling through past the last instruction, the counter already points to the next one
+        mv.visitJumpInsn(GOTO, leave);
+        mv.visitLabel(tryEnd);
+
+        mv.visitLabel(leave);
+        storeState();
+        push(1);
+        mv.visitInsn(IRETURN);
+
+        mv.visitLabel(stop);
+        storeState();
+        push(0);
+        mv.visitInsn(IRETURN);
+
+        mv.visitLabel(handler);
+        storeState();
+        mv.visitInsn(ATHROW);
+    }
+
+    private void generateInstruction(int index) {
+        mv.visitLabel(labels[index - first]);
+        checkStepLimit();
+        mv.visitIincInsn(STEPS, 1);
+        mv.visitVarInsn(ALOAD, COVERED);
+        push(index);
+        push(1);
+        mv.visitInsn(BASTORE);
+        push(index + 1);
+        mv.visitVarInsn(ISTORE, COUNTER);
+
+        int base = index * DecodedProgram.OPERANDS;
+        int counterSlot = program.getCounterSlot();
+        boolean readsCounter = false;
+        for (int i = 0; i < DecodedProgram.OPERANDS; i++) {
+            readsCounter |= program.operands[base + i] == counterSlot;
+        }
+        if (readsCounter) {
+            mv.visitVarInsn(ALOAD, REGS);
+            mv.visitVarInsn(ILOAD, COUNTER);
+            mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "setCounter", "(I)V", false);
+        }
+
+        switch (program.opcodes[index]) {
+            case DecodedProgram.END -> {
+                push(0);
+                mv.visitVarInsn(ISTORE, COUNTER);
+                mv.visitVarInsn(ALOAD, THIS);
+                mv.visitFieldInsn(GETFIELD, BASE, "stopOnEndInstruction", "Z");
+                mv.visitJumpInsn(IFEQ, target(0));
+                mv.visitJumpInsn(GOTO, stop);
+            }
+            case DecodedProgram.STOP -> mv.visitJumpInsn(GOTO, stop);
+            case DecodedProgram.JUMP_ALWAYS -> generateJump(index);
+            case DecodedProgram.JUMP -> {
+                Label skip = new Label();
+                if (!generateNumericCondition(index, skip)) {
+                    mv.visitVarInsn(ALOAD, THIS);
+                    push(index);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "condition", "(I)Z", false);
+                    mv.visitJumpInsn(IFEQ, skip);
+                }
+                generateJump(index);
+                mv.visitLabel(skip);
+            }
+            case DecodedProgram.OP -> {
+                if (!generateNumericOperation(index)) {
+                    generateDelegation(index);
+                }
+                checkCounterWrite(index);
+            }
+            case DecodedProgram.SET -> {
+                mv.visitVarInsn(ALOAD, REGS);
+                bindSlot("write", program.operands[base]);
+                bindSlot("read", program.operands[base + 1]);
+                mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "assign", "(II)V", false);
+                checkCounterWrite(index);
+            }
+            case DecodedProgram.PACKCOLOR, DecodedProgram.READ -> {
+                generateDelegation(index);
+                checkCounterWrite(index);
+            }
+            case DecodedProgram.NOOP -> { }
+            default -> generateDelegation(index);
+        }
+    }
+
+    private void generateJump(int index) {
+        int address = program.addresses[index];
+        push(address);
+        mv.visitVarInsn(ISTORE, COUNTER);
+        mv.visitJumpInsn(GOTO, target(address));
+    }
+
+    // Addresses outside the chunk, including invalid ones, are handled by TranslatedProgram.execute()
+    private Label target(int address) {
+        return address >= first && address < last ? labels[address - first] : leave;
+    }
+
+    // Generates a jump to the skip label if the condition doesn't hold, if the condition is supported
+    private boolean generateNumericCondition(int index, Label skip) {
+        if (program.numericConditions[index] == null) {
+            return false;
+        }
+
+        Condition condition = ((JumpInstruction) program.getInstruction(index)).getCondition();
+        int compare = condition == Condition.LESS_THAN || condition == Condition.LESS_THAN_EQ ? DCMPG : DCMPL;
+        int negatedJump = switch (condition) {
+            case LESS_THAN          -> IFGE;
+            case LESS_THAN_EQ       -> IFGT;
+            case GREATER_THAN       -> IFLE;
+            case GREATER_THAN_EQ    -> IFLT;
+            default                 -> -1;
+        };
+        if (negatedJump < 0) {
+            return false;
+        }
+
+        int base = index * DecodedProgram.OPERANDS;
+        loadValue(program.operands[base]);
+        loadValue(program.operands[base + 1]);
+        mv.visitInsn(compare);
+        mv.visitJumpInsn(negatedJump, skip);
+        return true;
+    }
+
+    private boolean generateNumericOperation(int index) {
+        if (program.numericOperations[index] == null) {
+            return false;
+        }
+
+        Operation operation = ((OpInstruction) program.getInstruction(index)).getOperation();
+        int arithmetic = switch (operation) {
+            case ADD        -> DADD;
+            case SUB        -> DSUB;
+            case MUL        -> DMUL;
+            case DIV, IDIV  -> DDIV;
+            case MOD        -> DREM;
+            default         -> -1;
+        };
+        int negatedJump = switch (operation) {
+            case LESS_THAN          -> IFGE;
+            case LESS_THAN_EQ       -> IFGT;
+            case GREATER_THAN       -> IFLE;
+            case GREATER_THAN_EQ    -> IFLT;
+            default                 -> -1;
+        };
+        if (arithmetic < 0 && negatedJump < 0) {
+            return false;
+        }
+
+        int base = index * DecodedProgram.OPERANDS;
+        mv.visitVarInsn(ALOAD, REGS);
+        bindSlot("write", program.operands[base]);
+        loadValue(program.operands[base + 1]);
+        loadValue(program.operands[base + 2]);
+        if (arithmetic >= 0) {
+            mv.visitInsn(arithmetic);
+            if (operation == Operation.IDIV) {
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "floor", "(D)D", false);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "setDouble", "(ID)V", false);
+        } else {
+            Label isFalse = new Label();
+            Label done = new Label();
+            boolean less = operation == Operation.LESS_THAN || operation == Operation.LESS_THAN_EQ;
+            mv.visitInsn(less ? DCMPG : DCMPL);
+            mv.visitJumpInsn(negatedJump, isFalse);
+            push(1);
+            mv.visitJumpInsn(GOTO, done);
+            mv.visitLabel(isFalse);
+            push(0);
+            mv.visitLabel(done);
+            mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "setBoolean", "(IZ)V", false);
+        }
+        return true;
+    }
+
+    private void generateDelegation(int index) {
+        mv.visitVarInsn(ALOAD, THIS);
+        push(index);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, "execute", "(I)V", false);
+    }
+
+    // Transfers control to the new value of @counter if the instruction assigned it
+    private void checkCounterWrite(int index) {
+        if (program.operands[index * DecodedProgram.OPERANDS] == program.getCounterSlot()) {
+            mv.visitVarInsn(ALOAD, REGS);
+            mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "getCounter", "()I", false);
+            mv.visitVarInsn(ISTORE, COUNTER);
+            mv.visitJumpInsn(GOTO, leave);
+        }
+    }
+
+    private void checkStepLimit() {
+        mv.visitVarInsn(ILOAD, STEPS);
+        mv.visitVarInsn(ILOAD, LIMIT);
+        mv.visitJumpInsn(IF_ICMPGE, stop);
+    }
+
+    private void storeState() {
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitVarInsn(ILOAD, STEPS);
+        mv.visitFieldInsn(PUTFIELD, BASE, "steps", "I");
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitVarInsn(ILOAD, COUNTER);
+        mv.visitFieldInsn(PUTFIELD, BASE, "counter", "I");
+    }
+
+    private void loadField(String name, String descriptor, int storeOpcode, int local) {
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitFieldInsn(GETFIELD, BASE, name, descriptor);
+        mv.visitVarInsn(storeOpcode, local);
+    }
+
+    // Binds the slot and leaves its index on the stack
+    private void bindSlot(String method, int slot) {
+        mv.visitVarInsn(ALOAD, THIS);
+        push(slot);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE, method, "(I)I", false);
+    }
+
+    // Binds the slot for reading and leaves its numeric value on the stack
+    private void loadValue(int slot) {
+        mv.visitVarInsn(ALOAD, VALUES);
+        bindSlot("read", slot);
+        mv.visitInsn(DALOAD);
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
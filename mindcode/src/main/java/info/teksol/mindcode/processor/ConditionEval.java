@@ -0,0 +1,8 @@
+package info.teksol.mindcode.processor;
+
+/**
+ * Mindustry jump condition.
+ */
+public interface ConditionEval {
+    boolean evaluate(MindustryValue a, MindustryValue b);
+}
@@ -0,0 +1,216 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.compiler.instructions.*;
+import info.teksol.mindcode.logic.LogicArgument;
+import info.teksol.mindcode.logic.LogicNumber;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A program decoded for the {@link ExecutionEngine#DECODED} execution engine. Each instruction is translated
+ * to an integer opcode, and its operands to slot indexes into a register file. Jump addresses are parsed and
+ * operation and condition handlers are bound once, so that no name lookups are performed while the program runs.
+ * <p>
+ * The decoded program doesn't hold any processor state, it can be executed repeatedly and by several processors.
+ * Slots are assigned to distinct mlog names of the operands; the processor binds them to its variables.
+ */
+public final class DecodedProgram {
+    static final int END            = 0;
+    static final int JUMP           = 1;
+    static final int JUMP_ALWAYS    = 2;
+    static final int OP             = 3;
+    static final int PACKCOLOR      = 4;
+    static final int PRINT          = 5;
+    static final int READ           = 6;
+    static final int SET            = 7;
+    static final int STOP           = 8;
+    static final int WRITE          = 9;
+    static final int NOOP           = 10;
+    static final int UNSUPPORTED    = 11;
+    static final int FAILURE        = 12;
+
+    /** Maximal number of operands of a decoded instruction (packcolor) */
+    static final int OPERANDS = 5;
+
+    private final List<LogicInstruction> instructions;
+    private final Map<String, Integer> slots = new LinkedHashMap<>();
+    private final String[] names;
+    private final boolean containsStop;
+    private final int counterSlot;
+
+    /** The ASM library used by the bytecode translation is an optional dependency */
+    private static final boolean BYTECODE_AVAILABLE = isClassAvailable("org.objectweb.asm.ClassWriter");
+
+    /** Factory of the program translated to bytecode, created on first use */
+    private Supplier<TranslatedProgram> translation;
+    private boolean translated;
+
+    /** Opcode of each instruction */
+    final int[] opcodes;
+
+    /** Slot indexes of instruction operands, {@link #OPERANDS} entries per instruction */
+    final int[] operands;
+
+    /** Parsed target addresses of jump instructions */
+    final int[] addresses;
+
+    /** Handlers bound to op instructions */
+    final OperationEval[] operations;
+
+    /** Handlers bound to conditional jump instructions */
+    final ConditionEval[] conditions;
+
+    /** Primitive handlers bound to op instructions, null where the operation needs to distinguish objects */
+    final NumericOperationEval[] numericOperations;
+
+    /** Result types of primitive handlers bound to op instructions, as {@link MindustryValueType} ordinals */
+    final byte[] resultTypes;
+
+    /** Primitive handlers bound to conditional jump instructions, null where the condition needs to distinguish objects */
+    final NumericConditionEval[] numericConditions;
+
+    /** Exceptions encountered while decoding an instruction, rethrown when the instruction is executed */
+    final RuntimeException[] errors;
+
+    private DecodedProgram(List<LogicInstruction> program) {
+        int size = program.size();
+        instructions = List.copyOf(program);
+        opcodes = new int[size];
+        operands = new int[size * OPERANDS];
+        addresses = new int[size];
+        operations = new OperationEval[size];
+        conditions = new ConditionEval[size];
+        numericOperations = new NumericOperationEval[size];
+        resultTypes = new byte[size];
+        numericConditions = new NumericConditionEval[size];
+        errors = new RuntimeException[size];
+
+        for (int index = 0; index < size; index++) {
+            decodeInstruction(index, instructions.get(index));
+        }
+
+        names = slots.keySet().toArray(String[]::new);
+        containsStop = instructions.stream().anyMatch(StopInstruction.class::isInstance);
+        counterSlot = slots.getOrDefault("@counter", names.length);
+    }
+
+    /**
+     * Decodes given program. The program needs to have its labels resolved.
+     *
+     * @param program program to decode
+     * @return decoded program
+     */
+    public static DecodedProgram decode(List<LogicInstruction> program) {
+        return new DecodedProgram(program);
+    }
+
+    public int size() {
+        return opcodes.length;
+    }
+
+    public boolean containsStop() {
+        return containsStop;
+    }
+
+    public List<LogicInstruction> getInstructions() {
+        return instructions;
+    }
+
+    public LogicInstruction getInstruction(int index) {
+        return instructions.get(index);
+    }
+
+    public int getSlotCount() {
+        return names.length;
+    }
+
+    public String getSlotName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * @return slot of @counter, or the first slot past the end if the program doesn't reference @counter
+     */
+    int getCounterSlot() {
+        return counterSlot;
+    }
+
+    /**
+     * Provides a new instance of the program translated to bytecode by the {@link BytecodeTranslator}. The program
+     * is translated on first call only.
+     *
+     * @return new instance of the translated program, or null if the program cannot be translated or the ASM library
+     * isn't available
+     */
+    synchronized TranslatedProgram createTranslatedProgram() {
+        if (!translated) {
+            translation = BYTECODE_AVAILABLE ? BytecodeTranslator.translate(this) : null;
+            translated = true;
+        }
+        return translation == null ? null : translation.get();
+    }
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, DecodedProgram.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void decodeInstruction(int index, LogicInstruction instruction) {
+        try {
+            switch (instruction) {
+                case EndInstruction ix      -> opcodes[index] = END;
+                case JumpInstruction ix     -> decodeJump(index, ix);
+                case OpInstruction ix       -> decodeOp(index, ix);
+                case PackColorInstruction ix-> setOperands(index, PACKCOLOR, ix.getResult(), ix.getR(), ix.getG(), ix.getB(), ix.getA());
+                case PrintInstruction ix    -> setOperands(index, PRINT, ix.getValue());
+                case ReadInstruction ix     -> setOperands(index, READ, ix.getResult(), ix.getMemory(), ix.getIndex());
+                case SetInstruction ix      -> setOperands(index, SET, ix.getArg(0), ix.getArg(1));
+                case StopInstruction ix     -> opcodes[index] = STOP;
+                case WriteInstruction ix    -> setOperands(index, WRITE, ix.getArg(0), ix.getMemory(), ix.getIndex());
+                default                     -> opcodes[index] =
+                    switch (instruction.getOpcode()) {
+                        case DRAW, DRAWFLUSH -> NOOP;
+                        default             -> UNSUPPORTED;
+                    };
+            }
+        } catch (RuntimeException ex) {
+            // The interpreter would fail when executing the instruction, so will we.
+            opcodes[index] = FAILURE;
+            errors[index] = ex;
+        }
+    }
+
+    private void decodeJump(int index, JumpInstruction ix) {
+        addresses[index] = Integer.parseInt(ix.getTarget().toMlog());
+        if (ix.isUnconditional()) {
+            opcodes[index] = JUMP_ALWAYS;
+        } else {
+            setOperands(index, JUMP, ix.getX(), ix.getY());
+            conditions[index] = ExpressionEvaluator.getCondition(ix.getCondition());
+            numericConditions[index] = ExpressionEvaluator.getNumericCondition(ix.getCondition());
+        }
+    }
+
+    private void decodeOp(int index, OpInstruction ix) {
+        setOperands(index, OP, ix.getArg(1), ix.getX(), ix.hasSecondOperand() ? ix.getY() : LogicNumber.ZERO);
+        operations[index] = ExpressionEvaluator.getOperation(ix.getOperation());
+        numericOperations[index] = ExpressionEvaluator.getNumericOperation(ix.getOperation());
+        if (numericOperations[index] != null) {
+            resultTypes[index] = (byte) ExpressionEvaluator.getResultType(ix.getOperation()).ordinal();
+        }
+    }
+
+    private void setOperands(int index, int opcode, LogicArgument... arguments) {
+        opcodes[index] = opcode;
+        for (int i = 0; i < arguments.length; i++) {
+            operands[index * OPERANDS + i] = slots.computeIfAbsent(arguments[i].toMlog(), name -> slots.size());
+        }
+    }
+}
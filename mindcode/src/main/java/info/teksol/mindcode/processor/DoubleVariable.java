@@ -34,6 +34,10 @@ public class DoubleVariable extends AbstractVariable {
 
     @Override
     protected String valueToString() {
+        return valueToString(value);
+    }
+
+    static String valueToString(double value) {
         if(Math.abs(value - (long) value) < 0.00001) {
             return String.valueOf((long) value);
         } else {
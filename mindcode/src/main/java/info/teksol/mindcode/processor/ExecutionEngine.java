@@ -0,0 +1,36 @@
+package info.teksol.mindcode.processor;
+
+/**
+ * Strategies the processor emulator can use to execute a program.
+ */
+public enum ExecutionEngine {
+    /**
+     * Executes the instructions directly, resolving operands by name on each step. Serves as the reference
+     * implementation.
+     */
+    INTERPRETER,
+
+    /**
+     * Decodes the program once into a {@link DecodedProgram} and executes it using a register file indexed by
+     * slot numbers. Semantically identical to the interpreter, but much faster for long-running programs.
+     */
+    DECODED,
+
+    /**
+     * Executes a {@link DecodedProgram} using a {@link RegisterFile}, which keeps values of variables in primitive
+     * arrays. Numeric operations are evaluated on primitive values, so that executing them doesn't allocate
+     * any memory.
+     */
+    REGISTERS,
+
+    /**
+     * Translates a {@link DecodedProgram} into a JVM class using the {@link BytecodeTranslator} and executes
+     * the class. The translation is performed once per decoded program, the engine is therefore suitable for
+     * programs which run for a very long time or are run repeatedly. Programs which cannot be translated
+     * are executed by the {@link #REGISTERS} engine.
+     * <p>
+     * The translation requires the ASM library, which is an optional dependency of Mindcode. When the library
+     * isn't available, all programs are executed by the {@link #REGISTERS} engine.
+     */
+    BYTECODE,
+}
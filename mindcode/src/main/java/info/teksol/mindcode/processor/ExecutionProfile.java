@@ -0,0 +1,81 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.compiler.optimization.ExecutionWeights;
+
+import java.util.List;
+
+/**
+ * Execution profile of a program run by the {@link Processor}. The profile records the number of executions
+ * of each instruction, and the number of times each instruction transferred control to an instruction other than
+ * the next one. For conditional jumps, these are the counts of taken branches. Use {@link ExecutionProfilePrinter}
+ * to map the profile back to the source code.
+ */
+public final class ExecutionProfile {
+    private final List<LogicInstruction> program;
+    private final long[] executions;
+    private final long[] transfers;
+
+    ExecutionProfile(List<LogicInstruction> program) {
+        this.program = List.copyOf(program);
+        this.executions = new long[program.size()];
+        this.transfers = new long[program.size()];
+    }
+
+    void countExecution(int index) {
+        executions[index]++;
+    }
+
+    void countTransfer(int index, int next) {
+        if (next != index + 1) {
+            transfers[index]++;
+        }
+    }
+
+    public List<LogicInstruction> getProgram() {
+        return program;
+    }
+
+    public int size() {
+        return executions.length;
+    }
+
+    /**
+     * @param index index of the instruction
+     * @return number of times the instruction was executed
+     */
+    public long getExecutions(int index) {
+        return executions[index];
+    }
+
+    /**
+     * Provides the number of times the instruction transferred control elsewhere than to the next instruction,
+     * i.e. the number of times a jump was taken.
+     *
+     * @param index index of the instruction
+     * @return number of control transfers
+     */
+    public long getTransfers(int index) {
+        return transfers[index];
+    }
+
+    /**
+     * @return total number of executed instructions
+     */
+    public long getTotalExecutions() {
+        long total = 0;
+        for (long count : executions) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Converts the profile to execution counts of AST contexts, which can be used for profile-guided optimization.
+     *
+     * @return execution weights corresponding to this profile
+     */
+    public ExecutionWeights toExecutionWeights() {
+        return ExecutionWeights.collect(program, this::getExecutions);
+    }
+}
@@ -0,0 +1,174 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.ast.AstNode;
+import info.teksol.mindcode.ast.FunctionCall;
+import info.teksol.mindcode.ast.FunctionDeclaration;
+import info.teksol.mindcode.compiler.instructions.AstContext;
+import info.teksol.mindcode.compiler.instructions.AstContextType;
+import info.teksol.mindcode.compiler.instructions.AstSubcontextType;
+import info.teksol.mindcode.compiler.instructions.JumpInstruction;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+
+import java.util.*;
+
+/**
+ * Maps an {@link ExecutionProfile} back to the source code using the AST contexts of the profiled instructions.
+ */
+public class ExecutionProfilePrinter {
+    private static final String MAIN = "main";
+
+    /**
+     * Creates a profile in the collapsed stack format used by flame graph tools. Each line contains the AST contexts
+     * enclosing an instruction, from the outermost one, separated by semicolons, followed by the number of executed
+     * steps. Contexts are identified by their type and the source line they start at. Subcontexts (e.g. a condition
+     * of a loop) replace the context they belong to, and the opcode of the instruction is the innermost frame.
+     * The outermost frame is always {@code program}.
+     *
+     * @param profile profile to print
+     * @return profile in collapsed stack format
+     */
+    public static String toCollapsedStacks(ExecutionProfile profile) {
+        Map<String, Long> stacks = new TreeMap<>();
+        for (int index = 0; index < profile.size(); index++) {
+            long count = profile.getExecutions(index);
+            if (count > 0) {
+                LogicInstruction instruction = profile.getProgram().get(index);
+                List<String> frames = frames(instruction.getAstContext());
+                frames.add(instruction.getOpcode().getOpcode());
+                stacks.merge(String.join(";", frames), count, Long::sum);
+            }
+        }
+
+        StringBuilder buffer = new StringBuilder();
+        stacks.forEach((stack, count) -> buffer.append(stack).append(' ').append(count).append('\n'));
+        return buffer.toString();
+    }
+
+    /**
+     * Creates a table of source lines ordered by the number of steps executed by their instructions, grouped
+     * by function. Code of inlined functions is attributed to the calling function. For lines containing
+     * conditional jumps, the numbers of taken and not taken branches are given.
+     *
+     * @param profile profile to print
+     * @param sourceCode source code of the profiled program
+     * @return the hot spot table
+     */
+    public static String toHotSpotTable(ExecutionProfile profile, String sourceCode) {
+        List<String> lines = sourceCode.lines().toList();
+        Map<String, Map<Integer, LineProfile>> functions = new HashMap<>();
+        for (int index = 0; index < profile.size(); index++) {
+            long count = profile.getExecutions(index);
+            if (count > 0) {
+                LogicInstruction instruction = profile.getProgram().get(index);
+                AstContext context = instruction.getAstContext();
+                LineProfile line = functions.computeIfAbsent(functionName(context), f -> new HashMap<>())
+                        .computeIfAbsent(sourceLine(context), LineProfile::new);
+                line.steps += count;
+                if (instruction instanceof JumpInstruction jump && jump.isConditional()) {
+                    line.taken += profile.getTransfers(index);
+                    line.notTaken += count - profile.getTransfers(index);
+                    line.branches = true;
+                }
+            }
+        }
+
+        double total = Math.max(1, profile.getTotalExecutions());
+        StringBuilder buffer = new StringBuilder();
+        functions.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Map<Integer, LineProfile>> e) -> -steps(e.getValue().values()))
+                        .thenComparing(Map.Entry::getKey))
+                .forEachOrdered(entry -> {
+                    long steps = steps(entry.getValue().values());
+                    buffer.append("Function %s: %d steps (%.1f%%)\n".formatted(entry.getKey(), steps, 100 * steps / total));
+                    buffer.append("    Line       Steps        %      Taken  Not taken  Source\n");
+                    entry.getValue().values().stream()
+                            .sorted(Comparator.comparingLong((LineProfile l) -> -l.steps).thenComparingInt(l -> l.line))
+                            .forEachOrdered(line -> buffer.append("%8s %11d %7.1f%% %10s %10s  %s\n".formatted(
+                                    line.line > 0 ? String.valueOf(line.line) : "-",
+                                    line.steps,
+                                    100 * line.steps / total,
+                                    line.branches ? String.valueOf(line.taken) : "",
+                                    line.branches ? String.valueOf(line.notTaken) : "",
+                                    line.line > 0 && line.line <= lines.size() ? lines.get(line.line - 1).trim() : "")));
+                    buffer.append('\n');
+                });
+
+        return buffer.toString();
+    }
+
+    private static long steps(Collection<LineProfile> lines) {
+        return lines.stream().mapToLong(l -> l.steps).sum();
+    }
+
+    private static List<String> frames(AstContext context) {
+        Deque<AstContext> path = new ArrayDeque<>();
+        for (AstContext ctx = context; ctx != null; ctx = ctx.parent()) {
+            path.addFirst(ctx);
+        }
+
+        List<String> frames = new ArrayList<>();
+        AstContext previous = null;
+        for (AstContext ctx : path) {
+            if (previous != null && previous.node() == ctx.node() && previous.contextType() == ctx.contextType()) {
+                frames.set(frames.size() - 1, frameName(ctx));
+            } else {
+                frames.add(frameName(ctx));
+            }
+            previous = ctx;
+        }
+
+        if (frames.isEmpty()) {
+            frames.add(frameName(null));
+        }
+        return frames;
+    }
+
+    private static String frameName(AstContext context) {
+        if (context == null) {
+            return "program";
+        }
+
+        AstNode node = context.node();
+        String name = switch (context.contextType()) {
+            case ROOT -> "program";
+            case FUNCTION -> node instanceof FunctionDeclaration declaration ? "function " + declaration.getName() : "function";
+            case CALL -> node instanceof FunctionCall call ? "call " + call.getFunctionName() : "call";
+            default -> context.contextType().name().toLowerCase();
+        };
+
+        StringBuilder frame = new StringBuilder(name);
+        if (node != null && node.startToken() != null) {
+            frame.append(':').append(node.startToken().getLine());
+        }
+        if (context.subcontextType() != AstSubcontextType.BASIC && context.contextType() != AstContextType.ROOT) {
+            frame.append(' ').append(context.subcontextType().name().toLowerCase());
+        }
+        return frame.toString();
+    }
+
+    private static String functionName(AstContext context) {
+        AstContext function = context == null ? null : context.findContextOfType(AstContextType.FUNCTION);
+        return function != null && function.node() instanceof FunctionDeclaration declaration ? declaration.getName() : MAIN;
+    }
+
+    private static int sourceLine(AstContext context) {
+        for (AstContext ctx = context; ctx != null; ctx = ctx.parent()) {
+            if (ctx.node() != null && ctx.node().startToken() != null) {
+                return ctx.node().startToken().getLine();
+            }
+        }
+        return 0;
+    }
+
+    private static class LineProfile {
+        private final int line;
+        private long steps;
+        private long taken;
+        private long notTaken;
+        private boolean branches;
+
+        private LineProfile(int line) {
+            this.line = line;
+        }
+    }
+}
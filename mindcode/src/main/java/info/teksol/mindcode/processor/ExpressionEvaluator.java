@@ -1,5 +1,6 @@
 package info.teksol.mindcode.processor;
 
+import info.teksol.mindcode.logic.Condition;
 import info.teksol.mindcode.logic.Operation;
 
 import java.util.EnumMap;
@@ -13,15 +14,50 @@ public class ExpressionEvaluator {
         return OPERATIONS.get(operation);
     }
 
+    public static ConditionEval getCondition(Condition condition) {
+        return CONDITIONS.get(condition);
+    }
+
+    /**
+     * Returns the primitive form of an operation, or null if the operation needs to distinguish objects
+     * from numbers and has to be evaluated using {@link #getOperation(Operation)}.
+     *
+     * @param operation operation to evaluate
+     * @return primitive evaluator of the operation
+     */
+    public static NumericOperationEval getNumericOperation(Operation operation) {
+        return NUMERIC_OPERATIONS.get(operation);
+    }
+
+    /**
+     * @param operation operation to evaluate
+     * @return type of the value produced by the primitive form of the operation
+     */
+    public static MindustryValueType getResultType(Operation operation) {
+        return RESULT_TYPES.get(operation);
+    }
+
+    /**
+     * Returns the primitive form of a condition, or null if the condition needs to distinguish objects
+     * from numbers and has to be evaluated using {@link #getCondition(Condition)}.
+     *
+     * @param condition condition to evaluate
+     * @return primitive evaluator of the condition
+     */
+    public static NumericConditionEval getNumericCondition(Condition condition) {
+        return NUMERIC_CONDITIONS.get(condition);
+    }
+
     public static int getNumberOfArguments(Operation operation) {
         return ARGUMENTS.getOrDefault(operation, -1);
     }
 
     public static void evaluatePackColor(MindustryResult target, MindustryValue r, MindustryValue g, MindustryValue b, MindustryValue a) {
-        double result = toDoubleBits(clamp(r.getDoubleValue()), clamp(g.getDoubleValue()), clamp(b.getDoubleValue()),
-                clamp(a.getDoubleValue()));
+        target.setDoubleValue(packColor(r.getDoubleValue(), g.getDoubleValue(), b.getDoubleValue(), a.getDoubleValue()));
+    }
 
-        target.setDoubleValue(result);
+    public static double packColor(double r, double g, double b, double a) {
+        return toDoubleBits(clamp(r), clamp(g), clamp(b), clamp(a));
     }
 
 
@@ -55,56 +91,104 @@ public class ExpressionEvaluator {
         return Math.abs(a - b) < 0.000001;
     }
 
+    private static final Map<Operation, NumericOperationEval> NUMERIC_OPERATIONS = new EnumMap<>(Operation.class);
+    private static final Map<Operation, MindustryValueType> RESULT_TYPES = new EnumMap<>(Operation.class);
+    private static final Map<Condition, NumericConditionEval> NUMERIC_CONDITIONS = createNumericConditionsMap();
     private static final Map<Operation, OperationEval> OPERATIONS = createOperationsMap();
     private static final Map<Operation, Integer> ARGUMENTS = createArgumentsMap();
+    private static final Map<Condition, ConditionEval> CONDITIONS = createConditionsMap();
 
     private static Map<Operation, OperationEval> createOperationsMap() {
         Map<Operation, OperationEval> map = new EnumMap<>(Operation.class);
 
-        map.put(Operation.ADD,              (r, a, b) -> r.setDoubleValue(a.getDoubleValue() + b.getDoubleValue()));
-        map.put(Operation.SUB,              (r, a, b) -> r.setDoubleValue(a.getDoubleValue() - b.getDoubleValue()));
-        map.put(Operation.MUL,              (r, a, b) -> r.setDoubleValue(a.getDoubleValue() * b.getDoubleValue()));
-        map.put(Operation.DIV,              (r, a, b) -> r.setDoubleValue(a.getDoubleValue() / b.getDoubleValue()));
-        map.put(Operation.IDIV,             (r, a, b) -> r.setDoubleValue(Math.floor(a.getDoubleValue() / b.getDoubleValue())));
-        map.put(Operation.MOD,              (r, a, b) -> r.setDoubleValue(a.getDoubleValue() % b.getDoubleValue()));
-        map.put(Operation.POW,              (r, a, b) -> r.setDoubleValue(Math.pow(a.getDoubleValue(), b.getDoubleValue())));
+        doubleOp(map, Operation.ADD,                (a, b) -> a + b);
+        doubleOp(map, Operation.SUB,                (a, b) -> a - b);
+        doubleOp(map, Operation.MUL,                (a, b) -> a * b);
+        doubleOp(map, Operation.DIV,                (a, b) -> a / b);
+        doubleOp(map, Operation.IDIV,               (a, b) -> Math.floor(a / b));
+        doubleOp(map, Operation.MOD,                (a, b) -> a % b);
+        doubleOp(map, Operation.POW,                Math::pow);
 
         map.put(Operation.EQUAL,            (r, a, b) -> r.setBooleanValue(equals(a, b)));
         map.put(Operation.NOT_EQUAL,        (r, a, b) -> r.setBooleanValue(!equals(a, b)));
-        map.put(Operation.LAND,             (r, a, b) -> r.setBooleanValue(a.getDoubleValue() != 0 && b.getDoubleValue() != 0));
-        map.put(Operation.LESS_THAN,        (r, a, b) -> r.setBooleanValue(a.getDoubleValue() < b.getDoubleValue()));
-        map.put(Operation.LESS_THAN_EQ,     (r, a, b) -> r.setBooleanValue(a.getDoubleValue() <= b.getDoubleValue()));
-        map.put(Operation.GREATER_THAN,     (r, a, b) -> r.setBooleanValue(a.getDoubleValue() > b.getDoubleValue()));
-        map.put(Operation.GREATER_THAN_EQ,  (r, a, b) -> r.setBooleanValue(a.getDoubleValue() >= b.getDoubleValue()));
+        booleanOp(map, Operation.LAND,              (a, b) -> a != 0 && b != 0);
+        booleanOp(map, Operation.LESS_THAN,         (a, b) -> a <  b);
+        booleanOp(map, Operation.LESS_THAN_EQ,      (a, b) -> a <= b);
+        booleanOp(map, Operation.GREATER_THAN,      (a, b) -> a >  b);
+        booleanOp(map, Operation.GREATER_THAN_EQ,   (a, b) -> a >= b);
         map.put(Operation.STRICT_EQUAL,     (r, a, b) -> r.setBooleanValue(strictEquals(a, b)));
 
-        map.put(Operation.SHL,              (r, a, b) -> r.setLongValue(a.getLongValue() <<  b.getLongValue()));
-        map.put(Operation.SHR,              (r, a, b) -> r.setLongValue(a.getLongValue() >>  b.getLongValue()));
-        map.put(Operation.OR,               (r, a, b) -> r.setLongValue(a.getLongValue() |  b.getLongValue()));
-        map.put(Operation.AND,              (r, a, b) -> r.setLongValue(a.getLongValue() &  b.getLongValue()));
-        map.put(Operation.XOR,              (r, a, b) -> r.setLongValue(a.getLongValue() ^  b.getLongValue()));
-        map.put(Operation.NOT,              (r, a, b) -> r.setLongValue(~a.getLongValue()));
-
-        map.put(Operation.MAX,              (r, a, b) -> r.setDoubleValue(Math.max(a.getDoubleValue(), b.getDoubleValue())));
-        map.put(Operation.MIN,              (r, a, b) -> r.setDoubleValue(Math.min(a.getDoubleValue(), b.getDoubleValue())));
-        map.put(Operation.ANGLE,            (r, a, b) -> r.setDoubleValue(angle(a.getDoubleValue(), b.getDoubleValue())));
-        map.put(Operation.ANGLEDIFF,        (r, a, b) -> r.setDoubleValue(angleDiff(a.getDoubleValue(), b.getDoubleValue())));
-        map.put(Operation.LEN,              (r, a, b) -> r.setDoubleValue(len(a.getDoubleValue(), b.getDoubleValue())));
-        map.put(Operation.ABS,              (r, a, b) -> r.setDoubleValue(Math.abs(a.getDoubleValue())));
-        map.put(Operation.LOG,              (r, a, b) -> r.setDoubleValue(Math.log(a.getDoubleValue())));
-        map.put(Operation.LOG10,            (r, a, b) -> r.setDoubleValue(Math.log10(a.getDoubleValue())));
-        map.put(Operation.FLOOR,            (r, a, b) -> r.setDoubleValue(Math.floor(a.getDoubleValue())));
-        map.put(Operation.CEIL,             (r, a, b) -> r.setDoubleValue(Math.ceil(a.getDoubleValue())));
-        map.put(Operation.SQRT,             (r, a, b) -> r.setDoubleValue(Math.sqrt(a.getDoubleValue())));
-        map.put(Operation.RAND,             (r, a, b) -> r.setDoubleValue(rnd.nextDouble() * a.getDoubleValue()));
-
-        map.put(Operation.SIN,              (r, a, b) -> r.setDoubleValue(Math.sin(a.getDoubleValue())));
-        map.put(Operation.COS,              (r, a, b) -> r.setDoubleValue(Math.cos(a.getDoubleValue())));
-        map.put(Operation.TAN,              (r, a, b) -> r.setDoubleValue(Math.tan(a.getDoubleValue())));
-
-        map.put(Operation.ASIN,             (r, a, b) -> r.setDoubleValue(Math.asin(a.getDoubleValue())));
-        map.put(Operation.ACOS,             (r, a, b) -> r.setDoubleValue(Math.acos(a.getDoubleValue())));
-        map.put(Operation.ATAN,             (r, a, b) -> r.setDoubleValue(Math.atan(a.getDoubleValue())));
+        longOp(map, Operation.SHL,                  (a, b) -> (long) a <<  (long) b);
+        longOp(map, Operation.SHR,                  (a, b) -> (long) a >>  (long) b);
+        longOp(map, Operation.OR,                   (a, b) -> (long) a |  (long) b);
+        longOp(map, Operation.AND,                  (a, b) -> (long) a &  (long) b);
+        longOp(map, Operation.XOR,                  (a, b) -> (long) a ^  (long) b);
+        longOp(map, Operation.NOT,                  (a, b) -> ~(long) a);
+
+        doubleOp(map, Operation.MAX,                Math::max);
+        doubleOp(map, Operation.MIN,                Math::min);
+        doubleOp(map, Operation.ANGLE,              ExpressionEvaluator::angle);
+        doubleOp(map, Operation.ANGLEDIFF,          ExpressionEvaluator::angleDiff);
+        doubleOp(map, Operation.LEN,                ExpressionEvaluator::len);
+        doubleOp(map, Operation.ABS,                (a, b) -> Math.abs(a));
+        doubleOp(map, Operation.LOG,                (a, b) -> Math.log(a));
+        doubleOp(map, Operation.LOG10,              (a, b) -> Math.log10(a));
+        doubleOp(map, Operation.FLOOR,              (a, b) -> Math.floor(a));
+        doubleOp(map, Operation.CEIL,               (a, b) -> Math.ceil(a));
+        doubleOp(map, Operation.SQRT,               (a, b) -> Math.sqrt(a));
+        doubleOp(map, Operation.RAND,               (a, b) -> rnd.nextDouble() * a);
+
+        doubleOp(map, Operation.SIN,                (a, b) -> Math.sin(a));
+        doubleOp(map, Operation.COS,                (a, b) -> Math.cos(a));
+        doubleOp(map, Operation.TAN,                (a, b) -> Math.tan(a));
+
+        doubleOp(map, Operation.ASIN,               (a, b) -> Math.asin(a));
+        doubleOp(map, Operation.ACOS,               (a, b) -> Math.acos(a));
+        doubleOp(map, Operation.ATAN,               (a, b) -> Math.atan(a));
+
+        return map;
+    }
+
+    // The numeric form of the operation is registered, and the variable-based form is derived from it
+
+    private static void doubleOp(Map<Operation, OperationEval> map, Operation operation, NumericOperationEval eval) {
+        NUMERIC_OPERATIONS.put(operation, eval);
+        RESULT_TYPES.put(operation, MindustryValueType.DOUBLE);
+        map.put(operation, (r, a, b) -> r.setDoubleValue(eval.evaluate(a.getDoubleValue(), b.getDoubleValue())));
+    }
+
+    private static void longOp(Map<Operation, OperationEval> map, Operation operation, NumericOperationEval eval) {
+        NUMERIC_OPERATIONS.put(operation, eval);
+        RESULT_TYPES.put(operation, MindustryValueType.LONG);
+        map.put(operation, (r, a, b) -> r.setLongValue((long) eval.evaluate(a.getDoubleValue(), b.getDoubleValue())));
+    }
+
+    private static void booleanOp(Map<Operation, OperationEval> map, Operation operation, NumericConditionEval eval) {
+        NUMERIC_OPERATIONS.put(operation, (a, b) -> eval.evaluate(a, b) ? 1 : 0);
+        RESULT_TYPES.put(operation, MindustryValueType.BOOLEAN);
+        map.put(operation, (r, a, b) -> r.setBooleanValue(eval.evaluate(a.getDoubleValue(), b.getDoubleValue())));
+    }
+
+    private static Map<Condition, NumericConditionEval> createNumericConditionsMap() {
+        Map<Condition, NumericConditionEval> map = new EnumMap<>(Condition.class);
+
+        map.put(Condition.LESS_THAN,        (a, b) -> a <  b);
+        map.put(Condition.LESS_THAN_EQ,     (a, b) -> a <= b);
+        map.put(Condition.GREATER_THAN,     (a, b) -> a >  b);
+        map.put(Condition.GREATER_THAN_EQ,  (a, b) -> a >= b);
+        map.put(Condition.ALWAYS,           (a, b) -> true);
+
+        return map;
+    }
+
+    private static Map<Condition, ConditionEval> createConditionsMap() {
+        Map<Condition, ConditionEval> map = new EnumMap<>(Condition.class);
+
+        map.put(Condition.EQUAL,            ExpressionEvaluator::equals);
+        map.put(Condition.NOT_EQUAL,        (a, b) -> !equals(a, b));
+        map.put(Condition.STRICT_EQUAL,     (a, b) -> a.isObject() == b.isObject() && equals(a, b));
+        NUMERIC_CONDITIONS.forEach((condition, eval) ->
+                map.put(condition, (a, b) -> eval.evaluate(a.getDoubleValue(), b.getDoubleValue())));
 
         return map;
     }
@@ -0,0 +1,74 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.MindcodeException;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contents of memory blocks linked to a processor, used as an input of a program run by the {@link Processor}.
+ * <p>
+ * The textual representation contains one block per line in the form {@code name = value, value, ...}. Blocks
+ * whose names start with {@code cell} are created as memory cells, all other blocks as memory banks. The list
+ * of values may be empty; unspecified values are zero. Empty lines and lines starting with {@code #} are ignored.
+ */
+public class MemoryFixture {
+    private final Map<String, double[]> blocks;
+
+    private MemoryFixture(Map<String, double[]> blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * Parses the textual representation of a memory fixture.
+     *
+     * @param text textual representation of the fixture
+     * @return parsed fixture
+     */
+    public static MemoryFixture parse(String text) {
+        Map<String, double[]> blocks = new LinkedHashMap<>();
+        for (String line : text.lines().map(String::trim).toList()) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            int separator = line.indexOf('=');
+            String name = separator < 0 ? "" : line.substring(0, separator).trim();
+            if (!name.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+                throw new MindcodeException("Invalid memory block definition '" + line + "'.");
+            }
+
+            String values = line.substring(separator + 1).trim();
+            try {
+                blocks.put(name, values.isEmpty() ? new double[0]
+                        : Arrays.stream(values.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray());
+            } catch (NumberFormatException e) {
+                throw new MindcodeException("Invalid value in memory block definition '" + line + "'.");
+            }
+        }
+
+        return new MemoryFixture(blocks);
+    }
+
+    /**
+     * Creates a new copy of the memory blocks of this fixture.
+     *
+     * @return list of memory blocks
+     */
+    public List<MindustryMemory> createBlocks() {
+        return blocks.entrySet().stream()
+                .map(e -> e.getKey().startsWith("cell")
+                        ? MindustryMemory.createMemoryCell(e.getKey(), e.getValue())
+                        : MindustryMemory.createMemoryBank(e.getKey(), e.getValue()))
+                .toList();
+    }
+
+    /**
+     * Links a new copy of the memory blocks of this fixture to the processor.
+     *
+     * @param processor processor to receive the memory blocks
+     */
+    public void apply(Processor processor) {
+        createBlocks().forEach(processor::addBlock);
+    }
+}
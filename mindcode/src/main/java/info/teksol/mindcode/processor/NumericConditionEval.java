@@ -0,0 +1,8 @@
+package info.teksol.mindcode.processor;
+
+/**
+ * Mindustry jump condition evaluated on primitive numeric operands. Objects and null are represented by zero.
+ */
+public interface NumericConditionEval {
+    boolean evaluate(double a, double b);
+}
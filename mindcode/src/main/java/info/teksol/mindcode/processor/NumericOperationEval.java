@@ -0,0 +1,9 @@
+package info.teksol.mindcode.processor;
+
+/**
+ * Mindustry processor operation evaluated on primitive numeric operands. Objects and null are represented by zero.
+ * Type of the result is given by {@link ExpressionEvaluator#getResultType}.
+ */
+public interface NumericOperationEval {
+    double evaluate(double a, double b);
+}
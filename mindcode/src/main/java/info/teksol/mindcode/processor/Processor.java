@@ -1,7 +1,6 @@
 package info.teksol.mindcode.processor;
 
 import info.teksol.mindcode.compiler.instructions.*;
-import info.teksol.mindcode.logic.Condition;
 import info.teksol.mindcode.logic.LogicArgument;
 import info.teksol.mindcode.logic.LogicNumber;
 import info.teksol.mindcode.logic.LogicVariable;
@@ -23,6 +22,9 @@ public class Processor {
     private int steps = 0;
     private int instructions = 0;
     private final BitSet coverage = new BitSet();
+    private ExecutionEngine executionEngine = ExecutionEngine.INTERPRETER;
+    private boolean profiling = false;
+    private ExecutionProfile profile;
 
     public Processor() {
         flags = EnumSet.allOf(ProcessorFlag.class);
@@ -69,16 +71,70 @@ public class Processor {
         }
     }
 
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Enables or disables collecting an execution profile of the program. The profile is collected by all execution
+     * engines except {@link ExecutionEngine#BYTECODE}, which is replaced by {@link ExecutionEngine#REGISTERS}
+     * while profiling.
+     *
+     * @param profiling true to collect the profile of subsequent runs
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    /**
+     * @return execution profile of the last run, or null if the last run wasn't profiled
+     */
+    public ExecutionProfile getProfile() {
+        return profile;
+    }
+
+    public ExecutionEngine getExecutionEngine() {
+        return executionEngine;
+    }
+
+    public void setExecutionEngine(ExecutionEngine executionEngine) {
+        this.executionEngine = Objects.requireNonNull(executionEngine);
+    }
+
+    /**
+     * Runs the program using the current execution engine.
+     *
+     * @param program program to run, with resolved labels
+     * @param stepLimit maximal number of steps to execute
+     */
     public void run(List<LogicInstruction> program, int stepLimit) {
-        if (!getFlag(STOP_PROCESSOR_OPTIONAL) && program.stream().noneMatch(StopInstruction.class::isInstance)) {
-            throw new ExecutionException(STOP_PROCESSOR_OPTIONAL, "A stop instruction not present in given program.");            
+        if (executionEngine != ExecutionEngine.INTERPRETER) {
+            run(DecodedProgram.decode(program), stepLimit);
+            return;
         }
 
-        steps = 0;
-        textBuffer.clear();
-        counter.setIntValue(0);
-        variables.put("@links", IntVariable.newIntValue(true, "@links", blocks.size()));
-        instructions = program.size();
+        ProcessorRunEvent event = new ProcessorRunEvent();
+        event.begin();
+        try {
+            runInterpreted(program, stepLimit);
+        } finally {
+            commitRunEvent(event, program.size(), stepLimit);
+        }
+    }
+
+    private void commitRunEvent(ProcessorRunEvent event, int instructions, int stepLimit) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = executionEngine.name();
+            event.instructions = instructions;
+            event.steps = steps;
+            event.stepLimit = stepLimit;
+            event.commit();
+        }
+    }
+
+    private void runInterpreted(List<LogicInstruction> program, int stepLimit) {
+        initializeRun(program.stream().anyMatch(StopInstruction.class::isInstance), program);
 
         while (steps < stepLimit) {
             try {
@@ -111,7 +167,90 @@ public class Processor {
 
                 steps++;
                 counter.setIntValue(index + 1);
-                if (!execute(instruction)) {
+                if (profile != null) {
+                    profile.countExecution(index);
+                }
+                boolean proceed = execute(instruction);
+                if (profile != null) {
+                    profile.countTransfer(index, counter.getIntValue());
+                }
+                if (!proceed) {
+                    break;
+                }
+            } catch (ExecutionException ex) {
+                if (getFlag(ex.getFlag())) {
+                    throw ex;
+                }
+            }
+        }
+
+        checkStepLimit(stepLimit);
+    }
+
+    /**
+     * Runs a decoded program using the {@link ExecutionEngine#BYTECODE} or {@link ExecutionEngine#REGISTERS} engine
+     * if selected, and the {@link ExecutionEngine#DECODED} engine otherwise. The behavior is identical to running
+     * the original program in the interpreter, including processor flags handling, step counting and coverage.
+     *
+     * @param program program to run
+     * @param stepLimit maximal number of steps to execute
+     */
+    public void run(DecodedProgram program, int stepLimit) {
+        ProcessorRunEvent event = new ProcessorRunEvent();
+        event.begin();
+        try {
+            switch (executionEngine) {
+                case BYTECODE   -> {
+                    if (profiling) {
+                        runRegisters(program, stepLimit);
+                    } else {
+                        runTranslated(program, stepLimit);
+                    }
+                }
+                case REGISTERS  -> runRegisters(program, stepLimit);
+                default         -> runDecoded(program, stepLimit);
+            }
+        } finally {
+            commitRunEvent(event, program.size(), stepLimit);
+        }
+    }
+
+    private void runDecoded(DecodedProgram program, int stepLimit) {
+        initializeRun(program.containsStop(), program.getInstructions());
+
+        // Binds slots to already existing variables. Missing ones are created on first access,
+        // exactly as the interpreter does.
+        Variable[] registers = new Variable[program.getSlotCount()];
+        for (int slot = 0; slot < registers.length; slot++) {
+            registers[slot] = variables.get(program.getSlotName(slot));
+        }
+
+        int size = program.size();
+        while (steps < stepLimit) {
+            try {
+                int index = counter.getIntValue();
+                if (index == size) {
+                    index = 0;
+                    if (getFlag(ProcessorFlag.STOP_ON_PROGRAM_END)) {
+                        break;
+                    }
+                }
+                if (index < 0 || index > size) {
+                    counter.setIntValue(0);
+                    throw new ExecutionException(ERR_INVALID_COUNTER, "Value of @counter (" + index + ") outside valid range (0 to " + size + ")");
+                }
+
+                coverage.set(index);
+                steps++;
+                counter.setIntValue(index + 1);
+                if (profile != null) {
+                    profile.countExecution(index);
+                }
+                boolean proceed = execute(program, registers, index);
+                if (profile != null) {
+                    profile.countTransfer(index, counter.getIntValue());
+                }
+                if (!proceed) {
                     break;
                 }
             } catch (ExecutionException ex) {
@@ -121,6 +260,119 @@ public class Processor {
             }
         }
 
+        checkStepLimit(stepLimit);
+    }
+
+    private void runRegisters(DecodedProgram program, int stepLimit) {
+        initializeRun(program.containsStop(), program.getInstructions());
+        RegisterFile registers = createRegisters(program);
+
+        int size = program.size();
+        try {
+            while (steps < stepLimit) {
+                try {
+                    int index = registers.getCounter();
+                    if (index == size) {
+                        index = 0;
+                        if (getFlag(ProcessorFlag.STOP_ON_PROGRAM_END)) {
+                            break;
+                        }
+                    }
+                    if (index < 0 || index > size) {
+                        registers.setCounter(0);
+                        throw new ExecutionException(ERR_INVALID_COUNTER, "Value of @counter (" + index + ") outside valid range (0 to " + size + ")");
+                    }
+
+                    coverage.set(index);
+                    steps++;
+                    registers.setCounter(index + 1);
+                    if (profile != null) {
+                        profile.countExecution(index);
+                    }
+                    boolean proceed = execute(program, registers, index);
+                    if (profile != null) {
+                        profile.countTransfer(index, registers.getCounter());
+                    }
+                    if (!proceed) {
+                        break;
+                    }
+                } catch (ExecutionException ex) {
+                    if (getFlag(ex.getFlag())) {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            registers.storeVariables();
+        }
+
+        checkStepLimit(stepLimit);
+    }
+
+    // Programs the translator doesn't support are run by the REGISTERS engine
+    private void runTranslated(DecodedProgram program, int stepLimit) {
+        TranslatedProgram translated = program.createTranslatedProgram();
+        if (translated == null) {
+            runRegisters(program, stepLimit);
+            return;
+        }
+
+        initializeRun(program.containsStop(), program.getInstructions());
+        RegisterFile registers = createRegisters(program);
+        translated.initialize(this, program, registers, stepLimit);
+
+        try {
+            while (true) {
+                try {
+                    translated.execute();
+                    break;
+                } catch (ExecutionException ex) {
+                    if (getFlag(ex.getFlag())) {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            steps = translated.steps;
+            for (int index = 0; index < translated.covered.length; index++) {
+                if (translated.covered[index]) {
+                    coverage.set(index);
+                }
+            }
+            registers.setCounter(translated.counter);
+            registers.storeVariables();
+        }
+
+        checkStepLimit(stepLimit);
+    }
+
+    private RegisterFile createRegisters(DecodedProgram program) {
+        // Slots of existing variables are bound up front, the others on first access as in the interpreter.
+        RegisterFile registers = new RegisterFile(program);
+        for (int slot = 0; slot < program.getSlotCount(); slot++) {
+            Variable variable = variables.get(program.getSlotName(slot));
+            if (variable != null) {
+                registers.bind(slot, variable);
+            }
+        }
+        registers.bind(registers.counter, counter);
+        return registers;
+    }
+
+    private void initializeRun(boolean containsStop, List<LogicInstruction> program) {
+        if (!getFlag(STOP_PROCESSOR_OPTIONAL) && !containsStop) {
+            throw new ExecutionException(STOP_PROCESSOR_OPTIONAL, "A stop instruction not present in given program.");
+        }
+
+        steps = 0;
+        textBuffer.clear();
+        counter.setIntValue(0);
+        variables.put("@links", IntVariable.newIntValue(true, "@links", blocks.size()));
+        instructions = program.size();
+        profile = profiling ? new ExecutionProfile(program) : null;
+    }
+
+    private void checkStepLimit(int stepLimit) {
         if (steps >= stepLimit) {
             throw new ExecutionException(ERR_EXECUTION_LIMIT_EXCEEDED, "Execution step limit of " + stepLimit + " exceeded");
         }
@@ -171,7 +423,7 @@ public class Processor {
         } else {
             Variable a = getExistingVariable(ix.getX());
             Variable b = getExistingVariable(ix.getY());
-            ConditionEval conditionEval = CONDITIONS.get(ix.getCondition());
+            ConditionEval conditionEval = ExpressionEvaluator.getCondition(ix.getCondition());
             if (conditionEval == null) {
                 throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Invalid jump condition " + ix.getCondition());
             }
@@ -215,6 +467,194 @@ public class Processor {
         return true;
     }
 
+    private boolean execute(DecodedProgram program, Variable[] registers, int index) {
+        int[] operands = program.operands;
+        int base = index * DecodedProgram.OPERANDS;
+        switch (program.opcodes[index]) {
+            case DecodedProgram.END -> {
+                counter.setIntValue(0);
+                return !getFlag(ProcessorFlag.STOP_ON_END_INSTRUCTION);
+            }
+            case DecodedProgram.JUMP_ALWAYS -> counter.setIntValue(program.addresses[index]);
+            case DecodedProgram.JUMP -> {
+                Variable a = readRegister(program, registers, operands[base]);
+                Variable b = readRegister(program, registers, operands[base + 1]);
+                ConditionEval conditionEval = program.conditions[index];
+                if (conditionEval == null) {
+                    JumpInstruction ix = (JumpInstruction) program.getInstruction(index);
+                    throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Invalid jump condition " + ix.getCondition());
+                }
+                if (conditionEval.evaluate(a, b)) {
+                    counter.setIntValue(program.addresses[index]);
+                }
+            }
+            case DecodedProgram.OP -> {
+                Variable target = writeRegister(program, registers, operands[base]);
+                Variable a = readRegister(program, registers, operands[base + 1]);
+                Variable b = readRegister(program, registers, operands[base + 2]);
+                OperationEval op = program.operations[index];
+                if (op == null) {
+                    OpInstruction ix = (OpInstruction) program.getInstruction(index);
+                    throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Invalid op operation " + ix.getOperation());
+                }
+                op.execute(target, a, b);
+            }
+            case DecodedProgram.PACKCOLOR -> {
+                Variable target = writeRegister(program, registers, operands[base]);
+                Variable r = readRegister(program, registers, operands[base + 1]);
+                Variable g = readRegister(program, registers, operands[base + 2]);
+                Variable b = readRegister(program, registers, operands[base + 3]);
+                Variable a = readRegister(program, registers, operands[base + 4]);
+                ExpressionEvaluator.evaluatePackColor(target, r, g, b, a);
+            }
+            case DecodedProgram.PRINT -> textBuffer.add(readRegister(program, registers, operands[base]).toString());
+            case DecodedProgram.READ -> {
+                Variable target = writeRegister(program, registers, operands[base]);
+                Variable block = readRegister(program, registers, operands[base + 1]);
+                Variable address = readRegister(program, registers, operands[base + 2]);
+                target.setDoubleValue(block.getExistingObject().read(address.getIntValue()));
+            }
+            case DecodedProgram.SET -> {
+                Variable target = writeRegister(program, registers, operands[base]);
+                Variable value = readRegister(program, registers, operands[base + 1]);
+                target.assign(value);
+            }
+            case DecodedProgram.STOP -> {
+                return false;
+            }
+            case DecodedProgram.WRITE -> {
+                Variable source = readRegister(program, registers, operands[base]);
+                Variable block = readRegister(program, registers, operands[base + 1]);
+                Variable address = readRegister(program, registers, operands[base + 2]);
+                block.getExistingObject().write(address.getIntValue(), source.getDoubleValue());
+            }
+            case DecodedProgram.NOOP -> { }
+            case DecodedProgram.UNSUPPORTED ->
+                throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Unsupported instruction " + program.getInstruction(index));
+            case DecodedProgram.FAILURE -> throw program.errors[index];
+            default -> throw new IllegalStateException("Unknown decoded opcode " + program.opcodes[index]);
+        }
+        return true;
+    }
+
+    boolean execute(DecodedProgram program, RegisterFile registers, int index) {
+        int[] operands = program.operands;
+        int base = index * DecodedProgram.OPERANDS;
+        double[] values = registers.values;
+        switch (program.opcodes[index]) {
+            case DecodedProgram.END -> {
+                registers.setCounter(0);
+                return !getFlag(ProcessorFlag.STOP_ON_END_INSTRUCTION);
+            }
+            case DecodedProgram.JUMP_ALWAYS -> registers.setCounter(program.addresses[index]);
+            case DecodedProgram.JUMP -> {
+                if (evaluateCondition(program, registers, index)) {
+                    registers.setCounter(program.addresses[index]);
+                }
+            }
+            case DecodedProgram.OP -> {
+                int target = bindForWrite(registers, operands[base]);
+                int a = bindForRead(registers, operands[base + 1]);
+                int b = bindForRead(registers, operands[base + 2]);
+                NumericOperationEval numeric = program.numericOperations[index];
+                if (numeric != null) {
+                    double result = numeric.evaluate(values[a], values[b]);
+                    byte resultType = program.resultTypes[index];
+                    if (resultType == RegisterFile.DOUBLE) {
+                        registers.setDouble(target, result);
+                    } else if (resultType == RegisterFile.LONG) {
+                        registers.setLong(target, (long) result);
+                    } else {
+                        registers.setBoolean(target, result != 0);
+                    }
+                } else {
+                    OperationEval op = program.operations[index];
+                    if (op == null) {
+                        OpInstruction ix = (OpInstruction) program.getInstruction(index);
+                        throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Invalid op operation " + ix.getOperation());
+                    }
+                    op.execute(registers.view1.at(target), registers.view2.at(a), registers.view3.at(b));
+                }
+            }
+            case DecodedProgram.PACKCOLOR -> {
+                int target = bindForWrite(registers, operands[base]);
+                int r = bindForRead(registers, operands[base + 1]);
+                int g = bindForRead(registers, operands[base + 2]);
+                int b = bindForRead(registers, operands[base + 3]);
+                int a = bindForRead(registers, operands[base + 4]);
+                registers.setDouble(target, ExpressionEvaluator.packColor(values[r], values[g], values[b], values[a]));
+            }
+            case DecodedProgram.PRINT -> textBuffer.add(registers.toString(bindForRead(registers, operands[base])));
+            case DecodedProgram.READ -> {
+                int target = bindForWrite(registers, operands[base]);
+                int block = bindForRead(registers, operands[base + 1]);
+                int address = bindForRead(registers, operands[base + 2]);
+                registers.setDouble(target, registers.getExistingObject(block).read((int) values[address]));
+            }
+            case DecodedProgram.SET -> {
+                int target = bindForWrite(registers, operands[base]);
+                int value = bindForRead(registers, operands[base + 1]);
+                registers.assign(target, value);
+            }
+            case DecodedProgram.STOP -> {
+                return false;
+            }
+            case DecodedProgram.WRITE -> {
+                int source = bindForRead(registers, operands[base]);
+                int block = bindForRead(registers, operands[base + 1]);
+                int address = bindForRead(registers, operands[base + 2]);
+                registers.getExistingObject(block).write((int) values[address], values[source]);
+            }
+            case DecodedProgram.NOOP -> { }
+            case DecodedProgram.UNSUPPORTED ->
+                throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Unsupported instruction " + program.getInstruction(index));
+            case DecodedProgram.FAILURE -> throw program.errors[index];
+            default -> throw new IllegalStateException("Unknown decoded opcode " + program.opcodes[index]);
+        }
+        return true;
+    }
+
+    boolean evaluateCondition(DecodedProgram program, RegisterFile registers, int index) {
+        int base = index * DecodedProgram.OPERANDS;
+        int a = bindForRead(registers, program.operands[base]);
+        int b = bindForRead(registers, program.operands[base + 1]);
+        NumericConditionEval numeric = program.numericConditions[index];
+        ConditionEval conditionEval = program.conditions[index];
+        if (conditionEval == null) {
+            JumpInstruction ix = (JumpInstruction) program.getInstruction(index);
+            throw new ExecutionException(ERR_UNSUPPORTED_OPCODE, "Invalid jump condition " + ix.getCondition());
+        }
+        return numeric != null
+                ? numeric.evaluate(registers.values[a], registers.values[b])
+                : conditionEval.evaluate(registers.view1.at(a), registers.view2.at(b));
+    }
+
+    int bindForWrite(RegisterFile registers, int slot) {
+        if (!registers.isBound(slot)) {
+            registers.bind(slot, variables.computeIfAbsent(registers.getName(slot), this::createVariable));
+        }
+        return slot;
+    }
+
+    int bindForRead(RegisterFile registers, int slot) {
+        if (!registers.isBound(slot)) {
+            registers.bind(slot, variables.computeIfAbsent(registers.getName(slot), this::createConstant));
+        }
+        return slot;
+    }
+
+    private Variable writeRegister(DecodedProgram program, Variable[] registers, int slot) {
+        Variable variable = registers[slot];
+        return variable != null ? variable
+                : (registers[slot] = variables.computeIfAbsent(program.getSlotName(slot), this::createVariable));
+    }
+
+    private Variable readRegister(DecodedProgram program, Variable[] registers, int slot) {
+        Variable variable = registers[slot];
+        return variable != null ? variable
+                : (registers[slot] = variables.computeIfAbsent(program.getSlotName(slot), this::createConstant));
+    }
+
     private Variable getOrCreateVariable(LogicArgument value) {
         return variables.computeIfAbsent(value.toMlog(), this::createVariable);
     }
@@ -255,23 +695,4 @@ public class Processor {
             }
         }
     }
-
-    private static final Map<Condition, ConditionEval> CONDITIONS = createConditionsMap();
-
-    private interface ConditionEval {
-        boolean evaluate(Variable a, Variable b);
-    }
-
-    private static Map<Condition, ConditionEval> createConditionsMap() {
-        Map<Condition, ConditionEval> map = new HashMap<>();
-        map.put(Condition.EQUAL,           ExpressionEvaluator::equals);
-        map.put(Condition.NOT_EQUAL,       (a,  b) -> !ExpressionEvaluator.equals(a, b));
-        map.put(Condition.LESS_THAN,       (a,  b) -> a.getDoubleValue() <  b.getDoubleValue());
-        map.put(Condition.LESS_THAN_EQ,    (a,  b) -> a.getDoubleValue() <= b.getDoubleValue());
-        map.put(Condition.GREATER_THAN,    (a,  b) -> a.getDoubleValue() >  b.getDoubleValue());
-        map.put(Condition.GREATER_THAN_EQ, (a,  b) -> a.getDoubleValue() >= b.getDoubleValue());
-        map.put(Condition.STRICT_EQUAL,    (a,  b) -> a.isObject() == b.isObject() && ExpressionEvaluator.equals(a, b));
-        map.put(Condition.ALWAYS,          (a,  b) -> true);
-        return map;
-    }
 }
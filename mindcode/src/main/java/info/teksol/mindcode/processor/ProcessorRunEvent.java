@@ -0,0 +1,31 @@
+package info.teksol.mindcode.processor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted for each program run by the {@link Processor}. The event is committed even
+ * when the run is terminated by an execution error.
+ */
+@Name("mindcode.ProcessorRun")
+@Label("Processor Run")
+@Category({"Mindcode", "Processor"})
+@Description("Execution of a program by the processor emulator")
+@StackTrace(false)
+final class ProcessorRunEvent extends Event {
+    @Label("Execution Engine")
+    String engine;
+
+    @Label("Instructions")
+    int instructions;
+
+    @Label("Steps")
+    int steps;
+
+    @Label("Step Limit")
+    int stepLimit;
+}
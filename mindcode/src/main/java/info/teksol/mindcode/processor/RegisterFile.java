@@ -0,0 +1,221 @@
+package info.teksol.mindcode.processor;
+
+import static info.teksol.mindcode.processor.ProcessorFlag.ERR_ASSIGNMENT_TO_FIXED_VAR;
+import static info.teksol.mindcode.processor.ProcessorFlag.ERR_NOT_AN_OBJECT;
+
+/**
+ * Storage of variables used by the {@link ExecutionEngine#REGISTERS} execution engine. Values of variables are
+ * kept in primitive arrays indexed by the slots of a {@link DecodedProgram}: numeric values in a {@code double[]},
+ * value types in a {@code byte[]} holding ordinals of {@link MindustryValueType}, and references in an array which
+ * is only accessed for objects. Operating on the registers doesn't allocate any memory.
+ * <p>
+ * Each slot is bound to a processor variable before its first use. The state of the variable is copied into the
+ * registers when bound and copied back by {@link #storeVariables()}. The registers replicate the behavior of
+ * {@link DoubleVariable} and {@link IntVariable}, including assignments to fixed variables, which modify the
+ * value before failing.
+ */
+final class RegisterFile {
+    static final byte NULL      = (byte) MindustryValueType.NULL.ordinal();
+    static final byte OBJECT    = (byte) MindustryValueType.OBJECT.ordinal();
+    static final byte BOOLEAN   = (byte) MindustryValueType.BOOLEAN.ordinal();
+    static final byte LONG      = (byte) MindustryValueType.LONG.ordinal();
+    static final byte DOUBLE    = (byte) MindustryValueType.DOUBLE.ordinal();
+
+    private static final MindustryValueType[] TYPES = MindustryValueType.values();
+
+    private final DecodedProgram program;
+
+    /** Slot holding the value of @counter. An additional slot is allocated if the program doesn't use @counter. */
+    final int counter;
+
+    /** Numeric values. Objects and null have a value of zero. */
+    final double[] values;
+
+    /** Value types */
+    final byte[] types;
+
+    /** Referenced objects, null unless the type is OBJECT */
+    final MindustryObject[] objects;
+
+    /** Variables bound to the slots, null for unbound slots */
+    private final Variable[] variables;
+
+    private final boolean[] fixed;
+
+    /** Slots bound to an IntVariable, which truncates all values to int */
+    private final boolean[] integer;
+
+    /** Views of the registers, reused to pass registers to evaluators working on MindustryValue */
+    final Register view1 = new Register();
+    final Register view2 = new Register();
+    final Register view3 = new Register();
+
+    RegisterFile(DecodedProgram program) {
+        this.program = program;
+        counter = program.getCounterSlot();
+        int size = program.getSlotCount() + 1;
+        values = new double[size];
+        types = new byte[size];
+        objects = new MindustryObject[size];
+        variables = new Variable[size];
+        fixed = new boolean[size];
+        integer = new boolean[size];
+    }
+
+    boolean isBound(int slot) {
+        return variables[slot] != null;
+    }
+
+    void bind(int slot, Variable variable) {
+        variables[slot] = variable;
+        fixed[slot] = variable.isFixed();
+        integer[slot] = variable instanceof IntVariable;
+        types[slot] = (byte) variable.getMindustryValueType().ordinal();
+        values[slot] = variable.getDoubleValue();
+        objects[slot] = types[slot] == OBJECT ? variable.getObject() : null;
+    }
+
+    /**
+     * Copies the values of all bound slots back into their variables. Fixed variables aren't updated.
+     */
+    void storeVariables() {
+        for (int slot = 0; slot < variables.length; slot++) {
+            Variable variable = variables[slot];
+            if (variable != null && !fixed[slot]) {
+                switch (TYPES[types[slot]]) {
+                    case NULL       -> variable.setObject(null);
+                    case OBJECT     -> variable.setObject(objects[slot]);
+                    case BOOLEAN    -> variable.setBooleanValue(values[slot] != 0);
+                    case LONG       -> variable.setLongValue((long) values[slot]);
+                    case DOUBLE     -> variable.setDoubleValue(values[slot]);
+                }
+            }
+        }
+    }
+
+    String getName(int slot) {
+        return slot == counter ? "@counter" : program.getSlotName(slot);
+    }
+
+    MindustryObject getExistingObject(int slot) {
+        MindustryObject object = objects[slot];
+        if (types[slot] != OBJECT || object == null) {
+            throw new ExecutionException(ERR_NOT_AN_OBJECT, "Variable " + getName(slot) + " is not an object");
+        }
+        return object;
+    }
+
+    String toString(int slot) {
+        byte type = types[slot];
+        return type == NULL ? "null" : type == OBJECT ? String.valueOf(objects[slot]) : DoubleVariable.valueToString(values[slot]);
+    }
+
+    void setDouble(int slot, double value) {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            setObject(slot, null);
+        } else {
+            values[slot] = integer[slot] ? (int) value : value;
+            setType(slot, DOUBLE);
+        }
+    }
+
+    void setLong(int slot, long value) {
+        values[slot] = integer[slot] ? (int) value : value;
+        setType(slot, LONG);
+    }
+
+    void setBoolean(int slot, boolean value) {
+        setLong(slot, value ? 1 : 0);
+        setType(slot, BOOLEAN);
+    }
+
+    void setObject(int slot, MindustryObject object) {
+        checkFixed(slot);
+        setLong(slot, 0);
+        objects[slot] = object;
+        types[slot] = object == null ? NULL : OBJECT;
+    }
+
+    void assign(int target, int source) {
+        byte type = types[source];
+        if (type == NULL || type == OBJECT) {
+            setObject(target, objects[source]);
+        } else if (integer[target]) {
+            setLong(target, (int) values[source]);
+            setType(target, type);
+        } else {
+            setDouble(target, values[source]);
+        }
+    }
+
+    int getCounter() {
+        return (int) values[counter];
+    }
+
+    void setCounter(int value) {
+        values[counter] = value;
+        types[counter] = LONG;
+        objects[counter] = null;
+    }
+
+    private void setType(int slot, byte type) {
+        checkFixed(slot);
+        types[slot] = type;
+        if (type != OBJECT) {
+            objects[slot] = null;
+        }
+    }
+
+    private void checkFixed(int slot) {
+        if (fixed[slot]) {
+            throw new ExecutionException(ERR_ASSIGNMENT_TO_FIXED_VAR, "Cannot assign to fixed variable " + getName(slot));
+        }
+    }
+
+    /**
+     * A view of a single register, used for operations which need to distinguish objects from numbers.
+     */
+    final class Register implements MindustryValue, MindustryResult {
+        private int slot;
+
+        Register at(int slot) {
+            this.slot = slot;
+            return this;
+        }
+
+        @Override
+        public MindustryValueType getMindustryValueType() {
+            return TYPES[types[slot]];
+        }
+
+        @Override
+        public double getDoubleValue() {
+            return values[slot];
+        }
+
+        @Override
+        public long getLongValue() {
+            return (long) values[slot];
+        }
+
+        @Override
+        public Object getObject() {
+            return objects[slot];
+        }
+
+        @Override
+        public void setDoubleValue(double value) {
+            setDouble(slot, value);
+        }
+
+        @Override
+        public void setLongValue(long value) {
+            setLong(slot, value);
+        }
+
+        @Override
+        public void setBooleanValue(boolean value) {
+            setBoolean(slot, value);
+        }
+    }
+}
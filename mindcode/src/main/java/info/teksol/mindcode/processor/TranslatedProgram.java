@@ -0,0 +1,93 @@
+package info.teksol.mindcode.processor;
+
+/**
+ * Base class of programs translated to bytecode by the {@link BytecodeTranslator}. The generated subclass implements
+ * {@link #executeChunk(int)}; this class transfers control between the generated methods, holds the state
+ * of a single run and provides the operations the generated code delegates to. Values of variables are kept
+ * in a {@link RegisterFile}, exactly as in the {@link ExecutionEngine#REGISTERS} engine.
+ * <p>
+ * The steps and counter are kept in local variables of the generated methods and are stored into the fields
+ * of this class whenever a method returns or throws an exception. A new instance is needed for each run.
+ */
+abstract class TranslatedProgram {
+    Processor processor;
+    DecodedProgram program;
+    RegisterFile registers;
+
+    /** Instructions executed at least once */
+    boolean[] covered;
+
+    /** Number of executed steps */
+    int steps;
+
+    int stepLimit;
+
+    /** Current value of @counter, the index of the next instruction to execute */
+    int counter;
+
+    boolean stopOnProgramEnd;
+    boolean stopOnEndInstruction;
+
+    void initialize(Processor processor, DecodedProgram program, RegisterFile registers, int stepLimit) {
+        this.processor = processor;
+        this.program = program;
+        this.registers = registers;
+        this.covered = new boolean[program.size()];
+        this.stepLimit = stepLimit;
+        this.stopOnProgramEnd = processor.getFlag(ProcessorFlag.STOP_ON_PROGRAM_END);
+        this.stopOnEndInstruction = processor.getFlag(ProcessorFlag.STOP_ON_END_INSTRUCTION);
+    }
+
+    /**
+     * Executes the program from the current value of counter, until the program is stopped or the step limit
+     * is reached. Execution exceptions are propagated with the counter pointing past the failing instruction,
+     * the execution can then be resumed by calling this method again.
+     */
+    final void execute() {
+        int size = program.size();
+        while (steps < stepLimit) {
+            if (counter == size) {
+                if (stopOnProgramEnd) {
+                    return;
+                }
+                counter = 0;
+            } else if (counter < 0 || counter > size) {
+                int value = counter;
+                counter = 0;
+                throw new ExecutionException(ProcessorFlag.ERR_INVALID_COUNTER,
+                        "Value of @counter (" + value + ") outside valid range (0 to " + size + ")");
+            }
+
+            if (!executeChunk(counter)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Executes the method containing the instruction at given index, starting at that instruction. The method
+     * returns when the control leaves the instructions it contains.
+     *
+     * @param index index of the instruction to execute, non-negative and less than program size
+     * @return false if the program was stopped or the step limit was reached
+     */
+    abstract boolean executeChunk(int index);
+
+    // Operations used by the generated code
+
+    final int read(int slot) {
+        return processor.bindForRead(registers, slot);
+    }
+
+    final int write(int slot) {
+        return processor.bindForWrite(registers, slot);
+    }
+
+    final boolean condition(int index) {
+        return processor.evaluateCondition(program, registers, index);
+    }
+
+    final void execute(int index) {
+        processor.execute(program, registers, index);
+    }
+}
@@ -8,6 +8,8 @@ import info.teksol.mindcode.ast.AstNode;
 public interface Variable extends MindustryValue, MindustryResult {
     String getName();
 
+    boolean isFixed();
+
     void assign(Variable var);
 
     MindustryObject getObject();
@@ -0,0 +1,259 @@
+package info.teksol.util;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Sequence of distinct elements which keeps track of the position of each element. Elements are compared by
+ * identity. Inserting, removing and replacing an element at given position, as well as determining the position
+ * of an element, take time proportional to the logarithm of the size of the sequence, regardless of the position
+ * of the element or of the preceding modifications. Null elements aren't supported.
+ * <p>
+ * The sequence is stored in a randomized balanced binary tree (treap) ordered by position. Each node keeps the size
+ * of its subtree and a reference to its parent; the position of an element is computed by walking from its node
+ * to the root and adding the sizes of the subtrees lying to the left of the path.
+ *
+ * @param <E> type of elements
+ */
+public final class OrderStatisticList<E> {
+    private final Map<E, Node<E>> nodes = new IdentityHashMap<>();
+
+    /** Seed of the priority generator; a fixed seed makes the shape of the tree reproducible. */
+    private int seed = 0x2545F491;
+
+    private Node<E> root;
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    public boolean contains(E element) {
+        return nodes.containsKey(element);
+    }
+
+    /**
+     * Determines the position of given element.
+     *
+     * @param element element to locate
+     * @return position of the element, or -1 when the element isn't present
+     */
+    public int indexOf(E element) {
+        Node<E> node = nodes.get(element);
+        if (node == null) {
+            return -1;
+        }
+
+        int index = size(node.left);
+        for (Node<E> parent = node.parent; parent != null; node = parent, parent = parent.parent) {
+            if (parent.right == node) {
+                index += size(parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the element at given position.
+     *
+     * @param index position of the element
+     * @return element at given position
+     * @throws IndexOutOfBoundsException when the index is outside the sequence
+     */
+    public E get(int index) {
+        return nodeAt(index).element;
+    }
+
+    /** Appends an element at the end of the sequence. See {@link #add(int, Object)}. */
+    public void add(E element) {
+        add(size(), element);
+    }
+
+    /**
+     * Inserts an element at given position, shifting the elements at this and subsequent positions.
+     *
+     * @param index position of the new element
+     * @param element element to insert
+     * @throws IllegalArgumentException when the element is already present in the sequence
+     * @throws IndexOutOfBoundsException when the index is outside the sequence
+     */
+    public void add(int index, E element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node<E> node = createNode(element);
+        Node<E>[] parts = split(root, index);
+        setRoot(merge(merge(parts[0], node), parts[1]));
+    }
+
+    /**
+     * Replaces the element at given position with another element.
+     *
+     * @param index position of the element to replace
+     * @param element new element
+     * @return the replaced element
+     * @throws IllegalArgumentException when the new element is already present in the sequence
+     * @throws IndexOutOfBoundsException when the index is outside the sequence
+     */
+    public E set(int index, E element) {
+        Node<E> node = nodeAt(index);
+        if (nodes.containsKey(element)) {
+            throw new IllegalArgumentException("Element already present: " + element);
+        }
+        E original = node.element;
+        nodes.remove(original);
+        node.element = element;
+        nodes.put(element, node);
+        return original;
+    }
+
+    /**
+     * Removes the element at given position, shifting the subsequent elements.
+     *
+     * @param index position of the element to remove
+     * @return the removed element
+     * @throws IndexOutOfBoundsException when the index is outside the sequence
+     */
+    public E remove(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node<E>[] parts = split(root, index);
+        Node<E>[] rest = split(parts[1], 1);
+        setRoot(merge(parts[0], rest[1]));
+        nodes.remove(rest[0].element);
+        return rest[0].element;
+    }
+
+    /**
+     * Returns the number of nodes on the path from the element to the root of the tree. The time to determine
+     * the position of the element is proportional to this number.
+     *
+     * @param element element to inspect
+     * @return depth of the element, or -1 when the element isn't present
+     */
+    int depth(E element) {
+        Node<E> node = nodes.get(element);
+        if (node == null) {
+            return -1;
+        }
+
+        int depth = 0;
+        for (; node != null; node = node.parent) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private Node<E> createNode(E element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not supported.");
+        }
+        if (nodes.containsKey(element)) {
+            throw new IllegalArgumentException("Element already present: " + element);
+        }
+
+        // Xorshift generator
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+
+        Node<E> node = new Node<>(element, seed);
+        nodes.put(element, node);
+        return node;
+    }
+
+    private Node<E> nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private void setRoot(Node<E> node) {
+        root = node;
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /** Splits the tree into two trees, the first one containing {@code count} leading elements. */
+    @SuppressWarnings("unchecked")
+    private Node<E>[] split(Node<E> node, int count) {
+        if (node == null) {
+            return new Node[] { null, null };
+        }
+
+        int leftSize = size(node.left);
+        if (count <= leftSize) {
+            Node<E>[] parts = split(node.left, count);
+            node.left = parts[1];
+            update(node);
+            parts[1] = node;
+            if (parts[0] != null) parts[0].parent = null;
+            return parts;
+        } else {
+            Node<E>[] parts = split(node.right, count - leftSize - 1);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            if (parts[1] != null) parts[1].parent = null;
+            return parts;
+        }
+    }
+
+    /** Joins two trees, placing all elements of the first one before all elements of the second one. */
+    private Node<E> merge(Node<E> left, Node<E> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    private void update(Node<E> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) node.left.parent = node;
+        if (node.right != null) node.right.parent = node;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<E> {
+        private final int priority;
+        private E element;
+        private Node<E> left;
+        private Node<E> right;
+        private Node<E> parent;
+        private int size = 1;
+
+        private Node(E element, int priority) {
+            this.element = element;
+            this.priority = priority;
+        }
+    }
+}
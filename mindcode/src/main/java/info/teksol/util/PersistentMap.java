@@ -0,0 +1,451 @@
+package info.teksol.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+/**
+ * Immutable hash map implemented as a hash array mapped trie. Modifying operations return a new map sharing all
+ * unmodified parts of the trie with the original one, so that keeping a copy of a map costs nothing and a modification
+ * costs time proportional to the depth of the trie. Null keys and values aren't supported.
+ * <p>
+ * Maps derived from a common ancestor share the subtries which weren't modified by either of them. The
+ * {@link #forEachDifference(PersistentMap, DifferenceConsumer)} method uses this to visit only the entries which
+ * differ between two maps, skipping the shared subtries without inspecting them.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentMap EMPTY = new PersistentMap<>(new BitmapNode(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return key == null ? null : (V) root.get(key, hash(key), 0);
+    }
+
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Creates a map containing given mapping in addition to the mappings of this map. If the key is already mapped
+     * to the same value instance, this map is returned.
+     *
+     * @param key key to map
+     * @param value value to associate with the key
+     * @return map containing the mapping
+     */
+    public PersistentMap<K, V> put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int[] sizeChange = new int[1];
+        Node newRoot = root.put(new Entry(key, value, hash(key)), 0, sizeChange);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, size + sizeChange[0]);
+    }
+
+    /**
+     * Creates a map without the mapping for given key. If the key isn't present, this map is returned.
+     *
+     * @param key key to remove
+     * @return map not containing the key
+     */
+    public PersistentMap<K, V> remove(Object key) {
+        if (key == null) return this;
+        Node newRoot = root.remove(key, hash(key), 0);
+        return newRoot == root ? this : new PersistentMap<>(newRoot == null ? EMPTY.root : newRoot, size - 1);
+    }
+
+    /**
+     * Creates a map without the mappings matching given predicate. If no mapping matches the predicate,
+     * this map is returned. Subtries not containing any matching mapping are shared with the new map.
+     *
+     * @param predicate predicate identifying mappings to remove
+     * @return map without the matching mappings
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentMap<K, V> removeIf(BiPredicate<? super K, ? super V> predicate) {
+        int[] removed = new int[1];
+        Node newRoot = root.removeIf((BiPredicate<Object, Object>) predicate, removed);
+        return newRoot == root ? this : new PersistentMap<>(newRoot == null ? EMPTY.root : newRoot, size - removed[0]);
+    }
+
+    /**
+     * Performs the given action on all mappings of this map. The order of the mappings is unspecified.
+     *
+     * @param action action to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    public List<K> keys() {
+        List<K> keys = new ArrayList<>(size);
+        forEach((k, v) -> keys.add(k));
+        return keys;
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        forEach((k, v) -> values.add(v));
+        return values;
+    }
+
+    /**
+     * Visits all keys which aren't mapped to the same value instance in this and the other map. Values are compared
+     * by identity; the action needs to compare them by equality if necessary. For keys present in only one of the maps,
+     * the value from the other map is null. Subtries shared by both maps are skipped, so when the maps were derived
+     * from a common ancestor, the cost is proportional to the number of modifications made since then rather than
+     * to the size of the maps.
+     *
+     * @param other map to compare with this one
+     * @param action action to perform on each differing key
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachDifference(PersistentMap<K, V> other, DifferenceConsumer<? super K, ? super V> action) {
+        if (root != other.root) {
+            difference(root, other.root, 0, (DifferenceConsumer<Object, Object>) action);
+        }
+    }
+
+    @FunctionalInterface
+    public interface DifferenceConsumer<K, V> {
+        void accept(K key, V thisValue, V otherValue);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> sb.append(sb.length() > 1 ? ", " : "").append(k).append('=').append(v));
+        return sb.append('}').toString();
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Visits differences between two slots located at the same position of two tries. When the slots are nodes,
+     * shift denotes their level in the trie.
+     */
+    private static void difference(Object slot1, Object slot2, int shift, DifferenceConsumer<Object, Object> action) {
+        if (slot1 instanceof BitmapNode node1 && slot2 instanceof BitmapNode node2) {
+            int bits = node1.bitmap | node2.bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+                Object child1 = (node1.bitmap & bit) != 0 ? node1.slots[node1.index(bit)] : null;
+                Object child2 = (node2.bitmap & bit) != 0 ? node2.slots[node2.index(bit)] : null;
+                if (child1 == null) {
+                    forEachEntry(child2, (k, v) -> action.accept(k, null, v));
+                } else if (child2 == null) {
+                    forEachEntry(child1, (k, v) -> action.accept(k, v, null));
+                } else if (child1 != child2) {
+                    difference(child1, child2, shift + BITS, action);
+                }
+            }
+        } else {
+            // Differently shaped subtries (only found near leaves): compare the entries directly
+            forEachEntry(slot1, (k, v) -> {
+                Object v2 = lookup(slot2, k, shift);
+                if (v != v2) action.accept(k, v, v2);
+            });
+            forEachEntry(slot2, (k, v) -> {
+                if (lookup(slot1, k, shift) == null) action.accept(k, null, v);
+            });
+        }
+    }
+
+    private static void forEachEntry(Object slot, BiConsumer<Object, Object> action) {
+        if (slot instanceof Entry entry) {
+            action.accept(entry.key, entry.value);
+        } else {
+            ((Node) slot).forEach(action);
+        }
+    }
+
+    private static Object lookup(Object slot, Object key, int shift) {
+        if (slot instanceof Entry entry) {
+            return entry.key.equals(key) ? entry.value : null;
+        } else {
+            return ((Node) slot).get(key, hash(key), shift);
+        }
+    }
+
+    private record Entry(Object key, Object value, int hash) { }
+
+    private static abstract class Node {
+        abstract Object get(Object key, int hash, int shift);
+
+        /** Returns the only entry of a node holding just one entry directly, otherwise the node itself. */
+        abstract Object singleEntry();
+
+        abstract Node put(Entry entry, int shift, int[] sizeChange);
+
+        /** Returns the same instance if unchanged, null if the node became empty. */
+        abstract Node remove(Object key, int hash, int shift);
+
+        /** Returns the same instance if unchanged, null if the node became empty. */
+        abstract Node removeIf(BiPredicate<Object, Object> predicate, int[] removed);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /** Node indexing up to 32 slots by five bits of the hash. Each slot holds either an entry or a subnode. */
+    private static final class BitmapNode extends Node {
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return null;
+            Object slot = slots[index(bit)];
+            if (slot instanceof Entry entry) {
+                return entry.key.equals(key) ? entry.value : null;
+            }
+            return ((Node) slot).get(key, hash, shift + BITS);
+        }
+
+        @Override
+        Object singleEntry() {
+            return slots.length == 1 && slots[0] instanceof Entry ? slots[0] : this;
+        }
+
+        @Override
+        Node put(Entry entry, int shift, int[] sizeChange) {
+            int bit = 1 << ((entry.hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = entry;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                sizeChange[0] = 1;
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Entry existing) {
+                if (existing.key.equals(entry.key)) {
+                    if (existing.value == entry.value) return this;
+                    newSlot = entry;
+                } else {
+                    sizeChange[0] = 1;
+                    newSlot = createNode(existing, entry, shift + BITS);
+                }
+            } else {
+                newSlot = ((Node) slot).put(entry, shift + BITS, sizeChange);
+                if (newSlot == slot) return this;
+            }
+
+            Object[] newSlots = slots.clone();
+            newSlots[index] = newSlot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        private static Node createNode(Entry entry1, Entry entry2, int shift) {
+            if (entry1.hash == entry2.hash) {
+                return new CollisionNode(entry1.hash, new Entry[] { entry1, entry2 });
+            }
+
+            int bit1 = 1 << ((entry1.hash >>> shift) & MASK);
+            int bit2 = 1 << ((entry2.hash >>> shift) & MASK);
+            if (bit1 == bit2) {
+                return new BitmapNode(bit1, new Object[] { createNode(entry1, entry2, shift + BITS) });
+            }
+            return new BitmapNode(bit1 | bit2, Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new Object[] { entry1, entry2 } : new Object[] { entry2, entry1 });
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) return this;
+            int index = index(bit);
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Entry entry) {
+                if (!entry.key.equals(key)) return this;
+                newSlot = null;
+            } else {
+                newSlot = ((Node) slot).remove(key, hash, shift + BITS);
+                if (newSlot == slot) return this;
+            }
+            return replace(bit, index, newSlot);
+        }
+
+        @Override
+        Node removeIf(BiPredicate<Object, Object> predicate, int[] removed) {
+            BitmapNode node = this;
+            int bits = bitmap;
+            while (bits != 0) {
+                int bit = Integer.lowestOneBit(bits);
+                bits &= ~bit;
+                int index = node.index(bit);
+                Object slot = node.slots[index];
+                if (slot instanceof Entry entry) {
+                    if (predicate.test(entry.key, entry.value)) {
+                        removed[0]++;
+                        node = node.replace(bit, index, null);
+                    }
+                } else {
+                    Node newSlot = ((Node) slot).removeIf(predicate, removed);
+                    if (newSlot != slot) {
+                        node = node.replace(bit, index, newSlot);
+                    }
+                }
+                if (node == null) return null;
+            }
+            return node;
+        }
+
+        /** Creates a copy of this node with a slot replaced or removed (when newSlot is null). */
+        private BitmapNode replace(int bit, int index, Object newSlot) {
+            if (newSlot == null) {
+                if (slots.length == 1) return null;
+                Object[] newSlots = new Object[slots.length - 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+                return new BitmapNode(bitmap & ~bit, newSlots);
+            }
+
+            // Inline a subnode reduced to a single entry
+            Object[] newSlots = slots.clone();
+            newSlots[index] = newSlot instanceof Node node ? node.singleEntry() : newSlot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Object slot : slots) {
+                forEachEntry(slot, action);
+            }
+        }
+    }
+
+    /** Node holding entries with identical hashes. */
+    private static final class CollisionNode extends Node {
+        private final int hash;
+        private final Entry[] entries;
+
+        CollisionNode(int hash, Entry[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(key)) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        Object get(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            return index < 0 ? null : entries[index].value;
+        }
+
+        @Override
+        Object singleEntry() {
+            return entries.length == 1 ? entries[0] : this;
+        }
+
+        @Override
+        Node put(Entry entry, int shift, int[] sizeChange) {
+            if (entry.hash != hash) {
+                // Push this node one level down
+                int bit = 1 << ((hash >>> shift) & MASK);
+                return new BitmapNode(bit, new Object[] { this }).put(entry, shift, sizeChange);
+            }
+
+            int index = indexOf(entry.key);
+            if (index >= 0) {
+                if (entries[index].value == entry.value) return this;
+                Entry[] newEntries = entries.clone();
+                newEntries[index] = entry;
+                return new CollisionNode(hash, newEntries);
+            }
+
+            Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+            newEntries[entries.length] = entry;
+            sizeChange[0] = 1;
+            return new CollisionNode(hash, newEntries);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift) {
+            int index = indexOf(key);
+            return index < 0 ? this : without(index);
+        }
+
+        @Override
+        Node removeIf(BiPredicate<Object, Object> predicate, int[] removed) {
+            CollisionNode node = this;
+            for (int i = entries.length - 1; i >= 0; i--) {
+                if (predicate.test(entries[i].key, entries[i].value)) {
+                    removed[0]++;
+                    node = node.without(i);
+                    if (node == null) return null;
+                }
+            }
+            return node;
+        }
+
+        private CollisionNode without(int index) {
+            if (entries.length == 1) return null;
+            Entry[] newEntries = new Entry[entries.length - 1];
+            System.arraycopy(entries, 0, newEntries, 0, index);
+            System.arraycopy(entries, index + 1, newEntries, index, entries.length - index - 1);
+            return new CollisionNode(hash, newEntries);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (Entry entry : entries) {
+                action.accept(entry.key, entry.value);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package info.teksol.util;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Immutable hash set backed by {@link PersistentMap}. Modifying operations return a new set sharing all unmodified
+ * parts of the trie with the original one. Null elements aren't supported.
+ *
+ * @param <E> type of elements
+ */
+public final class PersistentSet<E> {
+    @SuppressWarnings("rawtypes")
+    private static final PersistentSet EMPTY = new PersistentSet<>(PersistentMap.empty());
+
+    private final PersistentMap<E, E> map;
+
+    private PersistentSet(PersistentMap<E, E> map) {
+        this.map = map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentSet<E> empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public boolean contains(Object element) {
+        return map.containsKey(element);
+    }
+
+    public PersistentSet<E> add(E element) {
+        return with(map.containsKey(element) ? map : map.put(element, element));
+    }
+
+    public PersistentSet<E> remove(Object element) {
+        return with(map.remove(element));
+    }
+
+    /**
+     * Creates a set containing only elements present both in this set and in the other one. Subtries shared by
+     * both sets aren't inspected.
+     *
+     * @param other set to intersect with this one
+     * @return intersection of the two sets
+     */
+    public PersistentSet<E> retainAll(PersistentSet<E> other) {
+        PersistentMap<E, E>[] result = new PersistentMap[] { map };
+        map.forEachDifference(other.map, (element, thisValue, otherValue) -> {
+            if (otherValue == null) result[0] = result[0].remove(element);
+        });
+        return with(result[0]);
+    }
+
+    public void forEach(Consumer<? super E> action) {
+        map.forEach((k, v) -> action.accept(k));
+    }
+
+    public List<E> toList() {
+        return map.keys();
+    }
+
+    public Stream<E> stream() {
+        return toList().stream();
+    }
+
+    private PersistentSet<E> with(PersistentMap<E, E> newMap) {
+        return newMap == map ? this : new PersistentSet<>(newMap);
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
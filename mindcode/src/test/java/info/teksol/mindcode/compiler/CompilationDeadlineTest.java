@@ -0,0 +1,45 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.CompilationTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationDeadlineTest {
+
+    @AfterEach
+    void clearInterruptedFlag() {
+        Thread.interrupted();
+    }
+
+    @Test
+    void noTimeLimitNeverExpires() {
+        CompilationDeadline deadline = CompilationDeadline.start(CompilerProfile.fullOptimizations(false));
+        assertSame(CompilationDeadline.NONE, deadline);
+        assertDoesNotThrow(deadline::check);
+    }
+
+    @Test
+    void expiredDeadlineAbortsCompilation() throws InterruptedException {
+        CompilationDeadline deadline = CompilationDeadline.start(CompilerProfile.fullOptimizations(false).setTimeLimit(1));
+        Thread.sleep(10);
+        CompilationTimeoutException exception = assertThrows(CompilationTimeoutException.class, deadline::check);
+        assertEquals("Compilation time limit (1 ms) exceeded.", exception.getMessage());
+    }
+
+    @Test
+    void interruptedThreadAbortsCompilation() {
+        Thread.currentThread().interrupt();
+        assertThrows(CompilationTimeoutException.class, CompilationDeadline.NONE::check);
+    }
+
+    @Test
+    void compilerReportsInterruptedCompilation() {
+        Thread.currentThread().interrupt();
+        CompilerOutput<String> output = CompilerFacade.compile("print(1)", CompilerProfile.fullOptimizations(false));
+        assertEquals("", output.output());
+        assertEquals(1, output.errors().size());
+        assertTrue(output.errors().get(0).contains("Compilation interrupted."));
+    }
+}
@@ -0,0 +1,92 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.processor.ExecutionEngine;
+import info.teksol.mindcode.processor.MindustryMemory;
+import info.teksol.mindcode.processor.Processor;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerEventsTest {
+    private static final String CODE = """
+            for i in 0 ... 10
+                cell1[i] = i * 2
+            end
+            """;
+
+    private static final List<String> EVENTS = List.of("mindcode.Parse", "mindcode.Directives",
+            "mindcode.CodeGeneration", "mindcode.Optimizer", "mindcode.OptimizationAction",
+            "mindcode.LabelResolution", "mindcode.ProcessorRun");
+
+    @TempDir
+    Path tempDir;
+
+    private List<RecordedEvent> record(Runnable action) throws IOException {
+        Path file = tempDir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            EVENTS.forEach(name -> recording.enable(name).withThreshold(Duration.ZERO));
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    @Test
+    void emitsCompilerAndProcessorEvents() throws IOException {
+        List<RecordedEvent> events = record(() -> {
+            MindcodeCompiler compiler = new MindcodeCompiler(CompilerProfile.fullOptimizations(false));
+            compiler.compile(CODE);
+            Processor processor = new Processor();
+            processor.setExecutionEngine(ExecutionEngine.REGISTERS);
+            processor.addBlock(MindustryMemory.createMemoryCell("cell1"));
+            processor.run(compiler.getInstructions(), 1000);
+        });
+
+        Map<String, List<RecordedEvent>> byName = events.stream()
+                .collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+        assertEquals(EVENTS.stream().sorted().toList(), byName.keySet().stream().sorted().toList());
+
+        assertEquals(CODE.length(), byName.get("mindcode.Parse").get(0).getInt("sourceLength"));
+        assertTrue(byName.get("mindcode.Optimizer").stream()
+                .anyMatch(e -> e.getString("optimization").equals("Data Flow Optimization")
+                        && e.getInt("pass") == 1 && e.getInt("instructionsAfter") < e.getInt("instructionsBefore")));
+
+        RecordedEvent action = byName.get("mindcode.OptimizationAction").get(0);
+        assertEquals("Loop Unrolling", action.getString("optimization"));
+        assertTrue(action.getInt("cost") > 0);
+        assertEquals("REALIZED", action.getString("result"));
+
+        RecordedEvent run = byName.get("mindcode.ProcessorRun").get(0);
+        assertEquals("REGISTERS", run.getString("engine"));
+        assertEquals(byName.get("mindcode.LabelResolution").get(0).getInt("instructions"), run.getInt("instructions"));
+        assertTrue(run.getInt("steps") > 0);
+    }
+
+    @Test
+    void emitsNoEventsWhenDisabled() throws IOException {
+        Path file = tempDir.resolve("empty.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ThreadSleep");
+            EVENTS.forEach(recording::disable);
+            recording.start();
+            new MindcodeCompiler(CompilerProfile.fullOptimizations(false)).compile(CODE);
+            recording.stop();
+            recording.dump(file);
+        }
+        assertTrue(RecordingFile.readAllEvents(file).stream()
+                .noneMatch(e -> e.getEventType().getName().startsWith("mindcode.")));
+    }
+}
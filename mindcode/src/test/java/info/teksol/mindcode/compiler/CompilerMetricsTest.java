@@ -0,0 +1,73 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.compiler.CompilerMetrics.OptimizerMetrics;
+import info.teksol.mindcode.compiler.optimization.Optimization;
+import info.teksol.mindcode.compiler.optimization.OptimizationPhase;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerMetricsTest {
+    private static final String CODE = """
+            a = cell1[0]
+            b = a * 2 + a * 2
+            for i in 0 ... 10
+                cell2[i] = b + i
+            end
+            print(b)
+            """;
+
+    private CompilerOutput<String> compile(CompilerProfile profile) {
+        CompilerOutput<String> output = new MindcodeCompiler(profile).compile(CODE);
+        assertFalse(output.hasErrors(), () -> String.join("\n", output.errors()));
+        return output;
+    }
+
+    private int instructionCount(CompilerProfile profile) {
+        return (int) compile(profile).output().lines().count();
+    }
+
+    @Test
+    void recordsCompilationPhases() {
+        CompilerMetrics metrics = compile(CompilerProfile.fullOptimizations(false)).metrics();
+
+        assertEquals(List.of("parse", "compile", "optimize", "resolve"),
+                metrics.phases().stream().map(CompilerMetrics.PhaseMetrics::phase).toList());
+        assertTrue(metrics.getPhase("optimize").wallTimeNanos() > 0);
+    }
+
+    @Test
+    void recordsOptimizerModifications() {
+        CompilerMetrics metrics = compile(CompilerProfile.fullOptimizations(false)).metrics();
+        List<OptimizerMetrics> optimizers = metrics.optimizers();
+
+        assertTrue(optimizers.stream().anyMatch(m -> m.optimization() == Optimization.DATA_FLOW_OPTIMIZATION
+                && m.phase() == OptimizationPhase.ITERATED && m.pass() == 1 && m.instructionsRemoved() > 0));
+        assertTrue(optimizers.stream().anyMatch(m -> m.optimization() == Optimization.LOOP_UNROLLING
+                && m.actionsEvaluated() > 0 && m.actionsApplied() == 1 && m.instructionsAdded() > 0));
+        assertTrue(optimizers.stream().allMatch(m -> m.actionsApplied() <= m.actionsEvaluated()));
+
+        // Every change made to the program is attributed to an optimizer
+        int removed = optimizers.stream().mapToInt(m -> m.instructionsRemoved() - m.instructionsAdded()).sum();
+        assertEquals(instructionCount(CompilerProfile.noOptimizations(false)) - removed,
+                instructionCount(CompilerProfile.fullOptimizations(false)));
+    }
+
+    @Test
+    void noOptimizerMetricsWithoutOptimizations() {
+        CompilerMetrics metrics = compile(CompilerProfile.noOptimizations(false)).metrics();
+        assertTrue(metrics.optimizers().isEmpty());
+        assertEquals(4, metrics.phases().size());
+    }
+
+    @Test
+    void formatsMetricsAsJson() {
+        String json = compile(CompilerProfile.fullOptimizations(false)).metrics().toJson();
+
+        assertTrue(json.startsWith("{\n  \"phases\": [\n    { \"phase\": \"parse\", \"wallTimeNanos\": "), json);
+        assertTrue(json.contains("{ \"optimization\": \"data-flow-optimization\", \"phase\": \"iterated\", \"pass\": 1, "), json);
+        assertTrue(json.endsWith("}\n  ]\n}\n"), json);
+    }
+}
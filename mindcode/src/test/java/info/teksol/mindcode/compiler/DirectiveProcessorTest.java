@@ -57,6 +57,14 @@ class DirectiveProcessorTest {
         assertEquals(GenerationGoal.SPEED, profile.getGoal());
     }
 
+    @Test
+    void processesDirectiveSelectionStrategy() {
+        CompilerProfile profile = CompilerProfile.noOptimizations(false);
+        Seq seq = new Seq(null, new Directive(null, "selection-strategy", "knapsack"));
+        DirectiveProcessor.processDirectives(seq, profile, m -> {});
+        assertEquals(SelectionStrategy.KNAPSACK, profile.getSelectionStrategy());
+    }
+
     @Test
     void refusesInvalidOption() {
         CompilerProfile profile = CompilerProfile.noOptimizations(false);
@@ -0,0 +1,75 @@
+package info.teksol.mindcode.compiler;
+
+import info.teksol.mindcode.compiler.ProgramParser.ParsingStrategy;
+import info.teksol.mindcode.grammar.MindcodeParser;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class ProgramParserTest {
+    private static final Path SCRIPTS_DIRECTORY = Path.of("src", "test", "resources", "info", "teksol", "mindcode", "processor");
+
+    @TestFactory
+    Stream<DynamicTest> producesSameTreesAsLL() throws IOException {
+        return Files.walk(SCRIPTS_DIRECTORY)
+                .filter(p -> p.getFileName().toString().endsWith(".mnd"))
+                .sorted()
+                .map(p -> DynamicTest.dynamicTest(SCRIPTS_DIRECTORY.relativize(p).toString(),
+                        () -> assertSameParse(Files.readString(p))));
+    }
+
+    @Test
+    void reportsSyntaxErrorsOnce() {
+        List<String> errors = parseWithErrors("a = 1 +\nwhile", ParsingStrategy.SLL_FIRST);
+        assertFalse(errors.isEmpty());
+        assertEquals(parseWithErrors("a = 1 +\nwhile", ParsingStrategy.LL), errors);
+    }
+
+    @Test
+    void reportsLexerErrorsOnce() {
+        List<String> errors = parseWithErrors("a = 1 ` 2", ParsingStrategy.SLL_FIRST);
+        assertFalse(errors.isEmpty());
+        assertEquals(parseWithErrors("a = 1 ` 2", ParsingStrategy.LL), errors);
+    }
+
+    private List<String> parseWithErrors(String source, ParsingStrategy strategy) {
+        List<String> errors = new ArrayList<>();
+        ProgramParser.parse(source, new ErrorListener(errors), strategy);
+        return errors;
+    }
+
+    private void assertSameParse(String source) {
+        List<String> errors = new ArrayList<>();
+        MindcodeParser.ProgramContext expected = ProgramParser.parse(source, new ErrorListener(errors), ParsingStrategy.LL);
+        MindcodeParser.ProgramContext actual = ProgramParser.parse(source, new ErrorListener(errors), ParsingStrategy.SLL_FIRST);
+        assertEquals(List.of(), errors);
+        assertEquals(expected.toStringTree(), actual.toStringTree());
+    }
+
+    private static class ErrorListener extends BaseErrorListener {
+        private final List<String> errors;
+
+        public ErrorListener(List<String> errors) {
+            this.errors = errors;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+                String msg, RecognitionException e) {
+            errors.add(line + ":" + charPositionInLine + ": " + msg);
+        }
+    }
+}
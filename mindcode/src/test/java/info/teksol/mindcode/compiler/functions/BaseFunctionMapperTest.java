@@ -3,12 +3,11 @@ package info.teksol.mindcode.compiler.functions;
 import info.teksol.mindcode.compiler.instructions.AstContext;
 import info.teksol.mindcode.compiler.instructions.InstructionProcessor;
 import info.teksol.mindcode.compiler.instructions.InstructionProcessorFactory;
-import info.teksol.mindcode.logic.Opcode;
-import info.teksol.mindcode.logic.OpcodeVariant;
-import info.teksol.mindcode.logic.ProcessorEdition;
-import info.teksol.mindcode.logic.ProcessorVersion;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.logic.*;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static info.teksol.mindcode.logic.FunctionMapping.FUNC;
@@ -16,6 +15,8 @@ import static info.teksol.mindcode.logic.MindustryOpcodeVariants.*;
 import static info.teksol.mindcode.logic.ProcessorEdition.S;
 import static info.teksol.mindcode.logic.ProcessorVersion.V6;
 import static info.teksol.mindcode.logic.ProcessorVersion.V7;
+import static info.teksol.mindcode.logic.ProcessorVersion.V7A;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 // This class tests the initialization logic of the BaseFunctionMapper
@@ -75,4 +76,26 @@ public class BaseFunctionMapperTest {
                 )
         );
     }
+
+    @Test
+    void keepsCompilationStateOutOfSharedTables() {
+        List<String> messages = new ArrayList<>();
+        List<LogicInstruction> instructions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            InstructionProcessor processor = InstructionProcessorFactory.getInstructionProcessor(V7A, S);
+            FunctionMapper mapper = FunctionMapperFactory.getStaticFunctionMapper(processor, m -> messages.add(m.message()));
+            mapper.handleProperty(instructions::add, "configure", LogicVariable.block("sorter1"), List.of(LogicBuiltIn.create("copper")));
+            mapper.handleProperty(instructions::add, "configure", LogicVariable.block("sorter1"), List.of(LogicBuiltIn.create("lead")));
+            mapper.handleFunction(instructions::add, "getlink", List.of(LogicNumber.ZERO));
+            mapper.handleFunction(instructions::add, "getlink", List.of(LogicNumber.ONE));
+        }
+
+        // Deprecation warning is reported once per function mapper
+        assertEquals(2, messages.size());
+        // Temporary variables are numbered by each instruction processor separately
+        assertEquals(List.of("__tmp0", "__tmp1", "__tmp0", "__tmp1"), instructions.stream()
+                .filter(ix -> ix.getOpcode() == Opcode.GETLINK)
+                .map(ix -> ix.getArg(0).toMlog())
+                .toList());
+    }
 }
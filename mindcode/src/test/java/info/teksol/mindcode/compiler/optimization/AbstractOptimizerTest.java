@@ -114,12 +114,7 @@ public abstract class AbstractOptimizerTest<T extends Optimizer> extends Abstrac
             if (testedClass != null && !activated) {
                 throw new RuntimeException("No instructions processed by " + testedClass.getSimpleName() + ".");
             }
-            List<ProgramVersion> sel = diffLevel3();
-            for (int i = 1; i < sel.size(); i++) {
-                if (sel.get(i).getOptimizerClass() == testedClass) {
-                    printDiff(messageConsumer, sel.get(i).getTitle(), sel.get(i - 1).getProgram(), sel.get(i).getProgram());
-                }
-            }
+            printDiffs(messageConsumer, diffLevel3(), version -> version.getOptimizerClass() == testedClass);
         }
 
         @Override
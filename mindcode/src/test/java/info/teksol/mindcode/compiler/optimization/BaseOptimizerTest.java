@@ -6,6 +6,7 @@ import info.teksol.mindcode.compiler.generator.CallGraph;
 import info.teksol.mindcode.compiler.instructions.*;
 import info.teksol.mindcode.compiler.optimization.BaseOptimizerTest.DummyOptimizer;
 import info.teksol.mindcode.compiler.optimization.OptimizationContext.LogicList;
+import info.teksol.mindcode.logic.Condition;
 import info.teksol.mindcode.logic.LogicLabel;
 import info.teksol.mindcode.logic.Opcode;
 import org.junit.jupiter.api.Test;
@@ -13,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -202,6 +204,13 @@ class BaseOptimizerTest extends AbstractOptimizerTest<DummyOptimizer> {
         assertEquals(List.of(ix0, ix3, ix1, ix2), instructions);
     }
 
+    @Test
+    void updatesInstructionIndexOnInsert() {
+        test.insertInstruction(1, ix3);
+        assertEquals(List.of(0, 1, 2, 3), List.of(test.instructionIndex(ix0), test.instructionIndex(ix3),
+                test.instructionIndex(ix1), test.instructionIndex(ix2)));
+    }
+
     @Test
     void refusesRepeatedInserts() {
         assertThrows(MindcodeInternalError.class, () -> test.insertInstruction(1, ix2));
@@ -221,6 +230,13 @@ class BaseOptimizerTest extends AbstractOptimizerTest<DummyOptimizer> {
         assertEquals(List.of(ix0, ix3, ix2), instructions);
     }
 
+    @Test
+    void updatesInstructionIndexOnReplace() {
+        test.replaceInstruction(ix1, ix3);
+        assertEquals(-1, test.instructionIndex(ix1));
+        assertEquals(1, test.instructionIndex(ix3));
+    }
+
     @Test
     void refusesReplaceNonexistentInstruction() {
         assertThrows(NoSuchElementException.class, () -> test.replaceInstruction(ix3, ix3));
@@ -237,6 +253,46 @@ class BaseOptimizerTest extends AbstractOptimizerTest<DummyOptimizer> {
         assertEquals(List.of(ix0, ix2), instructions);
     }
 
+    @Test
+    void updatesInstructionIndexOnRemove() {
+        test.removeInstruction(0);
+        assertEquals(-1, test.instructionIndex(ix0));
+        assertEquals(1, test.instructionIndex(ix2));
+        test.insertInstruction(1, ix0);
+        assertEquals(1, test.instructionIndex(ix0));
+        assertEquals(2, test.instructionIndex(ix2));
+    }
+
+    @Test
+    void tracksProgramVersion() {
+        int version = oc.getProgramVersion();
+        test.insertInstruction(1, ix3);
+        test.replaceInstruction(ix3, ip.createInstruction(testContext, Opcode.SET, d, P0));
+        test.removeInstruction(0);
+        assertEquals(version + 3, oc.getProgramVersion());
+    }
+
+    @Test
+    void tracksContextDependencies() {
+        AstContext otherContext = mockAstContext.createChild(new NoOp(), AstContextType.NONE);
+        oc.startDependencyTracking();
+        OptimizationContext.DependencyStamp stamp = oc.getDependencyStamp(testContext);
+        test.insertInstruction(3, ip.createInstruction(otherContext, Opcode.SET, d, P0));
+        assertTrue(oc.isCurrent(testContext, stamp));
+        test.insertInstruction(1, ix3);
+        assertFalse(oc.isCurrent(testContext, stamp));
+    }
+
+    @Test
+    void tracksDataFlowDependencies() {
+        AstContext otherContext = mockAstContext.createChild(new NoOp(), AstContextType.NONE);
+        oc.startDependencyTracking();
+        oc.getVariableStates(ix0);
+        OptimizationContext.DependencyStamp stamp = oc.getDependencyStamp(testContext);
+        test.insertInstruction(3, ip.createInstruction(otherContext, Opcode.SET, d, P0));
+        assertFalse(oc.isCurrent(testContext, stamp));
+    }
+
     @Test
     void handlesRemovePrevious() {
         test.removePrevious(ix2);
@@ -294,6 +350,46 @@ class BaseOptimizerTest extends AbstractOptimizerTest<DummyOptimizer> {
         assertNotSame(ll1, ll2, "obtainContextLabel reused label from different context");
     }
 
+    @Test
+    void reusesCachedResultsAcrossUnrelatedModifications() {
+        AstContext root = AstContext.createRootNode();
+        AstContext loop1 = root.createChild(new NoOp(), AstContextType.LOOP);
+        AstContext loop2 = root.createChild(new NoOp(), AstContextType.LOOP);
+        JumpInstruction jump = ip.createJump(loop1, label0, Condition.LESS_THAN, a, P10);
+        LogicInstruction set = ip.createInstruction(loop2, Opcode.SET, b, P0);
+        OptimizationContext context = new OptimizationContext(ip, new ArrayList<>(List.of(jump, set)),
+                CallGraph.createEmpty(), root);
+        DummyOptimizer optimizer = new DummyOptimizer(context);
+
+        List<AstContext> analyzed = new ArrayList<>();
+        BiFunction<AstContext, Integer, OptimizationAction> finder = (ctx, limit) -> {
+            analyzed.add(ctx);
+            if (ctx == loop1) {
+                context.evaluateJumpInstruction(jump);
+            }
+            return null;
+        };
+
+        optimizer.forEachContextCached(AstContextType.LOOP, AstSubcontextType.BASIC, 10, finder);
+        assertEquals(List.of(loop1, loop2), analyzed);
+
+        // Modifying the other loop and discarding data flow results doesn't affect the value read by the finder
+        analyzed.clear();
+        optimizer.replaceInstruction(set, ip.createInstruction(loop2, Opcode.SET, b, P1));
+        context.clearVariableStates();
+        optimizer.forEachContextCached(AstContextType.LOOP, AstSubcontextType.BASIC, 10, finder);
+        assertEquals(List.of(loop2), analyzed);
+
+        // A new value of the variable read by the finder invalidates the cached result
+        analyzed.clear();
+        DataFlowVariableStates.VariableStates states = new DataFlowVariableStates(new DataFlowOptimizer(context))
+                .createVariableStates();
+        states.valueSet(a, jump, P1);
+        context.putVariableStates(jump, states);
+        optimizer.forEachContextCached(AstContextType.LOOP, AstSubcontextType.BASIC, 10, finder);
+        assertEquals(List.of(loop1), analyzed);
+    }
+
 
     protected static class DummyOptimizer extends BaseOptimizer {
         public DummyOptimizer(OptimizationContext optimizationContext) {
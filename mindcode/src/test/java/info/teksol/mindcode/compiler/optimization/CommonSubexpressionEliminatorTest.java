@@ -0,0 +1,350 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.MemoryModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static info.teksol.mindcode.logic.Opcode.*;
+
+class CommonSubexpressionEliminatorTest extends AbstractOptimizerTest<CommonSubexpressionEliminator> {
+
+    @Override
+    protected Class<CommonSubexpressionEliminator> getTestedClass() {
+        return CommonSubexpressionEliminator.class;
+    }
+
+    @Override
+    protected List<Optimization> getAllOptimizations() {
+        return Optimization.LIST;
+    }
+
+    private CompilerProfile createCompilerProfile(MemoryModel memoryModel) {
+        CompilerProfile profile = createCompilerProfile();
+        profile.setMemoryModel(memoryModel);
+        return profile;
+    }
+
+    @Test
+    void eliminatesExpressionsFromBothBranches() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, c."),
+                """
+                        if c
+                            print(a * b)
+                        else
+                            print(a * b + 1)
+                        end
+                        print(a * b)
+                        """,
+                createInstruction(JUMP, var(1000), "equal", "c", "false"),
+                createInstruction(OP, "mul", var(5), "a", "b"),
+                createInstruction(PRINT, var(5)),
+                createInstruction(JUMP, var(1001), "always"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(OP, "mul", var(5), "a", "b"),
+                createInstruction(OP, "add", var(3), var(5), "1"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, var(5)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void eliminatesExpressionsFromCaseBranches() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, c."),
+                """
+                        case c
+                            when 1 then print(a + b)
+                            when 2 then print(b + a + 1)
+                            else print(a + b + 2)
+                        end
+                        print(a + b)
+                        """,
+                createInstruction(JUMP, var(1001), "notEqual", "c", "1"),
+                createInstruction(OP, "add", var(7), "a", "b"),
+                createInstruction(PRINT, var(7)),
+                createInstruction(JUMP, var(1000), "always"),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(JUMP, var(1003), "notEqual", "c", "2"),
+                createInstruction(OP, "add", var(7), "b", "a"),
+                createInstruction(OP, "add", var(3), var(7), "1"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(JUMP, var(1000), "always"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "add", var(7), "a", "b"),
+                createInstruction(OP, "add", var(5), var(7), "2"),
+                createInstruction(PRINT, var(5)),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(PRINT, var(7)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsExpressionsModifiedOnSomePaths() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, c."),
+                """
+                        if c
+                            print(a * b)
+                        else
+                            a = rand(10)
+                        end
+                        print(a * b)
+                        """,
+                createInstruction(JUMP, var(1000), "equal", "c", "false"),
+                createInstruction(OP, "mul", var(1), "a", "b"),
+                createInstruction(PRINT, var(1)),
+                createInstruction(JUMP, var(1001), "always"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(OP, "rand", "a", "10"),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(OP, "mul", var(3), "a", "b"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void eliminatesConstantSensors() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: c."),
+                """
+                        if c
+                            print(switch1.x)
+                        else
+                            print(switch1.x + 1)
+                        end
+                        print(switch1.x)
+                        """,
+                createInstruction(JUMP, var(1000), "equal", "c", "false"),
+                createInstruction(SENSOR, var(5), "switch1", "@x"),
+                createInstruction(PRINT, var(5)),
+                createInstruction(JUMP, var(1001), "always"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SENSOR, var(5), "switch1", "@x"),
+                createInstruction(OP, "add", var(3), var(5), "1"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, var(5)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsReadsWithVolatileMemoryModel() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: c."),
+                """
+                        if c
+                            print(cell1[0])
+                        else
+                            print(cell1[0] + 1)
+                        end
+                        print(cell1[0])
+                        """,
+                createInstruction(JUMP, var(1000), "equal", "c", "false"),
+                createInstruction(READ, var(1), "cell1", "0"),
+                createInstruction(PRINT, var(1)),
+                createInstruction(JUMP, var(1001), "always"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(READ, var(2), "cell1", "0"),
+                createInstruction(OP, "add", var(3), var(2), "1"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(READ, var(4), "cell1", "0"),
+                createInstruction(PRINT, var(4)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void eliminatesReadsWithRestrictedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.RESTRICTED)),
+                ignore("List of uninitialized variables: c."),
+                """
+                        if c
+                            print(cell1[0])
+                        else
+                            print(cell1[0] + 1)
+                            cell2[0] = 1
+                        end
+                        print(cell1[0])
+                        """,
+                createInstruction(JUMP, var(1000), "equal", "c", "false"),
+                createInstruction(READ, var(5), "cell1", "0"),
+                createInstruction(PRINT, var(5)),
+                createInstruction(JUMP, var(1001), "always"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(READ, var(5), "cell1", "0"),
+                createInstruction(OP, "add", var(3), var(5), "1"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(WRITE, "1", "cell2", "0"),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, var(5)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsReadsOfWrittenMemoryWithAliasedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.ALIASED)),
+                ignore("List of uninitialized variables: c."),
+                """
+                        if c
+                            print(cell1[0])
+                        else
+                            print(cell1[0] + 1)
+                            cell2[0] = 1
+                        end
+                        print(cell1[0])
+                        """,
+                createInstruction(JUMP, var(1000), "equal", "c", "false"),
+                createInstruction(READ, var(1), "cell1", "0"),
+                createInstruction(PRINT, var(1)),
+                createInstruction(JUMP, var(1001), "always"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(READ, var(2), "cell1", "0"),
+                createInstruction(OP, "add", var(3), var(2), "1"),
+                createInstruction(PRINT, var(3)),
+                createInstruction(WRITE, "1", "cell2", "0"),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(READ, var(4), "cell1", "0"),
+                createInstruction(PRINT, var(4)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void forwardsWrittenValuesWithRestrictedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.RESTRICTED)),
+                ignore("List of uninitialized variables: a, b."),
+                """
+                        cell1[0] = a + b
+                        cell2[1] = 5
+                        print(cell1[0], cell2[1])
+                        """,
+                createInstruction(OP, "add", var(0), "a", "b"),
+                createInstruction(WRITE, var(0), "cell1", "0"),
+                createInstruction(WRITE, "5", "cell2", "1"),
+                createInstruction(PRINT, var(0)),
+                createInstruction(PRINT, "5"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsReadsOutsideMemoryCapacity() {
+        // Reading outside the memory block yields zero, not the written value. The capacity of a variable index
+        // isn't known. Memory banks have larger capacity than memory cells.
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.RESTRICTED)),
+                ignore("List of uninitialized variables: i."),
+                """
+                        cell1[64] = 5
+                        cell2[i] = 6
+                        bank1[100] = 7
+                        print(cell1[64], cell2[i], bank1[100])
+                        """,
+                createInstruction(WRITE, "5", "cell1", "64"),
+                createInstruction(WRITE, "6", "cell2", "i"),
+                createInstruction(WRITE, "7", "bank1", "100"),
+                createInstruction(READ, var(0), "cell1", "64"),
+                createInstruction(READ, var(1), "cell2", "i"),
+                createInstruction(PRINT, var(0)),
+                createInstruction(PRINT, var(1)),
+                createInstruction(PRINT, "7"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsWrittenValuesOfUnknownTypes() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.RESTRICTED)),
+                ignore("List of uninitialized variables: a, b."),
+                """
+                        cell1[0] = a
+                        cell1[1] = a / b
+                        print(cell1[0], cell1[1])
+                        """,
+                createInstruction(WRITE, "a", "cell1", "0"),
+                createInstruction(OP, "div", var(0), "a", "b"),
+                createInstruction(WRITE, var(0), "cell1", "1"),
+                createInstruction(READ, var(1), "cell1", "0"),
+                createInstruction(READ, var(2), "cell1", "1"),
+                createInstruction(PRINT, var(1)),
+                createInstruction(PRINT, var(2)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsForwardedValuesOfWrittenMemoryWithAliasedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.ALIASED)),
+                ignore("List of uninitialized variables: a, b."),
+                """
+                        cell1[0] = a + b
+                        cell2[1] = 5
+                        print(cell1[0], cell2[1])
+                        """,
+                createInstruction(OP, "add", var(0), "a", "b"),
+                createInstruction(WRITE, var(0), "cell1", "0"),
+                createInstruction(WRITE, "5", "cell2", "1"),
+                createInstruction(READ, var(1), "cell1", "0"),
+                createInstruction(PRINT, var(1)),
+                createInstruction(PRINT, "5"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void removesOverwrittenWritesWithRestrictedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.RESTRICTED)),
+                ignore("List of uninitialized variables: a, b, c."),
+                """
+                        cell1[0] = a
+                        print(cell2[0])
+                        cell1[0] = b
+                        cell1[c] = a
+                        c += 1
+                        cell1[c] = b
+                        """,
+                createInstruction(READ, var(0), "cell2", "0"),
+                createInstruction(PRINT, var(0)),
+                createInstruction(WRITE, "b", "cell1", "0"),
+                createInstruction(WRITE, "a", "cell1", "c"),
+                createInstruction(OP, "add", "c", "c", "1"),
+                createInstruction(WRITE, "b", "cell1", "c"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsOverwrittenWritesReadWithAliasedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.ALIASED)),
+                ignore("List of uninitialized variables: a, b."),
+                """
+                        cell1[0] = a
+                        print(cell2[0])
+                        cell1[0] = b
+                        """,
+                createInstruction(WRITE, "a", "cell1", "0"),
+                createInstruction(READ, var(0), "cell2", "0"),
+                createInstruction(PRINT, var(0)),
+                createInstruction(WRITE, "b", "cell1", "0"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsOverwrittenWritesWithVolatileMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.VOLATILE)),
+                ignore("List of uninitialized variables: a, b."),
+                """
+                        cell1[0] = a
+                        cell1[0] = b
+                        """,
+                createInstruction(WRITE, "a", "cell1", "0"),
+                createInstruction(WRITE, "b", "cell1", "0"),
+                createInstruction(END)
+        );
+    }
+}
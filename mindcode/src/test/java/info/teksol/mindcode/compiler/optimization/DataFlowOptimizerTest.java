@@ -3,8 +3,12 @@ package info.teksol.mindcode.compiler.optimization;
 import info.teksol.mindcode.compiler.CompilerMessage;
 import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.mindcode.compiler.GenerationGoal;
+import info.teksol.mindcode.compiler.generator.GeneratorOutput;
+import info.teksol.mindcode.compiler.instructions.AstContext;
+import info.teksol.mindcode.logic.LogicString;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static info.teksol.mindcode.logic.Opcode.*;
@@ -28,6 +32,53 @@ class DataFlowOptimizerTest extends AbstractOptimizerTest<DataFlowOptimizer> {
         return super.createCompilerProfile().setGoal(GenerationGoal.SPEED);
     }
 
+    // Tail Call Elimination runs in the final phase, after Data Flow Optimization is done, and replaces recursive
+    // calls in tail position with jumps. Tests examining how data flow analysis handles the stack operations and
+    // argument assignments of recursive calls turn it off, so that the calls they examine stay in the output.
+    // The data flow results don't depend on it; the code produced with tail calls eliminated is verified by
+    // TailCallEliminatorTest.
+    private TestCompiler createTestCompilerKeepingTailCalls() {
+        return createTestCompiler(createCompilerProfile()
+                .setOptimizationLevel(Optimization.TAIL_CALL_ELIMINATION, OptimizationLevel.OFF));
+    }
+
+    //<editor-fold desc="Analysis reuse">
+    @Test
+    void reusesAnalysesOfUnmodifiedFunctions() {
+        GeneratorOutput output = generateInstructions("""
+                def foo(n)
+                    print(n)
+                end
+                def bar(n)
+                    print(n * 2)
+                end
+                foo(1)
+                foo(2)
+                bar(3)
+                bar(4)
+                """);
+        OptimizationContext context = new OptimizationContext(ip, new ArrayList<>(output.instructions()),
+                output.callGraph(), output.rootAstContext());
+        DataFlowOptimizer optimizer = new DataFlowOptimizer(context);
+        optimizer.optimize(OptimizationPhase.ITERATED, 1);
+        int analyzed = optimizer.getAnalyzedContexts();
+        int reused = optimizer.getReusedContexts();
+
+        // Modify the first function in a way which doesn't affect its reads and writes
+        AstContext function = output.rootAstContext().children().stream()
+                .filter(c -> c.functionPrefix() != null)
+                .findFirst().orElseThrow();
+        optimizer.insertInstruction(optimizer.firstInstructionIndex(function) + 1,
+                ip.createInstruction(function, PRINT, LogicString.create("modified")));
+
+        optimizer.optimize(OptimizationPhase.ITERATED, 2);
+        // Only the modified function is analyzed again
+        int topContexts = output.rootAstContext().children().size();
+        assertEquals(1, optimizer.getAnalyzedContexts() - analyzed, "Analyzed contexts");
+        assertEquals(topContexts - 1, optimizer.getReusedContexts() - reused, "Reused contexts");
+    }
+    //</editor-fold>
+
     //<editor-fold desc="Warnings">
     @Test
     void generatesUninitializedWarning() {
@@ -970,7 +1021,7 @@ class DataFlowOptimizerTest extends AbstractOptimizerTest<DataFlowOptimizer> {
         // The recursive call foo(m, n - 1) modifies __fn0_n (it is set to n - 1 when passing new value to the recursive call)
         // Data Flow analysis of push/pop should determine the value of n remains unchanged after the call
         // Because of this, it subsequently determines the __tmp1 variable in loop condition can be replaced by __fn0_n
-        assertCompilesTo("""
+        assertCompilesTo(createTestCompilerKeepingTailCalls(), """
                         allocate stack in bank1[0...512]
                         def foo(n)
                             if n > 0
@@ -1035,6 +1086,37 @@ class DataFlowOptimizerTest extends AbstractOptimizerTest<DataFlowOptimizer> {
                 createInstruction(RETURN, "bank1")
         );
     }
+
+    @Test
+    public void preservesArgumentsOfSequentialParameterAssignments() {
+        // Parameter a is assigned the value of b before the second argument is evaluated: the expression a % b
+        // must not be moved into the assignment of b
+        assertCompilesTo(createTestCompilerKeepingTailCalls(), """
+                        allocate stack in bank1[0...512]
+                        def gcd(a, b)
+                            b == 0 ? a : gcd(b, a % b)
+                        end
+                        print(gcd(84, 36))
+                        """,
+                createInstruction(SET, "__sp", "0"),
+                createInstruction(SET, "__fn0_a", "84"),
+                createInstruction(SET, "__fn0_b", "36"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1001)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "__fn0_a"),
+                createInstruction(JUMP, var(1004), "equal", "__fn0_b", "0"),
+                createInstruction(OP, "mod", var(3), "__fn0_a", "__fn0_b"),
+                createInstruction(SET, "__fn0_a", "__fn0_b"),
+                createInstruction(SET, "__fn0_b", var(3)),
+                createInstruction(CALLREC, "bank1", var(1000), var(1005)),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(RETURN, "bank1")
+        );
+    }
     //</editor-fold>
 
     //<editor-fold desc="Subexpressions">
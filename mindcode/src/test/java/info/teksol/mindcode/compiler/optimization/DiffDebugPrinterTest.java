@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static info.teksol.mindcode.logic.Opcode.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -118,4 +119,33 @@ public class DiffDebugPrinterTest extends AbstractGeneratorTest {
                              4 end""",
                 String.join("\n", messages));
     }
+
+    @Test
+    void reconstructsProgramVersionsFromEdits() {
+        Random random = new Random(0);
+        List<LogicInstruction> program = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            program.add(createInstruction(SET, "a" + i, String.valueOf(i)));
+        }
+
+        for (int step = 0; step < 200; step++) {
+            List<LogicInstruction> before = List.copyOf(program);
+            for (int change = random.nextInt(4); change >= 0; change--) {
+                int index = random.nextInt(program.size());
+                switch (random.nextInt(3)) {
+                    case 0 -> program.add(index, createInstruction(PRINT, "p" + step));
+                    case 1 -> program.remove(index);
+                    default -> program.set(index, createInstruction(PRINT, "r" + step));
+                }
+            }
+
+            List<DiffDebugPrinter.Edit> edits = DiffDebugPrinter.computeEdits(before, program);
+            List<LogicInstruction> after = DiffDebugPrinter.applyEdits(before, edits);
+            Assertions.assertEquals(program.size(), after.size());
+            for (int i = 0; i < program.size(); i++) {
+                Assertions.assertSame(program.get(i), after.get(i));
+            }
+            Assertions.assertTrue(edits.size() <= 5, "Too many edits: " + edits.size());
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.MindcodeException;
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.MindcodeCompiler;
+import info.teksol.mindcode.compiler.instructions.AstContext;
+import info.teksol.mindcode.compiler.instructions.AstContextType;
+import info.teksol.mindcode.compiler.instructions.AstSubcontextType;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.processor.ExecutionEngine;
+import info.teksol.mindcode.processor.ExecutionException;
+import info.teksol.mindcode.processor.MemoryFixture;
+import info.teksol.mindcode.processor.Processor;
+import info.teksol.mindcode.processor.ProcessorFlag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionWeightsTest {
+    private static final String CODE = """
+            if cell1[0] > 0
+                for i in 0 ... 10
+                    cell2[i] = i * 2
+                end
+            else
+                for i in 0 ... 10
+                    cell2[i] = i * 3
+                end
+            end
+            """;
+
+    private MindcodeCompiler compile(CompilerProfile profile) {
+        MindcodeCompiler compiler = new MindcodeCompiler(profile);
+        CompilerOutput<String> output = compiler.compile(CODE);
+        assertFalse(output.hasErrors(), () -> String.join("\n", output.errors()));
+        return compiler;
+    }
+
+    private ExecutionWeights profile(List<LogicInstruction> program, String fixture) {
+        Processor processor = new Processor();
+        processor.setExecutionEngine(ExecutionEngine.REGISTERS);
+        processor.setProfiling(true);
+        MemoryFixture.parse(fixture).apply(processor);
+        try {
+            processor.run(program, 10000);
+        } catch (ExecutionException e) {
+            // Optimized code loops instead of stopping at the end: the profile is still valid
+            assertEquals(ProcessorFlag.ERR_EXECUTION_LIMIT_EXCEEDED, e.getFlag());
+        }
+        return processor.getProfile().toExecutionWeights();
+    }
+
+    private String compileWithProfile(String fixture) {
+        CompilerProfile profile = CompilerProfile.fullOptimizations(false).setInstructionLimit(30);
+        ExecutionWeights weights = profile(compile(profile).getInstructions(), fixture);
+        return new MindcodeCompiler(profile.setExecutionWeights(weights)).compile(CODE).output();
+    }
+
+    private AstContext findLoopBody(List<LogicInstruction> program, int line) {
+        for (LogicInstruction instruction : program) {
+            for (AstContext context = instruction.getAstContext(); context != null; context = context.parent()) {
+                if (context.matches(AstContextType.LOOP, AstSubcontextType.BODY) && context.node().startToken().getLine() == line) {
+                    return context;
+                }
+            }
+        }
+        throw new AssertionError("Loop body on line " + line + " not found");
+    }
+
+    @Test
+    void collectsExecutionCounts() {
+        CompilerProfile profile = CompilerProfile.noOptimizations(false);
+        ExecutionWeights weights = profile(compile(profile).getInstructions(), "cell1 = 0\ncell2 =");
+        List<String> lines = weights.encode().lines().toList();
+
+        assertEquals(1, weights.getRuns());
+        assertTrue(lines.contains("0 loop body RangedForExpression 2:4"), weights.encode());
+        assertTrue(lines.contains("10 loop body RangedForExpression 6:4"), weights.encode());
+        assertTrue(lines.contains("0 if body IfExpression 1:0"), weights.encode());
+        assertTrue(lines.contains("1 if body IfExpression 1:0 #2"), weights.encode());
+    }
+
+    @Test
+    void appliesExecutionCounts() {
+        CompilerProfile profile = CompilerProfile.noOptimizations(false);
+        List<LogicInstruction> program = compile(profile).getInstructions();
+        ExecutionWeights weights = profile(program, "cell1 = 1\ncell2 =")
+                .merge(profile(program, "cell1 = 1\ncell2 ="))
+                .merge(profile(program, "cell1 = 0\ncell2 ="))
+                .merge(profile(program, "cell1 = 1\ncell2 ="));
+
+        AstContext hot = findLoopBody(program, 2);
+        AstContext cold = findLoopBody(program, 6);
+        AstContext root = hot;
+        while (root.parent() != null) root = root.parent();
+        weights.apply(root);
+
+        assertEquals(4, weights.getRuns());
+        assertEquals(7.5, hot.totalWeight(), 1e-9);
+        assertEquals(2.5, cold.totalWeight(), 1e-9);
+    }
+
+    @Test
+    void encodesAndParsesWeights() {
+        CompilerProfile profile = CompilerProfile.noOptimizations(false);
+        List<LogicInstruction> program = compile(profile).getInstructions();
+        ExecutionWeights weights = profile(program, "cell1 = 0\ncell2 =").merge(profile(program, "cell1 = 1\ncell2 ="));
+
+        ExecutionWeights parsed = ExecutionWeights.parse(weights.encode());
+        assertEquals(weights.encode(), parsed.encode());
+        assertEquals(2, parsed.getRuns());
+        assertEquals(weights.size(), parsed.size());
+        assertEquals(0.5, parsed.getExecutions(findLoopBody(program, 2)) / 10, 1e-9);
+    }
+
+    @Test
+    void rejectsInvalidProfiles() {
+        assertThrows(MindcodeException.class, () -> ExecutionWeights.parse("# no runs\n10 loop body"));
+        assertThrows(MindcodeException.class, () -> ExecutionWeights.parse("runs 1\nten loop body"));
+        assertThrows(MindcodeException.class, () -> ExecutionWeights.parse("runs 1\n10"));
+    }
+
+    @Test
+    void guidesSpeedOptimizations() {
+        String staticWeights = new MindcodeCompiler(CompilerProfile.fullOptimizations(false).setInstructionLimit(30))
+                .compile(CODE).output();
+        String firstBranch = compileWithProfile("cell1 = 1\ncell2 =");
+        String secondBranch = compileWithProfile("cell1 = 0\ncell2 =");
+
+        // Only one of the loops can be unrolled within the instruction limit
+        String firstUnrolled = "write 18 cell2 9";
+        String secondUnrolled = "write 27 cell2 9";
+        assertAll(
+                () -> assertTrue(staticWeights.contains(firstUnrolled), staticWeights),
+                () -> assertTrue(firstBranch.contains(firstUnrolled), firstBranch),
+                () -> assertFalse(firstBranch.contains(secondUnrolled), firstBranch),
+                () -> assertTrue(secondBranch.contains(secondUnrolled), secondBranch),
+                () -> assertFalse(secondBranch.contains(firstUnrolled), secondBranch)
+        );
+    }
+}
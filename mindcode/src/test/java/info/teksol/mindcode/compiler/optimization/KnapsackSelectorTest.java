@@ -0,0 +1,156 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.ast.NoOp;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.MindcodeCompiler;
+import info.teksol.mindcode.compiler.SelectionStrategy;
+import info.teksol.mindcode.compiler.instructions.AstContext;
+import info.teksol.mindcode.compiler.instructions.AstContextType;
+import info.teksol.mindcode.compiler.instructions.AstSubcontextType;
+import info.teksol.mindcode.processor.MindustryMemory;
+import info.teksol.mindcode.processor.Processor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnapsackSelectorTest {
+    private final AstContext root = AstContext.createRootNode();
+
+    private AstContext loop(AstContext parent) {
+        return parent.createChild(new NoOp(), AstContextType.LOOP);
+    }
+
+    private static OptimizationAction action(String name, AstContext context, int cost, double benefit) {
+        return new AbstractOptimizationAction(context, cost, benefit) {
+            @Override
+            public OptimizationResult apply(int costLimit) {
+                return OptimizationResult.REALIZED;
+            }
+
+            @Override
+            public String toString() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    void prefersTwoSmallerOptimizations() {
+        OptimizationAction a = action("A", loop(root), 60, 70);
+        OptimizationAction b = action("B", loop(root), 50, 55);
+        OptimizationAction c = action("C", loop(root), 50, 55);
+
+        assertEquals(List.of(b, c), KnapsackSelector.select(List.of(a, b, c), 100));
+        assertEquals(List.of(a), KnapsackSelector.select(List.of(a, b, c), 60));
+    }
+
+    @Test
+    void avoidsNestedContexts() {
+        AstContext outer = loop(root);
+        OptimizationAction a = action("A", loop(root), 60, 70);
+        OptimizationAction b = action("B", outer, 50, 55);
+        OptimizationAction c = action("C", loop(outer), 50, 55);
+
+        assertEquals(List.of(a), KnapsackSelector.select(List.of(a, b, c), 100));
+        assertTrue(KnapsackSelector.conflict(b, c));
+        assertFalse(KnapsackSelector.conflict(a, b));
+    }
+
+    @Test
+    void avoidsInliningFunctionAndItsCalls() {
+        AstContext function = root.createFunctionDeclaration("__fn0", new NoOp(), AstContextType.FUNCTION, 1.0);
+        AstContext call1 = loop(root).createSubcontext("__fn0", AstSubcontextType.OUT_OF_LINE_CALL, 1.0);
+        AstContext call2 = loop(root).createSubcontext("__fn0", AstSubcontextType.OUT_OF_LINE_CALL, 1.0);
+        AstContext other = loop(root).createSubcontext("__fn1", AstSubcontextType.OUT_OF_LINE_CALL, 1.0);
+
+        OptimizationAction inlineFunction = action("F", function, 10, 50);
+        OptimizationAction inlineCall1 = action("C1", call1, 20, 20);
+        OptimizationAction inlineCall2 = action("C2", call2, 20, 20);
+        OptimizationAction inlineOther = action("O", other, 20, 5);
+
+        assertTrue(KnapsackSelector.conflict(inlineFunction, inlineCall1));
+        assertFalse(KnapsackSelector.conflict(inlineCall1, inlineCall2));
+        assertFalse(KnapsackSelector.conflict(inlineFunction, inlineOther));
+        assertEquals(List.of(inlineFunction, inlineOther),
+                KnapsackSelector.select(List.of(inlineCall1, inlineCall2, inlineFunction, inlineOther), 40));
+        assertEquals(List.of(inlineCall1, inlineCall2),
+                KnapsackSelector.select(List.of(inlineCall1, inlineCall2, inlineOther), 40));
+    }
+
+    @Test
+    void includesFreeOptimizations() {
+        OptimizationAction a = action("A", loop(root), 0, 1);
+        OptimizationAction b = action("B", loop(root), 10, 10);
+
+        assertEquals(List.of(a), KnapsackSelector.select(List.of(a, b), 5));
+        assertEquals(List.of(), KnapsackSelector.select(List.of(), 5));
+    }
+
+    private Processor compileAndRun(String code, SelectionStrategy strategy) {
+        return compileAndRun(code, strategy, 66);
+    }
+
+    private Processor compileAndRun(String code, SelectionStrategy strategy, int instructionLimit) {
+        MindcodeCompiler compiler = new MindcodeCompiler(CompilerProfile.fullOptimizations(false)
+                .setInstructionLimit(instructionLimit).setSelectionStrategy(strategy));
+        assertFalse(compiler.compile(code).hasErrors());
+        Processor processor = new Processor();
+        processor.addBlock(MindustryMemory.createMemoryCell("cell1"));
+        processor.run(compiler.getInstructions(), 10000);
+        return processor;
+    }
+
+    @Test
+    void compilesFasterCode() {
+        String code = """
+                for i in 0 ... 10
+                    cell1[i + 0] += 1
+                end
+                for i in 0 ... 10
+                    cell1[i + 20] += 1
+                end
+                for i in 0 ... 12
+                    cell1[i + 40] += 1
+                end
+                print(cell1[3])
+                """;
+
+        // Only one loop can be unrolled: greedy selection unrolls the most efficient one,
+        // knapsack the one with the largest benefit
+        Processor greedy = compileAndRun(code, SelectionStrategy.GREEDY);
+        Processor knapsack = compileAndRun(code, SelectionStrategy.KNAPSACK);
+        assertEquals(List.of("1"), knapsack.getTextBuffer());
+        assertEquals(greedy.getTextBuffer(), knapsack.getTextBuffer());
+        assertTrue(knapsack.getSteps() < greedy.getSteps(),
+                "Knapsack steps: " + knapsack.getSteps() + ", greedy steps: " + greedy.getSteps());
+    }
+
+    @Test
+    void reevaluatesChosenOptimizationsAfterEachOne() {
+        String code = """
+                for i in 0 ... 10
+                    cell1[i] += 1
+                end
+                for i in 0 ... 6
+                    cell1[i + 20] += 1
+                end
+                for i in 0 ... 6
+                    cell1[i + 40] += 1
+                end
+                print(cell1[3])
+                """;
+
+        // Greedy selection only unrolls the first loop, knapsack chooses the two smaller loops. Unrolling one of them
+        // takes less space than estimated, and the set chosen in the next round contains the first loop instead
+        // of the other small one. The result is the same as when the first two loops fit into the limit.
+        Processor greedy = compileAndRun(code, SelectionStrategy.GREEDY, 63);
+        Processor knapsack = compileAndRun(code, SelectionStrategy.KNAPSACK, 63);
+        Processor expected = compileAndRun(code, SelectionStrategy.GREEDY, 64);
+        assertEquals(List.of("1"), knapsack.getTextBuffer());
+        assertEquals(expected.getSteps(), knapsack.getSteps());
+        assertTrue(knapsack.getSteps() < greedy.getSteps(),
+                "Knapsack steps: " + knapsack.getSteps() + ", greedy steps: " + greedy.getSteps());
+    }
+}
@@ -0,0 +1,240 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.GenerationGoal;
+import info.teksol.mindcode.compiler.MemoryModel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static info.teksol.mindcode.logic.Opcode.*;
+
+class LoopHoisterTest extends AbstractOptimizerTest<LoopHoister> {
+
+    @Override
+    protected Class<LoopHoister> getTestedClass() {
+        return LoopHoister.class;
+    }
+
+    @Override
+    protected List<Optimization> getAllOptimizations() {
+        return Optimization.LIST;
+    }
+
+    @Override
+    protected CompilerProfile createCompilerProfile() {
+        return super.createCompilerProfile().setGoal(GenerationGoal.SPEED);
+    }
+
+    private CompilerProfile createCompilerProfile(MemoryModel memoryModel) {
+        CompilerProfile profile = createCompilerProfile();
+        profile.setMemoryModel(memoryModel);
+        return profile;
+    }
+
+    @Test
+    void hoistsInvariantExpressions() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, n."),
+                """
+                        for i in 0 ... n
+                            cell1[i] = a * b + i
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(OP, "mul", var(1), "a", "b"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "add", var(2), var(1), "i"),
+                createInstruction(WRITE, var(2), "cell1", "i"),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void hoistsInvariantUserVariables() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, n."),
+                """
+                        i = 0
+                        do
+                            x = a * b
+                            print(x, i)
+                            i += 1
+                        loop while i < n
+                        """,
+                createInstruction(SET, "i", "0"),
+                createInstruction(OP, "mul", "x", "a", "b"),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(PRINT, "x"),
+                createInstruction(PRINT, "i"),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1000), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void hoistsOutOfNestedLoops() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, n."),
+                """
+                        for i in 0 ... n
+                            for j in 0 ... n
+                                cell1[j] = a * b + i + j
+                            end
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(OP, "mul", var(2), "a", "b"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1006)),
+                createInstruction(SET, "j", "0"),
+                createInstruction(OP, "add", var(3), var(2), "i"),
+                createInstruction(JUMP, var(1005), "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1007)),
+                createInstruction(OP, "add", var(4), var(3), "j"),
+                createInstruction(WRITE, var(4), "cell1", "j"),
+                createInstruction(OP, "add", "j", "j", "1"),
+                createInstruction(JUMP, var(1007), "lessThan", "j", "n"),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1006), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void hoistsConstantSensors() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: n."),
+                """
+                        for i in 0 ... n
+                            print(i * switch1.x)
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(SENSOR, var(1), "switch1", "@x"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "mul", var(2), "i", var(1)),
+                createInstruction(PRINT, var(2)),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsVariantExpressions() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, n."),
+                """
+                        for i in 0 ... n
+                            a = a * b
+                            print(a, @time * 2, switch1.enabled + 1)
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "mul", "a", "a", "b"),
+                createInstruction(OP, "mul", var(2), "@time", "2"),
+                createInstruction(SENSOR, var(3), "switch1", "@enabled"),
+                createInstruction(OP, "add", var(4), var(3), "1"),
+                createInstruction(PRINT, "a"),
+                createInstruction(PRINT, var(2)),
+                createInstruction(PRINT, var(4)),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsUserVariablesOfConditionalLoops() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, b, n, x."),
+                """
+                        i = 0
+                        while i < n
+                            x = a * b
+                            print(x, i)
+                            i += 1
+                        end
+                        print(x)
+                        """,
+                createInstruction(SET, "i", "0"),
+                createInstruction(JUMP, var(1002), "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "mul", "x", "a", "b"),
+                createInstruction(PRINT, "x"),
+                createInstruction(PRINT, "i"),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(LABEL, var(1002)),
+                createInstruction(PRINT, "x"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsReadsWithVolatileMemoryModel() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: n."),
+                """
+                        for i in 0 ... n
+                            cell1[i] = cell2[0]
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(READ, var(1), "cell2", "0"),
+                createInstruction(WRITE, var(1), "cell1", "i"),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void hoistsReadsWithRestrictedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.RESTRICTED)), ignore("List of uninitialized variables: n."),
+                """
+                        for i in 0 ... n
+                            cell1[i] = cell2[0]
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(READ, var(1), "cell2", "0"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(WRITE, var(1), "cell1", "i"),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsReadsOfWrittenMemoryWithAliasedMemoryModel() {
+        assertCompilesToWithMessages(createTestCompiler(createCompilerProfile(MemoryModel.ALIASED)), ignore("List of uninitialized variables: n."),
+                """
+                        for i in 0 ... n
+                            cell1[i] = cell2[0]
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(READ, var(1), "cell2", "0"),
+                createInstruction(WRITE, var(1), "cell1", "i"),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+}
@@ -0,0 +1,131 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.GenerationGoal;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static info.teksol.mindcode.logic.Opcode.*;
+
+class LoopStrengthReducerTest extends AbstractOptimizerTest<LoopStrengthReducer> {
+
+    @Override
+    protected Class<LoopStrengthReducer> getTestedClass() {
+        return LoopStrengthReducer.class;
+    }
+
+    @Override
+    protected List<Optimization> getAllOptimizations() {
+        return Optimization.LIST;
+    }
+
+    @Override
+    protected CompilerProfile createCompilerProfile() {
+        return super.createCompilerProfile().setGoal(GenerationGoal.SPEED);
+    }
+
+    @Test
+    void reducesDerivedVariables() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: base, n."),
+                """
+                        for i in 0 ... n
+                            cell1[base + i * 4] = i
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(SET, var(3), "base"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(WRITE, "i", "cell1", var(3)),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(OP, "add", var(3), var(3), "4"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void replacesLoopControlVariable() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: n."),
+                """
+                        for i in 0 ... n
+                            cell1[i * 2] = 1
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, var(2), "0"),
+                createInstruction(OP, "mul", var(3), "n", "2"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", var(3)),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(WRITE, "1", "cell1", var(2)),
+                createInstruction(OP, "add", var(2), var(2), "2"),
+                createInstruction(JUMP, var(1003), "lessThan", var(2), var(3)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void replacesLoopControlVariableWithNegativeFactor() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: n."),
+                """
+                        i = 0
+                        while i < n
+                            cell1[100 - i * 3] = 1
+                            i += 1
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, var(4), "100"),
+                createInstruction(OP, "mul", var(5), "n", "-3"),
+                createInstruction(OP, "add", var(6), var(5), "100"),
+                createInstruction(JUMP, "__start__", "lessThanEq", "100", var(6)),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(WRITE, "1", "cell1", var(4)),
+                createInstruction(OP, "add", var(4), var(4), "-3"),
+                createInstruction(JUMP, var(1003), "greaterThan", var(4), var(6)),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsNonIntegerFactors() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: n."),
+                """
+                        for i in 0 ... n
+                            cell1[i * 1.5] = 1
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "0"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "0", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "mul", var(1), "i", "1.5"),
+                createInstruction(WRITE, "1", "cell1", var(1)),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+
+    @Test
+    void keepsLoopsWithUnknownStart() {
+        assertCompilesToWithMessages(ignore("List of uninitialized variables: a, n."),
+                """
+                        for i in a ... n
+                            cell1[i * 2] = 1
+                        end
+                        """,
+                createInstruction(LABEL, "__start__"),
+                createInstruction(SET, "i", "a"),
+                createInstruction(JUMP, "__start__", "greaterThanEq", "a", "n"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "mul", var(1), "i", "2"),
+                createInstruction(WRITE, "1", "cell1", var(1)),
+                createInstruction(OP, "add", "i", "i", "1"),
+                createInstruction(JUMP, var(1003), "lessThan", "i", "n"),
+                createInstruction(END)
+        );
+    }
+}
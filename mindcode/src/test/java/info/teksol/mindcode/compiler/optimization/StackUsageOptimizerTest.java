@@ -1,5 +1,6 @@
 package info.teksol.mindcode.compiler.optimization;
 
+import info.teksol.mindcode.compiler.CompilerProfile;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
@@ -317,4 +318,44 @@ class StackUsageOptimizerTest extends AbstractOptimizerTest<StackUsageOptimizer>
                 createInstruction(END)
         );
     }
+
+    @Test
+    void keepsParametersReadByEliminatedTailCalls() {
+        // The tail call is replaced by a jump, but still reads m, which must be restored after the first call.
+        // All optimizations are needed to bring the second call into a tail position.
+        CompilerProfile profile = createCompilerProfile().setAllOptimizationLevels(OptimizationLevel.AGGRESSIVE);
+        assertCompilesTo(createTestCompiler(profile), """
+                        allocate stack in bank1[0...512]
+                        def foo(n, m)
+                            if n > 0
+                                print(m)
+                                foo(n - 1, m + 1)
+                                foo(n - 1, m)
+                            end
+                        end
+                        foo(3, 0)
+                        """,
+                createInstruction(SET, "__sp", "0"),
+                createInstruction(SET, "__fn0_n", "3"),
+                createInstruction(SET, "__fn0_m", "0"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1001)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(JUMP, var(1004), "lessThanEq", "__fn0_n", "0"),
+                createInstruction(PRINT, "__fn0_m"),
+                createInstruction(PUSH, "bank1", "__fn0_n"),
+                createInstruction(PUSH, "bank1", "__fn0_m"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(OP, "add", "__fn0_m", "__fn0_m", "1"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1005)),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(POP, "bank1", "__fn0_m"),
+                createInstruction(POP, "bank1", "__fn0_n"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(JUMP, var(1000), "always"),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(RETURN, "bank1")
+        );
+    }
 }
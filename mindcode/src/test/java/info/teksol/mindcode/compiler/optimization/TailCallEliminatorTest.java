@@ -0,0 +1,277 @@
+package info.teksol.mindcode.compiler.optimization;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static info.teksol.mindcode.logic.Opcode.*;
+
+class TailCallEliminatorTest extends AbstractOptimizerTest<TailCallEliminator> {
+
+    @Override
+    protected Class<TailCallEliminator> getTestedClass() {
+        return TailCallEliminator.class;
+    }
+
+    @Override
+    protected List<Optimization> getAllOptimizations() {
+        return Optimization.LIST;
+    }
+
+    @Test
+    void replacesTailCallAndConvertsToStackless() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def gcd(a, b)
+                            if b == 0
+                                a
+                            else
+                                gcd(b, a % b)
+                            end
+                        end
+                        print(gcd(84, 36))
+                        """,
+                createInstruction(SET, "__fn0_a", "84"),
+                createInstruction(SET, "__fn0_b", "36"),
+                createInstruction(SETADDR, "__fn0retaddr", var(1001)),
+                createInstruction(CALL, var(1000)),
+                createInstruction(GOTOLABEL, var(1001), "__fn0"),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "__fn0_a"),
+                createInstruction(JUMP, var(1004), "equal", "__fn0_b", "0"),
+                createInstruction(OP, "mod", var(3), "__fn0_a", "__fn0_b"),
+                createInstruction(SET, "__fn0_a", "__fn0_b"),
+                createInstruction(SET, "__fn0_b", var(3)),
+                createInstruction(JUMP, var(1000), "always"),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(GOTO, "__fn0retaddr", "__fn0")
+        );
+    }
+
+    @Test
+    void replacesTailCallInTernaryExpression() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def sum(n, acc)
+                            n == 0 ? acc : sum(n - 1, acc + n)
+                        end
+                        print(sum(100, 0))
+                        """,
+                createInstruction(SET, "__fn0_n", "100"),
+                createInstruction(SET, "__fn0_acc", "0"),
+                createInstruction(SETADDR, "__fn0retaddr", var(1001)),
+                createInstruction(CALL, var(1000)),
+                createInstruction(GOTOLABEL, var(1001), "__fn0"),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "__fn0_acc"),
+                createInstruction(JUMP, var(1004), "equal", "__fn0_n", "0"),
+                createInstruction(OP, "add", var(4), "__fn0_acc", "__fn0_n"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(SET, "__fn0_acc", var(4)),
+                createInstruction(JUMP, var(1000), "always"),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(GOTO, "__fn0retaddr", "__fn0")
+        );
+    }
+
+    @Test
+    void replacesTailCallAfterReturn() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def sum(n, acc)
+                            if n == 0
+                                return acc
+                            end
+                            sum(n - 1, acc + n)
+                        end
+                        print(sum(100, 0))
+                        """,
+                createInstruction(SET, "__fn0_n", "100"),
+                createInstruction(SET, "__fn0_acc", "0"),
+                createInstruction(SETADDR, "__fn0retaddr", var(1001)),
+                createInstruction(CALL, var(1000)),
+                createInstruction(GOTOLABEL, var(1001), "__fn0"),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(JUMP, var(1003), "notEqual", "__fn0_n", "0"),
+                createInstruction(SET, "__fn0retval", "__fn0_acc"),
+                createInstruction(GOTO, "__fn0retaddr", "__fn0"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(OP, "add", var(4), "__fn0_acc", "__fn0_n"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(SET, "__fn0_acc", var(4)),
+                createInstruction(JUMP, var(1000), "always")
+        );
+    }
+
+    @Test
+    void replacesTailCallKeepingOtherCalls() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def count(n, acc)
+                            if n == 0
+                                return acc + 1
+                            end
+                            acc = count(n - 1, acc)
+                            count(n - 1, acc)
+                        end
+                        print(count(3, 0))
+                        """,
+                createInstruction(SET, "__sp", "0"),
+                createInstruction(SET, "__fn0_n", "3"),
+                createInstruction(SET, "__fn0_acc", "0"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1001)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(JUMP, var(1003), "notEqual", "__fn0_n", "0"),
+                createInstruction(OP, "add", "__fn0retval", "__fn0_acc", "1"),
+                createInstruction(RETURN, "bank1"),
+                createInstruction(LABEL, var(1003)),
+                createInstruction(PUSH, "bank1", "__fn0_n"),
+                createInstruction(PUSH, "bank1", "__fn0_acc"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1005)),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(POP, "bank1", "__fn0_acc"),
+                createInstruction(POP, "bank1", "__fn0_n"),
+                createInstruction(SET, "__fn0_acc", "__fn0retval"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(JUMP, var(1000), "always")
+        );
+    }
+
+    @Test
+    void replacesTailCallOfFunctionWithoutResult() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def foo(n)
+                            if n > 0
+                                foo(n - 1)
+                            end
+                        end
+                        print(foo(10))
+                        """,
+                createInstruction(SET, "__fn0_n", "10"),
+                createInstruction(SETADDR, "__fn0retaddr", var(1001)),
+                createInstruction(CALL, var(1000)),
+                createInstruction(GOTOLABEL, var(1001), "__fn0"),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "null"),
+                createInstruction(JUMP, var(1004), "lessThanEq", "__fn0_n", "0"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(JUMP, var(1000), "always"),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(GOTO, "__fn0retaddr", "__fn0")
+        );
+    }
+
+    @Test
+    void keepsNonTailCalls() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def fact(n)
+                            n <= 1 ? 1 : n * fact(n - 1)
+                        end
+                        print(fact(5))
+                        """,
+                createInstruction(SET, "__sp", "0"),
+                createInstruction(SET, "__fn0_n", "5"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1001)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "1"),
+                createInstruction(JUMP, var(1004), "lessThanEq", "__fn0_n", "1"),
+                createInstruction(PUSH, "bank1", "__fn0_n"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1005)),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(POP, "bank1", "__fn0_n"),
+                createInstruction(OP, "mul", "__fn0retval", "__fn0_n", "__fn0retval"),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(RETURN, "bank1")
+        );
+    }
+
+    @Test
+    void keepsMutuallyRecursiveCalls() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def even(n)
+                            n == 0 ? true : odd(n - 1)
+                        end
+                        def odd(n)
+                            n == 0 ? false : even(n - 1)
+                        end
+                        print(even(10))
+                        """,
+                createInstruction(SET, "__sp", "0"),
+                createInstruction(SET, "__fn0_n", "10"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1002)),
+                createInstruction(LABEL, var(1002)),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "true"),
+                createInstruction(JUMP, var(1005), "equal", "__fn0_n", "0"),
+                createInstruction(OP, "sub", var(3), "__fn0_n", "1"),
+                createInstruction(SET, "__fn1_n", var(3)),
+                createInstruction(CALLREC, "bank1", var(1001), var(1006)),
+                createInstruction(LABEL, var(1006)),
+                createInstruction(SET, "__fn0retval", "__fn1retval"),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(RETURN, "bank1"),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(SET, "__fn1retval", "false"),
+                createInstruction(JUMP, var(1009), "equal", "__fn1_n", "0"),
+                createInstruction(OP, "sub", var(7), "__fn1_n", "1"),
+                createInstruction(SET, "__fn0_n", var(7)),
+                createInstruction(CALLREC, "bank1", var(1000), var(1010)),
+                createInstruction(LABEL, var(1010)),
+                createInstruction(SET, "__fn1retval", "__fn0retval"),
+                createInstruction(LABEL, var(1009)),
+                createInstruction(RETURN, "bank1")
+        );
+    }
+
+    @Test
+    void keepsCallsFollowedByUseOfResult() {
+        assertCompilesTo("""
+                        allocate stack in bank1[0...512]
+                        def foo(n)
+                            if n > 0
+                                x = foo(n - 1)
+                                print(x)
+                                x
+                            end
+                        end
+                        print(foo(5))
+                        """,
+                createInstruction(SET, "__sp", "0"),
+                createInstruction(SET, "__fn0_n", "5"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1001)),
+                createInstruction(LABEL, var(1001)),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(END),
+                createInstruction(LABEL, var(1000)),
+                createInstruction(SET, "__fn0retval", "null"),
+                createInstruction(JUMP, var(1004), "lessThanEq", "__fn0_n", "0"),
+                createInstruction(OP, "sub", "__fn0_n", "__fn0_n", "1"),
+                createInstruction(CALLREC, "bank1", var(1000), var(1005)),
+                createInstruction(LABEL, var(1005)),
+                createInstruction(PRINT, "__fn0retval"),
+                createInstruction(LABEL, var(1004)),
+                createInstruction(RETURN, "bank1")
+        );
+    }
+}
@@ -2,9 +2,8 @@ package info.teksol.mindcode.grammar;
 
 import info.teksol.mindcode.MindcodeInternalError;
 import info.teksol.mindcode.Tuple2;
+import info.teksol.mindcode.compiler.ProgramParser;
 import org.antlr.v4.runtime.BaseErrorListener;
-import org.antlr.v4.runtime.BufferedTokenStream;
-import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 
@@ -16,15 +15,7 @@ public abstract class AbstractParserTest {
         final List<String> errors = new ArrayList<>();
         ErrorListener errorListener = new ErrorListener(errors);
 
-        final MindcodeLexer lexer = new MindcodeLexer(CharStreams.fromString(program));
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(errorListener);
-
-        final MindcodeParser parser = new MindcodeParser(new BufferedTokenStream(lexer));
-        parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-
-        final MindcodeParser.ProgramContext context = parser.program();
+        final MindcodeParser.ProgramContext context = ProgramParser.parse(program, errorListener);
         if (!errors.isEmpty()) {
             throw new MindcodeInternalError(errors.toString());
         }
@@ -35,15 +26,7 @@ public abstract class AbstractParserTest {
         final List<String> errors = new ArrayList<>();
         ErrorListener errorListener = new ErrorListener(errors);
 
-        final MindcodeLexer lexer = new MindcodeLexer(CharStreams.fromString(program));
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(errorListener);
-
-        final MindcodeParser parser = new MindcodeParser(new BufferedTokenStream(lexer));
-        parser.removeErrorListeners();
-        parser.addErrorListener(errorListener);
-
-        final MindcodeParser.ProgramContext context = parser.program();
+        final MindcodeParser.ProgramContext context = ProgramParser.parse(program, errorListener);
         return new Tuple2<>(context, errors);
     }
 
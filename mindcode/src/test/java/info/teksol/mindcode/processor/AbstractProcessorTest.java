@@ -105,6 +105,14 @@ public abstract class AbstractProcessorTest extends AbstractOptimizerTest<Optimi
         this.testInfo = testInfo;
     }
 
+    // The regression suites run on the bytecode engine, so any difference in steps or coverage shows up in the result
+    // files. ExecutionEngineTest runs all their scripts in every engine and verifies them against the interpreter.
+    protected Processor createProcessor() {
+        Processor processor = new Processor();
+        processor.setExecutionEngine(ExecutionEngine.BYTECODE);
+        return processor;
+    }
+
     protected String readFile(String filename) throws IOException {
         Path path = Path.of(getScriptsDirectory(), filename);
         return Files.readString(path);
@@ -165,7 +173,7 @@ public abstract class AbstractProcessorTest extends AbstractOptimizerTest<Optimi
 
     protected void testAndEvaluateCode(TestCompiler compiler, String title, String code, List<MindustryObject> blocks,
             Consumer<List<String>> evaluator, Path logFile) {
-        Processor processor = new Processor();
+        Processor processor = createProcessor();
         processor.addBlock(MindustryMemory.createMemoryBank("bank1"));
         processor.addBlock(MindustryMemory.createMemoryBank("bank2"));
         blocks.forEach(processor::addBlock);
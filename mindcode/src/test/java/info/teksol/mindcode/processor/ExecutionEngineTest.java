@@ -0,0 +1,225 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.compiler.LogicInstructionLabelResolver;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import info.teksol.mindcode.logic.*;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static info.teksol.mindcode.logic.Opcode.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Runs the same programs in all execution engines and verifies they produce identical results.
+public class ExecutionEngineTest extends AbstractProcessorTest {
+
+    @Override
+    protected String getScriptsDirectory() {
+        return ProcessorTest.SCRIPTS_DIRECTORY;
+    }
+
+    private List<LogicInstruction> compile(String code) {
+        TestCompiler compiler = createTestCompiler();
+        List<LogicInstruction> unresolved = generateInstructions(compiler, code).instructions();
+        return LogicInstructionLabelResolver.resolve(compiler.processor, unresolved);
+    }
+
+    private Processor run(ExecutionEngine engine, List<LogicInstruction> program, int stepLimit, ProcessorFlag... clearedFlags) {
+        return run(engine, program, stepLimit, new double[0], clearedFlags);
+    }
+
+    private Processor run(ExecutionEngine engine, List<LogicInstruction> program, int stepLimit, double[] data,
+            ProcessorFlag... clearedFlags) {
+        Processor processor = new Processor();
+        processor.setExecutionEngine(engine);
+        for (ProcessorFlag flag : clearedFlags) {
+            processor.setFlag(flag, false);
+        }
+        processor.addBlock(MindustryMemory.createMemoryBank("bank1"));
+        processor.addBlock(MindustryMemory.createMemoryBank("bank2", data));
+        processor.run(program, stepLimit);
+        return processor;
+    }
+
+    private void assertSameExecution(String code) {
+        assertSameExecution(compile(code));
+    }
+
+    private void assertSameExecution(List<LogicInstruction> program, ProcessorFlag... clearedFlags) {
+        assertSameExecution(program, new double[0], clearedFlags);
+    }
+
+    private void assertSameExecution(List<LogicInstruction> program, double[] data, ProcessorFlag... clearedFlags) {
+        Processor interpreter = run(ExecutionEngine.INTERPRETER, program, MAX_STEPS, data, clearedFlags);
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            Processor processor = run(engine, program, MAX_STEPS, data, clearedFlags);
+            assertAll(engine.name(),
+                    () -> assertEquals(interpreter.getTextBuffer(), processor.getTextBuffer()),
+                    () -> assertEquals(interpreter.getSteps(), processor.getSteps()),
+                    () -> assertEquals(interpreter.getCoverage(), processor.getCoverage())
+            );
+        }
+    }
+
+    @Test
+    void executesLoopsAndArithmetic() {
+        assertSameExecution("""
+                        sum = 0
+                        for i in 0 ... 100
+                            sum += i * i % 7
+                            if i % 10 == 0 print(i, ":", sum, "\\n") end
+                        end
+                        print(sum ** 0.5, floor(sum / 3), sum \\ 3)
+                        """);
+    }
+
+    @Test
+    void executesMemoryAccess() {
+        assertSameExecution("""
+                        for i in 0 ... 64
+                            bank1[i] = 64 - i
+                        end
+                        for i in 0 ... 63
+                            min = bank1[i]
+                            min_index = i
+                            for j in i + 1 ... 64
+                                curr = bank1[j]
+                                if curr < min
+                                    min = curr
+                                    min_index = j
+                                end
+                            end
+                            bank1[min_index] = bank1[i]
+                            bank1[i] = min
+                        end
+                        for i in 0 ... 64
+                            print(bank1[i], " ")
+                        end
+                        """);
+    }
+
+    @Test
+    void executesFunctionCalls() {
+        assertSameExecution("""
+                        allocate stack in bank2
+                        def fib(n)
+                            n < 2 ? n : fib(n - 1) + fib(n - 2)
+                        end
+                        print(fib(12), packcolor(0.5, 0.25, 1, 1), null, bank1 === bank1)
+                        """);
+    }
+
+    @Test
+    void executesObjectComparisons() {
+        assertSameExecution("""
+                        a = null
+                        b = bank1
+                        c = 1 / 0
+                        print(a == 0, a === 0, b == bank1, b != bank2, b === 0, c, c == null)
+                        print(a < 1, "x" == "x", "x" === "y", true + 1, 5 & 3, 1 << 40, ~0)
+                        if a === null print("null") end
+                        if b == bank1 print("bank") end
+                        """);
+    }
+
+    @Test
+    void reportsSameErrors() {
+        List<LogicInstruction> program = compile("""
+                        i = 0
+                        while true
+                            i += 1
+                            print(i)
+                        end
+                        """);
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> run(engine, program, 1000));
+            assertEquals(ProcessorFlag.ERR_EXECUTION_LIMIT_EXCEEDED, ex.getFlag(), engine.name());
+        }
+    }
+
+    @Test
+    void executesComputedJumps() {
+        LogicVariable i = LogicVariable.global("i");
+        LogicVariable t = LogicVariable.global("t");
+        assertSameExecution(List.of(
+                createInstruction(OP, Operation.ADD, i, i, LogicNumber.ONE),
+                createInstruction(OP, Operation.MOD, t, i, LogicNumber.get(3)),
+                createInstruction(OP, Operation.ADD, LogicBuiltIn.COUNTER, LogicBuiltIn.COUNTER, t),
+                createInstruction(PRINT, LogicString.create("a")),
+                createInstruction(PRINT, LogicString.create("b")),
+                createInstruction(PRINT, LogicBuiltIn.COUNTER),
+                createInstruction(JUMP, LogicLabel.absolute(0), Condition.LESS_THAN, i, LogicNumber.get(10)),
+                createInstruction(STOP)
+        ));
+    }
+
+    @Test
+    void recoversFromErrorsWhenFlagsAreCleared() {
+        LogicVariable i = LogicVariable.global("i");
+        List<LogicInstruction> program = List.of(
+                createInstruction(OP, Operation.ADD, i, i, LogicNumber.ONE),
+                createInstruction(PRINT, i),
+                createInstruction(JUMP, LogicLabel.absolute(6), Condition.GREATER_THAN_EQ, i, LogicNumber.get(8)),
+                createInstruction(JUMP, LogicLabel.absolute(5), Condition.LESS_THAN, i, LogicNumber.get(5)),
+                createInstruction(SET, LogicBuiltIn.COUNTER, LogicNumber.get(100)),
+                createInstruction(JUMP, LogicLabel.absolute(0), Condition.ALWAYS),
+                createInstruction(STOP)
+        );
+
+        assertSameExecution(program, ProcessorFlag.ERR_INVALID_COUNTER);
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> run(engine, program, MAX_STEPS));
+            assertEquals(ProcessorFlag.ERR_INVALID_COUNTER, ex.getFlag(), engine.name());
+        }
+    }
+
+    // The processor test suites run on the bytecode engine only. All their scripts are run here in every engine.
+    @TestFactory
+    List<DynamicTest> executesTestScripts() throws IOException {
+        double[] data = new Random(0).ints(64, 0, 1000).asDoubleStream().toArray();
+        List<DynamicTest> result = new ArrayList<>();
+        for (String directory : List.of(AlgorithmsTest.SCRIPTS_DIRECTORY, ProjectEulerTest.SCRIPTS_DIRECTORY,
+                ProcessorTest.SCRIPTS_DIRECTORY)) {
+            try (Stream<Path> files = Files.list(Path.of(directory))) {
+                files.filter(path -> path.toString().endsWith(".mnd")).sorted().forEach(path ->
+                        result.add(DynamicTest.dynamicTest(path.getFileName().toString(), null,
+                                () -> assertSameExecution(compile(decorate(path, Files.readString(path))), data))));
+            }
+        }
+        return result;
+    }
+
+    // Provides the same environment the scripts get in their own test suites
+    private String decorate(Path path, String code) {
+        String fileName = path.getFileName().toString();
+        if (fileName.endsWith("-sort.mnd")) {
+            return "SIZE = 64\n" + code;
+        } else if (fileName.equals("storage-display.mnd")) {
+            return "AMOUNT = 12345\n" + code;
+        } else if (code.contains("expect(") && !code.contains("def expect")) {
+            return code + "\ndef expect(v) print(v) end def actual(v) print(v) end";
+        } else {
+            return code;
+        }
+    }
+
+    @Test
+    void translatesCompiledPrograms() {
+        List<LogicInstruction> program = compile("""
+                        allocate stack in bank2
+                        def fib(n)
+                            n < 2 ? n : fib(n - 1) + fib(n - 2)
+                        end
+                        print(fib(12))
+                        """);
+        assertNotNull(DecodedProgram.decode(program).createTranslatedProgram());
+    }
+}
@@ -0,0 +1,118 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.compiler.LogicInstructionLabelResolver;
+import info.teksol.mindcode.compiler.instructions.LogicInstruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionProfileTest extends AbstractProcessorTest {
+    private static final String CODE = """
+            allocate stack in bank2
+            def fib(n)
+                n < 2 ? n : fib(n - 1) + fib(n - 2)
+            end
+            bank1[0] = 50
+            sum = 0
+            for i in 0 ... bank1[0]
+                if i % 3 == 0
+                    sum += i
+                end
+            end
+            print(sum, fib(8))
+            """;
+
+    @Override
+    protected String getScriptsDirectory() {
+        return ProcessorTest.SCRIPTS_DIRECTORY;
+    }
+
+    private List<LogicInstruction> compile(String code) {
+        TestCompiler compiler = createTestCompiler();
+        List<LogicInstruction> unresolved = generateInstructions(compiler, code).instructions();
+        return LogicInstructionLabelResolver.resolve(compiler.processor, unresolved);
+    }
+
+    private Processor run(ExecutionEngine engine, List<LogicInstruction> program) {
+        Processor processor = new Processor();
+        processor.setExecutionEngine(engine);
+        processor.setProfiling(true);
+        processor.addBlock(MindustryMemory.createMemoryBank("bank1"));
+        processor.addBlock(MindustryMemory.createMemoryBank("bank2"));
+        processor.run(program, MAX_STEPS);
+        return processor;
+    }
+
+    private long[] executions(ExecutionProfile profile) {
+        return IntStream.range(0, profile.size()).mapToLong(profile::getExecutions).toArray();
+    }
+
+    private long[] transfers(ExecutionProfile profile) {
+        return IntStream.range(0, profile.size()).mapToLong(profile::getTransfers).toArray();
+    }
+
+    @Test
+    void countsAllSteps() {
+        Processor processor = run(ExecutionEngine.INTERPRETER, compile(CODE));
+        ExecutionProfile profile = processor.getProfile();
+        assertEquals(processor.getSteps(), profile.getTotalExecutions());
+        IntStream.range(0, profile.size()).forEach(index ->
+                assertEquals(processor.getCoverage().get(index), profile.getExecutions(index) > 0));
+    }
+
+    @Test
+    void collectsSameProfileInAllEngines() {
+        List<LogicInstruction> program = compile(CODE);
+        ExecutionProfile interpreter = run(ExecutionEngine.INTERPRETER, program).getProfile();
+        for (ExecutionEngine engine : ExecutionEngine.values()) {
+            ExecutionProfile profile = run(engine, program).getProfile();
+            assertAll(engine.name(),
+                    () -> assertArrayEquals(executions(interpreter), executions(profile)),
+                    () -> assertArrayEquals(transfers(interpreter), transfers(profile))
+            );
+        }
+    }
+
+    @Test
+    void doesNotProfileByDefault() {
+        Processor processor = new Processor();
+        processor.addBlock(MindustryMemory.createMemoryBank("bank1"));
+        processor.addBlock(MindustryMemory.createMemoryBank("bank2"));
+        processor.run(compile(CODE), MAX_STEPS);
+        assertNull(processor.getProfile());
+    }
+
+    @Test
+    void printsCollapsedStacks() {
+        Processor processor = run(ExecutionEngine.INTERPRETER, compile(CODE));
+        String stacks = ExecutionProfilePrinter.toCollapsedStacks(processor.getProfile());
+
+        long total = stacks.lines()
+                .mapToLong(line -> Long.parseLong(line.substring(line.lastIndexOf(' ') + 1)))
+                .sum();
+        assertEquals(processor.getSteps(), total);
+        assertTrue(stacks.lines().allMatch(line -> line.startsWith("program;")), stacks);
+        assertTrue(stacks.contains("program;function fib:2 body;"), stacks);
+        assertTrue(stacks.contains(";loop:7"), stacks);
+        assertTrue(stacks.contains(";if:8 condition;"), stacks);
+    }
+
+    @Test
+    void printsHotSpotTable() {
+        Processor processor = run(ExecutionEngine.INTERPRETER, compile(CODE));
+        String table = ExecutionProfilePrinter.toHotSpotTable(processor.getProfile(), CODE);
+
+        assertTrue(table.contains("Function fib: "), table);
+        assertTrue(table.contains("Function main: "), table);
+        List<String> conditionLines = Arrays.stream(table.split("\n"))
+                .filter(line -> line.endsWith("if i % 3 == 0"))
+                .toList();
+        assertEquals(1, conditionLines.size(), table);
+        // 50 iterations, every third one enters the if body
+        assertTrue(conditionLines.get(0).matches(".* 33 +17 +if i % 3 == 0"), table);
+    }
+}
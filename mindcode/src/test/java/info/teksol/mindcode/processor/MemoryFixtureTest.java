@@ -0,0 +1,39 @@
+package info.teksol.mindcode.processor;
+
+import info.teksol.mindcode.MindcodeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryFixtureTest {
+
+    @Test
+    void createsMemoryBlocks() {
+        List<MindustryMemory> blocks = MemoryFixture.parse("""
+                # memory contents
+                cell1 = 1, 2.5, -3
+                bank2 =
+                """).createBlocks();
+
+        assertEquals(2, blocks.size());
+        MindustryMemory cell = blocks.get(0);
+        MindustryMemory bank = blocks.get(1);
+        assertEquals("cell1", cell.getName());
+        assertEquals("bank2", bank.getName());
+        assertEquals("cell", cell.getValue());
+        assertEquals("bank", bank.getValue());
+        assertEquals(2.5, cell.read(1));
+        assertEquals(-3, cell.read(2));
+        assertEquals(0, cell.read(63));
+        assertEquals(0, bank.read(511));
+    }
+
+    @Test
+    void rejectsInvalidDefinitions() {
+        assertThrows(MindcodeException.class, () -> MemoryFixture.parse("cell1 1, 2"));
+        assertThrows(MindcodeException.class, () -> MemoryFixture.parse("cell1 = 1, x"));
+        assertThrows(MindcodeException.class, () -> MemoryFixture.parse("1cell = 1"));
+    }
+}
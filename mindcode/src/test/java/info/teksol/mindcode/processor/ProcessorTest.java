@@ -82,6 +82,48 @@ public class ProcessorTest extends AbstractProcessorTest {
         );
     }
 
+    @Test
+    void executesTailRecursiveFunctions() {
+        testCode("""
+                        allocate stack in bank1
+                        def gcd(a, b)
+                            if b == 0
+                                return a
+                            end
+                            gcd(b, a % b)
+                        end
+                        def sum(n, acc)
+                            n == 0 ? acc : sum(n - 1, acc + n)
+                        end
+                        print(gcd(84, 36), sum(100, 0))
+                        """,
+                "12", "5050"
+        );
+    }
+
+    @Test
+    void executesPartiallyTailRecursiveFunctions() {
+        testCode("""
+                        allocate stack in bank1
+                        def even(n)
+                            n == 0 ? true : odd(n - 1)
+                        end
+                        def odd(n)
+                            n == 0 ? false : even(n - 1)
+                        end
+                        def count(n, acc)
+                            if n <= 0
+                                return acc
+                            end
+                            x = count(n - 1, acc + 1)
+                            count(0, x * 2)
+                        end
+                        print(even(10), odd(7), count(3, 0))
+                        """,
+                "1", "1", "24"
+        );
+    }
+
     @Test
     void expressionEvaluationRuntime() throws IOException {
         executeMindcodeUnitTests(createTestCompiler(
@@ -0,0 +1,120 @@
+package info.teksol.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderStatisticListTest {
+
+    private static void assertMatches(List<Object> expected, OrderStatisticList<Object> list) {
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), list.get(i));
+            assertEquals(i, list.indexOf(expected.get(i)));
+        }
+    }
+
+    @Test
+    void matchesArrayList() {
+        Random random = new Random(0);
+        List<Object> expected = new ArrayList<>();
+        OrderStatisticList<Object> list = new OrderStatisticList<>();
+        for (int i = 0; i < 5000; i++) {
+            int operation = expected.isEmpty() ? 0 : random.nextInt(4);
+            switch (operation) {
+                case 0, 1 -> {
+                    int index = random.nextInt(expected.size() + 1);
+                    Object element = new Object();
+                    expected.add(index, element);
+                    list.add(index, element);
+                }
+                case 2 -> {
+                    int index = random.nextInt(expected.size());
+                    assertSame(expected.remove(index), list.remove(index));
+                }
+                default -> {
+                    int index = random.nextInt(expected.size());
+                    Object element = new Object();
+                    assertSame(expected.set(index, element), list.set(index, element));
+                }
+            }
+            if (i % 250 == 0) {
+                assertMatches(expected, list);
+            }
+        }
+        assertMatches(expected, list);
+    }
+
+    @Test
+    void reportsMissingElements() {
+        OrderStatisticList<Object> list = new OrderStatisticList<>();
+        Object element = new Object();
+        list.add(element);
+        Object removed = new Object();
+        list.add(removed);
+        list.remove(1);
+        assertFalse(list.contains(removed));
+        assertEquals(-1, list.indexOf(removed));
+        assertEquals(-1, list.indexOf(new Object()));
+        assertTrue(list.contains(element));
+    }
+
+    @Test
+    void refusesDuplicateElements() {
+        OrderStatisticList<Object> list = new OrderStatisticList<>();
+        Object element = new Object();
+        list.add(element);
+        list.add(new Object());
+        assertThrows(IllegalArgumentException.class, () -> list.add(element));
+        assertThrows(IllegalArgumentException.class, () -> list.set(1, element));
+    }
+
+    @Test
+    void refusesInvalidIndexes() {
+        OrderStatisticList<Object> list = new OrderStatisticList<>();
+        list.add(new Object());
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(2, new Object()));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(-1));
+    }
+
+    // The cost of a lookup is the depth of the element in the tree. The test alternates edits and lookups
+    // (the pattern used by optimizers) and verifies the depth stays logarithmic for elements at any position,
+    // including the last ones.
+    @Test
+    void lookupsDoNotScaleWithPosition() {
+        int size = 100_000;
+        List<Object> elements = new ArrayList<>(size);
+        OrderStatisticList<Object> list = new OrderStatisticList<>();
+        for (int i = 0; i < size; i++) {
+            Object element = new Object();
+            elements.add(element);
+            list.add(element);
+        }
+
+        Random random = new Random(0);
+        int maxDepth = 0;
+        for (int i = 0; i < 10_000; i++) {
+            int index = random.nextInt(list.size());
+            if (i % 2 == 0) {
+                list.add(index, new Object());
+            } else {
+                list.remove(index);
+            }
+
+            Object last = list.get(list.size() - 1);
+            assertEquals(list.size() - 1, list.indexOf(last));
+            maxDepth = Math.max(maxDepth, list.depth(last));
+            maxDepth = Math.max(maxDepth, list.depth(list.get(random.nextInt(list.size()))));
+        }
+
+        // Expected depth of a treap is about 2 ln n (23 for 100,000 elements). A list rescanning positions past
+        // the modified one would need on average 50,000 steps per lookup.
+        assertTrue(maxDepth <= 60, "Maximal depth " + maxDepth + " exceeds the logarithmic bound");
+        assertTrue(elements.stream().filter(list::contains).allMatch(e -> list.get(list.indexOf(e)) == e));
+    }
+}
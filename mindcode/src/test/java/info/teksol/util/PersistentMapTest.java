@@ -0,0 +1,132 @@
+package info.teksol.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentMapTest {
+
+    /** Key with a configurable hash code, used to create hash collisions. */
+    private record Key(String name, int hash) {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static Map<Object, Object> toMap(PersistentMap<?, ?> map) {
+        Map<Object, Object> result = new HashMap<>();
+        map.forEach(result::put);
+        return result;
+    }
+
+    private static Map<Object, List<Object>> differences(PersistentMap<Object, Object> map1, PersistentMap<Object, Object> map2) {
+        Map<Object, List<Object>> result = new HashMap<>();
+        map1.forEachDifference(map2, (key, value1, value2) -> result.put(key, Arrays.asList(value1, value2)));
+        return result;
+    }
+
+    @Test
+    void matchesHashMap() {
+        Random random = new Random(0);
+        Map<Object, Object> expected = new HashMap<>();
+        PersistentMap<Object, Object> map = PersistentMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            // Small hash range creates collisions as well as deep tries
+            Key key = new Key("k" + random.nextInt(2000), random.nextInt(1500) * 0x9E3779B1);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, toMap(map));
+        for (Object key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    void keepsOriginalUnmodified() {
+        PersistentMap<String, Integer> original = PersistentMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        PersistentMap<String, Integer> modified = original.put("a", 10).remove("b").put("c", 3);
+
+        assertEquals(Map.of("a", 1, "b", 2), toMap(original));
+        assertEquals(Map.of("a", 10, "c", 3), toMap(modified));
+    }
+
+    @Test
+    void returnsSameInstanceWhenUnchanged() {
+        Integer value = 1000;
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().put("a", value);
+
+        assertSame(map, map.put("a", value));
+        assertSame(map, map.remove("b"));
+        assertSame(map, map.removeIf((k, v) -> k.equals("b")));
+    }
+
+    @Test
+    void removesMatchingEntries() {
+        PersistentMap<Object, Object> map = PersistentMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            map = map.put(new Key("k" + i, i % 100), i);
+        }
+
+        PersistentMap<Object, Object> odd = map.removeIf((k, v) -> (Integer) v % 2 == 0);
+        assertEquals(500, odd.size());
+        assertTrue(odd.values().stream().allMatch(v -> (Integer) v % 2 == 1));
+        assertTrue(map.removeIf((k, v) -> true).isEmpty());
+    }
+
+    @Test
+    void visitsOnlyDifferences() {
+        PersistentMap<Object, Object> base = PersistentMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            base = base.put(new Key("k" + i, i * 31), i);
+        }
+
+        PersistentMap<Object, Object> map1 = base.put(new Key("k1", 31), "x").remove(new Key("k2", 62));
+        PersistentMap<Object, Object> map2 = base.put(new Key("new", 7), "y").put(new Key("k3", 93), "z");
+
+        assertEquals(Map.of(
+                new Key("k1", 31), Arrays.asList("x", 1),
+                new Key("k2", 62), Arrays.asList(null, 2),
+                new Key("new", 7), Arrays.asList(null, "y"),
+                new Key("k3", 93), Arrays.asList(3, "z")
+        ), differences(map1, map2));
+        assertTrue(differences(base, base).isEmpty());
+    }
+
+    @Test
+    void visitsDifferencesOfUnrelatedMaps() {
+        PersistentMap<Object, Object> map1 = PersistentMap.empty();
+        PersistentMap<Object, Object> map2 = PersistentMap.empty();
+        for (int i = 0; i < 200; i++) {
+            map1 = map1.put(new Key("k" + i, i % 50), "v" + i);
+            map2 = map2.put(new Key("k" + (i + 100), (i + 100) % 50), "v" + (i + 100));
+        }
+
+        Map<Object, List<Object>> differences = differences(map1, map2);
+        assertEquals(300, differences.size());
+        assertEquals(Arrays.asList("v0", null), differences.get(new Key("k0", 0)));
+        assertEquals(Arrays.asList(null, "v299"), differences.get(new Key("k299", 49)));
+        // Equal values of distinct instances are reported
+        assertEquals(List.of("v150", "v150"), differences.get(new Key("k150", 0)));
+    }
+
+    @Test
+    void intersectsSets() {
+        PersistentSet<String> base = PersistentSet.<String>empty().add("a").add("b").add("c");
+        PersistentSet<String> set1 = base.add("d").remove("a");
+        PersistentSet<String> set2 = base.add("d").add("e");
+
+        assertEquals(Set.of("b", "c", "d"), new HashSet<>(set1.retainAll(set2).toList()));
+        assertSame(base, base.retainAll(base));
+    }
+}
@@ -9,6 +9,7 @@ import info.teksol.schemacode.grammar.SchemacodeLexer;
 import info.teksol.schemacode.grammar.SchemacodeParser;
 import info.teksol.schemacode.grammar.SchemacodeParser.DefinitionsContext;
 import info.teksol.schemacode.mindustry.SchematicsIO;
+import info.teksol.schemacode.schema.ProcessorCompilationCache;
 import info.teksol.schemacode.schema.Schematic;
 import info.teksol.schemacode.schema.SchematicsBuilder;
 import org.antlr.v4.runtime.BaseErrorListener;
@@ -54,11 +55,33 @@ public class SchemacodeCompiler {
 
     static Schematic buildSchematic(AstDefinitions astDefinitions, CompilerProfile compilerProfile,
             Consumer<CompilerMessage> messageListener, Path basePath) {
-        SchematicsBuilder builder = SchematicsBuilder.create(compilerProfile, astDefinitions, messageListener, basePath);
+        return buildSchematic(astDefinitions, compilerProfile, messageListener, basePath,
+                ProcessorCompilationCache.sequential());
+    }
+
+    static Schematic buildSchematic(AstDefinitions astDefinitions, CompilerProfile compilerProfile,
+            Consumer<CompilerMessage> messageListener, Path basePath, ProcessorCompilationCache compilationCache) {
+        SchematicsBuilder builder = SchematicsBuilder.create(compilerProfile, astDefinitions, messageListener,
+                basePath, compilationCache);
         return builder.buildSchematics();
     }
 
     public static CompilerOutput<byte[]> compile(String definition, CompilerProfile compilerProfile, Path basePath) {
+        return compile(definition, compilerProfile, basePath, ProcessorCompilationCache.sequential());
+    }
+
+    /**
+     * Compiles schemacode source into a binary schematic. Mindcode programs of embedded processors are compiled
+     * using given compilation cache.
+     *
+     * @param definition source code
+     * @param compilerProfile compiler profile
+     * @param basePath base path for resolving external files, null when external files aren't allowed
+     * @param compilationCache cache for compiling Mindcode programs
+     * @return compiler output containing the binary schematic
+     */
+    public static CompilerOutput<byte[]> compile(String definition, CompilerProfile compilerProfile, Path basePath,
+            ProcessorCompilationCache compilationCache) {
         if (definition.isBlank()) {
             return new CompilerOutput<>(new byte[0], List.of());
         }
@@ -70,7 +93,7 @@ public class SchemacodeCompiler {
         AstDefinitions astDefinitions = createDefinitions(parseTree, messages::add);
         if (hasErrors(messages)) return new CompilerOutput<>(null, messages);
 
-        Schematic schematic = buildSchematic(astDefinitions, compilerProfile, messages::add, basePath);
+        Schematic schematic = buildSchematic(astDefinitions, compilerProfile, messages::add, basePath, compilationCache);
         if (hasErrors(messages)) return new CompilerOutput<>(null, messages);
 
         try {
@@ -1,6 +1,5 @@
 package info.teksol.schemacode.mindustry;
 
-import info.teksol.mindcode.compiler.CompilerFacade;
 import info.teksol.mindcode.compiler.CompilerOutput;
 import info.teksol.schemacode.SchematicsInternalError;
 import info.teksol.schemacode.ast.AstLink;
@@ -152,8 +151,7 @@ public record ProcessorConfiguration(List<Link> links, String code) implements C
             case MLOG -> processor.program().getProgramText(builder);
             case MINDCODE -> {
                 builder.info("Compiling %s", processor.program().getProgramId(builder));
-                CompilerOutput<String> output = CompilerFacade.compile(processor.program().getProgramText(builder),
-                        builder.getCompilerProfile());
+                CompilerOutput<String> output = builder.compileMindcode(processor.program());
                 output.messages().forEach(builder::addMessage);
                 if (output.hasErrors()) {
                     builder.error("Compile errors in Mindcode source code.");
@@ -0,0 +1,204 @@
+package info.teksol.schemacode.schema;
+
+import info.teksol.mindcode.compiler.CompilerFacade;
+import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.MessageLevel;
+import info.teksol.mindcode.compiler.MindcodeMessage;
+import info.teksol.schemacode.SchematicsInternalError;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles Mindcode programs of processors embedded in schematics. Each distinct combination of source code and
+ * compiler profile is compiled just once, the compilations are performed on the provided executor. When the cache
+ * is shared by several schematic builds, the compiled outputs are shared as well.
+ * <p>
+ * Optionally, compiled outputs are stored in a directory, so that they can be reused by subsequent builds performed
+ * by other processes. The stored outputs are identified by a hash of the source code, the compiler profile and the
+ * compiler version. Errors accessing the directory are ignored, the program is then compiled as if the output
+ * wasn't stored. Compilations which ran out of the time limit set in the compiler profile aren't stored, as their
+ * output is incomplete.
+ * <p>
+ * Instances of this class can be used concurrently by multiple threads.
+ */
+public class ProcessorCompilationCache {
+    private static final String FILE_EXTENSION = ".out";
+
+    private final Executor executor;
+    private final Path directory;
+    private final String compilerVersion;
+    private final Map<String, CompletableFuture<CompilerOutput<String>>> compilations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a cache performing compilations on given executor, without storing the compiled outputs.
+     *
+     * @param executor executor to run the compilations on
+     */
+    public ProcessorCompilationCache(Executor executor) {
+        this(executor, null);
+    }
+
+    /**
+     * Creates a cache performing compilations on given executor and storing the compiled outputs in given directory.
+     *
+     * @param executor executor to run the compilations on
+     * @param directory directory to store compiled outputs in, or null
+     */
+    public ProcessorCompilationCache(Executor executor, Path directory) {
+        this.executor = executor;
+        this.directory = directory;
+        this.compilerVersion = directory == null ? null : compilerVersion();
+    }
+
+    /**
+     * Creates a cache performing the compilations in the calling thread.
+     *
+     * @return new cache
+     */
+    public static ProcessorCompilationCache sequential() {
+        return new ProcessorCompilationCache(Runnable::run);
+    }
+
+    /**
+     * Starts the compilation of given source code using given compiler profile, unless the same source code
+     * was already compiled using an equivalent profile.
+     *
+     * @param sourceCode source code to compile
+     * @param profile compiler profile to use
+     * @return future providing the result of the compilation
+     */
+    public CompletableFuture<CompilerOutput<String>> compile(String sourceCode, CompilerProfile profile) {
+        String key = computeKey(sourceCode, profile);
+        CompletableFuture<CompilerOutput<String>> future = new CompletableFuture<>();
+        CompletableFuture<CompilerOutput<String>> existing = compilations.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        executor.execute(() -> {
+            try {
+                future.complete(load(key, sourceCode, profile));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private CompilerOutput<String> load(String key, String sourceCode, CompilerProfile profile) {
+        CompilerOutput<String> stored = directory == null ? null : read(key);
+        if (stored != null) {
+            return stored;
+        }
+
+        long start = System.nanoTime();
+        CompilerOutput<String> result = CompilerFacade.compile(sourceCode, profile);
+        long timeLimit = profile.getTimeLimit();
+        if (directory != null && (timeLimit <= 0 || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < timeLimit)) {
+            write(key, result);
+        }
+        return result;
+    }
+
+    private CompilerOutput<String> read(String key) {
+        Path file = directory.resolve(key + FILE_EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            String output = readString(stream);
+            int count = stream.readInt();
+            List<CompilerMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                MessageLevel level = MessageLevel.valueOf(readString(stream));
+                messages.add(new MindcodeMessage(level, readString(stream)));
+            }
+            return new CompilerOutput<>(output, messages);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void write(String key, CompilerOutput<String> output) {
+        try {
+            Files.createDirectories(directory);
+            // Write into a temporary file first, so that other processes never see an incomplete file
+            Path tmpFile = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                writeString(stream, output.output());
+                stream.writeInt(output.messages().size());
+                for (CompilerMessage message : output.messages()) {
+                    writeString(stream, message.level().name());
+                    writeString(stream, message.message());
+                }
+            }
+            Files.move(tmpFile, directory.resolve(key + FILE_EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The output just won't be available next time
+        }
+    }
+
+    private static String readString(DataInputStream stream) throws IOException {
+        byte[] bytes = new byte[stream.readInt()];
+        stream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream stream, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+
+    private String computeKey(String sourceCode, CompilerProfile profile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(compilerVersion).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(profile.encodeCompilationSettings().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(sourceCode.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new SchematicsInternalError(e, "SHA-256 not available.");
+        }
+    }
+
+    // Snapshot builds don't carry a meaningful version, the modification time of the compiler binaries is used too
+    private static String compilerVersion() {
+        String version = CompilerFacade.class.getPackage().getImplementationVersion();
+        try {
+            CodeSource codeSource = CompilerFacade.class.getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                Path location = Path.of(codeSource.getLocation().toURI());
+                return version + ";" + location + ";" + Files.getLastModifiedTime(location).toMillis();
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException | SecurityException e) {
+            // Fall through
+        }
+        return version;
+    }
+}
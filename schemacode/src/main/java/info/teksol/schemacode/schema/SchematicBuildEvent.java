@@ -0,0 +1,25 @@
+package info.teksol.schemacode.schema;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted for each schematic built by the {@link SchematicsBuilder}. The time includes
+ * compilation of Mindcode programs of processors contained in the schematic.
+ */
+@Name("mindcode.SchematicBuild")
+@Label("Schematic Build")
+@Category({"Mindcode", "Schematics"})
+@Description("Building a schematic from its definition")
+@StackTrace(false)
+final class SchematicBuildEvent extends Event {
+    @Label("Schematic Name")
+    String name;
+
+    @Label("Blocks")
+    int blocks;
+}
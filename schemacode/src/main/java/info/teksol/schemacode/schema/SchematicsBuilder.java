@@ -1,6 +1,8 @@
 package info.teksol.schemacode.schema;
 
+import info.teksol.mindcode.CompilationTimeoutException;
 import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerOutput;
 import info.teksol.mindcode.compiler.CompilerProfile;
 import info.teksol.mindcode.mimex.Icons;
 import info.teksol.schemacode.SchemacodeMessage;
@@ -25,11 +27,14 @@ import org.intellij.lang.annotations.PrintFormat;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -40,6 +45,8 @@ public class SchematicsBuilder {
     private final Consumer<CompilerMessage> messageListener;
     private final AstDefinitions astDefinitions;
     private final Path basePath;
+    private final ProcessorCompilationCache compilationCache;
+    private final Map<AstProgram, CompletableFuture<CompilerOutput<String>>> compilations = new HashMap<>();
 
     private AstSchematic astSchematic;
     private Map<String, String> constants;
@@ -47,16 +54,23 @@ public class SchematicsBuilder {
     private BlockPositionMap<BlockPosition> astPositionMap;
     private BlockPositionMap<Block> positionMap;
 
-    public SchematicsBuilder(CompilerProfile compilerProfile, Consumer<CompilerMessage> messageListener, AstDefinitions astDefinitions, Path basePath) {
+    public SchematicsBuilder(CompilerProfile compilerProfile, Consumer<CompilerMessage> messageListener,
+            AstDefinitions astDefinitions, Path basePath, ProcessorCompilationCache compilationCache) {
         this.compilerProfile = compilerProfile;
         this.messageListener = messageListener;
         this.astDefinitions = astDefinitions;
         this.basePath = basePath;
+        this.compilationCache = compilationCache;
     }
 
     public static SchematicsBuilder create(CompilerProfile compilerProfile, AstDefinitions definitions,
             Consumer<CompilerMessage> messageListener, Path basePath) {
-        return new SchematicsBuilder(compilerProfile, messageListener, definitions, basePath);
+        return create(compilerProfile, definitions, messageListener, basePath, ProcessorCompilationCache.sequential());
+    }
+
+    public static SchematicsBuilder create(CompilerProfile compilerProfile, AstDefinitions definitions,
+            Consumer<CompilerMessage> messageListener, Path basePath, ProcessorCompilationCache compilationCache) {
+        return new SchematicsBuilder(compilerProfile, messageListener, definitions, basePath, compilationCache);
     }
 
     public void addMessage(CompilerMessage message) {
@@ -88,6 +102,19 @@ public class SchematicsBuilder {
     }
 
     public Schematic buildSchematics() {
+        SchematicBuildEvent event = new SchematicBuildEvent();
+        event.begin();
+        Schematic schematic = build();
+        event.end();
+        if (event.shouldCommit() && schematic != null) {
+            event.name = schematic.name();
+            event.blocks = schematic.blocks().size();
+            event.commit();
+        }
+        return schematic;
+    }
+
+    private Schematic build() {
         extractConstants();
 
         List<AstSchematic> schematicsList = astDefinitions.definitions().stream()
@@ -128,6 +155,14 @@ public class SchematicsBuilder {
 
         astPositionMap = BlockPositionMap.forBuilder(messageListener, blockPositions);
 
+        // Start all compilations up front, so that they can run in parallel
+        astBlocks.stream()
+                .map(AstBlock::configuration)
+                .filter(AstProcessor.class::isInstance)
+                .map(AstProcessor.class::cast)
+                .filter(p -> p.language() == Language.MINDCODE)
+                .forEachOrdered(p -> startCompilation(p.program()));
+
         List<Block> blocks = new ArrayList<>();
         for (int index = 0; index < astBlocks.size(); index++) {
             AstBlock astBlock = astBlocks.get(index);
@@ -156,6 +191,31 @@ public class SchematicsBuilder {
         return createSchematic(name, description, labels, blocks);
     }
 
+    private CompletableFuture<CompilerOutput<String>> startCompilation(AstProgram program) {
+        return compilations.computeIfAbsent(program,
+                p -> compilationCache.compile(p.getProgramText(this), compilerProfile));
+    }
+
+    /**
+     * Provides the result of compiling given Mindcode program using the compiler profile of this builder. Processors
+     * containing identical programs share one compilation.
+     *
+     * @param program program to compile
+     * @return the result of the compilation
+     */
+    public CompilerOutput<String> compileMindcode(AstProgram program) {
+        try {
+            return startCompilation(program).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompilationTimeoutException("Compilation interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new SchematicsInternalError(e.getCause(), "Error compiling Mindcode program.");
+        }
+    }
+
     private Position calculateOrigin(List<Block> blocks) {
         if (blocks.isEmpty()) {
             return Position.ORIGIN;
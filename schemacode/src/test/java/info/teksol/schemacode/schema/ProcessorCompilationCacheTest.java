@@ -0,0 +1,61 @@
+package info.teksol.schemacode.schema;
+
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ProcessorCompilationCacheTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final Executor executor = command -> {
+        executions.incrementAndGet();
+        command.run();
+    };
+
+    @Test
+    void compilesIdenticalProgramsOnce() {
+        ProcessorCompilationCache cache = new ProcessorCompilationCache(executor);
+        CompilerOutput<String> first = cache.compile("print(@this)", CompilerProfile.fullOptimizations(false)).join();
+        CompilerOutput<String> second = cache.compile("print(@this)", CompilerProfile.fullOptimizations(false)).join();
+
+        assertSame(first, second);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void compilesDifferentProfilesSeparately() {
+        ProcessorCompilationCache cache = new ProcessorCompilationCache(executor);
+        CompilerOutput<String> first = cache.compile("print(@this)", CompilerProfile.fullOptimizations(false)).join();
+        CompilerOutput<String> second = cache.compile("print(@this)", CompilerProfile.noOptimizations(false)).join();
+
+        assertNotSame(first, second);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void reusesStoredOutputs(@TempDir Path directory) throws IOException {
+        CompilerProfile profile = CompilerProfile.fullOptimizations(false);
+        CompilerOutput<String> compiled = new ProcessorCompilationCache(executor, directory)
+                .compile("a = 10\nprint(a)", profile).join();
+        CompilerOutput<String> stored = new ProcessorCompilationCache(executor, directory)
+                .compile("a = 10\nprint(a)", profile).join();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        assertEquals(compiled.output(), stored.output());
+        assertEquals(compiled.texts(), stored.texts());
+    }
+}
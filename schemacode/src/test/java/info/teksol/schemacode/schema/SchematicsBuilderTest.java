@@ -772,6 +772,32 @@ class SchematicsBuilderTest extends AbstractSchematicsTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void buildsSchematicsWithMicroProcessorsSharingMindcode() {
+        Schematic actual = buildSchematics("""
+                schematic
+                    dimensions = (2, 1)
+                    @micro-processor at (0, 0) processor
+                        mindcode = "print(@this)"
+                    end
+                    @micro-processor at (1, 0) processor
+                        mindcode = "print(@this)"
+                    end
+                end
+                """);
+
+        Schematic expected = new Schematic("", "", List.of(), 2, 1,
+                List.of(
+                        block("@micro-processor", P0_0, Direction.EAST,
+                                new ProcessorConfiguration(List.of(), "print @this\nend\n")),
+                        block("@micro-processor", P1_0, Direction.EAST,
+                                new ProcessorConfiguration(List.of(), "print @this\nend\n"))
+                )
+        );
+
+        assertEquals(expected, actual);
+    }
+
     @Test
     void buildsSchematicsWithMicroProcessorMindcode() {
         Schematic actual = buildSchematics("""
@@ -0,0 +1,227 @@
+package info.teksol.mindcode.webapp;
+
+import info.teksol.mindcode.compiler.CompilerFacade;
+import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches results of Mindcode compilations. Compilations are identified by a hash of the source code, the compiler
+ * profile and the compiler version. Compiled outputs are kept in memory, up to a configured total size, and are
+ * evicted in least-recently-used order. Optionally, compiled outputs are also stored in the database, so that they
+ * survive restarts of the application.
+ * <p>
+ * Instances of this class can be used concurrently by multiple threads. Concurrent requests to compile the same
+ * source are compiled only once. Compilations which ran out of the time limit set in the compiler profile aren't
+ * cached, as their output is incomplete.
+ */
+@Component
+public class CompilationCache {
+    private static final Logger logger = LoggerFactory.getLogger(CompilationCache.class);
+
+    // Estimated memory overhead of a cache entry and of a message, in characters
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int MESSAGE_OVERHEAD = 32;
+
+    private final long maxSize;
+    private final String compilerVersion;
+    private final CompilationCacheStore store;
+
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, CompletableFuture<CompilerOutput<String>>> pending = new ConcurrentHashMap<>();
+    private long size = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public CompilationCache(
+            @Value("${mindcode.compilation-cache.max-size:16000000}") long maxSize,
+            @Value("${mindcode.compilation-cache.compiler-version:}") String compilerVersion,
+            Optional<CompilationCacheStore> store) {
+        this.maxSize = maxSize;
+        this.compilerVersion = compilerVersion.isEmpty() ? defaultCompilerVersion() : compilerVersion;
+
+        if (store.isPresent() && this.compilerVersion == null) {
+            logger.warn("Compiler version unknown, persistent compilation cache disabled. " +
+                    "Set mindcode.compilation-cache.compiler-version to enable it.");
+            this.store = null;
+        } else {
+            this.store = store.orElse(null);
+        }
+    }
+
+    /**
+     * Returns the result of compiling given source code using given profile, either from the cache, or by compiling
+     * the source code.
+     *
+     * @param sourceCode source code to compile
+     * @param profile compiler profile to use
+     * @return result of the compilation
+     */
+    public CompilerOutput<String> compile(String sourceCode, CompilerProfile profile) {
+        return get(computeKey(sourceCode, profile), profile.getTimeLimit(), () -> CompilerFacade.compile(sourceCode, profile));
+    }
+
+    /**
+     * Returns the result of compiling given source code using given profile if it is kept in memory. The source code
+     * is neither compiled nor looked up in the persistent store, so that cached outputs can be served without
+     * occupying resources reserved for compilations.
+     *
+     * @param sourceCode source code to compile
+     * @param profile compiler profile to use
+     * @return result of the compilation, or null if it isn't kept in memory
+     */
+    public CompilerOutput<String> find(String sourceCode, CompilerProfile profile) {
+        return find(computeKey(sourceCode, profile));
+    }
+
+    CompilerOutput<String> find(String key) {
+        CompilerOutput<String> cached = getEntry(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    CompilerOutput<String> get(String key, Supplier<CompilerOutput<String>> compiler) {
+        return get(key, 0, compiler);
+    }
+
+    CompilerOutput<String> get(String key, long timeLimit, Supplier<CompilerOutput<String>> compiler) {
+        CompilerOutput<String> cached = find(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<CompilerOutput<String>> future = new CompletableFuture<>();
+        CompletableFuture<CompilerOutput<String>> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            // Another thread is already compiling this source
+            hits.incrementAndGet();
+            return existing.join();
+        }
+
+        try {
+            // The entry might have been added since the first check
+            CompilerOutput<String> added = getEntry(key);
+            LoadedOutput loaded = added != null ? new LoadedOutput(added, true) : load(key, timeLimit, compiler);
+            if (loaded.cacheable) {
+                putEntry(key, loaded.output);
+            }
+            future.complete(loaded.output);
+            return loaded.output;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key);
+        }
+    }
+
+    private LoadedOutput load(String key, long timeLimit, Supplier<CompilerOutput<String>> compiler) {
+        CompilerOutput<String> stored = store == null ? null : store.find(key);
+        if (stored != null) {
+            storeHits.incrementAndGet();
+            return new LoadedOutput(stored, true);
+        }
+
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        CompilerOutput<String> result = compiler.get();
+        boolean cacheable = timeLimit <= 0 || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < timeLimit;
+        if (cacheable && store != null) {
+            store.save(key, result);
+        }
+        return new LoadedOutput(result, cacheable);
+    }
+
+    private synchronized CompilerOutput<String> getEntry(String key) {
+        CacheEntry entry = entries.get(key);
+        return entry == null ? null : entry.output;
+    }
+
+    private synchronized void putEntry(String key, CompilerOutput<String> output) {
+        CacheEntry entry = new CacheEntry(output, estimateSize(key, output));
+        if (entry.size > maxSize) {
+            return;
+        }
+
+        CacheEntry previous = entries.put(key, entry);
+        size += entry.size - (previous == null ? 0 : previous.size);
+
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().size;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static long estimateSize(String key, CompilerOutput<String> output) {
+        long size = ENTRY_OVERHEAD + key.length() + output.output().length();
+        for (CompilerMessage message : output.messages()) {
+            size += MESSAGE_OVERHEAD + message.message().length();
+        }
+        return size;
+    }
+
+    public synchronized Statistics getStatistics() {
+        return new Statistics(entries.size(), size, hits.get(), storeHits.get(), misses.get(), evictions.get());
+    }
+
+    String computeKey(String sourceCode, CompilerProfile profile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(compilerVersion).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(profile.encodeCompilationSettings().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(sourceCode.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String defaultCompilerVersion() {
+        return CompilerFacade.class.getPackage().getImplementationVersion();
+    }
+
+    private record LoadedOutput(CompilerOutput<String> output, boolean cacheable) {}
+
+    private record CacheEntry(CompilerOutput<String> output, long size) {}
+
+    /**
+     * Cache statistics.
+     *
+     * @param entries number of entries in memory
+     * @param size estimated size of entries in memory, in characters
+     * @param hits number of compilations served from memory
+     * @param storeHits number of compilations served from the persistent store
+     * @param misses number of compilations actually performed
+     * @param evictions number of entries evicted from memory
+     */
+    public record Statistics(int entries, long size, long hits, long storeHits, long misses, long evictions) {}
+}
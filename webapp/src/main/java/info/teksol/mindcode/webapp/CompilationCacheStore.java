@@ -0,0 +1,79 @@
+package info.teksol.mindcode.webapp;
+
+import info.teksol.mindcode.compiler.CompilerMessage;
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.MessageLevel;
+import info.teksol.mindcode.compiler.MindcodeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent tier of the compilation cache, storing compiled outputs in the compilation_cache table. Errors
+ * accessing the database are logged and otherwise ignored, the cache then behaves as if the entry wasn't found.
+ */
+@Component
+@ConditionalOnProperty(name = "mindcode.compilation-cache.persistent", havingValue = "true")
+public class CompilationCacheStore {
+    private static final Logger logger = LoggerFactory.getLogger(CompilationCacheStore.class);
+
+    @Autowired
+    private JdbcTemplate template;
+
+    public CompilerOutput<String> find(String key) {
+        try {
+            List<CompilerOutput<String>> results = template.query(
+                    "SELECT output, message_levels, message_texts FROM public.compilation_cache WHERE key = ?",
+                    (rs, rowNum) -> readOutput(rs), key);
+            return results.isEmpty() ? null : results.get(0);
+        } catch (DataAccessException e) {
+            logger.warn("Error reading compilation cache", e);
+            return null;
+        }
+    }
+
+    public void save(String key, CompilerOutput<String> output) {
+        String[] levels = output.messages().stream().map(m -> m.level().name()).toArray(String[]::new);
+        String[] texts = output.messages().stream().map(CompilerMessage::message).toArray(String[]::new);
+        try {
+            template.update(con -> {
+                PreparedStatement ps = con.prepareStatement("""
+                        INSERT INTO public.compilation_cache (key, output, message_levels, message_texts)
+                        VALUES (?, ?, ?, ?)
+                        ON CONFLICT (key) DO NOTHING""");
+                ps.setString(1, key);
+                ps.setString(2, output.output());
+                ps.setArray(3, con.createArrayOf("text", levels));
+                ps.setArray(4, con.createArrayOf("text", texts));
+                return ps;
+            });
+        } catch (DataAccessException e) {
+            logger.warn("Error writing compilation cache", e);
+        }
+    }
+
+    private static CompilerOutput<String> readOutput(ResultSet rs) throws SQLException {
+        String[] levels = readArray(rs.getArray("message_levels"));
+        String[] texts = readArray(rs.getArray("message_texts"));
+        List<CompilerMessage> messages = new ArrayList<>(levels.length);
+        for (int i = 0; i < levels.length; i++) {
+            messages.add(new MindcodeMessage(MessageLevel.valueOf(levels[i]), texts[i]));
+        }
+        return new CompilerOutput<>(rs.getString("output"), messages);
+    }
+
+    private static String[] readArray(Array array) throws SQLException {
+        return (String[]) array.getArray();
+    }
+}
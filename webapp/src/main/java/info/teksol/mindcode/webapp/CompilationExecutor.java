@@ -0,0 +1,111 @@
+package info.teksol.mindcode.webapp;
+
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.MindcodeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs compilations on a dedicated pool of threads, so that the number of compilations running concurrently is
+ * limited regardless of the number of request threads. Compilations which cannot be queued are rejected.
+ * <p>
+ * The compilations are expected to observe the time limit provided by {@link #getTimeLimit()} on their own, stopping
+ * cooperatively. Compilations not finished within the time limit and an additional grace period are cancelled
+ * by interrupting the compiling thread, and an error is reported to the caller.
+ */
+@Component
+public class CompilationExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(CompilationExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long timeLimit;
+    private final long gracePeriod;
+
+    @Autowired
+    public CompilationExecutor(
+            @Value("${mindcode.compilation.threads:0}") int threads,
+            @Value("${mindcode.compilation.queue-size:64}") int queueSize,
+            @Value("${mindcode.compilation.time-limit:10000}") long timeLimit,
+            @Value("${mindcode.compilation.grace-period:2000}") long gracePeriod) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueSize, 1)), new CompilerThreadFactory());
+        this.timeLimit = timeLimit;
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * @return time limit in milliseconds for compilations run by this executor, zero for unlimited
+     */
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Runs the compilation on the compilation thread pool and waits for its result. When the compilation
+     * cannot be started or doesn't finish in time, an output containing an error message is returned.
+     *
+     * @param compilation compilation to run
+     * @return output of the compilation
+     */
+    public CompilerOutput<String> execute(Supplier<CompilerOutput<String>> compilation) {
+        Future<CompilerOutput<String>> future;
+        try {
+            future = executor.submit(compilation::get);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Compilation rejected, active={} queued={}", executor.getActiveCount(), executor.getQueue().size());
+            return errorOutput("The server is busy, please try again later.");
+        }
+
+        try {
+            return timeLimit > 0 ? future.get(timeLimit + gracePeriod, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("Compilation cancelled after {} ms", timeLimit + gracePeriod);
+            return errorOutput("Compilation time limit (%,d ms) exceeded.".formatted(timeLimit));
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return errorOutput("Compilation interrupted.");
+        } catch (ExecutionException e) {
+            logger.error("Compilation failed", e.getCause());
+            return errorOutput("Internal error: " + e.getCause().getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static CompilerOutput<String> errorOutput(String message) {
+        return new CompilerOutput<>("", List.of(MindcodeMessage.error(message)));
+    }
+
+    private static class CompilerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "mindcode-compiler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
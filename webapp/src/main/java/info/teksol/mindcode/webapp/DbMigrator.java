@@ -63,6 +63,15 @@ public class DbMigrator {
                   added_at      timestamp with time zone not null default current_timestamp
                 )""");
 
+        template.execute("""
+                CREATE TABLE IF NOT EXISTS public.compilation_cache (
+                  key            text primary key,
+                  output         text                     not null,
+                  message_levels text[]                   not null,
+                  message_texts  text[]                   not null,
+                  created_at     timestamp with time zone not null default current_timestamp
+                )""");
+
         template.execute("ALTER TABLE public.scripts DROP COLUMN IF EXISTS published");
         template.execute("ALTER TABLE public.script_versions ADD COLUMN IF NOT EXISTS published boolean not null default false");
     }
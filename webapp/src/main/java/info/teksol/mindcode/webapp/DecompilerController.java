@@ -25,6 +25,9 @@ public class DecompilerController {
     @Autowired
     private SourceRepository sourceRepository;
 
+    @Autowired
+    private CompilationExecutor compilationExecutor;
+
     @PostMapping("/decompile")
     public String postCompile(@RequestParam(required = false) String id,
                               @RequestParam String source) {
@@ -63,7 +66,7 @@ public class DecompilerController {
         }
 
         final long start = System.nanoTime();
-        final CompilerOutput<String> result = SchematicsDecompiler.decompile(sourceCode);
+        final CompilerOutput<String> result = compilationExecutor.execute(() -> SchematicsDecompiler.decompile(sourceCode));
         final long end = System.nanoTime();
         logger.info("performance decompiled_in={}ms", TimeUnit.NANOSECONDS.toMillis(end - start));
 
@@ -1,6 +1,7 @@
 package info.teksol.mindcode.webapp;
 
 import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,8 +21,6 @@ import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
-import static info.teksol.mindcode.compiler.CompilerFacade.compile;
-
 @Controller
 @RequestMapping(value = "/")
 public class HomeController {
@@ -68,6 +67,12 @@ public class HomeController {
     @Autowired
     private SourceRepository sourceRepository;
 
+    @Autowired
+    private CompilationCache compilationCache;
+
+    @Autowired
+    private CompilationExecutor compilationExecutor;
+
     @PostMapping("/compile")
     public String postCompile(@RequestParam(required = false) String id,
                               @RequestParam String source,
@@ -113,10 +118,21 @@ public class HomeController {
             sourceCode = samples.get(sampleName);
         }
 
+        final CompilerProfile profile = enableOptimization
+                ? CompilerProfile.standardOptimizations(true)
+                : CompilerProfile.noOptimizations(true);
+        profile.setTimeLimit(compilationExecutor.getTimeLimit());
+
         final long start = System.nanoTime();
-        final CompilerOutput<String> result = compile(true, sourceCode, enableOptimization);
+        // Cached outputs are served directly, only actual compilations are run on the compilation executor
+        final CompilerOutput<String> cached = compilationCache.find(sourceCode, profile);
+        final CompilerOutput<String> result = cached != null ? cached
+                : compilationExecutor.execute(() -> compilationCache.compile(sourceCode, profile));
         final long end = System.nanoTime();
-        logger.info("performance compiled_in={}ms", TimeUnit.NANOSECONDS.toMillis(end - start));
+        final CompilationCache.Statistics stats = compilationCache.getStatistics();
+        logger.info("performance compiled_in={}ms cache_entries={} cache_size={} cache_hits={} cache_store_hits={} cache_misses={} cache_evictions={}",
+                TimeUnit.NANOSECONDS.toMillis(end - start), stats.entries(), stats.size(), stats.hits(),
+                stats.storeHits(), stats.misses(), stats.evictions());
 
         final String compiledCode = result.output();
         return new ModelAndView(
@@ -62,6 +62,9 @@ public class SchematicsController {
     @Autowired
     private SourceRepository sourceRepository;
 
+    @Autowired
+    private CompilationExecutor compilationExecutor;
+
     @PostMapping("/compile")
     public String postCompile(@RequestParam(required = false) String id,
                               @RequestParam String source) {
@@ -104,8 +107,10 @@ public class SchematicsController {
         }
 
         final long start = System.nanoTime();
-        final CompilerOutput<String> result = SchemacodeCompiler.compileAndEncode(sourceCode,
-                CompilerProfile.standardOptimizations(true), null);
+        final CompilerProfile profile = CompilerProfile.standardOptimizations(true)
+                .setTimeLimit(compilationExecutor.getTimeLimit());
+        final CompilerOutput<String> result = compilationExecutor.execute(
+                () -> SchemacodeCompiler.compileAndEncode(sourceCode, profile, null));
         final long end = System.nanoTime();
         logger.info("performance built_in={}ms", TimeUnit.NANOSECONDS.toMillis(end - start));
 
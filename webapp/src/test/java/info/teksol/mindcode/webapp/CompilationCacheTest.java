@@ -0,0 +1,110 @@
+package info.teksol.mindcode.webapp;
+
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import info.teksol.mindcode.compiler.GenerationGoal;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationCacheTest {
+    private final CompilationCache cache = new CompilationCache(1000, "test", Optional.empty());
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    private CompilerOutput<String> compile(String key, String output) {
+        return cache.get(key, () -> {
+            compilations.incrementAndGet();
+            return new CompilerOutput<>(output, List.of());
+        });
+    }
+
+    @Test
+    void returnsCachedOutput() {
+        CompilerOutput<String> first = compile("a", "output");
+        CompilerOutput<String> second = compile("a", "output");
+        assertSame(first, second);
+        assertEquals(1, compilations.get());
+        assertEquals(new CompilationCache.Statistics(1, 128 + 1 + 6, 1, 0, 1, 0), cache.getStatistics());
+    }
+
+    @Test
+    void findsOnlyCachedOutput() {
+        assertNull(cache.find("a"));
+        CompilerOutput<String> output = compile("a", "output");
+        assertSame(output, cache.find("a"));
+        assertEquals(1, compilations.get());
+        assertEquals(1, cache.getStatistics().hits());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() {
+        String output = "x".repeat(300);
+        compile("a", output);
+        compile("b", output);
+        compile("a", output);
+        compile("c", output);    // evicts b
+        compile("a", output);
+        compile("b", output);    // recompiled
+        assertEquals(4, compilations.get());
+        assertEquals(2, cache.getStatistics().evictions());
+    }
+
+    @Test
+    void doesNotCacheOversizedOutputs() {
+        compile("a", "x".repeat(1000));
+        compile("a", "x".repeat(1000));
+        assertEquals(2, compilations.get());
+        assertEquals(0, cache.getStatistics().entries());
+    }
+
+    @Test
+    void doesNotCacheTimedOutCompilations() {
+        for (int i = 0; i < 2; i++) {
+            cache.get("a", 1, () -> {
+                compilations.incrementAndGet();
+                sleep(10);
+                return new CompilerOutput<>("partial", List.of());
+            });
+        }
+        assertEquals(2, compilations.get());
+        assertEquals(0, cache.getStatistics().entries());
+    }
+
+    @Test
+    void keyDependsOnSourceAndProfile() {
+        CompilerProfile profile = CompilerProfile.standardOptimizations(true);
+        String key = cache.computeKey("print(1)", profile);
+        assertEquals(key, cache.computeKey("print(1)", CompilerProfile.standardOptimizations(true)));
+        assertNotEquals(key, cache.computeKey("print(2)", profile));
+        assertNotEquals(key, cache.computeKey("print(1)", CompilerProfile.noOptimizations(true)));
+        assertNotEquals(key, cache.computeKey("print(1)", CompilerProfile.standardOptimizations(true).setGoal(GenerationGoal.SPEED)));
+        assertEquals(key, cache.computeKey("print(1)", CompilerProfile.standardOptimizations(true).setTimeLimit(1000)));
+    }
+
+    @Test
+    void keyDependsOnCompilerVersion() {
+        CompilerProfile profile = CompilerProfile.standardOptimizations(true);
+        CompilationCache other = new CompilationCache(1000, "other", Optional.empty());
+        assertNotEquals(cache.computeKey("print(1)", profile), other.computeKey("print(1)", profile));
+    }
+
+    @Test
+    void compilesSource() {
+        CompilationCache largeCache = new CompilationCache(1_000_000, "test", Optional.empty());
+        CompilerOutput<String> output = largeCache.compile("print(1)", CompilerProfile.standardOptimizations(true));
+        assertEquals("print 1\nend\n", output.output());
+        assertSame(output, largeCache.compile("print(1)", CompilerProfile.standardOptimizations(true)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package info.teksol.mindcode.webapp;
+
+import info.teksol.mindcode.compiler.CompilerFacade;
+import info.teksol.mindcode.compiler.CompilerOutput;
+import info.teksol.mindcode.compiler.CompilerProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationExecutorTest {
+    private CompilationExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void executesCompilation() {
+        executor = new CompilationExecutor(1, 1, 10000, 1000);
+        CompilerProfile profile = CompilerProfile.standardOptimizations(true).setTimeLimit(executor.getTimeLimit());
+        CompilerOutput<String> output = executor.execute(() -> CompilerFacade.compile("print(1)", profile));
+        assertEquals("print 1\nend\n", output.output());
+    }
+
+    @Test
+    void cancelsLongCompilations() throws InterruptedException {
+        executor = new CompilationExecutor(1, 1, 10, 10);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompilerOutput<String> output = executor.execute(() -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return new CompilerOutput<>("late", List.of());
+        });
+        assertEquals("", output.output());
+        assertEquals(List.of("Compilation time limit (10 ms) exceeded."), output.errors());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsCompilationsWhenBusy() throws InterruptedException {
+        executor = new CompilationExecutor(1, 1, 0, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocking = new Thread(() -> executor.execute(() -> {
+            started.countDown();
+            await(release);
+            return new CompilerOutput<>("", List.of());
+        }));
+        blocking.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread queued = new Thread(() -> executor.execute(() -> new CompilerOutput<>("", List.of())));
+        queued.start();
+        while (queued.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        CompilerOutput<String> output = executor.execute(() -> new CompilerOutput<>("rejected", List.of()));
+        assertEquals(List.of("The server is busy, please try again later."), output.errors());
+
+        release.countDown();
+        blocking.join();
+        queued.join();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}